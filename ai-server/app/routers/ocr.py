@@ -59,6 +59,10 @@ async def extract_text(
         # Convert to PIL Image
         image = Image.open(io.BytesIO(contents))
         logger.debug(f"Image size: {image.size}, mode: {image.mode}")
+
+        # Backend sends preprocessed crops as 1-bit PNGs; numpy would turn those into bool arrays
+        if image.mode in ("1", "P"):
+            image = image.convert("L")
         
         # Convert to numpy array
         img_array = np.array(image)
@@ -37,7 +37,7 @@ public class AuthController {
         try {
             com.example.demo.model.User user = userService.register(request.getEmail(), request.getPassword(),
                     request.getName());
-            String token = jwtUtil.generateToken(user.getEmail());
+            String token = jwtUtil.generateToken(user);
             return ResponseEntity.ok(new LoginResponse(token, user.getEmail(), user.getName(), user.getHasSeenTour()));
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
@@ -48,7 +48,7 @@ public class AuthController {
     public ResponseEntity<?> login(@RequestBody com.example.demo.dto.AuthLoginRequest request) {
         com.example.demo.model.User user = userService.login(request.getEmail(), request.getPassword());
         if (user != null) {
-            String token = jwtUtil.generateToken(user.getEmail());
+            String token = jwtUtil.generateToken(user);
             return ResponseEntity.ok(new LoginResponse(token, user.getEmail(), user.getName(), user.getHasSeenTour()));
         } else {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalid credentials");
@@ -85,7 +85,7 @@ public class AuthController {
                     }
                 }
 
-                String appToken = jwtUtil.generateToken(email);
+                String appToken = jwtUtil.generateToken(user);
 
                 return ResponseEntity.ok(new LoginResponse(appToken, email, name, user.getHasSeenTour()));
             } else {
@@ -105,7 +105,6 @@ public class AuthController {
             }
             String email = jwtUtil.extractEmail(token);
             // If we get here, token is valid
-            String newToken = jwtUtil.generateToken(email);
 
             // Retrieve user info
             com.example.demo.model.User user = userService.getUser(email);
@@ -114,6 +113,7 @@ public class AuthController {
                 // Fallback if user not found (should not happen with valid token)
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("User not found");
             }
+            String newToken = jwtUtil.generateToken(user);
 
             return ResponseEntity.ok(new LoginResponse(newToken, email, user.getName(), user.getHasSeenTour()));
         } catch (Exception e) {
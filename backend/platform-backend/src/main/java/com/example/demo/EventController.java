@@ -0,0 +1,72 @@
+package com.example.demo;
+
+import com.example.demo.dto.AuthPrincipal;
+import com.example.demo.service.EventBroadcaster;
+import com.example.demo.service.PgEventRelay;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Map;
+
+/**
+ * Server-sent event stream of the caller's changes, replacing polling:
+ * {@code files} and {@code folders} (reload the listing / sidebar),
+ * {@code ocr.job} and {@code index} (job progress), {@code ocr.result} (new
+ * title block text) and {@code resync} (reload everything). Authenticates
+ * with the usual bearer token, so browsers read it with fetch() rather than
+ * EventSource.
+ */
+@RestController
+@RequestMapping("/api/events")
+public class EventController {
+
+    private final EventBroadcaster eventBroadcaster;
+    private final PgEventRelay eventRelay;
+
+    public EventController(EventBroadcaster eventBroadcaster, PgEventRelay eventRelay) {
+        this.eventBroadcaster = eventBroadcaster;
+        this.eventRelay = eventRelay;
+    }
+
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> stream(
+            @RequestHeader(name = "Last-Event-ID", required = false) String lastEventId,
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
+        if (user == null) {
+            return ResponseEntity.status(401).build();
+        }
+
+        // Unknown ids (another node's, or from before a restart) get a resync
+        String after = lastEventId != null && !lastEventId.isBlank() ? lastEventId.trim() : null;
+        return ResponseEntity.ok()
+                .header("Cache-Control", "no-cache")
+                // Stops nginx from buffering the stream
+                .header("X-Accel-Buffering", "no")
+                .body(eventBroadcaster.subscribe(user.getId(), after));
+    }
+
+    /** Open streams on this node, and event and relay totals since startup. */
+    @GetMapping("/stats")
+    public ResponseEntity<?> stats(
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
+        if (user == null) {
+            return ResponseEntity.status(401).body("Invalid Token");
+        }
+        if (!user.isAdmin()) {
+            return ResponseEntity.status(403).body("Forbidden");
+        }
+
+        return ResponseEntity.ok(Map.of(
+                "streams", eventBroadcaster.getStreams(),
+                "replayUsers", eventBroadcaster.getReplayUsers(),
+                "published", eventBroadcaster.getPublished(),
+                "received", eventBroadcaster.getReceived(),
+                "coalesced", eventBroadcaster.getCoalesced(),
+                "evicted", eventBroadcaster.getEvicted(),
+                "replaced", eventBroadcaster.getReplaced(),
+                "relaySent", eventRelay.getSent(),
+                "relayDropped", eventRelay.getDropped()));
+    }
+}
@@ -5,21 +5,19 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.UUID;
-import java.io.File;
 
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.example.demo.model.BBox;
+import com.example.demo.dto.AuthPrincipal;
+import com.example.demo.dto.CoordinatesPayload;
+import com.example.demo.util.CoordinatesPayloadReader;
 import java.util.List;
-import java.util.ArrayList;
-import java.util.Map;
 
 @RestController
 @org.springframework.web.bind.annotation.CrossOrigin(origins = "*")
@@ -28,21 +26,38 @@ public class FileController {
     private final Path uploadRoot = Paths.get("uploads");
 
     private final com.example.demo.repository.UserFileRepository userFileRepository;
-    private final com.example.demo.util.JwtUtil jwtUtil;
-    private final com.example.demo.repository.UserRepository userRepository;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final com.example.demo.service.BBoxSyncService bboxSyncService;
+    private final com.example.demo.service.FileListingService fileListingService;
+    private final com.example.demo.service.FolderTreeCache folderTreeCache;
+    private final com.example.demo.service.BulkFileService bulkFileService;
+    private final com.example.demo.service.StorageUsageService storageUsageService;
+    private final com.example.demo.service.RenditionCache renditionCache;
+    private final com.example.demo.service.DrawingSearchIndex drawingSearchIndex;
+    private final com.example.demo.service.PageTextIndex pageTextIndex;
 
     public FileController(com.example.demo.repository.UserFileRepository userFileRepository,
-            com.example.demo.util.JwtUtil jwtUtil,
-            com.example.demo.repository.UserRepository userRepository) {
+            com.example.demo.service.BBoxSyncService bboxSyncService,
+            com.example.demo.service.FileListingService fileListingService,
+            com.example.demo.service.FolderTreeCache folderTreeCache,
+            com.example.demo.service.BulkFileService bulkFileService,
+            com.example.demo.service.StorageUsageService storageUsageService,
+            com.example.demo.service.RenditionCache renditionCache,
+            com.example.demo.service.DrawingSearchIndex drawingSearchIndex,
+            com.example.demo.service.PageTextIndex pageTextIndex) {
         this.userFileRepository = userFileRepository;
-        this.jwtUtil = jwtUtil;
-        this.userRepository = userRepository;
+        this.bboxSyncService = bboxSyncService;
+        this.fileListingService = fileListingService;
+        this.folderTreeCache = folderTreeCache;
+        this.bulkFileService = bulkFileService;
+        this.storageUsageService = storageUsageService;
+        this.renditionCache = renditionCache;
+        this.drawingSearchIndex = drawingSearchIndex;
+        this.pageTextIndex = pageTextIndex;
     }
 
     @PostMapping(value = "/files", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<?> upload(@RequestParam("file") MultipartFile file,
-            @org.springframework.web.bind.annotation.RequestHeader(value = "Authorization", required = false) String token)
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user)
             throws IOException {
 
         if (file.isEmpty()) {
@@ -56,32 +71,45 @@ public class FileController {
             return ResponseEntity.badRequest().body("Only PDF or image allowed");
         }
 
-        Files.createDirectories(uploadRoot);
+        // ALWAYS create a record
+        Long userId = null;
+        if (user != null) {
+            userId = user.getId();
+        }
 
-        String original = StringUtils
-                .cleanPath(file.getOriginalFilename() == null ? "upload.bin" : file.getOriginalFilename());
-        String savedName = UUID.randomUUID() + "_" + original;
+        // Quota check (reserves the space) before anything is written to disk
+        if (userId != null && !storageUsageService.reserve(userId, file.getSize())) {
+            return ResponseEntity.status(413).body("Storage quota exceeded");
+        }
 
-        Path savedPath = uploadRoot.resolve(savedName);
-        Files.copy(file.getInputStream(), savedPath);
+        com.example.demo.model.UserFile userFile;
+        try {
+            Files.createDirectories(uploadRoot);
 
-        // ALWAYS create a record
-        Long userId = null;
-        if (token != null && token.startsWith("Bearer ")) {
-            try {
-                String jwt = token.substring(7);
-                String email = jwtUtil.extractEmail(jwt);
-                com.example.demo.model.User user = userRepository.findByEmail(email).orElse(null);
-                if (user != null)
-                    userId = user.getId();
-            } catch (Exception e) {
-                // Ignore token error for upload
+            String original = StringUtils
+                    .cleanPath(file.getOriginalFilename() == null ? "upload.bin" : file.getOriginalFilename());
+            String savedName = UUID.randomUUID() + "_" + original;
+
+            Path savedPath = uploadRoot.resolve(savedName);
+            Files.copy(file.getInputStream(), savedPath);
+
+            userFile = new com.example.demo.model.UserFile(userId, original, savedPath.toString(), file.getSize());
+            if (userId != null) {
+                com.example.demo.model.UserFile created = userFile;
+                storageUsageService.complete(userId, file.getSize(), () -> userFileRepository.save(created));
+            } else {
+                userFileRepository.save(userFile);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (userId != null) {
+                storageUsageService.release(userId, file.getSize());
             }
+            throw e;
         }
-
-        com.example.demo.model.UserFile userFile = new com.example.demo.model.UserFile(
-                userId, original, savedPath.toString(), file.getSize());
-        userFileRepository.save(userFile);
+        String original = userFile.getName();
+        Path savedPath = Paths.get(userFile.getFilePath());
+        fileListingService.invalidate(userId);
+        folderTreeCache.fileChanged(userId, null, file.getSize(), 1);
 
         return ResponseEntity.ok(
                 java.util.Map.of(
@@ -94,21 +122,43 @@ public class FileController {
 
     @PostMapping("/api/files/{id}/assign")
     public ResponseEntity<?> assignFile(@org.springframework.web.bind.annotation.PathVariable Long id,
-            @org.springframework.web.bind.annotation.RequestHeader("Authorization") String token) {
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
         try {
-            if (token != null && token.startsWith("Bearer ")) {
-                String jwt = token.substring(7);
-                String email = jwtUtil.extractEmail(jwt);
-                com.example.demo.model.User user = userRepository.findByEmail(email)
-                        .orElseThrow(() -> new RuntimeException("User not found"));
+            if (user != null) {
 
                 com.example.demo.model.UserFile file = userFileRepository.findById(id)
                         .orElseThrow(() -> new RuntimeException("File not found"));
 
                 // Only allow assignment if currently unassigned? Or allow re-assignment?
                 // Let's allow simple assignment.
-                file.setUserId(user.getId());
-                userFileRepository.save(file);
+                Long previousOwner = file.getUserId();
+                boolean ownerChanges = !user.getId().equals(previousOwner);
+                // Counts against the new owner's quota like an upload of the same size
+                if (ownerChanges && !storageUsageService.reserve(user.getId(), sizeOf(file))) {
+                    return ResponseEntity.status(413).body("Storage quota exceeded");
+                }
+                if (ownerChanges) {
+                    try {
+                        // Counters leave the old owner and the reservation settles with the owner change
+                        storageUsageService.complete(user.getId(), sizeOf(file), () -> {
+                            storageUsageService.beforeDelete(List.of(file.getId()));
+                            file.setUserId(user.getId());
+                            userFileRepository.save(file);
+                            storageUsageService.afterMove(file.getFolderId(), List.of(file.getId()));
+                        });
+                    } catch (RuntimeException e) {
+                        file.setUserId(previousOwner);
+                        storageUsageService.release(user.getId(), sizeOf(file));
+                        throw e;
+                    }
+                    // Searchable by the new owner, no longer by the old one
+                    drawingSearchIndex.reassign(previousOwner, file);
+                    pageTextIndex.reassignFile(previousOwner, file);
+                }
+                fileListingService.invalidate(previousOwner);
+                fileListingService.invalidate(user.getId());
+                folderTreeCache.invalidate(previousOwner);
+                folderTreeCache.invalidate(user.getId());
                 return ResponseEntity.ok("Assigned");
             }
             return ResponseEntity.status(401).body("Unauthorized");
@@ -119,15 +169,11 @@ public class FileController {
 
     @org.springframework.web.bind.annotation.GetMapping("/api/files/{id}/download")
     public ResponseEntity<?> downloadFile(@org.springframework.web.bind.annotation.PathVariable Long id,
-            @org.springframework.web.bind.annotation.RequestHeader("Authorization") String token) {
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
         try {
-            if (token == null || !token.startsWith("Bearer ")) {
+            if (user == null) {
                 return ResponseEntity.status(401).body("Unauthorized");
             }
-            String jwt = token.substring(7);
-            String email = jwtUtil.extractEmail(jwt);
-            com.example.demo.model.User user = userRepository.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
 
             com.example.demo.model.UserFile file = userFileRepository.findById(id)
                     .orElseThrow(() -> new RuntimeException("File not found"));
@@ -160,17 +206,59 @@ public class FileController {
         }
     }
 
+    /**
+     * The image as displayed: rotated by its stored rotation and optionally
+     * scaled to fit {@code maxSize} (rounded up to a fixed size bucket),
+     * rendered once and then served from the rendition cache.
+     */
+    @org.springframework.web.bind.annotation.GetMapping("/api/files/{id}/rendition")
+    public ResponseEntity<?> getRendition(@org.springframework.web.bind.annotation.PathVariable Long id,
+            @RequestParam(required = false, defaultValue = "0") int maxSize,
+            org.springframework.web.context.request.WebRequest webRequest,
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
+        try {
+            if (user == null) {
+                return ResponseEntity.status(401).body("Unauthorized");
+            }
+
+            com.example.demo.model.UserFile file = userFileRepository.findById(id)
+                    .orElseThrow(() -> new RuntimeException("File not found"));
+
+            if (!user.getId().equals(file.getUserId())) {
+                return ResponseEntity.status(403).body("Forbidden");
+            }
+
+            String mimeType = Files.probeContentType(Paths.get(file.getFilePath()));
+            if (mimeType == null || !mimeType.startsWith("image/")) {
+                return ResponseEntity.status(415).body("Renditions are only available for images");
+            }
+
+            Path path = renditionCache.get(file, maxSize);
+            // The file name changes with the rotation, size and blob, so it doubles as the ETag
+            String etag = "\"" + path.getFileName() + "\"";
+            if (webRequest.checkNotModified(etag)) {
+                return null;
+            }
+            String contentType = path.equals(Paths.get(file.getFilePath())) ? mimeType
+                    : com.example.demo.service.RenditionCache.contentType(path);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(contentType))
+                    .eTag(etag)
+                    .body(new org.springframework.core.io.FileSystemResource(path));
+        } catch (com.example.demo.util.ResourceGuard.BusyException e) {
+            throw e;
+        } catch (Exception e) {
+            return ResponseEntity.status(400).body("Error: " + e.getMessage());
+        }
+    }
+
     @org.springframework.web.bind.annotation.GetMapping("/api/files/{id}")
     public ResponseEntity<?> getSingleFile(@org.springframework.web.bind.annotation.PathVariable Long id,
-            @org.springframework.web.bind.annotation.RequestHeader("Authorization") String token) {
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
         try {
-            if (token == null || !token.startsWith("Bearer ")) {
+            if (user == null) {
                 return ResponseEntity.status(401).body("Unauthorized");
             }
-            String jwt = token.substring(7);
-            String email = jwtUtil.extractEmail(jwt);
-            com.example.demo.model.User user = userRepository.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
 
             com.example.demo.model.UserFile file = userFileRepository.findById(id)
                     .orElseThrow(() -> new RuntimeException("File not found"));
@@ -187,15 +275,11 @@ public class FileController {
 
     @org.springframework.web.bind.annotation.DeleteMapping("/api/files/{id}")
     public ResponseEntity<?> deleteFile(@org.springframework.web.bind.annotation.PathVariable Long id,
-            @org.springframework.web.bind.annotation.RequestHeader("Authorization") String token) {
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
         try {
-            if (token == null || !token.startsWith("Bearer ")) {
+            if (user == null) {
                 return ResponseEntity.status(401).body("Unauthorized");
             }
-            String jwt = token.substring(7);
-            String email = jwtUtil.extractEmail(jwt);
-            com.example.demo.model.User user = userRepository.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
 
             com.example.demo.model.UserFile file = userFileRepository.findById(id)
                     .orElseThrow(() -> new RuntimeException("File not found"));
@@ -205,7 +289,15 @@ public class FileController {
             }
 
             // Delete from DB
+            storageUsageService.beforeDelete(List.of(file.getId()));
             userFileRepository.delete(file);
+            // The delete has committed (no surrounding transaction); drop the file from search too
+            drawingSearchIndex.remove(user.getId(), file.getId());
+            pageTextIndex.removeFile(user.getId(), file.getId());
+            fileListingService.invalidate(user.getId());
+            if (!file.isTrashed()) {
+                folderTreeCache.fileChanged(user.getId(), file.getFolderId(), sizeOf(file), -1);
+            }
 
             // Delete from Filesystem (Optional, but good practice)
             try {
@@ -225,15 +317,11 @@ public class FileController {
 
     @org.springframework.web.bind.annotation.PutMapping("/api/files/{id}/trash")
     public ResponseEntity<?> trashFile(@org.springframework.web.bind.annotation.PathVariable Long id,
-            @org.springframework.web.bind.annotation.RequestHeader("Authorization") String token) {
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
         try {
-            if (token == null || !token.startsWith("Bearer ")) {
+            if (user == null) {
                 return ResponseEntity.status(401).body("Unauthorized");
             }
-            String jwt = token.substring(7);
-            String email = jwtUtil.extractEmail(jwt);
-            com.example.demo.model.User user = userRepository.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
 
             com.example.demo.model.UserFile file = userFileRepository.findById(id)
                     .orElseThrow(() -> new RuntimeException("File not found"));
@@ -242,9 +330,14 @@ public class FileController {
                 return ResponseEntity.status(403).body("Forbidden");
             }
 
+            boolean wasTrashed = file.isTrashed();
             file.setTrashed(true);
             file.setTrashedAt(java.time.LocalDateTime.now());
             userFileRepository.save(file);
+            fileListingService.invalidate(user.getId());
+            if (!wasTrashed) {
+                folderTreeCache.fileChanged(user.getId(), file.getFolderId(), sizeOf(file), -1);
+            }
 
             return ResponseEntity.ok("Moved to trash");
         } catch (Exception e) {
@@ -254,15 +347,11 @@ public class FileController {
 
     @org.springframework.web.bind.annotation.PutMapping("/api/files/{id}/restore")
     public ResponseEntity<?> restoreFile(@org.springframework.web.bind.annotation.PathVariable Long id,
-            @org.springframework.web.bind.annotation.RequestHeader("Authorization") String token) {
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
         try {
-            if (token == null || !token.startsWith("Bearer ")) {
+            if (user == null) {
                 return ResponseEntity.status(401).body("Unauthorized");
             }
-            String jwt = token.substring(7);
-            String email = jwtUtil.extractEmail(jwt);
-            com.example.demo.model.User user = userRepository.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
 
             com.example.demo.model.UserFile file = userFileRepository.findById(id)
                     .orElseThrow(() -> new RuntimeException("File not found"));
@@ -271,9 +360,14 @@ public class FileController {
                 return ResponseEntity.status(403).body("Forbidden");
             }
 
+            boolean wasTrashed = file.isTrashed();
             file.setTrashed(false);
             file.setTrashedAt(null);
             userFileRepository.save(file);
+            fileListingService.invalidate(user.getId());
+            if (wasTrashed) {
+                folderTreeCache.fileChanged(user.getId(), file.getFolderId(), sizeOf(file), 1);
+            }
 
             return ResponseEntity.ok("Restored");
         } catch (Exception e) {
@@ -285,13 +379,9 @@ public class FileController {
     public ResponseEntity<?> getUserFiles(
             @RequestParam(required = false) Long folderId,
             @RequestParam(required = false, defaultValue = "false") boolean trashed,
-            @org.springframework.web.bind.annotation.RequestHeader("Authorization") String token) {
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
         try {
-            if (token != null && token.startsWith("Bearer ")) {
-                String jwt = token.substring(7);
-                String email = jwtUtil.extractEmail(jwt);
-                com.example.demo.model.User user = userRepository.findByEmail(email)
-                        .orElseThrow(() -> new RuntimeException("User not found"));
+            if (user != null) {
 
                 List<com.example.demo.model.UserFile> files;
 
@@ -314,15 +404,25 @@ public class FileController {
         }
     }
 
+    @org.springframework.web.bind.annotation.GetMapping("/api/user/storage")
+    public ResponseEntity<?> getStorageUsage(
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
+        try {
+            if (user == null) {
+                return ResponseEntity.status(401).body("Unauthorized");
+            }
+
+            return ResponseEntity.ok(storageUsageService.getUsage(user.getId()));
+        } catch (Exception e) {
+            return ResponseEntity.status(401).body("Unauthorized: " + e.getMessage());
+        }
+    }
+
     @org.springframework.web.bind.annotation.GetMapping("/api/user/drive/files")
     public ResponseEntity<?> getDriveRootFiles(
-            @org.springframework.web.bind.annotation.RequestHeader("Authorization") String token) {
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
         try {
-            if (token != null && token.startsWith("Bearer ")) {
-                String jwt = token.substring(7);
-                String email = jwtUtil.extractEmail(jwt);
-                com.example.demo.model.User user = userRepository.findByEmail(email)
-                        .orElseThrow(() -> new RuntimeException("User not found"));
+            if (user != null) {
 
                 // Fetch files where folderId is NULL and isTrashed is false
                 List<com.example.demo.model.UserFile> files = userFileRepository
@@ -337,18 +437,60 @@ public class FileController {
         }
     }
 
+    /**
+     * Keyset-paginated listing without bboxes. Same views as
+     * {@code /api/user/files}; pass the returned {@code nextCursor} to get the
+     * following page.
+     */
+    @org.springframework.web.bind.annotation.GetMapping("/api/user/files/page")
+    public ResponseEntity<?> getUserFilesPage(
+            @RequestParam(required = false) Long folderId,
+            @RequestParam(required = false, defaultValue = "false") boolean trashed,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false, defaultValue = "50") int limit,
+            @RequestParam(required = false, defaultValue = "false") boolean includeTotal,
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
+        com.example.demo.service.FileListingService.View view = trashed
+                ? com.example.demo.service.FileListingService.View.TRASH
+                : folderId != null ? com.example.demo.service.FileListingService.View.FOLDER
+                        : com.example.demo.service.FileListingService.View.RECENT;
+        return listPage(user, view, folderId, cursor, limit, includeTotal);
+    }
+
+    @org.springframework.web.bind.annotation.GetMapping("/api/user/drive/files/page")
+    public ResponseEntity<?> getDriveRootFilesPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false, defaultValue = "50") int limit,
+            @RequestParam(required = false, defaultValue = "false") boolean includeTotal,
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
+        return listPage(user, com.example.demo.service.FileListingService.View.ROOT, null, cursor, limit,
+                includeTotal);
+    }
+
+    private ResponseEntity<?> listPage(AuthPrincipal user, com.example.demo.service.FileListingService.View view,
+            Long folderId, String cursor, int limit, boolean includeTotal) {
+        try {
+            if (user == null) {
+                return ResponseEntity.status(401).body("Unauthorized");
+            }
+
+            return ResponseEntity.ok(fileListingService.list(user.getId(), view, folderId, cursor, limit,
+                    includeTotal));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(401).body("Unauthorized: " + e.getMessage());
+        }
+    }
+
     @PostMapping("/api/files/{id}/coordinates")
     public ResponseEntity<?> updateCoordinates(@org.springframework.web.bind.annotation.PathVariable Long id,
-            @org.springframework.web.bind.annotation.RequestBody java.util.Map<String, Object> coords,
-            @org.springframework.web.bind.annotation.RequestHeader("Authorization") String token) {
+            jakarta.servlet.http.HttpServletRequest request,
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
         try {
-            if (token == null || !token.startsWith("Bearer ")) {
+            if (user == null) {
                 return ResponseEntity.status(401).body("Unauthorized");
             }
-            String jwt = token.substring(7);
-            String email = jwtUtil.extractEmail(jwt);
-            com.example.demo.model.User user = userRepository.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
 
             com.example.demo.model.UserFile file = userFileRepository.findById(id)
                     .orElseThrow(() -> new RuntimeException("File not found"));
@@ -357,179 +499,95 @@ public class FileController {
                 return ResponseEntity.status(403).body("Forbidden");
             }
 
-            // 1. Get Coordinates & Rotation from Request
-            String jsonStr = null;
-            if (coords.containsKey("coordinates")) {
-                Object coordObj = coords.get("coordinates");
-                jsonStr = (coordObj instanceof String) ? (String) coordObj : coordObj.toString();
-            }
+            // 1. Get Coordinates & Rotation from Request (single streaming pass)
+            String requestType = request.getContentType();
+            CoordinatesPayload payload = requestType != null
+                    && requestType.startsWith(CoordinatesPayloadReader.PACKED_CONTENT_TYPE)
+                            ? CoordinatesPayloadReader.readPacked(request.getInputStream())
+                            : CoordinatesPayloadReader.readJson(request.getInputStream());
+            int rotation = payload.getRotation();
 
-            int rotation = 0;
-            if (coords.containsKey("rotation")) {
-                Object rotObj = coords.get("rotation");
-                if (rotObj instanceof Number) {
-                    rotation = ((Number) rotObj).intValue();
-                }
+            // Normalize rotation (quarter turns)
+            rotation = com.example.demo.util.RotationGeometry.normalize(rotation);
+
+            // 2. Rotation is metadata for every format (boxes stay in unrotated coordinates); the
+            // viewer applies it, and rotated renditions are made on demand by RenditionCache
+            file.setRotation(rotation);
+
+            // 3. Save BBoxes (Common Logic) - diffed against the stored boxes by frontend id
+            if (payload.hasCoordinates()) {
+                bboxSyncService.sync(file, payload.toBBoxes());
             }
 
-            // Normalize rotation
-            rotation = (rotation % 360 + 360) % 360;
+            userFileRepository.save(file);
 
-            String mimeType = Files.probeContentType(Paths.get(file.getFilePath()));
-            boolean isImage = mimeType != null && mimeType.startsWith("image/");
-
-            // 2. Handle Rotation (Physical vs Metadata)
-
-            if (isImage && rotation != 0) {
-                // Determine physical paths
-                Path filePath = Paths.get(file.getFilePath());
-                File imageFile = filePath.toFile();
-
-                // Read Source Image
-                java.awt.image.BufferedImage src = javax.imageio.ImageIO.read(imageFile);
-                if (src == null)
-                    throw new RuntimeException("Could not read image file");
-
-                // Calculate New Dimensions & Transform
-                int w = src.getWidth();
-                int h = src.getHeight();
-                int newW = w;
-                int newH = h;
-
-                // If 90 or 270, dimensions swap
-                if (rotation == 90 || rotation == 270) {
-                    newW = h;
-                    newH = w;
-                }
+            return ResponseEntity.ok("Coordinates updated");
 
-                java.awt.image.BufferedImage dest = new java.awt.image.BufferedImage(newW, newH, src.getType());
-                java.awt.Graphics2D g2d = dest.createGraphics();
-
-                // Rotate around center
-                g2d.translate((newW - w) / 2, (newH - h) / 2); // Center adjustment if needed, but for 90/270 swap it's
-                                                               // tricky
-                // Simpler approach: Rotate based on quadrant
-                // Reset transform
-                g2d.setTransform(new java.awt.geom.AffineTransform());
-
-                if (rotation == 90) {
-                    g2d.translate(newW, 0);
-                    g2d.rotate(Math.toRadians(90));
-                } else if (rotation == 180) {
-                    g2d.translate(newW, newH);
-                    g2d.rotate(Math.toRadians(180));
-                } else if (rotation == 270) {
-                    g2d.translate(0, newH);
-                    g2d.rotate(Math.toRadians(270));
-                }
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.status(400).body("Error: " + e.getMessage());
+        }
+    }
 
-                g2d.drawImage(src, 0, 0, null);
-                g2d.dispose();
+    // Bulk actions for multi-select: body {"ids": [...], "targetFolderId": ...}
+    @PostMapping("/api/files/bulk/move")
+    public ResponseEntity<?> bulkMove(
+            @org.springframework.web.bind.annotation.RequestBody com.example.demo.dto.BulkFileRequest payload,
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
+        return bulk(user, payload, com.example.demo.service.BulkFileService.Action.MOVE);
+    }
 
-                // Overwrite File
-                String ext = "png";
-                if (mimeType != null) {
-                    ext = mimeType.substring(mimeType.lastIndexOf("/") + 1);
-                }
-                javax.imageio.ImageIO.write(dest, ext, imageFile);
-
-                // Update File Metadata (Reset rotation since physical is now correct)
-                file.setRotation(0);
-
-                // Update BBoxes to match new Orientation
-                // We need to transform the incoming 0-deg coords -> Rotated coords
-                if (jsonStr != null) {
-                    List<Map<String, Object>> list = objectMapper.readValue(jsonStr,
-                            new TypeReference<List<Map<String, Object>>>() {
-                            });
-                    List<Map<String, Object>> newList = new ArrayList<>();
-
-                    for (Map<String, Object> item : list) {
-                        Map<String, Number> rect = (Map<String, Number>) item.get("rect");
-                        double bx = rect.get("x").doubleValue();
-                        double by = rect.get("y").doubleValue();
-                        double bw = rect.get("width").doubleValue();
-                        double bh = rect.get("height").doubleValue();
-
-                        double nx = bx, ny = by, nw = bw, nh = bh;
-
-                        // Transformation Logic (Same as Frontend 'toView=true')
-                        // 0 -> Rot
-                        if (rotation == 90) {
-                            // (x, y) -> (h - y - height, x)
-                            // newW = h, newH = w
-                            nx = h - by - bh;
-                            ny = bx;
-                            nw = bh;
-                            nh = bw;
-                        } else if (rotation == 180) {
-                            // (w - x - width, h - y - height)
-                            nx = w - bx - bw;
-                            ny = h - by - bh;
-                        } else if (rotation == 270) {
-                            // (y, w - x - width)
-                            nx = by;
-                            ny = w - bx - bw;
-                            nw = bh;
-                            nh = bw;
-                        }
-
-                        // Update Rect in Map
-                        item.put("rect", Map.of("x", nx, "y", ny, "width", nw, "height", nh));
-                        newList.add(item);
-                    }
-                    // Serialize back to JSON for processing loop below
-                    jsonStr = objectMapper.writeValueAsString(newList);
-                }
+    @PostMapping("/api/files/bulk/trash")
+    public ResponseEntity<?> bulkTrash(
+            @org.springframework.web.bind.annotation.RequestBody com.example.demo.dto.BulkFileRequest payload,
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
+        return bulk(user, payload, com.example.demo.service.BulkFileService.Action.TRASH);
+    }
 
-            } else {
-                // PDF or no rotation: Just save the rotation metadata
-                file.setRotation(rotation);
-            }
-
-            // 3. Save BBoxes (Common Logic)
-            if (jsonStr != null) {
-                // Parse and Save to BBoxes table
-                try {
-                    List<Map<String, Object>> list = objectMapper.readValue(jsonStr,
-                            new TypeReference<List<Map<String, Object>>>() {
-                            });
-
-                    // Clear existing bboxes (orphanRemoval will delete them)
-                    file.getBboxes().clear();
-
-                    for (Map<String, Object> item : list) {
-                        String type = (String) item.get("type");
-                        String frontendId = (String) item.get("id");
-                        Map<String, Number> rect = (Map<String, Number>) item.get("rect");
-                        Number pageNum = (Number) item.get("page");
-                        Integer page = (pageNum != null) ? pageNum.intValue() : 1;
-
-                        if (type != null && rect != null) {
-                            BBox bbox = new BBox();
-                            bbox.setUserFile(file);
-                            bbox.setType(type);
-                            bbox.setFrontendId(frontendId);
-                            bbox.setX(rect.get("x").doubleValue());
-                            bbox.setY(rect.get("y").doubleValue());
-                            bbox.setWidth(rect.get("width").doubleValue());
-                            bbox.setHeight(rect.get("height").doubleValue());
-                            bbox.setPage(page);
-
-                            file.getBboxes().add(bbox);
-                        }
-                    }
-                } catch (Exception e) {
-                    System.err.println("Failed to parse coordinates: " + e.getMessage());
-                }
+    @PostMapping("/api/files/bulk/restore")
+    public ResponseEntity<?> bulkRestore(
+            @org.springframework.web.bind.annotation.RequestBody com.example.demo.dto.BulkFileRequest payload,
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
+        return bulk(user, payload, com.example.demo.service.BulkFileService.Action.RESTORE);
+    }
+
+    @PostMapping("/api/files/bulk/delete")
+    public ResponseEntity<?> bulkDelete(
+            @org.springframework.web.bind.annotation.RequestBody com.example.demo.dto.BulkFileRequest payload,
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
+        return bulk(user, payload, com.example.demo.service.BulkFileService.Action.DELETE);
+    }
+
+    private ResponseEntity<?> bulk(AuthPrincipal user, com.example.demo.dto.BulkFileRequest payload,
+            com.example.demo.service.BulkFileService.Action action) {
+        try {
+            if (user == null) {
+                return ResponseEntity.status(401).body("Unauthorized");
             }
 
-            userFileRepository.save(file);
+            List<Long> ids = bulkFileService.normalize(payload == null ? null : payload.getIds());
+            if (ids == null) {
+                return ResponseEntity.badRequest()
+                        .body("ids must contain 1 to " + com.example.demo.service.BulkFileService.MAX_IDS + " file ids");
+            }
+            if (!bulkFileService.ownsAll(user.getId(), ids)) {
+                return ResponseEntity.status(403).body("Forbidden");
+            }
 
-            return ResponseEntity.ok("Coordinates updated");
+            if (action == com.example.demo.service.BulkFileService.Action.MOVE
+                    && !bulkFileService.ownsFolder(user.getId(), payload.getTargetFolderId())) {
+                return ResponseEntity.status(404).body("Folder not found");
+            }
 
+            // Exhaustive: a new action does not compile until it is handled here
+            int affected = switch (action) {
+                case MOVE -> bulkFileService.move(user.getId(), ids, payload.getTargetFolderId());
+                case TRASH -> bulkFileService.trash(user.getId(), ids);
+                case RESTORE -> bulkFileService.restore(user.getId(), ids);
+                case DELETE -> bulkFileService.delete(user.getId(), ids);
+            };
+            return ResponseEntity.ok(java.util.Map.of("requested", ids.size(), "affected", affected));
         } catch (Exception e) {
-            e.printStackTrace();
             return ResponseEntity.status(400).body("Error: " + e.getMessage());
         }
     }
@@ -537,15 +595,11 @@ public class FileController {
     @org.springframework.web.bind.annotation.PutMapping("/api/files/{id}/move")
     public ResponseEntity<?> moveFile(@org.springframework.web.bind.annotation.PathVariable Long id,
             @org.springframework.web.bind.annotation.RequestBody java.util.Map<String, Long> payload,
-            @org.springframework.web.bind.annotation.RequestHeader("Authorization") String token) {
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
         try {
-            if (token == null || !token.startsWith("Bearer ")) {
+            if (user == null) {
                 return ResponseEntity.status(401).body("Unauthorized");
             }
-            String jwt = token.substring(7);
-            String email = jwtUtil.extractEmail(jwt);
-            com.example.demo.model.User user = userRepository.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
 
             com.example.demo.model.UserFile file = userFileRepository.findById(id)
                     .orElseThrow(() -> new RuntimeException("File not found"));
@@ -555,12 +609,20 @@ public class FileController {
             }
 
             Long targetFolderId = payload.get("targetFolderId");
-            file.setFolderId(targetFolderId); // Can be null for root
-            userFileRepository.save(file);
+            if (!bulkFileService.ownsFolder(user.getId(), targetFolderId)) {
+                return ResponseEntity.status(404).body("Folder not found");
+            }
+            // Counters and the row move in one transaction (targetFolderId can be null for root);
+            // the listing and tree caches are invalidated after it commits
+            bulkFileService.move(user.getId(), List.of(file.getId()), targetFolderId);
 
             return ResponseEntity.ok("Moved");
         } catch (Exception e) {
             return ResponseEntity.status(400).body("Error: " + e.getMessage());
         }
     }
+
+    private static long sizeOf(com.example.demo.model.UserFile file) {
+        return file.getFileSize() == null ? 0L : file.getFileSize();
+    }
 }
@@ -1,10 +1,8 @@
 package com.example.demo;
 
+import com.example.demo.dto.AuthPrincipal;
 import com.example.demo.model.Folder;
-import com.example.demo.model.User;
 import com.example.demo.repository.FolderRepository;
-import com.example.demo.repository.UserRepository;
-import com.example.demo.util.JwtUtil;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -18,47 +16,64 @@ import java.util.Optional;
 public class FolderController {
 
     private final FolderRepository folderRepository;
-    private final UserRepository userRepository;
-    private final JwtUtil jwtUtil;
 
     private final com.example.demo.repository.UserFileRepository userFileRepository;
-
-    public FolderController(FolderRepository folderRepository, UserRepository userRepository, JwtUtil jwtUtil,
-            com.example.demo.repository.UserFileRepository userFileRepository) {
+    private final com.example.demo.service.FileListingService fileListingService;
+    private final com.example.demo.service.FolderTreeService folderTreeService;
+    private final com.example.demo.service.FolderTreeCache folderTreeCache;
+    private final com.example.demo.service.TrashPurger trashPurger;
+
+    public FolderController(FolderRepository folderRepository,
+            com.example.demo.repository.UserFileRepository userFileRepository,
+            com.example.demo.service.FileListingService fileListingService,
+            com.example.demo.service.FolderTreeService folderTreeService,
+            com.example.demo.service.FolderTreeCache folderTreeCache,
+            com.example.demo.service.TrashPurger trashPurger) {
         this.folderRepository = folderRepository;
-        this.userRepository = userRepository;
-        this.jwtUtil = jwtUtil;
         this.userFileRepository = userFileRepository;
-    }
-
-    private User getUserFromToken(String token) {
-        if (token != null && token.startsWith("Bearer ")) {
-            String jwt = token.substring(7);
-            String email = jwtUtil.extractEmail(jwt);
-            return userRepository.findByEmail(email).orElse(null);
-        }
-        return null;
+        this.fileListingService = fileListingService;
+        this.folderTreeService = folderTreeService;
+        this.folderTreeCache = folderTreeCache;
+        this.trashPurger = trashPurger;
     }
 
     @PostMapping
-    public ResponseEntity<?> createFolder(@RequestHeader("Authorization") String token,
+    public ResponseEntity<?> createFolder(
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user,
             @RequestBody Folder folderRequest) {
-        User user = getUserFromToken(token);
         if (user == null)
             return ResponseEntity.status(401).body("Unauthorized");
 
-        Folder folder = new Folder(folderRequest.getName(), user.getId(), folderRequest.getParentFolderId());
+        Long parentFolderId = folderRequest.getParentFolderId();
+        if (parentFolderId != null && !folderRepository.existsByIdAndUserId(parentFolderId, user.getId())) {
+            return ResponseEntity.status(404).body("Parent folder not found");
+        }
+
+        Folder folder = new Folder(folderRequest.getName(), user.getId(), parentFolderId);
         Folder savedFolder = folderRepository.save(folder);
+        folderTreeCache.folderCreated(savedFolder);
         return ResponseEntity.ok(savedFolder);
     }
 
+    /**
+     * Whole folder tree with per-folder file counts and sizes, from the
+     * in-memory snapshot (one call instead of one per expanded level).
+     */
+    @GetMapping("/tree")
+    public ResponseEntity<?> getFolderTree(
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
+        if (user == null)
+            return ResponseEntity.status(401).body("Unauthorized");
+
+        return ResponseEntity.ok(folderTreeCache.getTree(user.getId()));
+    }
+
     @GetMapping
     public ResponseEntity<?> getFolders(
-            @RequestHeader("Authorization") String token,
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user,
             @RequestParam(required = false) Long parentId,
             @RequestParam(required = false, defaultValue = "false") boolean trashed) {
 
-        User user = getUserFromToken(token);
         if (user == null)
             return ResponseEntity.status(401).body("Unauthorized");
 
@@ -74,8 +89,9 @@ public class FolderController {
     }
 
     @PutMapping("/{id}/trash")
-    public ResponseEntity<?> trashFolder(@RequestHeader("Authorization") String token, @PathVariable Long id) {
-        User user = getUserFromToken(token);
+    public ResponseEntity<?> trashFolder(
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user,
+            @PathVariable Long id) {
         if (user == null)
             return ResponseEntity.status(401).body("Unauthorized");
 
@@ -83,48 +99,55 @@ public class FolderController {
         if (folderOpt.isPresent() && folderOpt.get().getUserId().equals(user.getId())) {
             Folder folder = folderOpt.get();
             folder.setTrashed(true);
+            folder.setTrashedAt(LocalDateTime.now());
             folderRepository.save(folder);
+            folderTreeCache.invalidate(user.getId());
             return ResponseEntity.ok("Folder moved to trash");
         }
         return ResponseEntity.status(404).body("Folder not found");
     }
 
     @DeleteMapping("/{id}")
-    @org.springframework.transaction.annotation.Transactional
-    public ResponseEntity<?> deleteFolder(@RequestHeader("Authorization") String token, @PathVariable Long id) {
-        User user = getUserFromToken(token);
+    public ResponseEntity<?> deleteFolder(
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user,
+            @PathVariable Long id) {
         if (user == null)
             return ResponseEntity.status(401).body("Unauthorized");
 
-        Optional<Folder> folderOpt = folderRepository.findById(id);
-        if (folderOpt.isPresent() && folderOpt.get().getUserId().equals(user.getId())) {
-            try {
-                deleteFolderRecursive(id);
+        try {
+            // Whole subtree (folders, files, blobs) in a fixed number of statements
+            if (folderTreeService.deleteSubtree(user.getId(), id) > 0) {
+                fileListingService.invalidate(user.getId());
+                folderTreeCache.invalidate(user.getId());
                 return ResponseEntity.ok("Folder permanently deleted");
-            } catch (Exception e) {
-                return ResponseEntity.status(500).body("Error deleting folder: " + e.getMessage());
             }
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body("Error deleting folder: " + e.getMessage());
         }
         return ResponseEntity.status(404).body("Folder not found");
     }
 
-    private void deleteFolderRecursive(Long folderId) {
-        // 1. Find sub-folders
-        List<Folder> subFolders = folderRepository.findByParentFolderId(folderId);
-        for (Folder sub : subFolders) {
-            deleteFolderRecursive(sub.getId());
-        }
-
-        // 2. Delete files in this folder
-        userFileRepository.deleteByFolderId(folderId);
+    @GetMapping("/{id}/size")
+    public ResponseEntity<?> getFolderSize(
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user,
+            @PathVariable Long id) {
+        if (user == null)
+            return ResponseEntity.status(401).body("Unauthorized");
 
-        // 3. Delete this folder
-        folderRepository.deleteById(folderId);
+        com.example.demo.dto.FolderStats stats = folderTreeService.stats(user.getId(), id);
+        if (stats == null || stats.getFolderCount() == null || stats.getFolderCount() == 0) {
+            return ResponseEntity.status(404).body("Folder not found");
+        }
+        return ResponseEntity.ok(java.util.Map.of(
+                "folderCount", stats.getFolderCount(),
+                "fileCount", stats.getFileCount(),
+                "totalSize", stats.getTotalSize()));
     }
 
     @PutMapping("/{id}/restore")
-    public ResponseEntity<?> restoreFolder(@RequestHeader("Authorization") String token, @PathVariable Long id) {
-        User user = getUserFromToken(token);
+    public ResponseEntity<?> restoreFolder(
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user,
+            @PathVariable Long id) {
         if (user == null)
             return ResponseEntity.status(401).body("Unauthorized");
 
@@ -132,36 +155,56 @@ public class FolderController {
         if (folderOpt.isPresent() && folderOpt.get().getUserId().equals(user.getId())) {
             Folder folder = folderOpt.get();
             folder.setTrashed(false);
+            folder.setTrashedAt(null);
             folderRepository.save(folder);
+            folderTreeCache.invalidate(user.getId());
             return ResponseEntity.ok("Folder restored");
         }
         return ResponseEntity.status(404).body("Folder not found");
     }
 
     @PutMapping("/{id}/move")
-    public ResponseEntity<?> moveFolder(@RequestHeader("Authorization") String token, @PathVariable Long id,
+    public ResponseEntity<?> moveFolder(
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user,
+            @PathVariable Long id,
             @RequestBody java.util.Map<String, Long> payload) {
-        User user = getUserFromToken(token);
         if (user == null)
             return ResponseEntity.status(401).body("Unauthorized");
 
         Optional<Folder> folderOpt = folderRepository.findById(id);
         if (folderOpt.isPresent() && folderOpt.get().getUserId().equals(user.getId())) {
-            Folder folder = folderOpt.get();
             Long targetFolderId = payload.get("targetFolderId");
 
-            // Prevent circular move: target cannot be self or child of self
-            // Simple check: target cannot be self
             if (id.equals(targetFolderId)) {
                 return ResponseEntity.badRequest().body("Cannot move folder into itself");
             }
-            // For MVP, we skip deep circular check (requires recursive parents check) but
-            // blocking self is minimum.
-
-            folder.setParentFolderId(targetFolderId);
-            folderRepository.save(folder);
+            if (targetFolderId != null && !folderRepository.existsByIdAndUserId(targetFolderId, user.getId())) {
+                return ResponseEntity.status(404).body("Target folder not found");
+            }
+            // Cycle check (target inside the folder's subtree) happens in the same UPDATE statement
+            if (!folderTreeService.move(user.getId(), id, targetFolderId)) {
+                return ResponseEntity.badRequest().body("Target folder is inside this folder");
+            }
+            folderTreeCache.folderMoved(user.getId(), id, targetFolderId);
             return ResponseEntity.ok("Folder moved");
         }
         return ResponseEntity.status(404).body("Folder not found");
     }
+
+    /** Trash purge: totals since startup and the last run. */
+    @GetMapping("/trash/stats")
+    public ResponseEntity<?> trashStats(
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
+        if (user == null)
+            return ResponseEntity.status(401).body("Unauthorized");
+        if (!user.isAdmin())
+            return ResponseEntity.status(403).body("Forbidden");
+
+        java.util.Map<String, Object> stats = new java.util.LinkedHashMap<>();
+        stats.put("filesPurged", trashPurger.getFilesPurged());
+        stats.put("foldersPurged", trashPurger.getFoldersPurged());
+        stats.put("lastRunAt", trashPurger.getLastRunAt());
+        stats.put("lastRunMillis", trashPurger.getLastRunMillis());
+        return ResponseEntity.ok(stats);
+    }
 }
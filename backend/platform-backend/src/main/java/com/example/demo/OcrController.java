@@ -1,19 +1,27 @@
 package com.example.demo;
 
+import com.example.demo.dto.AuthPrincipal;
 import com.example.demo.model.BBox;
+import com.example.demo.model.OcrJob;
 import com.example.demo.model.TitleBlockText;
 import com.example.demo.model.UserFile;
 import com.example.demo.repository.TitleBlockTextRepository;
 import com.example.demo.repository.UserFileRepository;
+import com.example.demo.service.OcrJobQueue;
+import com.example.demo.service.OcrJobWorker;
+import com.example.demo.service.OcrPreprocessor;
+import com.example.demo.service.OcrResultWriter;
+import com.example.demo.service.OcrScheduler;
 import com.example.demo.service.OcrService;
-import com.example.demo.util.JwtUtil;
+import com.example.demo.service.OcrWordStore;
+import com.example.demo.util.ResourceGuard;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.time.LocalDateTime;
 import java.util.Optional;
 
 @RestController
@@ -23,28 +31,40 @@ public class OcrController {
     private final OcrService ocrService;
     private final UserFileRepository userFileRepository;
     private final TitleBlockTextRepository titleBlockTextRepository;
-    private final JwtUtil jwtUtil;
+    private final OcrWordStore ocrWordStore;
+    private final OcrResultWriter ocrResultWriter;
+    private final OcrPreprocessor ocrPreprocessor;
+    private final OcrScheduler ocrScheduler;
+    private final OcrJobQueue ocrJobQueue;
+    private final OcrJobWorker ocrJobWorker;
     private final Path uploadRoot = Paths.get("uploads");
 
     @Autowired
     public OcrController(OcrService ocrService, UserFileRepository userFileRepository,
-            TitleBlockTextRepository titleBlockTextRepository, JwtUtil jwtUtil) {
+            TitleBlockTextRepository titleBlockTextRepository, OcrWordStore ocrWordStore,
+            OcrResultWriter ocrResultWriter, OcrPreprocessor ocrPreprocessor, OcrScheduler ocrScheduler,
+            OcrJobQueue ocrJobQueue, OcrJobWorker ocrJobWorker) {
         this.ocrService = ocrService;
         this.userFileRepository = userFileRepository;
         this.titleBlockTextRepository = titleBlockTextRepository;
-        this.jwtUtil = jwtUtil;
+        this.ocrWordStore = ocrWordStore;
+        this.ocrResultWriter = ocrResultWriter;
+        this.ocrPreprocessor = ocrPreprocessor;
+        this.ocrScheduler = ocrScheduler;
+        this.ocrJobQueue = ocrJobQueue;
+        this.ocrJobWorker = ocrJobWorker;
     }
 
     @PostMapping("/process/{fileId}")
     public ResponseEntity<?> processOcr(@PathVariable Long fileId, @RequestBody BBox bbox,
-            @RequestHeader("Authorization") String token) {
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
         // Validation
-        if (!jwtUtil.validateToken(token.substring(7))) {
+        if (user == null) {
             return ResponseEntity.status(401).body("Invalid Token");
         }
 
         Optional<UserFile> fileOpt = userFileRepository.findById(fileId);
-        if (fileOpt.isEmpty()) {
+        if (fileOpt.isEmpty() || !user.getId().equals(fileOpt.get().getUserId())) {
             return ResponseEntity.notFound().build();
         }
 
@@ -52,47 +72,165 @@ public class OcrController {
         Path filePath = Paths.get(userFile.getFilePath());
 
         try {
-            // Perform OCR
-            String extractedText = ocrService.performOcr(filePath, bbox);
-
-            // Check for existing OCR result for this file
-            Optional<TitleBlockText> existingOpt = titleBlockTextRepository
-                    .findTopByUserFileIdOrderByProcessedAtDesc(fileId);
-
-            TitleBlockText titleBlockText;
-            if (existingOpt.isPresent()) {
-                // Update existing record
-                titleBlockText = existingOpt.get();
-                titleBlockText.setExtractedText(extractedText);
-
-                // Parse and update fields
-                TitleBlockText parsed = ocrService.parseText(extractedText, userFile);
-                titleBlockText.setProjectName(parsed.getProjectName());
-                titleBlockText.setDrawingName(parsed.getDrawingName());
-                titleBlockText.setDrawingNumber(parsed.getDrawingNumber());
-                titleBlockText.setScale(parsed.getScale());
-                titleBlockText.setProcessedAt(LocalDateTime.now());
-            } else {
-                // Create new record
-                titleBlockText = ocrService.parseText(extractedText, userFile);
-            }
-
-            TitleBlockText saved = titleBlockTextRepository.save(titleBlockText);
+            // Perform OCR; the user is waiting, so it goes ahead of bulk indexing
+            OcrService.Recognition recognition = ocrScheduler.call(OcrScheduler.Priority.INTERACTIVE, user.getId(),
+                    () -> ocrService.recognize(filePath, bbox));
+            TitleBlockText saved = ocrResultWriter.write(userFile, recognition);
 
             return ResponseEntity.ok(saved);
+        } catch (ResourceGuard.BusyException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.status(500).body("OCR processing failed: " + e.getMessage());
         }
     }
 
+    /**
+     * Queues an OCR crop as a durable job that any backend node may run;
+     * poll {@code /jobs/{jobId}} for the outcome. {@code bulk=true} puts it
+     * behind interactive work.
+     */
+    @PostMapping("/jobs/{fileId}")
+    public ResponseEntity<?> submitOcrJob(@PathVariable Long fileId, @RequestBody BBox bbox,
+            @RequestParam(required = false, defaultValue = "false") boolean bulk,
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
+        if (user == null) {
+            return ResponseEntity.status(401).body("Invalid Token");
+        }
+
+        Optional<UserFile> fileOpt = userFileRepository.findById(fileId);
+        if (fileOpt.isEmpty() || !user.getId().equals(fileOpt.get().getUserId())) {
+            return ResponseEntity.notFound().build();
+        }
+
+        OcrJob job = ocrJobQueue.submit(fileOpt.get(), bbox, bulk);
+        ocrJobWorker.wake();
+        return ResponseEntity.accepted().body(job);
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<?> getOcrJob(@PathVariable Long jobId,
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
+        if (user == null) {
+            return ResponseEntity.status(401).body("Invalid Token");
+        }
+
+        Optional<OcrJob> jobOpt = ocrJobQueue.find(jobId);
+        if (jobOpt.isEmpty() || !user.getId().equals(jobOpt.get().getUserId())) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(jobOpt.get());
+    }
+
+    /** Job table counts across all nodes, and this node's worker totals. */
+    @GetMapping("/jobs/stats")
+    public ResponseEntity<?> getOcrJobStats(
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
+        if (user == null) {
+            return ResponseEntity.status(401).body("Invalid Token");
+        }
+        if (!user.isAdmin()) {
+            return ResponseEntity.status(403).body("Forbidden");
+        }
+
+        java.util.Map<String, Object> stats = new java.util.LinkedHashMap<>();
+        for (OcrJob.State state : OcrJob.State.values()) {
+            stats.put(state.name().toLowerCase(), ocrJobQueue.count(state));
+        }
+        stats.put("node", java.util.Map.of(
+                "owner", ocrJobWorker.getOwner(),
+                "running", ocrJobWorker.getRunning(),
+                "completed", ocrJobWorker.getCompleted(),
+                "failedAttempts", ocrJobWorker.getFailed(),
+                "leasesLost", ocrJobWorker.getLeasesLost()));
+        return ResponseEntity.ok(stats);
+    }
+
     @GetMapping("/results/{fileId}")
-    public ResponseEntity<?> getOcrResults(@PathVariable Long fileId, @RequestHeader("Authorization") String token) {
-        if (!jwtUtil.validateToken(token.substring(7))) {
+    public ResponseEntity<?> getOcrResults(@PathVariable Long fileId,
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
+        if (user == null) {
             return ResponseEntity.status(401).body("Invalid Token");
         }
+        if (!ownsFile(user, fileId)) {
+            return ResponseEntity.notFound().build();
+        }
 
         java.util.List<TitleBlockText> results = titleBlockTextRepository.findByUserFileId(fileId);
         return ResponseEntity.ok(results);
     }
+
+    @GetMapping("/words/{fileId}")
+    public ResponseEntity<?> getOcrWords(@PathVariable Long fileId,
+            @RequestParam(required = false, defaultValue = "1") int page,
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
+        if (user == null) {
+            return ResponseEntity.status(401).body("Invalid Token");
+        }
+        if (!ownsFile(user, fileId)) {
+            return ResponseEntity.notFound().build();
+        }
+
+        return ResponseEntity.ok(ocrWordStore.getWords(fileId, page));
+    }
+
+    @GetMapping(value = "/words/{fileId}", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<?> getOcrWordsEncoded(@PathVariable Long fileId,
+            @RequestParam(required = false, defaultValue = "1") int page,
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
+        if (user == null) {
+            return ResponseEntity.status(401).body("Invalid Token");
+        }
+        if (!ownsFile(user, fileId)) {
+            return ResponseEntity.notFound().build();
+        }
+
+        byte[] data = ocrWordStore.getEncodedWords(fileId, page);
+        if (data == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_OCTET_STREAM).body(data);
+    }
+
+    private boolean ownsFile(AuthPrincipal user, Long fileId) {
+        return userFileRepository.findById(fileId)
+                .map(file -> user.getId().equals(file.getUserId()))
+                .orElse(false);
+    }
+
+    /** Crop preprocessing: mean milliseconds per stage and mean payload size. */
+    @GetMapping("/preprocess/stats")
+    public ResponseEntity<?> getPreprocessStats(
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
+        if (user == null) {
+            return ResponseEntity.status(401).body("Invalid Token");
+        }
+        if (!user.isAdmin()) {
+            return ResponseEntity.status(403).body("Forbidden");
+        }
+
+        return ResponseEntity.ok(java.util.Map.of(
+                "enabled", ocrPreprocessor.isEnabled(),
+                "processed", ocrPreprocessor.getProcessed(),
+                "stageMillis", ocrPreprocessor.getStageMillis(),
+                "averagePayloadBytes", ocrPreprocessor.getAveragePayloadBytes()));
+    }
+
+    /** OCR scheduler: slots and, per priority class, queue depth, throughput and wait times. */
+    @GetMapping("/scheduler/stats")
+    public ResponseEntity<?> getSchedulerStats(
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
+        if (user == null) {
+            return ResponseEntity.status(401).body("Invalid Token");
+        }
+        if (!user.isAdmin()) {
+            return ResponseEntity.status(403).body("Forbidden");
+        }
+
+        return ResponseEntity.ok(java.util.Map.of(
+                "slots", ocrScheduler.getSlots(),
+                "bulkSlots", ocrScheduler.getBulkSlots(),
+                "classes", ocrScheduler.getStats()));
+    }
 }
@@ -0,0 +1,192 @@
+package com.example.demo;
+
+import com.example.demo.dto.AuthPrincipal;
+import com.example.demo.dto.SearchHit;
+import com.example.demo.model.UserFile;
+import com.example.demo.repository.UserFileRepository;
+import com.example.demo.dto.LocationHit;
+import com.example.demo.service.DrawingSearchIndex;
+import com.example.demo.service.PageTextIndex;
+import com.example.demo.service.PageTextIndexer;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+@RestController
+@RequestMapping("/api/search")
+@CrossOrigin(origins = "*")
+public class SearchController {
+
+    private static final int MAX_LIMIT = 100;
+    private static final int MAX_LOCATION_LIMIT = 1000;
+
+    private final DrawingSearchIndex searchIndex;
+    private final PageTextIndex pageTextIndex;
+    private final PageTextIndexer pageTextIndexer;
+    private final UserFileRepository userFileRepository;
+
+    public SearchController(DrawingSearchIndex searchIndex, PageTextIndex pageTextIndex,
+            PageTextIndexer pageTextIndexer, UserFileRepository userFileRepository) {
+        this.searchIndex = searchIndex;
+        this.pageTextIndex = pageTextIndex;
+        this.pageTextIndexer = pageTextIndexer;
+        this.userFileRepository = userFileRepository;
+    }
+
+    /**
+     * Ranked search over project name, drawing name, drawing number and OCR
+     * text of the user's drawings. Trashed files are left out.
+     */
+    @GetMapping
+    public ResponseEntity<?> search(
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user,
+            @RequestParam("q") String query,
+            @RequestParam(required = false, defaultValue = "true") boolean prefix,
+            @RequestParam(required = false, defaultValue = "20") int limit) {
+        if (user == null)
+            return ResponseEntity.status(401).body("Unauthorized");
+
+        int capped = Math.max(1, Math.min(limit, MAX_LIMIT));
+        // Trashed files are skipped inside the index, so they never use up the limit
+        Set<Long> trashed = new HashSet<>(userFileRepository.findTrashedIdsByUserId(user.getId()));
+        List<SearchHit> hits = searchIndex.search(user.getId(), query, prefix, id -> !trashed.contains(id), capped);
+        if (hits.isEmpty()) {
+            return ResponseEntity.ok(hits);
+        }
+
+        List<Long> ids = new ArrayList<>();
+        for (SearchHit hit : hits) {
+            ids.add(hit.getFileId());
+        }
+        Map<Long, UserFile> files = new HashMap<>();
+        for (UserFile file : userFileRepository.findAllById(ids)) {
+            files.put(file.getId(), file);
+        }
+
+        List<SearchHit> visible = new ArrayList<>();
+        for (SearchHit hit : hits) {
+            UserFile file = files.get(hit.getFileId());
+            if (file == null || !user.getId().equals(file.getUserId())) {
+                // File was deleted (or reassigned) since it was indexed
+                searchIndex.remove(user.getId(), hit.getFileId());
+                continue;
+            }
+            if (file.isTrashed()) {
+                continue; // trashed since the id set was read
+            }
+            hit.setFileName(file.getName());
+            hit.setFolderId(file.getFolderId());
+            visible.add(hit);
+        }
+        return ResponseEntity.ok(visible);
+    }
+
+    /**
+     * Starts a whole-sheet text extraction for every page of the file. PDFs
+     * use their text layer; with {@code ocr=true}, pages without one (and
+     * image files) go through full-page OCR.
+     */
+    @PostMapping("/pages/{fileId}/index")
+    public ResponseEntity<?> indexPages(
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user,
+            @PathVariable Long fileId,
+            @RequestParam(required = false, defaultValue = "true") boolean ocr) {
+        if (user == null)
+            return ResponseEntity.status(401).body("Unauthorized");
+
+        Optional<UserFile> fileOpt = userFileRepository.findById(fileId);
+        if (fileOpt.isEmpty() || !user.getId().equals(fileOpt.get().getUserId())) {
+            return ResponseEntity.status(404).body("File not found");
+        }
+        try {
+            return ResponseEntity.accepted().body(pageTextIndexer.submit(fileOpt.get(), ocr));
+        } catch (IOException e) {
+            return ResponseEntity.status(500).body("Error starting indexing: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/pages/{fileId}/status")
+    public ResponseEntity<?> indexStatus(
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user,
+            @PathVariable Long fileId) {
+        if (user == null)
+            return ResponseEntity.status(401).body("Unauthorized");
+
+        PageTextIndexer.JobStatus status = pageTextIndexer.getStatus(fileId);
+        Optional<UserFile> fileOpt = userFileRepository.findById(fileId);
+        if (status == null || fileOpt.isEmpty() || !user.getId().equals(fileOpt.get().getUserId())) {
+            return ResponseEntity.status(404).body("No indexing job for this file");
+        }
+        return ResponseEntity.ok(status);
+    }
+
+    /**
+     * Every place on the user's sheets where the text appears, as
+     * (file, page, rect) hits the viewer can jump to.
+     */
+    @GetMapping("/locations")
+    public ResponseEntity<?> findLocations(
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user,
+            @RequestParam("q") String query,
+            @RequestParam(required = false) Long fileId,
+            @RequestParam(required = false, defaultValue = "100") int limit) {
+        if (user == null)
+            return ResponseEntity.status(401).body("Unauthorized");
+
+        int capped = Math.max(1, Math.min(limit, MAX_LOCATION_LIMIT));
+        // Trashed files are skipped inside the index, so they never use up the limit
+        Set<Long> trashed = new HashSet<>(userFileRepository.findTrashedIdsByUserId(user.getId()));
+        List<LocationHit> hits = pageTextIndex.find(user.getId(), query, fileId, id -> !trashed.contains(id),
+                capped);
+        if (hits.isEmpty()) {
+            return ResponseEntity.ok(hits);
+        }
+
+        Set<Long> ids = new HashSet<>();
+        for (LocationHit hit : hits) {
+            ids.add(hit.getFileId());
+        }
+        Map<Long, UserFile> files = new HashMap<>();
+        for (UserFile file : userFileRepository.findAllById(ids)) {
+            files.put(file.getId(), file);
+        }
+
+        List<LocationHit> visible = new ArrayList<>();
+        for (LocationHit hit : hits) {
+            UserFile file = files.get(hit.getFileId());
+            if (file == null || !user.getId().equals(file.getUserId())) {
+                pageTextIndex.removeFile(user.getId(), hit.getFileId());
+                continue;
+            }
+            if (!file.isTrashed()) {
+                hit.setFileName(file.getName());
+                visible.add(hit);
+            }
+        }
+        return ResponseEntity.ok(visible);
+    }
+
+    /**
+     * Words inside a rectangle of one page (page units, same as BBox).
+     */
+    @GetMapping("/locations/{fileId}/region")
+    public ResponseEntity<?> wordsInRegion(
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user,
+            @PathVariable Long fileId,
+            @RequestParam(required = false, defaultValue = "1") int page,
+            @RequestParam double x, @RequestParam double y,
+            @RequestParam double width, @RequestParam double height) {
+        if (user == null)
+            return ResponseEntity.status(401).body("Unauthorized");
+
+        return ResponseEntity.ok(pageTextIndex.wordsInRegion(user.getId(), fileId, page, x, y, width, height));
+    }
+}
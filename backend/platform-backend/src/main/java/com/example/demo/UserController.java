@@ -1,7 +1,8 @@
 package com.example.demo;
 
+import com.example.demo.dto.AuthPrincipal;
+import com.example.demo.service.UserCache;
 import com.example.demo.service.UserService;
-import com.example.demo.util.JwtUtil;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -14,17 +15,18 @@ import java.util.Map;
 public class UserController {
 
     private final UserService userService;
-    private final JwtUtil jwtUtil;
+    private final UserCache userCache;
 
-    public UserController(UserService userService, JwtUtil jwtUtil) {
+    public UserController(UserService userService, UserCache userCache) {
         this.userService = userService;
-        this.jwtUtil = jwtUtil;
+        this.userCache = userCache;
     }
 
     @GetMapping("/notes")
-    public ResponseEntity<?> getNotes(@RequestHeader("Authorization") String token) {
+    public ResponseEntity<?> getNotes(
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
         try {
-            String email = extractEmail(token);
+            String email = extractEmail(user);
             String notes = userService.getNotes(email);
             return ResponseEntity.ok(Map.of("notes", notes != null ? notes : ""));
         } catch (Exception e) {
@@ -33,10 +35,11 @@ public class UserController {
     }
 
     @PostMapping("/notes")
-    public ResponseEntity<?> saveNotes(@RequestHeader("Authorization") String token,
+    public ResponseEntity<?> saveNotes(
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user,
             @RequestBody Map<String, String> body) {
         try {
-            String email = extractEmail(token);
+            String email = extractEmail(user);
             String notes = body.get("notes");
             userService.updateNotes(email, notes);
             return ResponseEntity.ok("Saved");
@@ -46,9 +49,10 @@ public class UserController {
     }
 
     @PostMapping("/tour-complete")
-    public ResponseEntity<?> completeTour(@RequestHeader("Authorization") String token) {
+    public ResponseEntity<?> completeTour(
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
         try {
-            String email = extractEmail(token);
+            String email = extractEmail(user);
             userService.completeTour(email);
             return ResponseEntity.ok(Map.of("success", true));
         } catch (Exception e) {
@@ -57,24 +61,44 @@ public class UserController {
     }
 
     @GetMapping("/me")
-    public ResponseEntity<?> getMe(@RequestHeader("Authorization") String token) {
+    public ResponseEntity<?> getMe(
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
         try {
-            String email = extractEmail(token);
-            com.example.demo.model.User user = userService.getUser(email);
-            if (user == null) {
+            String email = extractEmail(user);
+            com.example.demo.model.User account = userService.getUser(email);
+            if (account == null) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User not found");
             }
             // Return user info. Token is not strictly needed here, passing null/empty.
-            return ResponseEntity.ok(new com.example.demo.dto.LoginResponse(null, user.getEmail(), user.getName(),
-                    user.getHasSeenTour()));
+            return ResponseEntity.ok(new com.example.demo.dto.LoginResponse(null, account.getEmail(),
+                    account.getName(), account.getHasSeenTour()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalid Token");
         }
     }
 
-    private String extractEmail(String bearerToken) {
-        if (bearerToken != null && bearerToken.startsWith("Bearer ")) {
-            return jwtUtil.extractEmail(bearerToken.substring(7));
+    /** Account cache used by token checks: size, hits, misses, evictions and hit rate. */
+    @GetMapping("/cache/stats")
+    public ResponseEntity<?> getCacheStats(
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal user) {
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalid Token");
+        }
+        if (!user.isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Forbidden");
+        }
+
+        return ResponseEntity.ok(Map.of(
+                "size", userCache.size(),
+                "hits", userCache.getHits(),
+                "misses", userCache.getMisses(),
+                "evictions", userCache.getEvictions(),
+                "hitRate", userCache.getHitRate()));
+    }
+
+    private String extractEmail(AuthPrincipal user) {
+        if (user != null) {
+            return user.getEmail();
         }
         throw new RuntimeException("Invalid Token Format");
     }
@@ -1,5 +1,6 @@
 package com.example.demo.client;
 
+import com.example.demo.config.ResourceGuards;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.http.*;
@@ -21,12 +22,15 @@ public class AIServiceClient {
 
     private final RestTemplate restTemplate;
     private final String aiServerUrl;
+    private final ResourceGuards resourceGuards;
 
     public AIServiceClient(
             RestTemplate restTemplate,
-            @Value("${ai.server.url:http://localhost:8000}") String aiServerUrl) {
+            @Value("${ai.server.url:http://localhost:8000}") String aiServerUrl,
+            ResourceGuards resourceGuards) {
         this.restTemplate = restTemplate;
         this.aiServerUrl = aiServerUrl;
+        this.resourceGuards = resourceGuards;
     }
 
     /**
@@ -64,6 +68,8 @@ public class AIServiceClient {
      * @throws AIServiceException if the OCR request fails
      */
     public OcrResult extractText(File imageFile, int rotation) throws AIServiceException {
+        // The OCR server handles only a few images at a time; queue here instead of there
+        resourceGuards.aiServer().acquire();
         try {
             String url = aiServerUrl + "/api/ocr/extract";
 
@@ -90,6 +96,8 @@ public class AIServiceClient {
             throw new AIServiceException("OCR request failed: " + e.getMessage(), e);
         } catch (Exception e) {
             throw new AIServiceException("Unexpected error during OCR: " + e.getMessage(), e);
+        } finally {
+            resourceGuards.aiServer().release();
         }
     }
 
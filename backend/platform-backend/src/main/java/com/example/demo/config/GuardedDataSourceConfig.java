@@ -0,0 +1,97 @@
+package com.example.demo.config;
+
+import com.example.demo.util.ResourceGuard;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Puts the database {@link ResourceGuard} in front of the connection pool: a
+ * connection is handed out only with a permit, and closing it returns the
+ * permit. Bursts of virtual threads then queue fairly, with a bounded wait,
+ * instead of all timing out inside the pool at once.
+ */
+@Configuration
+public class GuardedDataSourceConfig {
+
+    @Bean
+    public static BeanPostProcessor guardedDataSourcePostProcessor(ObjectProvider<ResourceGuards> guards) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof GuardedDataSource)) {
+                    return new GuardedDataSource(dataSource, guards);
+                }
+                return bean;
+            }
+        };
+    }
+
+    static class GuardedDataSource extends DelegatingDataSource {
+
+        private final ObjectProvider<ResourceGuards> guards;
+
+        GuardedDataSource(DataSource target, ObjectProvider<ResourceGuards> guards) {
+            super(target);
+            this.guards = guards;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            ResourceGuard guard = guards.getObject().database();
+            guard.acquire();
+            try {
+                return releasingOnClose(super.getConnection(), guard);
+            } catch (SQLException | RuntimeException e) {
+                guard.release();
+                throw e;
+            }
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            ResourceGuard guard = guards.getObject().database();
+            guard.acquire();
+            try {
+                return releasingOnClose(super.getConnection(username, password), guard);
+            } catch (SQLException | RuntimeException e) {
+                guard.release();
+                throw e;
+            }
+        }
+
+        private static Connection releasingOnClose(Connection connection, ResourceGuard guard) {
+            AtomicBoolean released = new AtomicBoolean();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                        if ("close".equals(method.getName()) && released.compareAndSet(false, true)) {
+                            try {
+                                connection.close();
+                            } finally {
+                                guard.release();
+                            }
+                            return null;
+                        }
+                        if ("unwrap".equals(method.getName()) || "isWrapperFor".equals(method.getName())) {
+                            if (((Class<?>) args[0]).isInstance(connection)) {
+                                return "unwrap".equals(method.getName()) ? connection : true;
+                            }
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getTargetException();
+                        }
+                    });
+        }
+    }
+}
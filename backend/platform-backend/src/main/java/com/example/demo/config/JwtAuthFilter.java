@@ -0,0 +1,42 @@
+package com.example.demo.config;
+
+import com.example.demo.dto.AuthPrincipal;
+import com.example.demo.service.AuthTokenService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Authenticates every request carrying a bearer token, once, and exposes the
+ * result as the {@link AuthPrincipal#REQUEST_ATTRIBUTE} request attribute.
+ * Requests without a valid token pass through unauthenticated; each endpoint
+ * decides whether that is allowed (uploads, for example, accept anonymous
+ * callers).
+ */
+@Component
+public class JwtAuthFilter extends OncePerRequestFilter {
+
+    private final AuthTokenService authTokenService;
+
+    public JwtAuthFilter(AuthTokenService authTokenService) {
+        this.authTokenService = authTokenService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String header = request.getHeader("Authorization");
+        if (header != null && header.startsWith("Bearer ")) {
+            AuthPrincipal principal = authTokenService.authenticate(header.substring(7));
+            if (principal != null) {
+                request.setAttribute(AuthPrincipal.REQUEST_ATTRIBUTE, principal);
+            }
+        }
+        chain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.demo.config;
+
+import com.example.demo.util.ResourceGuard;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * The scarce resources shared by all request and worker threads: page
+ * rendering (CPU and raster memory), calls to the OCR server, and database
+ * connections.
+ */
+@Component
+public class ResourceGuards {
+
+    private final ResourceGuard render;
+    private final ResourceGuard aiServer;
+    private final ResourceGuard database;
+
+    public ResourceGuards(
+            @Value("${guards.render.max-concurrency:0}") int renderPermits,
+            @Value("${guards.ai-server.max-concurrency:4}") int aiServerPermits,
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int databasePermits,
+            @Value("${guards.timeout-ms:30000}") long timeoutMillis) {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        this.render = new ResourceGuard("Renderer", renderPermits > 0 ? renderPermits : cpus, timeoutMillis);
+        this.aiServer = new ResourceGuard("OCR server", aiServerPermits, timeoutMillis);
+        this.database = new ResourceGuard("Database", databasePermits, timeoutMillis);
+    }
+
+    public ResourceGuard render() {
+        return render;
+    }
+
+    public ResourceGuard aiServer() {
+        return aiServer;
+    }
+
+    public ResourceGuard database() {
+        return database;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.demo.dto;
+
+import java.util.List;
+
+/**
+ * The authenticated caller, taken from a verified JWT by
+ * {@link com.example.demo.config.JwtAuthFilter} and handed to controllers as
+ * a request attribute, so endpoints need no token parsing or user lookup.
+ */
+public class AuthPrincipal {
+
+    public static final String REQUEST_ATTRIBUTE = "authPrincipal";
+    public static final String ROLE_ADMIN = "ADMIN";
+
+    private final Long id;
+    private final String email;
+    private final List<String> roles;
+
+    public AuthPrincipal(Long id, String email, List<String> roles) {
+        this.id = id;
+        this.email = email;
+        this.roles = roles;
+    }
+
+    // Getters (id is the User id)
+    public Long getId() {
+        return id;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public List<String> getRoles() {
+        return roles;
+    }
+
+    /** May see operational endpoints (queue, cache and worker stats). */
+    public boolean isAdmin() {
+        return roles != null && roles.contains(ROLE_ADMIN);
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.demo.dto;
+
+import java.util.List;
+
+public class BulkFileRequest {
+    private List<Long> ids;
+    private Long targetFolderId; // move only; null = drive root
+
+    public List<Long> getIds() {
+        return ids;
+    }
+
+    public void setIds(List<Long> ids) {
+        this.ids = ids;
+    }
+
+    public Long getTargetFolderId() {
+        return targetFolderId;
+    }
+
+    public void setTargetFolderId(Long targetFolderId) {
+        this.targetFolderId = targetFolderId;
+    }
+}
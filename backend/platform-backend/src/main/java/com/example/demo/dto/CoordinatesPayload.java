@@ -0,0 +1,85 @@
+package com.example.demo.dto;
+
+import com.example.demo.model.BBox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parsed body of {@code POST /api/files/{id}/coordinates}.
+ *
+ * Boxes are kept column-wise in primitive arrays (rects as x, y, width, height
+ * per box) so large annotation sets parse without a map or boxed number per
+ * field, and rotation can be applied in place.
+ */
+public class CoordinatesPayload {
+
+    private boolean hasCoordinates;
+    private int rotation;
+    private int count;
+    private String[] types = new String[16];
+    private String[] ids = new String[16];
+    private int[] pages = new int[16];
+    private double[] rects = new double[64];
+
+    public boolean hasCoordinates() {
+        return hasCoordinates;
+    }
+
+    public void setHasCoordinates(boolean hasCoordinates) {
+        this.hasCoordinates = hasCoordinates;
+    }
+
+    public int getRotation() {
+        return rotation;
+    }
+
+    public void setRotation(int rotation) {
+        this.rotation = rotation;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public void add(String type, String id, double x, double y, double width, double height, int page) {
+        if (count == types.length) {
+            int cap = count * 2;
+            types = Arrays.copyOf(types, cap);
+            ids = Arrays.copyOf(ids, cap);
+            pages = Arrays.copyOf(pages, cap);
+            rects = Arrays.copyOf(rects, cap * 4);
+        }
+        types[count] = type;
+        ids[count] = id;
+        pages[count] = page;
+        int r = count * 4;
+        rects[r] = x;
+        rects[r + 1] = y;
+        rects[r + 2] = width;
+        rects[r + 3] = height;
+        count++;
+    }
+
+    public double[] getRects() {
+        return rects;
+    }
+
+    public List<BBox> toBBoxes() {
+        List<BBox> boxes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int r = i * 4;
+            BBox bbox = new BBox();
+            bbox.setType(types[i]);
+            bbox.setFrontendId(ids[i]);
+            bbox.setX(rects[r]);
+            bbox.setY(rects[r + 1]);
+            bbox.setWidth(rects[r + 2]);
+            bbox.setHeight(rects[r + 3]);
+            bbox.setPage(pages[i]);
+            boxes.add(bbox);
+        }
+        return boxes;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.demo.dto;
+
+import java.util.List;
+
+/**
+ * One page of a file listing. {@code nextCursor} is null on the last page,
+ * {@code total} is only filled when the caller asked for it.
+ */
+public class FilePage {
+    private List<FileSummary> items;
+    private String nextCursor;
+    private Long total;
+
+    public FilePage(List<FileSummary> items, String nextCursor, Long total) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.total = total;
+    }
+
+    // Getters
+    public List<FileSummary> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public Long getTotal() {
+        return total;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.demo.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Listing row for a file: the UserFile columns only, never its bboxes.
+ */
+public class FileSummary {
+    private Long id;
+    private String name;
+    private Long fileSize;
+    @com.fasterxml.jackson.annotation.JsonFormat(shape = com.fasterxml.jackson.annotation.JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime uploadTime;
+    private Long folderId;
+    private Integer rotation;
+    private boolean trashed;
+    private LocalDateTime trashedAt;
+
+    public FileSummary(Long id, String name, Long fileSize, LocalDateTime uploadTime, Long folderId,
+            Integer rotation, boolean trashed, LocalDateTime trashedAt) {
+        this.id = id;
+        this.name = name;
+        this.fileSize = fileSize;
+        this.uploadTime = uploadTime;
+        this.folderId = folderId;
+        this.rotation = rotation;
+        this.trashed = trashed;
+        this.trashedAt = trashedAt;
+    }
+
+    // Getters
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Long getFileSize() {
+        return fileSize;
+    }
+
+    public LocalDateTime getUploadTime() {
+        return uploadTime;
+    }
+
+    public Long getFolderId() {
+        return folderId;
+    }
+
+    public Integer getRotation() {
+        return rotation;
+    }
+
+    public boolean isTrashed() {
+        return trashed;
+    }
+
+    public LocalDateTime getTrashedAt() {
+        return trashedAt;
+    }
+}
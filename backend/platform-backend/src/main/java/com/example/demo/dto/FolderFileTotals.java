@@ -0,0 +1,12 @@
+package com.example.demo.dto;
+
+/**
+ * Non-trashed file count and bytes directly inside one folder (null folder = drive root).
+ */
+public interface FolderFileTotals {
+    Long getFolderId();
+
+    Long getFileCount();
+
+    Long getTotalSize();
+}
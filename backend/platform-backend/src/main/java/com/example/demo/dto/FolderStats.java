@@ -0,0 +1,12 @@
+package com.example.demo.dto;
+
+/**
+ * Size of a folder subtree (the folder itself included), trashed items counted.
+ */
+public interface FolderStats {
+    Long getFolderCount();
+
+    Long getFileCount();
+
+    Long getTotalSize();
+}
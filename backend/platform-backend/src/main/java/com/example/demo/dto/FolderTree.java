@@ -0,0 +1,31 @@
+package com.example.demo.dto;
+
+import java.util.List;
+
+/**
+ * The user's whole (non-trashed) folder tree plus the files at the drive root.
+ */
+public class FolderTree {
+    private long rootFileCount;
+    private long rootTotalSize;
+    private List<FolderTreeNode> folders;
+
+    public FolderTree(long rootFileCount, long rootTotalSize, List<FolderTreeNode> folders) {
+        this.rootFileCount = rootFileCount;
+        this.rootTotalSize = rootTotalSize;
+        this.folders = folders;
+    }
+
+    // Getters
+    public long getRootFileCount() {
+        return rootFileCount;
+    }
+
+    public long getRootTotalSize() {
+        return rootTotalSize;
+    }
+
+    public List<FolderTreeNode> getFolders() {
+        return folders;
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.demo.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A folder in the drive tree. {@code fileCount}/{@code totalSize} cover the
+ * files directly inside it, the {@code subtree*} values include sub-folders.
+ */
+public class FolderTreeNode {
+    private Long id;
+    private String name;
+    private Long parentFolderId;
+    private long fileCount;
+    private long totalSize;
+    private long subtreeFileCount;
+    private long subtreeSize;
+    private List<FolderTreeNode> children = new ArrayList<>();
+
+    public FolderTreeNode(Long id, String name, Long parentFolderId, long fileCount, long totalSize) {
+        this.id = id;
+        this.name = name;
+        this.parentFolderId = parentFolderId;
+        this.fileCount = fileCount;
+        this.totalSize = totalSize;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Long getParentFolderId() {
+        return parentFolderId;
+    }
+
+    public long getFileCount() {
+        return fileCount;
+    }
+
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    public long getSubtreeFileCount() {
+        return subtreeFileCount;
+    }
+
+    public void setSubtreeFileCount(long subtreeFileCount) {
+        this.subtreeFileCount = subtreeFileCount;
+    }
+
+    public long getSubtreeSize() {
+        return subtreeSize;
+    }
+
+    public void setSubtreeSize(long subtreeSize) {
+        this.subtreeSize = subtreeSize;
+    }
+
+    public List<FolderTreeNode> getChildren() {
+        return children;
+    }
+}
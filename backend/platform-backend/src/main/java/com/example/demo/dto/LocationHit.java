@@ -0,0 +1,62 @@
+package com.example.demo.dto;
+
+/**
+ * A word found on a sheet, with its box in page units (same as BBox).
+ */
+public class LocationHit {
+    private Long fileId;
+    private String fileName;
+    private int page;
+    private double x;
+    private double y;
+    private double width;
+    private double height;
+    private String text;
+
+    public LocationHit(Long fileId, int page, double x, double y, double width, double height, String text) {
+        this.fileId = fileId;
+        this.page = page;
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+        this.text = text;
+    }
+
+    // Getters and Setters
+    public Long getFileId() {
+        return fileId;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getWidth() {
+        return width;
+    }
+
+    public double getHeight() {
+        return height;
+    }
+
+    public String getText() {
+        return text;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.demo.dto;
+
+/**
+ * One OCR-detected word in page coordinates.
+ *
+ * {@code quad} holds the four corners as x0, y0, x1, y1, x2, y2, x3, y3 in the
+ * same units as {@link com.example.demo.model.BBox} (PDF points or image
+ * pixels).
+ */
+public class OcrWord {
+    private String text;
+    private double[] quad;
+    private float confidence;
+
+    public OcrWord() {
+    }
+
+    public OcrWord(String text, double[] quad, float confidence) {
+        this.text = text;
+        this.quad = quad;
+        this.confidence = confidence;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    public double[] getQuad() {
+        return quad;
+    }
+
+    public void setQuad(double[] quad) {
+        this.quad = quad;
+    }
+
+    public float getConfidence() {
+        return confidence;
+    }
+
+    public void setConfidence(float confidence) {
+        this.confidence = confidence;
+    }
+
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    public double getCenterX() {
+        return (quad[0] + quad[2] + quad[4] + quad[6]) / 4;
+    }
+
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    public double getCenterY() {
+        return (quad[1] + quad[3] + quad[5] + quad[7]) / 4;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.demo.dto;
+
+public class SearchHit {
+    private Long fileId;
+    private float score;
+    private String fileName;
+    private Long folderId;
+    private String projectName;
+    private String drawingName;
+    private String drawingNumber;
+
+    public SearchHit(Long fileId, float score, String projectName, String drawingName, String drawingNumber) {
+        this.fileId = fileId;
+        this.score = score;
+        this.projectName = projectName;
+        this.drawingName = drawingName;
+        this.drawingNumber = drawingNumber;
+    }
+
+    // Getters and Setters
+    public Long getFileId() {
+        return fileId;
+    }
+
+    public float getScore() {
+        return score;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public Long getFolderId() {
+        return folderId;
+    }
+
+    public void setFolderId(Long folderId) {
+        this.folderId = folderId;
+    }
+
+    public String getProjectName() {
+        return projectName;
+    }
+
+    public String getDrawingName() {
+        return drawingName;
+    }
+
+    public String getDrawingNumber() {
+        return drawingNumber;
+    }
+}
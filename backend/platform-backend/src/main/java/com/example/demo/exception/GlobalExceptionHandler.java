@@ -1,5 +1,6 @@
 package com.example.demo.exception;
 
+import com.example.demo.util.ResourceGuard;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -20,6 +21,14 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.EXPECTATION_FAILED).body(response);
     }
 
+    @ExceptionHandler(ResourceGuard.BusyException.class)
+    public ResponseEntity<Map<String, String>> handleBusyException(ResourceGuard.BusyException e) {
+        Map<String, String> response = new HashMap<>();
+        response.put("error", "Service Busy");
+        response.put("message", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "5").body(response);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Map<String, String>> handleException(Exception e) {
         Map<String, String> response = new HashMap<>();
@@ -7,8 +7,10 @@ import com.example.demo.model.UserFile;
 @Table(name = "bboxes")
 public class BBox {
 
+    // Pooled sequence (not IDENTITY) so Hibernate can batch inserts
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bbox_seq")
+    @SequenceGenerator(name = "bbox_seq", sequenceName = "bboxes_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
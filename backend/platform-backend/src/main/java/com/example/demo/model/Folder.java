@@ -26,6 +26,9 @@ public class Folder {
     @Column(nullable = false)
     private LocalDateTime createdAt;
 
+    @Column(nullable = true)
+    private LocalDateTime trashedAt;
+
     public Folder() {
         this.createdAt = LocalDateTime.now();
     }
@@ -55,4 +58,7 @@ public class Folder {
 
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getTrashedAt() { return trashedAt; }
+    public void setTrashedAt(LocalDateTime trashedAt) { this.trashedAt = trashedAt; }
 }
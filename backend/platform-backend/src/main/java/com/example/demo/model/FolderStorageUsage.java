@@ -0,0 +1,31 @@
+package com.example.demo.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Bytes and file count directly inside one folder (sub-folders excluded).
+ */
+@Entity
+@Table(name = "folder_storage_usage", indexes = @Index(name = "idx_folder_storage_usage_user", columnList = "userId"))
+public class FolderStorageUsage {
+
+    @Id
+    private Long folderId;
+
+    @Column(nullable = false)
+    private Long userId;
+
+    @Column(nullable = false)
+    private Long bytes = 0L;
+
+    @Column(nullable = false)
+    private Long fileCount = 0L;
+
+    public FolderStorageUsage() {
+    }
+
+    public Long getFolderId() { return folderId; }
+    public Long getUserId() { return userId; }
+    public Long getBytes() { return bytes; }
+    public Long getFileCount() { return fileCount; }
+}
@@ -0,0 +1,191 @@
+package com.example.demo.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * One OCR crop to run, durable across restarts and shared by every backend
+ * node. Workers claim queued rows, hold them under a lease they keep
+ * extending, and either store the result or put the row back with a later
+ * {@code runAfter}.
+ */
+@Entity
+@Table(name = "ocr_jobs")
+public class OcrJob {
+
+    public enum State {
+        QUEUED, RUNNING, DONE, FAILED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_file_id", nullable = false)
+    @org.hibernate.annotations.OnDelete(action = org.hibernate.annotations.OnDeleteAction.CASCADE)
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    private UserFile userFile;
+
+    @Column(name = "user_file_id", insertable = false, updatable = false)
+    private Long userFileId;
+
+    private Long userId;
+
+    // Region to recognise, as in BBox
+    @Column(nullable = false)
+    private Integer page = 1;
+    private Double x;
+    private Double y;
+    private Double width;
+    private Double height;
+    @Column(nullable = false)
+    private Integer rotation = 0;
+
+    @Column(nullable = false)
+    private boolean bulk = false;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private State state = State.QUEUED;
+
+    @Column(nullable = false)
+    private Integer attempts = 0;
+
+    @Column(nullable = false)
+    private LocalDateTime runAfter;
+
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    private String leaseOwner;
+
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    private LocalDateTime leaseExpiresAt;
+
+    @Column(columnDefinition = "TEXT")
+    private String lastError;
+
+    private Long titleBlockTextId;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime finishedAt;
+
+    public OcrJob() {
+        this.createdAt = LocalDateTime.now();
+        this.runAfter = this.createdAt;
+    }
+
+    public OcrJob(UserFile userFile, BBox bbox, boolean bulk) {
+        this();
+        this.userFile = userFile;
+        this.userFileId = userFile.getId();
+        this.userId = userFile.getUserId();
+        this.page = bbox.getPage() != null && bbox.getPage() > 0 ? bbox.getPage() : 1;
+        this.x = bbox.getX();
+        this.y = bbox.getY();
+        this.width = bbox.getWidth();
+        this.height = bbox.getHeight();
+        this.rotation = bbox.getRotation() != null ? bbox.getRotation() : 0;
+        this.bulk = bulk;
+    }
+
+    /** The region as the BBox OcrService expects; not persisted. */
+    public BBox toBBox() {
+        BBox bbox = new BBox();
+        bbox.setPage(page);
+        bbox.setX(x);
+        bbox.setY(y);
+        bbox.setWidth(width);
+        bbox.setHeight(height);
+        bbox.setRotation(rotation);
+        return bbox;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public Long getUserFileId() {
+        return userFileId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public Integer getPage() {
+        return page;
+    }
+
+    public boolean isBulk() {
+        return bulk;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public void setState(State state) {
+        this.state = state;
+    }
+
+    public Integer getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(Integer attempts) {
+        this.attempts = attempts;
+    }
+
+    public LocalDateTime getRunAfter() {
+        return runAfter;
+    }
+
+    public void setRunAfter(LocalDateTime runAfter) {
+        this.runAfter = runAfter;
+    }
+
+    public String getLeaseOwner() {
+        return leaseOwner;
+    }
+
+    public void setLeaseOwner(String leaseOwner) {
+        this.leaseOwner = leaseOwner;
+    }
+
+    public LocalDateTime getLeaseExpiresAt() {
+        return leaseExpiresAt;
+    }
+
+    public void setLeaseExpiresAt(LocalDateTime leaseExpiresAt) {
+        this.leaseExpiresAt = leaseExpiresAt;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public Long getTitleBlockTextId() {
+        return titleBlockTextId;
+    }
+
+    public void setTitleBlockTextId(Long titleBlockTextId) {
+        this.titleBlockTextId = titleBlockTextId;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(LocalDateTime finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+}
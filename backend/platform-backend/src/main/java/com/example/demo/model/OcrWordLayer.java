@@ -0,0 +1,90 @@
+package com.example.demo.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Word-level OCR results for one page of a file, stored as a single
+ * {@link com.example.demo.util.OcrWordCodec} blob so the viewer can highlight
+ * text without re-running OCR.
+ */
+@Entity
+@Table(name = "ocr_word_layers", uniqueConstraints = @UniqueConstraint(columnNames = { "user_file_id", "page" }))
+public class OcrWordLayer {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_file_id", nullable = false)
+    @org.hibernate.annotations.OnDelete(action = org.hibernate.annotations.OnDeleteAction.CASCADE)
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    private UserFile userFile;
+
+    @Column(nullable = false)
+    private Integer page = 1;
+
+    @Column(nullable = false)
+    private Integer wordCount = 0;
+
+    @Column(nullable = false, columnDefinition = "bytea")
+    private byte[] data;
+
+    private LocalDateTime updatedAt;
+
+    public OcrWordLayer() {
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public OcrWordLayer(UserFile userFile, Integer page) {
+        this.userFile = userFile;
+        this.page = page;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public UserFile getUserFile() {
+        return userFile;
+    }
+
+    public void setUserFile(UserFile userFile) {
+        this.userFile = userFile;
+    }
+
+    public Integer getPage() {
+        return page;
+    }
+
+    public void setPage(Integer page) {
+        this.page = page;
+    }
+
+    public Integer getWordCount() {
+        return wordCount;
+    }
+
+    public void setWordCount(Integer wordCount) {
+        this.wordCount = wordCount;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public void setData(byte[] data) {
+        this.data = data;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -4,7 +4,7 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "title_block_texts")
+@Table(name = "title_block_texts", indexes = @Index(name = "idx_title_block_processed_at", columnList = "processedAt"))
 public class TitleBlockText {
 
     @Id
@@ -0,0 +1,46 @@
+package com.example.demo.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Running total of the bytes a user stores (trash included), kept in step
+ * with user_files by single-statement increments so quota checks never have
+ * to sum the files.
+ */
+@Entity
+@Table(name = "user_storage_usage")
+public class UserStorageUsage {
+
+    @Id
+    private Long userId;
+
+    @Column(nullable = false)
+    private Long bytes = 0L;
+
+    @Column(nullable = false)
+    private Long fileCount = 0L;
+
+    @Column(nullable = true)
+    private Long quotaBytes; // null = default quota
+
+    // Reserved by uploads still in flight (already included in bytes / fileCount)
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long pendingBytes = 0L;
+
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long pendingFiles = 0L;
+
+    @Column(nullable = true)
+    private java.time.LocalDateTime reservedAt; // last reservation
+
+    public UserStorageUsage() {
+    }
+
+    public Long getUserId() { return userId; }
+    public Long getBytes() { return bytes; }
+    public Long getFileCount() { return fileCount; }
+    public Long getQuotaBytes() { return quotaBytes; }
+    public Long getPendingBytes() { return pendingBytes; }
+    public Long getPendingFiles() { return pendingFiles; }
+    public void setQuotaBytes(Long quotaBytes) { this.quotaBytes = quotaBytes; }
+}
@@ -1,20 +1,90 @@
 package com.example.demo.repository;
 
+import com.example.demo.dto.FolderStats;
 import com.example.demo.model.Folder;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface FolderRepository extends JpaRepository<Folder, Long> {
 
+    // Ids of a user's folder and everything under it. UNION (not UNION ALL) so a
+    // cycle left over from before moves were checked cannot make the walk loop.
+    // Every step is filtered by owner: another user's folder hung under this one
+    // (possible before parents were checked) is never reached, and neither are
+    // its files. Queries over the subtree's files filter by owner as well.
+    String SUBTREE = "WITH RECURSIVE subtree(id) AS ("
+            + "SELECT id FROM folders WHERE id = :folderId AND user_id = :userId "
+            + "UNION SELECT f.id FROM folders f JOIN subtree s ON f.parent_folder_id = s.id AND f.user_id = :userId) ";
+
+    // Parent / target checks before creating or moving into a folder
+    boolean existsByIdAndUserId(Long id, Long userId);
+
     // Find folders by user and parent (for hierarchy navigation)
     List<Folder> findByUserIdAndParentFolderIdAndIsTrashedFalse(Long userId, Long parentFolderId);
 
     // Find root folders (parent is null)
     List<Folder> findByUserIdAndParentFolderIdIsNullAndIsTrashedFalse(Long userId);
 
+    // Whole tree of a user (drive sidebar snapshot)
+    List<Folder> findByUserIdAndIsTrashedFalse(Long userId);
+
     // Find trashed folders
     List<Folder> findByUserIdAndIsTrashedTrue(Long userId);
 
+    // Trash purge: expired trashed folders, keyset over (trashedAt, id)
+    @Query("SELECT f FROM Folder f WHERE f.isTrashed = true AND f.trashedAt < :cutoff AND f.trashedAt >= :afterTime AND (f.trashedAt > :afterTime OR f.id > :afterId) ORDER BY f.trashedAt ASC, f.id ASC")
+    List<Folder> findExpiredTrash(LocalDateTime cutoff, LocalDateTime afterTime, Long afterId, Pageable pageable);
+
+    // Locks a still-trashed folder so a concurrent restore waits for its purge; SKIP LOCKED, so a
+    // folder someone else holds (e.g. a restore in progress) is empty here and left for the next run
+    @org.springframework.data.jpa.repository.Lock(jakarta.persistence.LockModeType.PESSIMISTIC_WRITE)
+    @org.springframework.data.jpa.repository.QueryHints(@jakarta.persistence.QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT f FROM Folder f WHERE f.id = :folderId AND f.isTrashed = true")
+    java.util.Optional<Folder> lockIfTrashed(Long folderId);
+
     // Find sub-folders for recursive delete
     List<Folder> findByParentFolderId(Long parentId);
+
+    // Subtree operations: each is a single statement regardless of depth
+    @Query(value = SUBTREE + "SELECT uf.file_path FROM user_files uf WHERE uf.user_id = :userId AND uf.folder_id IN (SELECT id FROM subtree)", nativeQuery = true)
+    List<String> findSubtreeFilePaths(Long userId, Long folderId);
+
+    @Query(value = SUBTREE + "SELECT uf.id FROM user_files uf WHERE uf.user_id = :userId AND uf.folder_id IN (SELECT id FROM subtree)", nativeQuery = true)
+    List<Long> findSubtreeFileIds(Long userId, Long folderId);
+
+    @Modifying
+    @Query(value = SUBTREE + "DELETE FROM user_files WHERE user_id = :userId AND folder_id IN (SELECT id FROM subtree)", nativeQuery = true)
+    int deleteSubtreeFiles(Long userId, Long folderId);
+
+    @Modifying
+    @Query(value = SUBTREE + "DELETE FROM folders WHERE id IN (SELECT id FROM subtree)", nativeQuery = true)
+    int deleteSubtree(Long userId, Long folderId);
+
+    @Query(value = SUBTREE + "SELECT (SELECT COUNT(*) FROM subtree) AS \"folderCount\", COUNT(uf.id) AS \"fileCount\", COALESCE(SUM(uf.file_size), 0) AS \"totalSize\" FROM user_files uf WHERE uf.user_id = :userId AND uf.folder_id IN (SELECT id FROM subtree)", nativeQuery = true)
+    FolderStats findSubtreeStats(Long userId, Long folderId);
+
+    // Serializes a user's folder moves until the transaction ends: two opposite moves could
+    // otherwise both pass the ancestor check below and close a cycle
+    @Query(value = "SELECT 1 FROM pg_advisory_xact_lock(:userId)", nativeQuery = true)
+    int lockTreeForMove(Long userId);
+
+    // Re-parent unless the target is the folder itself or lies inside its subtree
+    // (walks the target's ancestors), and only onto a folder of the same user.
+    // Run under lockTreeForMove.
+    @Modifying
+    @Query(value = "WITH RECURSIVE ancestors(id, parent) AS ("
+            + "SELECT id, parent_folder_id FROM folders WHERE id = :targetId "
+            + "UNION SELECT f.id, f.parent_folder_id FROM folders f JOIN ancestors a ON f.id = a.parent) "
+            + "UPDATE folders SET parent_folder_id = :targetId WHERE id = :folderId AND user_id = :userId "
+            + "AND EXISTS (SELECT 1 FROM folders t WHERE t.id = :targetId AND t.user_id = :userId) "
+            + "AND NOT EXISTS (SELECT 1 FROM ancestors WHERE id = :folderId)", nativeQuery = true)
+    int moveIfAcyclic(Long userId, Long folderId, Long targetId);
+
+    @Modifying
+    @Query(value = "UPDATE folders SET parent_folder_id = NULL WHERE id = :folderId AND user_id = :userId", nativeQuery = true)
+    int moveToRoot(Long userId, Long folderId);
 }
@@ -0,0 +1,44 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.OcrJob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface OcrJobRepository extends JpaRepository<OcrJob, Long> {
+
+    // Claiming: lock timeout -2 = SKIP LOCKED, so nodes polling at the same time take disjoint rows.
+    // Interactive jobs (bulk = false) go before bulk ones; users already at their running cap are skipped.
+    @org.springframework.data.jpa.repository.Lock(jakarta.persistence.LockModeType.PESSIMISTIC_WRITE)
+    @org.springframework.data.jpa.repository.QueryHints(@jakarta.persistence.QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @org.springframework.data.jpa.repository.Query("SELECT j FROM OcrJob j WHERE j.state = :state AND j.runAfter <= :now AND (SELECT COUNT(r) FROM OcrJob r WHERE r.userId = j.userId AND r.state = :running) < :maxRunningPerUser ORDER BY j.bulk ASC, j.runAfter ASC, j.id ASC")
+    List<OcrJob> lockDue(OcrJob.State state, OcrJob.State running, LocalDateTime now, long maxRunningPerUser,
+            Pageable pageable);
+
+    // Running jobs whose worker stopped heartbeating (node died or hung)
+    @org.springframework.data.jpa.repository.Lock(jakarta.persistence.LockModeType.PESSIMISTIC_WRITE)
+    @org.springframework.data.jpa.repository.QueryHints(@jakarta.persistence.QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @org.springframework.data.jpa.repository.Query("SELECT j FROM OcrJob j WHERE j.state = :state AND j.leaseExpiresAt < :now ORDER BY j.leaseExpiresAt ASC, j.id ASC")
+    List<OcrJob> lockExpired(OcrJob.State state, LocalDateTime now, Pageable pageable);
+
+    // Finishing: only the current lease holder gets the row back
+    @org.springframework.data.jpa.repository.Lock(jakarta.persistence.LockModeType.PESSIMISTIC_WRITE)
+    @org.springframework.data.jpa.repository.Query("SELECT j FROM OcrJob j WHERE j.id = :id AND j.leaseOwner = :owner AND j.state = :state")
+    Optional<OcrJob> lockOwned(Long id, String owner, OcrJob.State state);
+
+    @org.springframework.data.jpa.repository.Modifying
+    @org.springframework.data.jpa.repository.Query("UPDATE OcrJob j SET j.leaseExpiresAt = :until WHERE j.id IN :ids AND j.leaseOwner = :owner AND j.state = :state")
+    int extendLeases(Collection<Long> ids, String owner, OcrJob.State state, LocalDateTime until);
+
+    // Clean shutdown: hand running jobs back without counting the interrupted attempt
+    @org.springframework.data.jpa.repository.Modifying
+    @org.springframework.data.jpa.repository.Query("UPDATE OcrJob j SET j.state = :queued, j.leaseOwner = NULL, j.leaseExpiresAt = NULL, j.attempts = j.attempts - 1 WHERE j.leaseOwner = :owner AND j.state = :running")
+    int releaseOwned(String owner, OcrJob.State running, OcrJob.State queued);
+
+    long countByState(OcrJob.State state);
+
+    long countByStateAndUserId(OcrJob.State state, Long userId);
+}
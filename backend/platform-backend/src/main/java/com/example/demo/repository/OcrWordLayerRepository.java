@@ -0,0 +1,27 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.OcrWordLayer;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import java.util.List;
+import java.util.Optional;
+
+public interface OcrWordLayerRepository extends JpaRepository<OcrWordLayer, Long> {
+    Optional<OcrWordLayer> findByUserFileIdAndPage(Long userFileId, Integer page);
+
+    List<OcrWordLayer> findByUserFileIdOrderByPageAsc(Long userFileId);
+
+    // Creates the (empty) page row unless it exists, so concurrent merges never race on the unique key
+    @org.springframework.data.jpa.repository.Modifying
+    @org.springframework.data.jpa.repository.Query(value = "INSERT INTO ocr_word_layers (user_file_id, page, word_count, data, updated_at) VALUES (:userFileId, :page, 0, ''::bytea, now()) ON CONFLICT (user_file_id, page) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(Long userFileId, Integer page);
+
+    // Merging: crops of the same page take turns instead of overwriting each other's words
+    @org.springframework.data.jpa.repository.Lock(jakarta.persistence.LockModeType.PESSIMISTIC_WRITE)
+    @org.springframework.data.jpa.repository.Query("SELECT l FROM OcrWordLayer l WHERE l.userFile.id = :userFileId AND l.page = :page")
+    Optional<OcrWordLayer> lockByUserFileIdAndPage(Long userFileId, Integer page);
+
+    // Location index rebuild: keyset pages by id, file fetched in the same query
+    @org.springframework.data.jpa.repository.Query("SELECT l FROM OcrWordLayer l JOIN FETCH l.userFile WHERE l.id > :afterId ORDER BY l.id ASC")
+    List<OcrWordLayer> findBatchAfterId(Long afterId, Pageable pageable);
+}
@@ -0,0 +1,76 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.UserStorageUsage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import java.util.Collection;
+
+// Usage counters are only changed through these single-statement (atomic) increments
+public interface StorageUsageRepository extends JpaRepository<UserStorageUsage, Long> {
+
+    @Modifying
+    @Query(value = "INSERT INTO user_storage_usage (user_id, bytes, file_count) VALUES (:userId, 0, 0) ON CONFLICT (user_id) DO NOTHING", nativeQuery = true)
+    int ensureUser(Long userId);
+
+    // Quota check and reservation in one statement: 0 rows = over quota. The reservation stays
+    // pending until the file row is written (settle) or the upload fails (releaseReservation).
+    @Modifying
+    @Query(value = "UPDATE user_storage_usage SET bytes = bytes + :bytes, file_count = file_count + 1, pending_bytes = pending_bytes + :bytes, pending_files = pending_files + 1, reserved_at = now() WHERE user_id = :userId AND bytes + :bytes <= COALESCE(quota_bytes, :defaultQuota)", nativeQuery = true)
+    int reserve(Long userId, long bytes, long defaultQuota);
+
+    @Modifying
+    @Query(value = "UPDATE user_storage_usage SET pending_bytes = GREATEST(pending_bytes - :bytes, 0), pending_files = GREATEST(pending_files - 1, 0) WHERE user_id = :userId", nativeQuery = true)
+    int settle(Long userId, long bytes);
+
+    @Modifying
+    @Query(value = "UPDATE user_storage_usage SET bytes = bytes - :bytes, file_count = file_count - 1, pending_bytes = GREATEST(pending_bytes - :bytes, 0), pending_files = GREATEST(pending_files - 1, 0) WHERE user_id = :userId", nativeQuery = true)
+    int releaseReservation(Long userId, long bytes);
+
+    // Deltas for a set of files, taken before they are deleted / moved
+    @Modifying
+    @Query(value = "UPDATE user_storage_usage u SET bytes = u.bytes - s.bytes, file_count = u.file_count - s.files FROM (SELECT user_id, COALESCE(SUM(file_size), 0) AS bytes, COUNT(*) AS files FROM user_files WHERE id IN (:ids) AND user_id IS NOT NULL GROUP BY user_id) s WHERE u.user_id = s.user_id", nativeQuery = true)
+    int subtractFilesFromUsers(Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "UPDATE folder_storage_usage u SET bytes = u.bytes - s.bytes, file_count = u.file_count - s.files FROM (SELECT folder_id, COALESCE(SUM(file_size), 0) AS bytes, COUNT(*) AS files FROM user_files WHERE id IN (:ids) AND folder_id IS NOT NULL GROUP BY folder_id) s WHERE u.folder_id = s.folder_id", nativeQuery = true)
+    int subtractFilesFromFolders(Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "INSERT INTO folder_storage_usage (folder_id, user_id, bytes, file_count) SELECT d.id, d.user_id, COALESCE(SUM(f.file_size), 0), COUNT(*) FROM user_files f JOIN folders d ON d.id = :folderId WHERE f.id IN (:ids) GROUP BY d.id, d.user_id ON CONFLICT (folder_id) DO UPDATE SET bytes = folder_storage_usage.bytes + EXCLUDED.bytes, file_count = folder_storage_usage.file_count + EXCLUDED.file_count", nativeQuery = true)
+    int addFilesToFolder(Long folderId, Collection<Long> ids);
+
+    // Folder subtree about to be deleted (same CTE as FolderRepository.SUBTREE)
+    @Modifying
+    @Query(value = FolderRepository.SUBTREE + "UPDATE user_storage_usage u SET bytes = u.bytes - s.bytes, file_count = u.file_count - s.files FROM (SELECT COALESCE(SUM(file_size), 0) AS bytes, COUNT(*) AS files FROM user_files WHERE user_id = :userId AND folder_id IN (SELECT id FROM subtree)) s WHERE u.user_id = :userId", nativeQuery = true)
+    int subtractSubtreeFromUser(Long userId, Long folderId);
+
+    @Modifying
+    @Query(value = FolderRepository.SUBTREE + "DELETE FROM folder_storage_usage WHERE folder_id IN (SELECT id FROM subtree)", nativeQuery = true)
+    int deleteSubtreeFolders(Long userId, Long folderId);
+
+    // Reconciliation: recompute every counter from user_files. Users one at a time, under the
+    // row lock that reserve / settle take, keeping what uploads in flight have reserved.
+    @Query(value = "SELECT user_id FROM user_storage_usage UNION SELECT DISTINCT user_id FROM user_files WHERE user_id IS NOT NULL", nativeQuery = true)
+    java.util.List<Long> findAllUserIds();
+
+    @Query(value = "SELECT user_id FROM user_storage_usage WHERE user_id = :userId FOR UPDATE", nativeQuery = true)
+    Long lockUser(Long userId);
+
+    // Uploads do not run for hours: reservations that old were left behind by a crash
+    @Modifying
+    @Query(value = "UPDATE user_storage_usage SET pending_bytes = 0, pending_files = 0 WHERE user_id = :userId AND pending_files <> 0 AND reserved_at < :cutoff", nativeQuery = true)
+    int dropStaleReservations(Long userId, java.time.LocalDateTime cutoff);
+
+    @Modifying
+    @Query(value = "UPDATE user_storage_usage u SET bytes = s.bytes + u.pending_bytes, file_count = s.files + u.pending_files FROM (SELECT COALESCE(SUM(file_size), 0) AS bytes, COUNT(*) AS files FROM user_files WHERE user_id = :userId) s WHERE u.user_id = :userId AND (u.bytes <> s.bytes + u.pending_bytes OR u.file_count <> s.files + u.pending_files)", nativeQuery = true)
+    int reconcileUser(Long userId);
+
+    @Modifying
+    @Query(value = "INSERT INTO folder_storage_usage (folder_id, user_id, bytes, file_count) SELECT d.id, d.user_id, COALESCE(SUM(f.file_size), 0), COUNT(*) FROM user_files f JOIN folders d ON d.id = f.folder_id GROUP BY d.id, d.user_id ON CONFLICT (folder_id) DO UPDATE SET bytes = EXCLUDED.bytes, file_count = EXCLUDED.file_count WHERE folder_storage_usage.bytes <> EXCLUDED.bytes OR folder_storage_usage.file_count <> EXCLUDED.file_count", nativeQuery = true)
+    int reconcileFolders();
+
+    @Modifying
+    @Query(value = "DELETE FROM folder_storage_usage u WHERE NOT EXISTS (SELECT 1 FROM user_files f WHERE f.folder_id = u.folder_id)", nativeQuery = true)
+    int reconcileEmptyFolders();
+}
@@ -1,7 +1,9 @@
 package com.example.demo.repository;
 
 import com.example.demo.model.TitleBlockText;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -9,4 +11,21 @@ public interface TitleBlockTextRepository extends JpaRepository<TitleBlockText,
     List<TitleBlockText> findByUserFileId(Long userFileId);
 
     Optional<TitleBlockText> findTopByUserFileIdOrderByProcessedAtDesc(Long userFileId);
+
+    // One row per file (unique index in schema.sql): create it unless it exists, then update it locked
+    @org.springframework.data.jpa.repository.Modifying
+    @org.springframework.data.jpa.repository.Query(value = "INSERT INTO title_block_texts (user_file_id, processed_at) VALUES (:userFileId, now()) ON CONFLICT (user_file_id) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(Long userFileId);
+
+    @org.springframework.data.jpa.repository.Lock(jakarta.persistence.LockModeType.PESSIMISTIC_WRITE)
+    @org.springframework.data.jpa.repository.Query("SELECT t FROM TitleBlockText t WHERE t.userFile.id = :userFileId")
+    Optional<TitleBlockText> lockByUserFileId(Long userFileId);
+
+    // Search index rebuild: keyset pages by id, file fetched in the same query
+    @org.springframework.data.jpa.repository.Query("SELECT t FROM TitleBlockText t JOIN FETCH t.userFile WHERE t.id > :afterId ORDER BY t.id ASC")
+    List<TitleBlockText> findBatchAfterId(Long afterId, Pageable pageable);
+
+    // Search index catch-up after loading a snapshot
+    @org.springframework.data.jpa.repository.Query("SELECT t FROM TitleBlockText t JOIN FETCH t.userFile WHERE t.processedAt >= :since AND t.id > :afterId ORDER BY t.id ASC")
+    List<TitleBlockText> findBatchProcessedSince(LocalDateTime since, Long afterId, Pageable pageable);
 }
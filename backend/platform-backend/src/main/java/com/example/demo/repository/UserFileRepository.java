@@ -1,28 +1,105 @@
 package com.example.demo.repository;
 
+import com.example.demo.dto.FileSummary;
+import com.example.demo.dto.FolderFileTotals;
 import com.example.demo.model.UserFile;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
+// isTrashed is NOT NULL (backfilled in schema.sql) and compared against a literal,
+// so the partial indexes in schema.sql match these predicates
 public interface UserFileRepository extends JpaRepository<UserFile, Long> {
     // Default: find all (backward compatibility)
     List<UserFile> findByUserIdOrderByUploadTimeDesc(Long userId);
 
-    // 1. All Non-Trashed (Search/Recent) - Handle NULL isTrashed
-    @org.springframework.data.jpa.repository.Query("SELECT f FROM UserFile f WHERE f.userId = :userId AND (f.isTrashed = false OR f.isTrashed IS NULL) ORDER BY f.uploadTime DESC")
+    // 1. All Non-Trashed (Search/Recent)
+    @org.springframework.data.jpa.repository.Query("SELECT f FROM UserFile f WHERE f.userId = :userId AND f.isTrashed = false ORDER BY f.uploadTime DESC")
     List<UserFile> findByUserIdAndIsTrashedFalseOrderByUploadTimeDesc(Long userId);
 
-    // 2. Root Folder View (folderId IS NULL) - Handle NULL isTrashed
-    @org.springframework.data.jpa.repository.Query("SELECT f FROM UserFile f WHERE f.userId = :userId AND f.folderId IS NULL AND (f.isTrashed = false OR f.isTrashed IS NULL) ORDER BY f.uploadTime DESC")
+    // 2. Root Folder View (folderId IS NULL)
+    @org.springframework.data.jpa.repository.Query("SELECT f FROM UserFile f WHERE f.userId = :userId AND f.folderId IS NULL AND f.isTrashed = false ORDER BY f.uploadTime DESC")
     List<UserFile> findByUserIdAndFolderIdIsNullAndIsTrashedFalseOrderByUploadTimeDesc(Long userId);
 
-    // 3. Folder View - Handle NULL isTrashed
-    @org.springframework.data.jpa.repository.Query("SELECT f FROM UserFile f WHERE f.userId = :userId AND f.folderId = :folderId AND (f.isTrashed = false OR f.isTrashed IS NULL) ORDER BY f.uploadTime DESC")
+    // 3. Folder View
+    @org.springframework.data.jpa.repository.Query("SELECT f FROM UserFile f WHERE f.userId = :userId AND f.folderId = :folderId AND f.isTrashed = false ORDER BY f.uploadTime DESC")
     List<UserFile> findByUserIdAndFolderIdAndIsTrashedFalseOrderByUploadTimeDesc(Long userId, Long folderId);
 
     // 4. Trash View
     List<UserFile> findByUserIdAndIsTrashedTrueOrderByUploadTimeDesc(Long userId);
 
+    // Location search filter: ids only, off the trash index
+    @org.springframework.data.jpa.repository.Query("SELECT f.id FROM UserFile f WHERE f.userId = :userId AND f.isTrashed = true")
+    List<Long> findTrashedIdsByUserId(Long userId);
+
+    // Keyset-paginated listings: rows strictly after the (uploadTime, id) cursor, projected without bboxes.
+    // "uploadTime <= :beforeTime" is the index range bound; the OR only resolves ties on uploadTime.
+    @org.springframework.data.jpa.repository.Query("SELECT new com.example.demo.dto.FileSummary(f.id, f.name, f.fileSize, f.uploadTime, f.folderId, f.rotation, f.isTrashed, f.trashedAt) FROM UserFile f WHERE f.userId = :userId AND f.isTrashed = false AND f.uploadTime <= :beforeTime AND (f.uploadTime < :beforeTime OR f.id < :beforeId) ORDER BY f.uploadTime DESC, f.id DESC")
+    List<FileSummary> findRecentPage(Long userId, LocalDateTime beforeTime, Long beforeId, Pageable pageable);
+
+    @org.springframework.data.jpa.repository.Query("SELECT new com.example.demo.dto.FileSummary(f.id, f.name, f.fileSize, f.uploadTime, f.folderId, f.rotation, f.isTrashed, f.trashedAt) FROM UserFile f WHERE f.userId = :userId AND f.folderId IS NULL AND f.isTrashed = false AND f.uploadTime <= :beforeTime AND (f.uploadTime < :beforeTime OR f.id < :beforeId) ORDER BY f.uploadTime DESC, f.id DESC")
+    List<FileSummary> findRootPage(Long userId, LocalDateTime beforeTime, Long beforeId, Pageable pageable);
+
+    @org.springframework.data.jpa.repository.Query("SELECT new com.example.demo.dto.FileSummary(f.id, f.name, f.fileSize, f.uploadTime, f.folderId, f.rotation, f.isTrashed, f.trashedAt) FROM UserFile f WHERE f.userId = :userId AND f.folderId = :folderId AND f.isTrashed = false AND f.uploadTime <= :beforeTime AND (f.uploadTime < :beforeTime OR f.id < :beforeId) ORDER BY f.uploadTime DESC, f.id DESC")
+    List<FileSummary> findFolderPage(Long userId, Long folderId, LocalDateTime beforeTime, Long beforeId,
+            Pageable pageable);
+
+    @org.springframework.data.jpa.repository.Query("SELECT new com.example.demo.dto.FileSummary(f.id, f.name, f.fileSize, f.uploadTime, f.folderId, f.rotation, f.isTrashed, f.trashedAt) FROM UserFile f WHERE f.userId = :userId AND f.isTrashed = true AND f.uploadTime <= :beforeTime AND (f.uploadTime < :beforeTime OR f.id < :beforeId) ORDER BY f.uploadTime DESC, f.id DESC")
+    List<FileSummary> findTrashPage(Long userId, LocalDateTime beforeTime, Long beforeId, Pageable pageable);
+
+    @org.springframework.data.jpa.repository.Query("SELECT COUNT(f) FROM UserFile f WHERE f.userId = :userId AND f.isTrashed = false")
+    long countRecent(Long userId);
+
+    @org.springframework.data.jpa.repository.Query("SELECT COUNT(f) FROM UserFile f WHERE f.userId = :userId AND f.folderId IS NULL AND f.isTrashed = false")
+    long countRoot(Long userId);
+
+    @org.springframework.data.jpa.repository.Query("SELECT COUNT(f) FROM UserFile f WHERE f.userId = :userId AND f.folderId = :folderId AND f.isTrashed = false")
+    long countInFolder(Long userId, Long folderId);
+
+    @org.springframework.data.jpa.repository.Query("SELECT COUNT(f) FROM UserFile f WHERE f.userId = :userId AND f.isTrashed = true")
+    long countTrash(Long userId);
+
+    // Per-folder totals for the folder tree snapshot (folderId null = drive root)
+    @org.springframework.data.jpa.repository.Query("SELECT f.folderId AS folderId, COUNT(f) AS fileCount, COALESCE(SUM(f.fileSize), 0) AS totalSize FROM UserFile f WHERE f.userId = :userId AND f.isTrashed = false GROUP BY f.folderId")
+    List<FolderFileTotals> sumByFolder(Long userId);
+
+    // Bulk operations on a selection: one ownership check, then one set-based statement each
+    @org.springframework.data.jpa.repository.Query("SELECT COUNT(f) FROM UserFile f WHERE f.id IN :ids AND f.userId = :userId")
+    long countOwned(Long userId, Collection<Long> ids);
+
+    @org.springframework.data.jpa.repository.Modifying
+    @org.springframework.data.jpa.repository.Query("UPDATE UserFile f SET f.folderId = :folderId WHERE f.id IN :ids AND f.userId = :userId")
+    int moveAll(Long userId, Collection<Long> ids, Long folderId);
+
+    @org.springframework.data.jpa.repository.Modifying
+    @org.springframework.data.jpa.repository.Query("UPDATE UserFile f SET f.isTrashed = true, f.trashedAt = :now WHERE f.id IN :ids AND f.userId = :userId AND f.isTrashed = false")
+    int trashAll(Long userId, Collection<Long> ids, LocalDateTime now);
+
+    @org.springframework.data.jpa.repository.Modifying
+    @org.springframework.data.jpa.repository.Query("UPDATE UserFile f SET f.isTrashed = false, f.trashedAt = NULL WHERE f.id IN :ids AND f.userId = :userId AND f.isTrashed = true")
+    int restoreAll(Long userId, Collection<Long> ids);
+
+    @org.springframework.data.jpa.repository.Query("SELECT f.filePath FROM UserFile f WHERE f.id IN :ids AND f.userId = :userId")
+    List<String> findFilePaths(Long userId, Collection<Long> ids);
+
+    // Child rows (bboxes, OCR results, word layers) go through ON DELETE CASCADE
+    @org.springframework.data.jpa.repository.Modifying
+    @org.springframework.data.jpa.repository.Query("DELETE FROM UserFile f WHERE f.id IN :ids AND f.userId = :userId")
+    int deleteAll(Long userId, Collection<Long> ids);
+
+    // Trash purge: oldest expired trash first, keyset over (trashedAt, id). Rows are locked so a
+    // concurrent restore waits for the purge batch; rows locked by users are skipped until the next run.
+    @org.springframework.data.jpa.repository.Lock(jakarta.persistence.LockModeType.PESSIMISTIC_WRITE)
+    @org.springframework.data.jpa.repository.QueryHints(@jakarta.persistence.QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @org.springframework.data.jpa.repository.Query("SELECT f FROM UserFile f WHERE f.isTrashed = true AND f.trashedAt < :cutoff AND f.trashedAt >= :afterTime AND (f.trashedAt > :afterTime OR f.id > :afterId) ORDER BY f.trashedAt ASC, f.id ASC")
+    List<UserFile> lockExpiredTrash(LocalDateTime cutoff, LocalDateTime afterTime, Long afterId, Pageable pageable);
+
+    @org.springframework.data.jpa.repository.Modifying
+    @org.springframework.data.jpa.repository.Query("DELETE FROM UserFile f WHERE f.id IN :ids")
+    int deleteByIds(Collection<Long> ids);
+
     // Delete files in folder (for hard delete of folder)
     void deleteByFolderId(Long folderId);
 }
@@ -0,0 +1,121 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.AuthPrincipal;
+import com.example.demo.model.User;
+import com.example.demo.util.JwtUtil;
+import io.jsonwebtoken.Claims;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Turns a bearer token into an {@link AuthPrincipal}.
+ *
+ * Verified tokens are kept in a small LRU cache until they expire, so a
+ * client repeating the same token costs one map lookup: no signature check
+ * and no database access. Tokens issued with the user id claim never touch
+ * the database; older tokens (email only) are resolved once and then cached.
+ */
+@Service
+public class AuthTokenService {
+
+    private final JwtUtil jwtUtil;
+    private final UserCache userCache;
+    private final int maxEntries;
+    private final Map<String, CachedPrincipal> cache;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public AuthTokenService(JwtUtil jwtUtil, UserCache userCache,
+            @Value("${auth.token-cache.max-entries:10000}") int maxEntries) {
+        this.jwtUtil = jwtUtil;
+        this.userCache = userCache;
+        this.maxEntries = maxEntries;
+        this.cache = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedPrincipal> eldest) {
+                return size() > AuthTokenService.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return the principal, or null if the token is invalid, expired or
+     *         belongs to an unknown user
+     */
+    public AuthPrincipal authenticate(String token) {
+        long now = System.currentTimeMillis();
+        CachedPrincipal cached;
+        synchronized (cache) {
+            cached = cache.get(token);
+        }
+        if (cached != null && cached.expiresAt > now) {
+            hits.incrementAndGet();
+            return cached.principal;
+        }
+        misses.incrementAndGet();
+
+        Claims claims;
+        try {
+            claims = jwtUtil.parseClaims(token);
+        } catch (Exception e) {
+            return null;
+        }
+        AuthPrincipal principal = toPrincipal(claims);
+        if (principal == null) {
+            return null;
+        }
+        long expiresAt = claims.getExpiration() != null ? claims.getExpiration().getTime() : now;
+        synchronized (cache) {
+            cache.put(token, new CachedPrincipal(principal, expiresAt));
+        }
+        return principal;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private AuthPrincipal toPrincipal(Claims claims) {
+        String email = claims.getSubject();
+        Number userId = claims.get(JwtUtil.CLAIM_USER_ID, Number.class);
+        List<String> roles = new ArrayList<>();
+        Object rawRoles = claims.get(JwtUtil.CLAIM_ROLES);
+        if (rawRoles instanceof List<?> list) {
+            for (Object role : list) {
+                roles.add(String.valueOf(role));
+            }
+        }
+        if (userId == null) {
+            // Token issued before ids were embedded
+            User user = userCache.getByEmail(email);
+            if (user == null) {
+                return null;
+            }
+            userId = user.getId();
+        }
+        if (roles.isEmpty()) {
+            roles = JwtUtil.DEFAULT_ROLES;
+        }
+        return new AuthPrincipal(userId.longValue(), email, List.copyOf(roles));
+    }
+
+    private static final class CachedPrincipal {
+        final AuthPrincipal principal;
+        final long expiresAt;
+
+        CachedPrincipal(AuthPrincipal principal, long expiresAt) {
+            this.principal = principal;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
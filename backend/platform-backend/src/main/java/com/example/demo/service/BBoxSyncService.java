@@ -0,0 +1,124 @@
+package com.example.demo.service;
+
+import com.example.demo.model.BBox;
+import com.example.demo.model.UserFile;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Applies a full list of boxes from the editor to a file as a diff.
+ *
+ * Boxes are matched by {@code frontendId}: matches are updated in place (and
+ * only flushed if a value actually changed), new ids are inserted and stored
+ * boxes missing from the list are deleted through orphan removal. Combined
+ * with sequence-allocated ids and JDBC batching this keeps an autosave of an
+ * unchanged drawing at zero statements.
+ */
+@Service
+public class BBoxSyncService {
+
+    @Transactional
+    public SyncResult sync(UserFile file, List<BBox> incoming) {
+        Map<String, BBox> existing = new HashMap<>();
+        int removed = 0;
+        Iterator<BBox> it = file.getBboxes().iterator();
+        while (it.hasNext()) {
+            BBox box = it.next();
+            // Legacy rows without (or with duplicate) frontend ids cannot be matched
+            if (box.getFrontendId() == null || existing.putIfAbsent(box.getFrontendId(), box) != null) {
+                it.remove();
+                removed++;
+            }
+        }
+
+        int inserted = 0;
+        int updated = 0;
+        Map<String, BBox> kept = new HashMap<>();
+        for (BBox in : incoming) {
+            BBox current = in.getFrontendId() == null ? null : existing.get(in.getFrontendId());
+            if (current == null) {
+                current = kept.get(in.getFrontendId());
+            }
+            if (current == null) {
+                in.setUserFile(file);
+                file.getBboxes().add(in);
+                if (in.getFrontendId() != null) {
+                    kept.put(in.getFrontendId(), in);
+                }
+                inserted++;
+                continue;
+            }
+            existing.remove(in.getFrontendId());
+            kept.put(in.getFrontendId(), current);
+            if (copyIfChanged(in, current)) {
+                updated++;
+            }
+        }
+
+        // Whatever is left in the map was not sent back: delete it
+        for (BBox stale : existing.values()) {
+            file.getBboxes().remove(stale);
+            removed++;
+        }
+        return new SyncResult(inserted, updated, removed);
+    }
+
+    private boolean copyIfChanged(BBox from, BBox to) {
+        boolean changed = false;
+        if (!Objects.equals(from.getType(), to.getType())) {
+            to.setType(from.getType());
+            changed = true;
+        }
+        if (!Objects.equals(from.getX(), to.getX())) {
+            to.setX(from.getX());
+            changed = true;
+        }
+        if (!Objects.equals(from.getY(), to.getY())) {
+            to.setY(from.getY());
+            changed = true;
+        }
+        if (!Objects.equals(from.getWidth(), to.getWidth())) {
+            to.setWidth(from.getWidth());
+            changed = true;
+        }
+        if (!Objects.equals(from.getHeight(), to.getHeight())) {
+            to.setHeight(from.getHeight());
+            changed = true;
+        }
+        if (!Objects.equals(from.getPage(), to.getPage())) {
+            to.setPage(from.getPage());
+            changed = true;
+        }
+        return changed;
+    }
+
+    public static class SyncResult {
+        private final int inserted;
+        private final int updated;
+        private final int deleted;
+
+        public SyncResult(int inserted, int updated, int deleted) {
+            this.inserted = inserted;
+            this.updated = updated;
+            this.deleted = deleted;
+        }
+
+        public int getInserted() {
+            return inserted;
+        }
+
+        public int getUpdated() {
+            return updated;
+        }
+
+        public int getDeleted() {
+            return deleted;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.demo.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Removes uploaded files from disk in the background.
+ *
+ * Callers delete the rows and hand the paths over; when called inside a
+ * transaction the paths are only queued once it commits, so a rollback never
+ * leaves rows pointing at deleted blobs. Paths are deleted in batches spread
+ * over a small worker pool, keeping request threads off the filesystem.
+ */
+@Component
+public class BlobDeletionQueue {
+
+    private static final int BATCH_SIZE = 256;
+
+    private final ExecutorService executor;
+    private final AtomicLong deleted = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong pending = new AtomicLong();
+
+    public BlobDeletionQueue(@Value("${storage.blob-delete.threads:2}") int threads) {
+        AtomicInteger threadNo = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "blob-deleter-" + threadNo.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public void enqueue(Collection<String> paths) {
+        if (paths == null || paths.isEmpty()) {
+            return;
+        }
+        List<String> copy = new ArrayList<>(paths);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(copy);
+                }
+            });
+        } else {
+            submit(copy);
+        }
+    }
+
+    /** Files deleted, failed and still queued since startup. */
+    public long getDeleted() {
+        return deleted.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getPending() {
+        return pending.get();
+    }
+
+    private void submit(List<String> paths) {
+        pending.addAndGet(paths.size());
+        for (int from = 0; from < paths.size(); from += BATCH_SIZE) {
+            List<String> batch = paths.subList(from, Math.min(paths.size(), from + BATCH_SIZE));
+            executor.submit(() -> deleteBatch(batch));
+        }
+    }
+
+    private void deleteBatch(List<String> batch) {
+        for (String path : batch) {
+            try {
+                Files.deleteIfExists(Paths.get(path));
+                deleted.incrementAndGet();
+            } catch (IOException | RuntimeException e) {
+                failed.incrementAndGet();
+                System.err.println("Failed to delete file from disk: " + path + " (" + e.getMessage() + ")");
+            } finally {
+                pending.decrementAndGet();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.demo.service;
+
+import com.example.demo.repository.FolderRepository;
+import com.example.demo.repository.UserFileRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Move / trash / restore / delete for a multi-selection of files.
+ *
+ * Each operation checks ownership of the whole selection with one query and
+ * then applies a single set-based statement, so a selection of hundreds of
+ * files costs the same round-trips as one. Every statement is also filtered
+ * by the owner, so nothing outside the user's files can be touched.
+ */
+@Service
+public class BulkFileService {
+
+    public static final int MAX_IDS = 1000;
+
+    public enum Action {
+        MOVE, TRASH, RESTORE, DELETE
+    }
+
+    private final UserFileRepository userFileRepository;
+    private final FolderRepository folderRepository;
+    private final BlobDeletionQueue blobDeletionQueue;
+    private final FileListingService fileListingService;
+    private final FolderTreeCache folderTreeCache;
+    private final StorageUsageService storageUsageService;
+    private final DrawingSearchIndex drawingSearchIndex;
+    private final PageTextIndex pageTextIndex;
+
+    public BulkFileService(UserFileRepository userFileRepository, FolderRepository folderRepository,
+            BlobDeletionQueue blobDeletionQueue, FileListingService fileListingService,
+            FolderTreeCache folderTreeCache, StorageUsageService storageUsageService,
+            DrawingSearchIndex drawingSearchIndex, PageTextIndex pageTextIndex) {
+        this.userFileRepository = userFileRepository;
+        this.folderRepository = folderRepository;
+        this.blobDeletionQueue = blobDeletionQueue;
+        this.fileListingService = fileListingService;
+        this.folderTreeCache = folderTreeCache;
+        this.storageUsageService = storageUsageService;
+        this.drawingSearchIndex = drawingSearchIndex;
+        this.pageTextIndex = pageTextIndex;
+    }
+
+    /**
+     * Distinct ids of the selection, or null if it is empty or too large.
+     */
+    public List<Long> normalize(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return null;
+        }
+        List<Long> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        distinct.remove(null);
+        return distinct.isEmpty() || distinct.size() > MAX_IDS ? null : distinct;
+    }
+
+    public boolean ownsAll(Long userId, List<Long> ids) {
+        return userFileRepository.countOwned(userId, ids) == ids.size();
+    }
+
+    public boolean ownsFolder(Long userId, Long folderId) {
+        return folderId == null || folderRepository.findById(folderId)
+                .map(folder -> userId.equals(folder.getUserId()) && !folder.isTrashed())
+                .orElse(false);
+    }
+
+    @Transactional
+    public int move(Long userId, List<Long> ids, Long targetFolderId) {
+        storageUsageService.beforeMove(ids);
+        int moved = userFileRepository.moveAll(userId, ids, targetFolderId);
+        storageUsageService.afterMove(targetFolderId, ids);
+        return changed(userId, moved);
+    }
+
+    @Transactional
+    public int trash(Long userId, List<Long> ids) {
+        return changed(userId, userFileRepository.trashAll(userId, ids, LocalDateTime.now()));
+    }
+
+    @Transactional
+    public int restore(Long userId, List<Long> ids) {
+        return changed(userId, userFileRepository.restoreAll(userId, ids));
+    }
+
+    /**
+     * Deletes the rows; blobs are removed from disk in the background and the
+     * files leave the search indexes after commit.
+     */
+    @Transactional
+    public int delete(Long userId, List<Long> ids) {
+        List<String> paths = userFileRepository.findFilePaths(userId, ids);
+        storageUsageService.beforeDelete(ids);
+        int deleted = userFileRepository.deleteAll(userId, ids);
+        blobDeletionQueue.enqueue(paths);
+        return changed(userId, deleted, ids);
+    }
+
+    private int changed(Long userId, int rows) {
+        return changed(userId, rows, List.of());
+    }
+
+    private int changed(Long userId, int rows, List<Long> deletedIds) {
+        if (rows > 0) {
+            // Invalidate once committed, or a concurrent reload could cache the old rows again
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    fileListingService.invalidate(userId);
+                    folderTreeCache.invalidate(userId);
+                    for (Long fileId : deletedIds) {
+                        drawingSearchIndex.remove(userId, fileId);
+                        pageTextIndex.removeFile(userId, fileId);
+                    }
+                }
+            });
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,495 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.SearchHit;
+import com.example.demo.model.TitleBlockText;
+import com.example.demo.model.UserFile;
+import com.example.demo.repository.TitleBlockTextRepository;
+import com.example.demo.util.SearchTokenizer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * In-process inverted index over OCR'd title blocks, partitioned per user.
+ *
+ * Documents are keyed by file id and updated as {@link TitleBlockText} rows
+ * are saved. Each user's postings live in a sorted term map, so exact and
+ * prefix lookups only touch that user's terms. The index is snapshotted to
+ * disk and, on restart, reloaded and caught up with rows processed since the
+ * snapshot instead of being rebuilt from the table.
+ */
+@Component
+public class DrawingSearchIndex {
+
+    private static final int SNAPSHOT_MAGIC = 0x44534932; // "DSI2"; DSI1 snapshots lack CJK run tails and are rebuilt
+    private static final int BATCH_SIZE = 500;
+    private static final int MAX_PREFIX_EXPANSION = 64;
+    private static final int MAX_TERM_LENGTH = 64;
+
+    private static final float BOOST_DRAWING_NUMBER = 4f;
+    private static final float BOOST_TITLE = 3f;
+    private static final float BOOST_TEXT = 1f;
+
+    private final TitleBlockTextRepository titleBlockTextRepository;
+    private final Path snapshotPath;
+
+    private final Map<Long, UserIndex> users = new ConcurrentHashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+    // Not synchronized: a virtual thread blocked on file I/O inside a monitor would pin its carrier
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private volatile long watermark = 0L; // newest processedAt indexed (epoch millis)
+    private volatile boolean ready = false;
+
+    public DrawingSearchIndex(TitleBlockTextRepository titleBlockTextRepository,
+            @Value("${search.index.dir:index}") String indexDir) {
+        this.titleBlockTextRepository = titleBlockTextRepository;
+        this.snapshotPath = Paths.get(indexDir).resolve("drawing-search.bin");
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Adds or replaces the document for the row's file.
+     */
+    public void index(TitleBlockText text) {
+        if (text.getUserFile() == null || text.getUserFile().getUserId() == null) {
+            return;
+        }
+        Long userId = text.getUserFile().getUserId();
+        Long fileId = text.getUserFile().getId();
+        long processedAt = text.getProcessedAt() != null
+                ? text.getProcessedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : System.currentTimeMillis();
+
+        Map<String, Float> weights = new HashMap<>();
+        addField(weights, text.getDrawingNumber(), BOOST_DRAWING_NUMBER);
+        addField(weights, text.getDrawingName(), BOOST_TITLE);
+        addField(weights, text.getProjectName(), BOOST_TITLE);
+        addField(weights, text.getExtractedText(), BOOST_TEXT);
+
+        String[] terms = new String[weights.size()];
+        float[] termWeights = new float[weights.size()];
+        int i = 0;
+        for (Map.Entry<String, Float> e : weights.entrySet()) {
+            terms[i] = e.getKey();
+            termWeights[i] = 1f + (float) Math.log(e.getValue()); // dampen repeated terms
+            i++;
+        }
+        Doc doc = new Doc(fileId, processedAt, text.getProjectName(), text.getDrawingName(),
+                text.getDrawingNumber(), terms, termWeights);
+
+        users.computeIfAbsent(userId, id -> new UserIndex()).put(doc);
+        if (processedAt > watermark) {
+            watermark = processedAt;
+        }
+        dirty.set(true);
+    }
+
+    public void remove(Long userId, Long fileId) {
+        UserIndex index = users.get(userId);
+        if (index != null && index.remove(fileId)) {
+            dirty.set(true);
+        }
+    }
+
+    /**
+     * Moves a file's document to its new owner, e.g. after an anonymous
+     * upload is claimed.
+     */
+    public void reassign(Long previousUserId, UserFile file) {
+        if (previousUserId != null) {
+            remove(previousUserId, file.getId());
+        }
+        titleBlockTextRepository.findTopByUserFileIdOrderByProcessedAtDesc(file.getId()).ifPresent(text -> {
+            text.setUserFile(file);
+            index(text);
+        });
+    }
+
+    /**
+     * Ranked AND query. With {@code prefix}, the last query token also matches
+     * every indexed term that starts with it (search-as-you-type). A lone
+     * Hangul/CJK character always matches that way, since only bigrams and
+     * run tails are indexed.
+     */
+    public List<SearchHit> search(Long userId, String query, boolean prefix, int limit) {
+        return search(userId, query, prefix, id -> true, limit);
+    }
+
+    /**
+     * Like {@link #search(Long, String, boolean, int)}; files rejected by
+     * {@code fileFilter} are skipped before the limit applies.
+     */
+    public List<SearchHit> search(Long userId, String query, boolean prefix, Predicate<Long> fileFilter, int limit) {
+        UserIndex index = users.get(userId);
+        List<String> tokens = SearchTokenizer.tokenize(query);
+        if (index == null || tokens.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return index.search(tokens, prefix, fileFilter, limit);
+    }
+
+    private static void addField(Map<String, Float> weights, String value, float boost) {
+        for (String token : SearchTokenizer.indexTerms(value)) {
+            if (token.length() <= MAX_TERM_LENGTH) {
+                weights.merge(token, boost, Float::sum);
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Startup, snapshot and catch-up
+    // ---------------------------------------------------------------------
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadInBackground() {
+        Thread loader = new Thread(() -> {
+            try {
+                boolean restored = loadSnapshot();
+                catchUp(restored ? watermark : -1L);
+                ready = true;
+            } catch (Exception e) {
+                System.err.println("Search index load failed: " + e.getMessage());
+            }
+        }, "search-index-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Indexes every row processed at or after {@code sinceMillis} (all rows
+     * when negative), paging by id so no single query is large.
+     */
+    private void catchUp(long sinceMillis) {
+        long afterId = 0L;
+        LocalDateTime since = sinceMillis < 0 ? null
+                : LocalDateTime.ofInstant(Instant.ofEpochMilli(sinceMillis), ZoneId.systemDefault());
+        while (true) {
+            List<TitleBlockText> batch = since == null
+                    ? titleBlockTextRepository.findBatchAfterId(afterId, PageRequest.of(0, BATCH_SIZE))
+                    : titleBlockTextRepository.findBatchProcessedSince(since, afterId, PageRequest.of(0, BATCH_SIZE));
+            for (TitleBlockText text : batch) {
+                index(text);
+                afterId = text.getId();
+            }
+            if (batch.size() < BATCH_SIZE) {
+                break;
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${search.index.snapshot-interval-ms:300000}")
+    public void scheduledSnapshot() {
+        if (ready && dirty.get()) {
+            writeSnapshot();
+        }
+    }
+
+    @PreDestroy
+    public void snapshotOnShutdown() {
+        if (ready && dirty.get()) {
+            writeSnapshot();
+        }
+    }
+
+    void writeSnapshot() {
+        snapshotLock.lock();
+        try {
+            writeSnapshotLocked();
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    private void writeSnapshotLocked() {
+        dirty.set(false);
+        try {
+            Files.createDirectories(snapshotPath.getParent());
+            Path tmp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeLong(watermark);
+                List<Map.Entry<Long, UserIndex>> entries = new ArrayList<>(users.entrySet());
+                out.writeInt(entries.size());
+                for (Map.Entry<Long, UserIndex> entry : entries) {
+                    out.writeLong(entry.getKey());
+                    entry.getValue().write(out);
+                }
+            }
+            Files.move(tmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty.set(true);
+            System.err.println("Failed to write search index snapshot: " + e.getMessage());
+        }
+    }
+
+    private boolean loadSnapshot() {
+        if (!Files.exists(snapshotPath)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(snapshotPath), 1 << 16))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                return false;
+            }
+            long savedWatermark = in.readLong();
+            int userCount = in.readInt();
+            for (int u = 0; u < userCount; u++) {
+                long userId = in.readLong();
+                UserIndex index = users.computeIfAbsent(userId, id -> new UserIndex());
+                index.read(in);
+            }
+            watermark = Math.max(watermark, savedWatermark);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable search index snapshot: " + e.getMessage());
+            users.clear();
+            return false;
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Per-user index
+    // ---------------------------------------------------------------------
+
+    private static final class Doc {
+        final long fileId;
+        final long processedAt;
+        final String projectName;
+        final String drawingName;
+        final String drawingNumber;
+        final String[] terms;
+        final float[] weights;
+
+        Doc(long fileId, long processedAt, String projectName, String drawingName, String drawingNumber,
+                String[] terms, float[] weights) {
+            this.fileId = fileId;
+            this.processedAt = processedAt;
+            this.projectName = projectName;
+            this.drawingName = drawingName;
+            this.drawingNumber = drawingNumber;
+            this.terms = terms;
+            this.weights = weights;
+        }
+    }
+
+    private static final class UserIndex {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final TreeMap<String, Map<Long, Float>> postings = new TreeMap<>();
+        private final Map<Long, Doc> docs = new HashMap<>();
+
+        void put(Doc doc) {
+            lock.writeLock().lock();
+            try {
+                Doc old = docs.get(doc.fileId);
+                if (old != null && old.processedAt > doc.processedAt) {
+                    return; // an older OCR row must not replace a newer one
+                }
+                if (old != null) {
+                    unlink(old);
+                }
+                docs.put(doc.fileId, doc);
+                for (int i = 0; i < doc.terms.length; i++) {
+                    postings.computeIfAbsent(doc.terms[i], t -> new HashMap<>()).put(doc.fileId, doc.weights[i]);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        boolean remove(long fileId) {
+            lock.writeLock().lock();
+            try {
+                Doc old = docs.remove(fileId);
+                if (old != null) {
+                    unlink(old);
+                }
+                return old != null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void unlink(Doc doc) {
+            for (String term : doc.terms) {
+                Map<Long, Float> list = postings.get(term);
+                if (list != null) {
+                    list.remove(doc.fileId);
+                    if (list.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+        }
+
+        List<SearchHit> search(List<String> tokens, boolean prefix, Predicate<Long> fileFilter, int limit) {
+            lock.readLock().lock();
+            try {
+                int docCount = Math.max(1, docs.size());
+                Map<Long, Float> scores = null;
+                for (int t = 0; t < tokens.size(); t++) {
+                    String token = tokens.get(t);
+                    boolean expand = (prefix && t == tokens.size() - 1) || SearchTokenizer.isCjkUnigram(token);
+                    Map<Long, Float> matches = match(token, expand, docCount);
+                    if (scores == null) {
+                        scores = matches;
+                    } else {
+                        // AND: keep only documents matching every token
+                        Map<Long, Float> next = new HashMap<>();
+                        Map<Long, Float> small = scores.size() <= matches.size() ? scores : matches;
+                        Map<Long, Float> large = small == scores ? matches : scores;
+                        for (Map.Entry<Long, Float> e : small.entrySet()) {
+                            Float other = large.get(e.getKey());
+                            if (other != null) {
+                                next.put(e.getKey(), e.getValue() + other);
+                            }
+                        }
+                        scores = next;
+                    }
+                    if (scores.isEmpty()) {
+                        break;
+                    }
+                }
+
+                List<SearchHit> hits = new ArrayList<>();
+                if (scores == null) {
+                    return hits;
+                }
+                scores.entrySet().stream()
+                        .filter(e -> fileFilter.test(e.getKey()))
+                        .sorted(Map.Entry.<Long, Float>comparingByValue(Comparator.reverseOrder()))
+                        .limit(limit)
+                        .forEach(e -> {
+                            Doc doc = docs.get(e.getKey());
+                            hits.add(new SearchHit(doc.fileId, e.getValue(), doc.projectName, doc.drawingName,
+                                    doc.drawingNumber));
+                        });
+                return hits;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private Map<Long, Float> match(String token, boolean expand, int docCount) {
+            Map<Long, Float> result = new HashMap<>();
+            if (expand) {
+                NavigableMap<String, Map<Long, Float>> range = postings.subMap(token, true, token + Character.MAX_VALUE,
+                        false);
+                int expanded = 0;
+                for (Map.Entry<String, Map<Long, Float>> e : range.entrySet()) {
+                    accumulate(result, e.getValue(), docCount);
+                    if (++expanded >= MAX_PREFIX_EXPANSION) {
+                        break;
+                    }
+                }
+            } else {
+                Map<Long, Float> list = postings.get(token);
+                if (list != null) {
+                    accumulate(result, list, docCount);
+                }
+            }
+            return result;
+        }
+
+        private static void accumulate(Map<Long, Float> result, Map<Long, Float> list, int docCount) {
+            float idf = (float) Math.log(1.0 + (double) docCount / list.size());
+            for (Map.Entry<Long, Float> e : list.entrySet()) {
+                result.merge(e.getKey(), e.getValue() * idf, Math::max);
+            }
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            lock.readLock().lock();
+            try {
+                // Term dictionary first, then documents reference terms by position
+                Map<String, Integer> termIds = new HashMap<>();
+                out.writeInt(postings.size());
+                for (String term : postings.keySet()) {
+                    termIds.put(term, termIds.size());
+                    out.writeUTF(term);
+                }
+                out.writeInt(docs.size());
+                for (Doc doc : docs.values()) {
+                    out.writeLong(doc.fileId);
+                    out.writeLong(doc.processedAt);
+                    writeNullable(out, doc.projectName);
+                    writeNullable(out, doc.drawingName);
+                    writeNullable(out, doc.drawingNumber);
+                    out.writeInt(doc.terms.length);
+                    for (int i = 0; i < doc.terms.length; i++) {
+                        out.writeInt(termIds.get(doc.terms[i]));
+                        out.writeFloat(doc.weights[i]);
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void read(DataInputStream in) throws IOException {
+            String[] dict = new String[in.readInt()];
+            for (int i = 0; i < dict.length; i++) {
+                dict[i] = in.readUTF();
+            }
+            int docCount = in.readInt();
+            for (int d = 0; d < docCount; d++) {
+                long fileId = in.readLong();
+                long processedAt = in.readLong();
+                String projectName = readNullable(in);
+                String drawingName = readNullable(in);
+                String drawingNumber = readNullable(in);
+                int termCount = in.readInt();
+                String[] terms = new String[termCount];
+                float[] weights = new float[termCount];
+                for (int i = 0; i < termCount; i++) {
+                    terms[i] = dict[in.readInt()];
+                    weights[i] = in.readFloat();
+                }
+                put(new Doc(fileId, processedAt, projectName, drawingName, drawingNumber, terms, weights));
+            }
+        }
+
+        private static void writeNullable(DataOutputStream out, String value) throws IOException {
+            out.writeBoolean(value != null);
+            if (value != null) {
+                out.writeUTF(value);
+            }
+        }
+
+        private static String readNullable(DataInputStream in) throws IOException {
+            return in.readBoolean() ? in.readUTF() : null;
+        }
+    }
+}
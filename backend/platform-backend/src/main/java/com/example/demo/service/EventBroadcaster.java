@@ -0,0 +1,497 @@
+package com.example.demo.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pushes per-user change events (job progress, OCR results, file and folder
+ * changes) to open server-sent event streams.
+ *
+ * Each event is encoded once, whatever the number of streams it goes to.
+ * Publishing only appends to each of the user's stream queues and never
+ * touches a socket: every stream has its own virtual thread doing the
+ * writes, so a slow client only ever holds up itself. Events that supersede
+ * each other (progress of the same job, "files changed") replace the one
+ * still queued instead of piling up. A stream whose queue overflows anyway
+ * is closed, and the client reconnects with Last-Event-ID and gets what it
+ * missed from the user's replay buffer, or a {@code resync} event if that
+ * has moved on. A user has at most {@code max-streams-per-user} streams; a
+ * new one closes the oldest. Events published inside a transaction go out
+ * after it commits.
+ *
+ * Once committed, an event is also handed to the {@link Relay} (see
+ * {@link PgEventRelay}), which carries it to every other node, so a stream
+ * sees the user's events whichever node published them. Event ids are
+ * per node: a Last-Event-ID from another node (or from before a restart)
+ * gets a {@code resync}.
+ */
+@Service
+public class EventBroadcaster {
+
+    private final long timeoutMillis;
+    private final int maxPending;
+    private final int replaySize;
+    private final long replayTtlNanos;
+    private final int maxStreamsPerUser;
+
+    // Prefix of this node's event ids; ids with another prefix cannot be replayed here
+    private final String node = UUID.randomUUID().toString().substring(0, 8);
+    private final Map<Long, List<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    // Recent events per user, oldest first, for reconnecting streams; guarded by replayLock
+    private final ReentrantLock replayLock = new ReentrantLock();
+    private final Map<Long, Replay> replay = new HashMap<>();
+    // Newest id of any buffer dropped for being idle: older ids may have missed events
+    private long expiredUpTo;
+    private volatile Relay relay;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong replaced = new AtomicLong();
+
+    public EventBroadcaster(@Value("${events.sse.timeout-ms:1800000}") long timeoutMillis,
+            @Value("${events.sse.max-pending:256}") int maxPending,
+            @Value("${events.sse.replay-size:64}") int replaySize,
+            @Value("${events.sse.replay-ttl-ms:600000}") long replayTtlMillis,
+            @Value("${events.sse.max-streams-per-user:8}") int maxStreamsPerUser) {
+        this.timeoutMillis = timeoutMillis;
+        this.maxPending = Math.max(1, maxPending);
+        this.replaySize = Math.max(0, replaySize);
+        this.replayTtlNanos = TimeUnit.MILLISECONDS.toNanos(replayTtlMillis);
+        this.maxStreamsPerUser = Math.max(1, maxStreamsPerUser);
+    }
+
+    /** Carries this node's events to the other nodes. */
+    public interface Relay {
+        void send(String payload);
+    }
+
+    public void setRelay(Relay relay) {
+        this.relay = relay;
+    }
+
+    /**
+     * Opens a stream for a user. With {@code lastEventId} (the
+     * Last-Event-ID header of a reconnect) the events published since are
+     * sent first.
+     */
+    public SseEmitter subscribe(Long userId, String lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(userId, emitter);
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+
+        List<Event> missed = new ArrayList<>();
+        List<Subscriber> oldest = new ArrayList<>();
+        replayLock.lock();
+        try {
+            // Registered under the replay lock, so an event is replayed, sent live, or both, never lost
+            if (lastEventId != null && !replaySince(userId, lastEventId, missed)) {
+                missed.clear();
+                missed.add(new Event(sequence.get(), "resync", "{}", null));
+            }
+            subscribers.compute(userId, (id, streams) -> {
+                List<Subscriber> list = streams != null ? streams : new CopyOnWriteArrayList<>();
+                // Oldest first: a forgotten tab gives way to the newest stream
+                while (list.size() >= maxStreamsPerUser) {
+                    oldest.add(list.remove(0));
+                }
+                list.add(subscriber);
+                return list;
+            });
+        } finally {
+            replayLock.unlock();
+        }
+        for (Subscriber stream : oldest) {
+            replaced.incrementAndGet();
+            stream.close();
+        }
+        for (Event event : missed) {
+            subscriber.offer(event);
+        }
+        Thread.ofVirtual().name("sse-" + userId).start(subscriber::writeLoop);
+        return emitter;
+    }
+
+    /**
+     * Sends an event to every stream of the user. {@code data} values must
+     * be numbers, booleans, strings or null. A queued event with the same
+     * {@code coalesceKey} is replaced rather than followed.
+     */
+    public void publish(Long userId, String type, Map<String, ?> data, String coalesceKey) {
+        if (userId == null) {
+            return;
+        }
+        String json = toJson(data);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatch(userId, type, json, coalesceKey);
+                    forward(userId, type, json, coalesceKey);
+                }
+            });
+        } else {
+            dispatch(userId, type, json, coalesceKey);
+            forward(userId, type, json, coalesceKey);
+        }
+    }
+
+    /** An event relayed from another node: goes to this node's streams only. */
+    public void receive(String payload) {
+        // node, user, type, key, json; the json has no raw tabs (control characters are escaped)
+        String[] parts = payload.split("\t", 5);
+        if (parts.length < 5 || parts[0].equals(node)) {
+            return;
+        }
+        try {
+            Long userId = Long.valueOf(parts[1]);
+            received.incrementAndGet();
+            dispatch(userId, parts[2], parts[4], parts[3].isEmpty() ? null : parts[3]);
+        } catch (NumberFormatException e) {
+            // Not ours
+        }
+    }
+
+    /** Tells every open stream to reload, e.g. after relayed events may have been missed. */
+    public void resyncAll() {
+        Event resync = new Event(sequence.get(), "resync", "{}", "resync");
+        for (List<Subscriber> streams : subscribers.values()) {
+            for (Subscriber subscriber : streams) {
+                subscriber.offer(resync);
+            }
+        }
+    }
+
+    private void forward(Long userId, String type, String json, String coalesceKey) {
+        Relay target = relay;
+        if (target != null) {
+            target.send(node + '\t' + userId + '\t' + type + '\t' + (coalesceKey != null ? coalesceKey : "")
+                    + '\t' + json);
+        }
+    }
+
+    private void dispatch(Long userId, String type, String json, String coalesceKey) {
+        Event event;
+        // Ids are taken under the lock so every replay buffer stays in id order
+        replayLock.lock();
+        try {
+            event = new Event(sequence.incrementAndGet(), type, json, coalesceKey);
+            if (replaySize > 0) {
+                replay.computeIfAbsent(userId, id -> new Replay(expiredUpTo)).add(event, replaySize);
+            }
+        } finally {
+            replayLock.unlock();
+        }
+        published.incrementAndGet();
+        List<Subscriber> streams = subscribers.get(userId);
+        if (streams != null) {
+            for (Subscriber subscriber : streams) {
+                subscriber.offer(event);
+            }
+        }
+    }
+
+    /**
+     * Collects the user's events after {@code lastEventId}; false if some may
+     * have left the buffer or the id is from another node or from before a
+     * restart. Caller holds the replay lock.
+     */
+    private boolean replaySince(Long userId, String lastEventId, List<Event> out) {
+        long after;
+        try {
+            int dash = lastEventId.lastIndexOf('-');
+            if (dash < 0 || !lastEventId.substring(0, dash).trim().equals(node)) {
+                return false;
+            }
+            after = Long.parseLong(lastEventId.substring(dash + 1).trim());
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (after > sequence.get()) {
+            return false;
+        }
+        Replay buffer = replay.get(userId);
+        if (buffer == null) {
+            // Nothing buffered: fine unless the user's buffer expired after that id
+            return after >= expiredUpTo && (replaySize > 0 || after == sequence.get());
+        }
+        if (after < buffer.droppedUpTo) {
+            return false;
+        }
+        for (Event event : buffer.events) {
+            if (event.id > after) {
+                out.add(event);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Comment line on every stream so proxies keep idle connections open and
+     * dead ones are noticed; also drops replay buffers of users idle longer
+     * than {@code replay-ttl-ms}.
+     */
+    @Scheduled(fixedDelayString = "${events.sse.heartbeat-ms:25000}")
+    public void heartbeat() {
+        Event ping = new Event(0, null, null, "ping");
+        for (List<Subscriber> streams : subscribers.values()) {
+            for (Subscriber subscriber : streams) {
+                subscriber.offer(ping);
+            }
+        }
+        long now = System.nanoTime();
+        replayLock.lock();
+        try {
+            for (Iterator<Replay> it = replay.values().iterator(); it.hasNext();) {
+                Replay buffer = it.next();
+                if (now - buffer.lastAt > replayTtlNanos) {
+                    expiredUpTo = Math.max(expiredUpTo, buffer.events.peekLast().id);
+                    it.remove();
+                }
+            }
+        } finally {
+            replayLock.unlock();
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscriber.close();
+        subscribers.computeIfPresent(subscriber.userId, (id, streams) -> {
+            streams.remove(subscriber);
+            return streams.isEmpty() ? null : streams;
+        });
+    }
+
+    /** Open streams, and totals since startup. */
+    public int getStreams() {
+        int count = 0;
+        for (List<Subscriber> streams : subscribers.values()) {
+            count += streams.size();
+        }
+        return count;
+    }
+
+    public long getPublished() {
+        return published.get();
+    }
+
+    /** Events relayed from other nodes (included in {@link #getPublished()}). */
+    public long getReceived() {
+        return received.get();
+    }
+
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    public long getEvicted() {
+        return evicted.get();
+    }
+
+    /** Streams closed to make room for a newer stream of the same user. */
+    public long getReplaced() {
+        return replaced.get();
+    }
+
+    /** Users with a replay buffer. */
+    public int getReplayUsers() {
+        replayLock.lock();
+        try {
+            return replay.size();
+        } finally {
+            replayLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (List<Subscriber> streams : subscribers.values()) {
+            for (Subscriber subscriber : streams) {
+                subscriber.close();
+            }
+        }
+    }
+
+    /** Compact JSON for flat maps of numbers, booleans, strings and nulls. */
+    static String toJson(Map<String, ?> data) {
+        StringBuilder sb = new StringBuilder("{");
+        if (data != null) {
+            for (Map.Entry<String, ?> entry : data.entrySet()) {
+                if (sb.length() > 1) {
+                    sb.append(',');
+                }
+                appendString(sb, entry.getKey());
+                sb.append(':');
+                Object value = entry.getValue();
+                if (value == null || value instanceof Number || value instanceof Boolean) {
+                    sb.append(value);
+                } else {
+                    appendString(sb, value.toString());
+                }
+            }
+        }
+        return sb.append('}').toString();
+    }
+
+    private static void appendString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    final class Event {
+        final long id;
+        final String type;
+        final String key;
+        // Encoded once, shared by every stream
+        final Set<ResponseBodyEmitter.DataWithMediaType> frame;
+
+        Event(long id, String type, String json, String coalesceKey) {
+            this.id = id;
+            this.type = type;
+            this.key = coalesceKey != null ? coalesceKey : "#" + id;
+            this.frame = type == null
+                    ? SseEmitter.event().comment("ping").build()
+                    : SseEmitter.event().id(node + "-" + id).name(type).data(json).build();
+        }
+    }
+
+    /** One user's recent events, at most {@code replay-size}. */
+    private static final class Replay {
+        final ArrayDeque<Event> events = new ArrayDeque<>();
+        // Newest id pushed out of the buffer; a reconnect from before it has missed events
+        long droppedUpTo;
+        long lastAt;
+
+        Replay(long droppedUpTo) {
+            this.droppedUpTo = droppedUpTo;
+        }
+
+        void add(Event event, int limit) {
+            events.addLast(event);
+            while (events.size() > limit) {
+                droppedUpTo = events.removeFirst().id;
+            }
+            lastAt = System.nanoTime();
+        }
+    }
+
+    private final class Subscriber {
+        final Long userId;
+        final SseEmitter emitter;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition ready = lock.newCondition();
+        // Undelivered events by coalescing key, in send order
+        private final LinkedHashMap<String, Event> pending = new LinkedHashMap<>();
+        private boolean closed;
+
+        Subscriber(Long userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+        }
+
+        /** Never blocks on the client; closes the stream when it has fallen too far behind. */
+        void offer(Event event) {
+            boolean overflow = false;
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                // Re-inserted at the end so ids still go out in increasing order
+                if (pending.remove(event.key) != null) {
+                    coalesced.incrementAndGet();
+                }
+                if (pending.size() >= maxPending) {
+                    overflow = true;
+                } else {
+                    pending.put(event.key, event);
+                    ready.signal();
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (overflow) {
+                evicted.incrementAndGet();
+                remove(this);
+            }
+        }
+
+        void close() {
+            lock.lock();
+            try {
+                closed = true;
+                ready.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void writeLoop() {
+            List<Event> batch = new ArrayList<>();
+            try {
+                while (true) {
+                    lock.lock();
+                    try {
+                        while (pending.isEmpty() && !closed) {
+                            ready.await();
+                        }
+                        if (closed) {
+                            break;
+                        }
+                        for (Iterator<Event> it = pending.values().iterator(); it.hasNext();) {
+                            batch.add(it.next());
+                            it.remove();
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                    for (Event event : batch) {
+                        emitter.send(event.frame);
+                    }
+                    batch.clear();
+                }
+                // Evicted or shut down: end the response from this thread, never from a publisher
+                emitter.complete();
+            } catch (Exception e) {
+                // Client went away; the emitter's error callback removes the stream
+                remove(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.FilePage;
+import com.example.demo.dto.FileSummary;
+import com.example.demo.repository.UserFileRepository;
+import com.example.demo.util.FileCursor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Paged file listings for the drive views.
+ *
+ * Pages are keyset-paginated on (uploadTime, id) and read as
+ * {@link FileSummary} projections, so the cost of a page depends on its size
+ * and not on how many files the user has or how many boxes each file holds.
+ * Totals are optional; when requested they come from a short-lived per-user
+ * cache that file mutations invalidate.
+ */
+@Service
+public class FileListingService {
+
+    public static final int MAX_LIMIT = 200;
+
+    public enum View {
+        RECENT, ROOT, FOLDER, TRASH
+    }
+
+    private final UserFileRepository userFileRepository;
+    private final EventBroadcaster eventBroadcaster;
+    private final long countTtlMillis;
+    private final Map<Long, Map<String, CachedCount>> counts = new ConcurrentHashMap<>();
+
+    public FileListingService(UserFileRepository userFileRepository, EventBroadcaster eventBroadcaster,
+            @Value("${files.listing.count-ttl-ms:30000}") long countTtlMillis) {
+        this.userFileRepository = userFileRepository;
+        this.eventBroadcaster = eventBroadcaster;
+        this.countTtlMillis = countTtlMillis;
+    }
+
+    public FilePage list(Long userId, View view, Long folderId, String cursor, int limit, boolean includeTotal) {
+        FileCursor after = FileCursor.decode(cursor);
+        int size = Math.max(1, Math.min(limit, MAX_LIMIT));
+        // Fetch one extra row to know whether another page exists
+        Pageable pageable = PageRequest.of(0, size + 1);
+
+        List<FileSummary> rows;
+        switch (view) {
+            case ROOT:
+                rows = userFileRepository.findRootPage(userId, after.getUploadTime(), after.getId(), pageable);
+                break;
+            case FOLDER:
+                rows = userFileRepository.findFolderPage(userId, folderId, after.getUploadTime(), after.getId(),
+                        pageable);
+                break;
+            case TRASH:
+                rows = userFileRepository.findTrashPage(userId, after.getUploadTime(), after.getId(), pageable);
+                break;
+            default:
+                rows = userFileRepository.findRecentPage(userId, after.getUploadTime(), after.getId(), pageable);
+                break;
+        }
+
+        String nextCursor = null;
+        if (rows.size() > size) {
+            rows = rows.subList(0, size);
+            FileSummary last = rows.get(size - 1);
+            nextCursor = new FileCursor(last.getUploadTime(), last.getId()).encode();
+        }
+        Long total = includeTotal ? count(userId, view, folderId) : null;
+        return new FilePage(rows, nextCursor, total);
+    }
+
+    /**
+     * Drops the cached totals of a user and tells their open views to
+     * reload; call after any change to their files.
+     */
+    public void invalidate(Long userId) {
+        if (userId != null) {
+            counts.remove(userId);
+            eventBroadcaster.publish(userId, "files", Map.of(), "files");
+        }
+    }
+
+    private long count(Long userId, View view, Long folderId) {
+        String key = view == View.FOLDER ? view + ":" + folderId : view.name();
+        Map<String, CachedCount> userCounts = counts.computeIfAbsent(userId, id -> new ConcurrentHashMap<>());
+        long now = System.currentTimeMillis();
+        CachedCount cached = userCounts.get(key);
+        if (cached != null && now - cached.loadedAt < countTtlMillis) {
+            return cached.value;
+        }
+        long value;
+        switch (view) {
+            case ROOT:
+                value = userFileRepository.countRoot(userId);
+                break;
+            case FOLDER:
+                value = userFileRepository.countInFolder(userId, folderId);
+                break;
+            case TRASH:
+                value = userFileRepository.countTrash(userId);
+                break;
+            default:
+                value = userFileRepository.countRecent(userId);
+                break;
+        }
+        userCounts.put(key, new CachedCount(value, now));
+        return value;
+    }
+
+    private static final class CachedCount {
+        final long value;
+        final long loadedAt;
+
+        CachedCount(long value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
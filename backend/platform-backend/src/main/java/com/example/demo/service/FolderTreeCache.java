@@ -0,0 +1,222 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.FolderFileTotals;
+import com.example.demo.dto.FolderTree;
+import com.example.demo.dto.FolderTreeNode;
+import com.example.demo.model.Folder;
+import com.example.demo.repository.FolderRepository;
+import com.example.demo.repository.UserFileRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory per-user snapshot of the drive's folder tree with per-folder file
+ * counts and sizes, so the sidebar gets the whole tree in one cheap call.
+ *
+ * A snapshot is loaded with two queries (folders, grouped file totals) the
+ * first time it is needed. Folder creates/moves and file adds/removes patch
+ * it in place; changes that hide or reveal whole subtrees (trash, restore,
+ * delete) simply drop it. Every change bumps a per-user generation so a load
+ * racing with a change is served but never cached, and tells the user's open
+ * sidebars to reload through {@link EventBroadcaster}. Snapshots also expire
+ * after {@code folders.tree.ttl-ms}, which bounds how long a change made
+ * through another backend node stays invisible here.
+ */
+@Component
+public class FolderTreeCache {
+
+    private static final Comparator<FolderTreeNode> BY_NAME = Comparator
+            .comparing(FolderTreeNode::getName, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER))
+            .thenComparing(FolderTreeNode::getId);
+
+    private final FolderRepository folderRepository;
+    private final UserFileRepository userFileRepository;
+    private final EventBroadcaster eventBroadcaster;
+    private final long ttlNanos;
+    private final Map<Long, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    public FolderTreeCache(FolderRepository folderRepository, UserFileRepository userFileRepository,
+            EventBroadcaster eventBroadcaster, @Value("${folders.tree.ttl-ms:30000}") long ttlMillis) {
+        this.folderRepository = folderRepository;
+        this.userFileRepository = userFileRepository;
+        this.eventBroadcaster = eventBroadcaster;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+    }
+
+    public FolderTree getTree(Long userId) {
+        Snapshot snapshot = snapshots.get(userId);
+        if (snapshot == null || System.nanoTime() - snapshot.loadedAt >= ttlNanos) {
+            long generation = generation(userId).get();
+            snapshot = load(userId);
+            if (generation(userId).get() == generation) {
+                snapshots.put(userId, snapshot);
+            }
+        }
+        return snapshot.view();
+    }
+
+    public void invalidate(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        generation(userId).incrementAndGet();
+        snapshots.remove(userId);
+        eventBroadcaster.publish(userId, "folders", Map.of(), "folders");
+    }
+
+    public void folderCreated(Folder folder) {
+        Snapshot snapshot = touch(folder.getUserId());
+        if (snapshot != null) {
+            snapshot.putFolder(folder.getId(), folder.getName(), folder.getParentFolderId());
+        }
+    }
+
+    public void folderMoved(Long userId, Long folderId, Long newParentId) {
+        Snapshot snapshot = touch(userId);
+        if (snapshot != null) {
+            snapshot.moveFolder(folderId, newParentId);
+        }
+    }
+
+    /**
+     * A non-trashed file appeared in (delta = 1) or left (delta = -1) a folder.
+     */
+    public void fileChanged(Long userId, Long folderId, long size, int delta) {
+        Snapshot snapshot = touch(userId);
+        if (snapshot != null) {
+            snapshot.addFiles(folderId, delta, delta * size);
+        }
+    }
+
+    private Snapshot touch(Long userId) {
+        if (userId == null) {
+            return null;
+        }
+        generation(userId).incrementAndGet();
+        eventBroadcaster.publish(userId, "folders", Map.of(), "folders");
+        return snapshots.get(userId);
+    }
+
+    private AtomicLong generation(Long userId) {
+        return generations.computeIfAbsent(userId, id -> new AtomicLong());
+    }
+
+    private Snapshot load(Long userId) {
+        Snapshot snapshot = new Snapshot();
+        for (Folder folder : folderRepository.findByUserIdAndIsTrashedFalse(userId)) {
+            snapshot.putFolder(folder.getId(), folder.getName(), folder.getParentFolderId());
+        }
+        for (FolderFileTotals totals : userFileRepository.sumByFolder(userId)) {
+            snapshot.addFiles(totals.getFolderId(), totals.getFileCount(), totals.getTotalSize());
+        }
+        return snapshot;
+    }
+
+    private static final class Snapshot {
+        // Patches do not refresh it: they only cover changes made on this node
+        final long loadedAt = System.nanoTime();
+        private final Map<Long, FolderEntry> folders = new HashMap<>();
+        private long rootFileCount;
+        private long rootTotalSize;
+        private FolderTree view;
+
+        synchronized void putFolder(Long id, String name, Long parentId) {
+            FolderEntry entry = folders.computeIfAbsent(id, k -> new FolderEntry());
+            entry.name = name;
+            entry.parentId = parentId;
+            view = null;
+        }
+
+        synchronized void moveFolder(Long id, Long parentId) {
+            FolderEntry entry = folders.get(id);
+            if (entry != null) {
+                entry.parentId = parentId;
+                view = null;
+            }
+        }
+
+        synchronized void addFiles(Long folderId, long count, long size) {
+            if (folderId == null) {
+                rootFileCount += count;
+                rootTotalSize += size;
+            } else {
+                // Files of a trashed (hidden) folder are tracked too, in case it is the target of a later patch
+                FolderEntry entry = folders.computeIfAbsent(folderId, k -> new FolderEntry());
+                entry.fileCount += count;
+                entry.totalSize += size;
+            }
+            view = null;
+        }
+
+        /** Immutable tree, rebuilt only after a patch. */
+        synchronized FolderTree view() {
+            if (view != null) {
+                return view;
+            }
+            Map<Long, FolderTreeNode> nodes = new HashMap<>();
+            for (Map.Entry<Long, FolderEntry> e : folders.entrySet()) {
+                FolderEntry entry = e.getValue();
+                if (entry.name != null) {
+                    nodes.put(e.getKey(), new FolderTreeNode(e.getKey(), entry.name, entry.parentId, entry.fileCount,
+                            entry.totalSize));
+                }
+            }
+            List<FolderTreeNode> roots = new ArrayList<>();
+            for (FolderTreeNode node : nodes.values()) {
+                if (node.getParentFolderId() == null) {
+                    roots.add(node);
+                } else {
+                    // Children of a trashed or unknown parent stay hidden, like in the level-by-level listing
+                    FolderTreeNode parent = nodes.get(node.getParentFolderId());
+                    if (parent != null) {
+                        parent.getChildren().add(node);
+                    }
+                }
+            }
+            for (FolderTreeNode root : roots) {
+                finish(root);
+            }
+            roots.sort(BY_NAME);
+            view = new FolderTree(rootFileCount, rootTotalSize, roots);
+            return view;
+        }
+
+        /** Sorts children and fills subtree totals, iteratively to survive deep trees. */
+        private static void finish(FolderTreeNode root) {
+            List<FolderTreeNode> order = new ArrayList<>();
+            order.add(root);
+            for (int i = 0; i < order.size(); i++) {
+                FolderTreeNode node = order.get(i);
+                node.getChildren().sort(BY_NAME);
+                order.addAll(node.getChildren());
+            }
+            for (int i = order.size() - 1; i >= 0; i--) {
+                FolderTreeNode node = order.get(i);
+                long files = node.getFileCount();
+                long size = node.getTotalSize();
+                for (FolderTreeNode child : node.getChildren()) {
+                    files += child.getSubtreeFileCount();
+                    size += child.getSubtreeSize();
+                }
+                node.setSubtreeFileCount(files);
+                node.setSubtreeSize(size);
+            }
+        }
+    }
+
+    private static final class FolderEntry {
+        String name; // null while only file totals are known (trashed folder)
+        Long parentId;
+        long fileCount;
+        long totalSize;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.FolderStats;
+import com.example.demo.repository.FolderRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+/**
+ * Whole-subtree folder operations on top of the recursive CTE queries in
+ * {@link FolderRepository}: a fixed number of statements however deep or
+ * wide the tree is.
+ */
+@Service
+public class FolderTreeService {
+
+    private final FolderRepository folderRepository;
+    private final BlobDeletionQueue blobDeletionQueue;
+    private final StorageUsageService storageUsageService;
+    private final DrawingSearchIndex drawingSearchIndex;
+    private final PageTextIndex pageTextIndex;
+
+    public FolderTreeService(FolderRepository folderRepository, BlobDeletionQueue blobDeletionQueue,
+            StorageUsageService storageUsageService, DrawingSearchIndex drawingSearchIndex,
+            PageTextIndex pageTextIndex) {
+        this.folderRepository = folderRepository;
+        this.blobDeletionQueue = blobDeletionQueue;
+        this.storageUsageService = storageUsageService;
+        this.drawingSearchIndex = drawingSearchIndex;
+        this.pageTextIndex = pageTextIndex;
+    }
+
+    /**
+     * Permanently deletes a folder, its sub-folders and their files. The
+     * files' blobs are removed from disk, and the files from the search
+     * indexes, after the transaction commits.
+     *
+     * @return number of folders deleted (0 if the folder is not the user's)
+     */
+    @Transactional
+    public int deleteSubtree(Long userId, Long folderId) {
+        List<Long> fileIds = folderRepository.findSubtreeFileIds(userId, folderId);
+        List<String> paths = folderRepository.findSubtreeFilePaths(userId, folderId);
+        storageUsageService.beforeSubtreeDelete(userId, folderId);
+        folderRepository.deleteSubtreeFiles(userId, folderId);
+        int folders = folderRepository.deleteSubtree(userId, folderId);
+        blobDeletionQueue.enqueue(paths);
+        if (folders > 0 && !fileIds.isEmpty()) {
+            Runnable evict = () -> {
+                for (Long fileId : fileIds) {
+                    drawingSearchIndex.remove(userId, fileId);
+                    pageTextIndex.removeFile(userId, fileId);
+                }
+            };
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        evict.run();
+                    }
+                });
+            } else {
+                evict.run();
+            }
+        }
+        return folders;
+    }
+
+    /**
+     * Like {@link #deleteSubtree} but only while the folder is still in the
+     * trash (used by the purge, which must not race a restore).
+     *
+     * @return number of folders deleted (0 if gone, restored or locked by someone else)
+     */
+    @Transactional
+    public int deleteTrashedSubtree(Long userId, Long folderId) {
+        if (folderRepository.lockIfTrashed(folderId).isEmpty()) {
+            return 0;
+        }
+        return deleteSubtree(userId, folderId);
+    }
+
+    /**
+     * Moves a folder under {@code targetFolderId} (null for the root). Moves
+     * into a folder run one at a time per user, so concurrent moves cannot
+     * create a cycle between them.
+     *
+     * @return false if the target is missing, not the user's, or inside the
+     *         folder's own subtree
+     */
+    @Transactional
+    public boolean move(Long userId, Long folderId, Long targetFolderId) {
+        if (targetFolderId == null) {
+            return folderRepository.moveToRoot(userId, folderId) > 0;
+        }
+        folderRepository.lockTreeForMove(userId);
+        return folderRepository.moveIfAcyclic(userId, folderId, targetFolderId) > 0;
+    }
+
+    @Transactional(readOnly = true)
+    public FolderStats stats(Long userId, Long folderId) {
+        return folderRepository.findSubtreeStats(userId, folderId);
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.demo.service;
+
+import com.example.demo.model.BBox;
+import com.example.demo.model.OcrJob;
+import com.example.demo.model.TitleBlockText;
+import com.example.demo.model.UserFile;
+import com.example.demo.repository.OcrJobRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * State transitions of {@link OcrJob} rows; every method is one short
+ * transaction.
+ *
+ * Claiming locks due rows with SKIP LOCKED, so any number of nodes can poll
+ * at once and never get the same job. A claim is a lease that the worker
+ * keeps extending; rows whose lease ran out are claimed again by whoever
+ * polls next. Interactive jobs are claimed before bulk ones, and no user gets
+ * more than {@code max-running-per-user} jobs running at once, so one large
+ * batch cannot occupy every worker in the cluster.
+ *
+ * Finishing a job (result or failure) first re-locks the row and checks the
+ * lease is still ours, so a worker that lost its lease can never overwrite
+ * the outcome of the worker that took over, and a job's result is written
+ * exactly once. Failed attempts are retried with exponential backoff until
+ * {@code max-attempts}.
+ */
+@Service
+public class OcrJobQueue {
+
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    private final OcrJobRepository jobRepository;
+    private final OcrResultWriter resultWriter;
+    private final EventBroadcaster eventBroadcaster;
+    private final TransactionTemplate transactionTemplate;
+
+    private final long leaseMillis;
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final long maxBackoffMillis;
+    private final int maxRunningPerUser;
+
+    public OcrJobQueue(OcrJobRepository jobRepository, OcrResultWriter resultWriter,
+            EventBroadcaster eventBroadcaster, PlatformTransactionManager transactionManager,
+            @Value("${ocr.jobs.lease-ms:60000}") long leaseMillis,
+            @Value("${ocr.jobs.max-attempts:5}") int maxAttempts,
+            @Value("${ocr.jobs.backoff-ms:2000}") long backoffMillis,
+            @Value("${ocr.jobs.max-backoff-ms:300000}") long maxBackoffMillis,
+            @Value("${ocr.jobs.max-running-per-user:4}") int maxRunningPerUser) {
+        this.jobRepository = jobRepository;
+        this.resultWriter = resultWriter;
+        this.eventBroadcaster = eventBroadcaster;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.leaseMillis = leaseMillis;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMillis = backoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.maxRunningPerUser = Math.max(1, maxRunningPerUser);
+    }
+
+    public OcrJob submit(UserFile userFile, BBox bbox, boolean bulk) {
+        OcrJob job = jobRepository.save(new OcrJob(userFile, bbox, bulk));
+        publish(job);
+        return job;
+    }
+
+    public Optional<OcrJob> find(Long jobId) {
+        return jobRepository.findById(jobId);
+    }
+
+    /**
+     * Leases up to {@code limit} jobs to {@code owner}: due queued jobs
+     * first, then running jobs whose lease expired. Expired jobs that are out
+     * of attempts are failed instead of being handed out again. Queued jobs
+     * past their user's running cap stay queued.
+     */
+    public List<OcrJob> claim(String owner, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<OcrJob> candidates = new ArrayList<>();
+            Map<Long, Long> runningByUser = new HashMap<>();
+            for (OcrJob job : jobRepository.lockDue(OcrJob.State.QUEUED, OcrJob.State.RUNNING, now,
+                    maxRunningPerUser, PageRequest.of(0, limit))) {
+                // The query skips users at the cap; this keeps one claim from taking them past it
+                Long userId = job.getUserId();
+                if (userId != null) {
+                    long running = runningByUser.computeIfAbsent(userId,
+                            id -> jobRepository.countByStateAndUserId(OcrJob.State.RUNNING, id));
+                    if (running >= maxRunningPerUser) {
+                        continue;
+                    }
+                    runningByUser.put(userId, running + 1);
+                }
+                candidates.add(job);
+            }
+            if (candidates.size() < limit) {
+                for (OcrJob job : jobRepository.lockExpired(OcrJob.State.RUNNING, now,
+                        PageRequest.of(0, limit - candidates.size()))) {
+                    if (job.getAttempts() >= maxAttempts) {
+                        finish(job, OcrJob.State.FAILED, "Worker stopped responding", now);
+                        publish(job);
+                    } else {
+                        candidates.add(job);
+                    }
+                }
+            }
+            for (OcrJob job : candidates) {
+                job.setState(OcrJob.State.RUNNING);
+                job.setLeaseOwner(owner);
+                job.setLeaseExpiresAt(now.plusNanos(leaseMillis * 1_000_000L));
+                job.setAttempts(job.getAttempts() + 1);
+                publish(job);
+            }
+            return candidates;
+        });
+    }
+
+    /** Extends the leases {@code owner} still holds; returns how many it still holds. */
+    public int heartbeat(String owner, Collection<Long> jobIds) {
+        if (jobIds.isEmpty()) {
+            return 0;
+        }
+        LocalDateTime until = LocalDateTime.now().plusNanos(leaseMillis * 1_000_000L);
+        Integer extended = transactionTemplate.execute(
+                status -> jobRepository.extendLeases(jobIds, owner, OcrJob.State.RUNNING, until));
+        return extended != null ? extended : 0;
+    }
+
+    /**
+     * Stores the result and marks the job done, in one transaction.
+     *
+     * @return the saved title block, or null if the lease was lost (nothing
+     *         is written then)
+     */
+    public TitleBlockText complete(Long jobId, String owner, UserFile userFile,
+            OcrService.Recognition recognition) {
+        return transactionTemplate.execute(status -> {
+            Optional<OcrJob> jobOpt = jobRepository.lockOwned(jobId, owner, OcrJob.State.RUNNING);
+            if (jobOpt.isEmpty()) {
+                return null;
+            }
+            TitleBlockText saved = resultWriter.write(userFile, recognition);
+            OcrJob job = jobOpt.get();
+            job.setTitleBlockTextId(saved.getId());
+            finish(job, OcrJob.State.DONE, null, LocalDateTime.now());
+            publish(job);
+            return saved;
+        });
+    }
+
+    /**
+     * Records a failed attempt: the job is queued again after a backoff, or
+     * failed for good when out of attempts or {@code permanent}. A no-op if
+     * the lease was lost.
+     */
+    public void fail(Long jobId, String owner, String error, boolean permanent) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Optional<OcrJob> jobOpt = jobRepository.lockOwned(jobId, owner, OcrJob.State.RUNNING);
+            if (jobOpt.isEmpty()) {
+                return;
+            }
+            OcrJob job = jobOpt.get();
+            LocalDateTime now = LocalDateTime.now();
+            if (permanent || job.getAttempts() >= maxAttempts) {
+                finish(job, OcrJob.State.FAILED, error, now);
+            } else {
+                job.setState(OcrJob.State.QUEUED);
+                job.setLeaseOwner(null);
+                job.setLeaseExpiresAt(null);
+                job.setLastError(truncate(error));
+                job.setRunAfter(now.plusNanos(
+                        backoffMillis(job.getAttempts(), backoffMillis, maxBackoffMillis) * 1_000_000L));
+            }
+            publish(job);
+        });
+    }
+
+    /** Puts every job {@code owner} is running back in the queue (clean shutdown). */
+    public int release(String owner) {
+        Integer released = transactionTemplate.execute(
+                status -> jobRepository.releaseOwned(owner, OcrJob.State.RUNNING, OcrJob.State.QUEUED));
+        return released != null ? released : 0;
+    }
+
+    public long count(OcrJob.State state) {
+        return jobRepository.countByState(state);
+    }
+
+    /** Tells the job's owner about a state change, once the transaction commits. */
+    private void publish(OcrJob job) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("jobId", job.getId());
+        data.put("fileId", job.getUserFileId());
+        data.put("state", job.getState().name());
+        data.put("attempts", job.getAttempts());
+        data.put("titleBlockTextId", job.getTitleBlockTextId());
+        eventBroadcaster.publish(job.getUserId(), "ocr.job", data, "ocr.job:" + job.getId());
+    }
+
+    /**
+     * Delay before the next try after {@code attempts} failures: doubling
+     * from {@code base}, capped at {@code max}, with the upper half jittered
+     * so jobs that failed together do not retry together.
+     */
+    static long backoffMillis(int attempts, long base, long max) {
+        int doublings = Math.min(30, Math.max(0, attempts - 1));
+        long delay = Math.min(max, base << doublings);
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    private static void finish(OcrJob job, OcrJob.State state, String error, LocalDateTime now) {
+        job.setState(state);
+        job.setLeaseOwner(null);
+        job.setLeaseExpiresAt(null);
+        job.setLastError(truncate(error));
+        job.setFinishedAt(now);
+    }
+
+    private static String truncate(String error) {
+        return error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+    }
+}
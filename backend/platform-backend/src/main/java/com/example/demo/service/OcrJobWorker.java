@@ -0,0 +1,207 @@
+package com.example.demo.service;
+
+import com.example.demo.model.OcrJob;
+import com.example.demo.model.TitleBlockText;
+import com.example.demo.model.UserFile;
+import com.example.demo.repository.UserFileRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs queued {@link OcrJob}s on this node.
+ *
+ * A single loop thread polls {@link OcrJobQueue} for as many jobs as there
+ * are free worker slots and extends the leases of the jobs in progress; the
+ * jobs themselves run on virtual threads and go through
+ * {@link OcrScheduler} like any other OCR call. Submitting a job on this node
+ * wakes the loop at once; jobs submitted elsewhere are picked up within one
+ * poll interval by whichever node is free first.
+ */
+@Component
+public class OcrJobWorker {
+
+    private final OcrJobQueue jobQueue;
+    private final OcrService ocrService;
+    private final OcrScheduler ocrScheduler;
+    private final UserFileRepository userFileRepository;
+
+    private final String owner;
+    private final int concurrency;
+    private final long pollMillis;
+    private final long heartbeatMillis;
+    private final ExecutorService executor;
+    private final Semaphore wakeups = new Semaphore(0);
+    private final Map<Long, OcrJob> running = new ConcurrentHashMap<>();
+    private volatile boolean stopping;
+
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong leasesLost = new AtomicLong();
+
+    public OcrJobWorker(OcrJobQueue jobQueue, OcrService ocrService, OcrScheduler ocrScheduler,
+            UserFileRepository userFileRepository,
+            @Value("${ocr.jobs.concurrency:4}") int concurrency,
+            @Value("${ocr.jobs.poll-ms:1000}") long pollMillis,
+            @Value("${ocr.jobs.heartbeat-ms:15000}") long heartbeatMillis) {
+        this.jobQueue = jobQueue;
+        this.ocrService = ocrService;
+        this.ocrScheduler = ocrScheduler;
+        this.userFileRepository = userFileRepository;
+        this.owner = hostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+        this.concurrency = Math.max(1, concurrency);
+        this.pollMillis = pollMillis;
+        this.heartbeatMillis = heartbeatMillis;
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ocr-job-", 1).factory());
+    }
+
+    /** Polls right away instead of at the next interval, e.g. after a submit. */
+    public void wake() {
+        wakeups.release();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Thread loop = new Thread(this::loop, "ocr-job-poller");
+        loop.setDaemon(true);
+        loop.start();
+    }
+
+    private void loop() {
+        long nextHeartbeat = System.currentTimeMillis() + heartbeatMillis;
+        while (!stopping) {
+            try {
+                if (System.currentTimeMillis() >= nextHeartbeat) {
+                    heartbeat();
+                    nextHeartbeat = System.currentTimeMillis() + heartbeatMillis;
+                }
+                int free = concurrency - running.size();
+                if (free > 0) {
+                    for (OcrJob job : jobQueue.claim(owner, free)) {
+                        running.put(job.getId(), job);
+                        executor.submit(() -> run(job));
+                    }
+                }
+                wakeups.tryAcquire(pollMillis, TimeUnit.MILLISECONDS);
+                wakeups.drainPermits();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                System.err.println("OCR job poll failed: " + e.getMessage());
+                try {
+                    Thread.sleep(pollMillis);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void heartbeat() {
+        List<Long> ids = List.copyOf(running.keySet());
+        int held = jobQueue.heartbeat(owner, ids);
+        if (held < ids.size()) {
+            // Another node took some over after a missed heartbeat; their results will be dropped
+            System.err.println("OCR jobs: " + (ids.size() - held) + " of " + ids.size() + " leases lost");
+        }
+    }
+
+    private void run(OcrJob job) {
+        try {
+            Optional<UserFile> fileOpt = userFileRepository.findById(job.getUserFileId());
+            if (fileOpt.isEmpty()) {
+                jobQueue.fail(job.getId(), owner, "File not found", true);
+                failed.incrementAndGet();
+                return;
+            }
+            UserFile userFile = fileOpt.get();
+            OcrService.Recognition recognition = ocrScheduler.call(
+                    job.isBulk() ? OcrScheduler.Priority.BULK : OcrScheduler.Priority.INTERACTIVE,
+                    job.getUserId(), () -> ocrService.recognize(Paths.get(userFile.getFilePath()), job.toBBox()));
+            TitleBlockText saved = jobQueue.complete(job.getId(), owner, userFile, recognition);
+            if (saved != null) {
+                completed.incrementAndGet();
+            } else {
+                leasesLost.incrementAndGet();
+            }
+        } catch (Exception e) {
+            if (stopping) {
+                // Released back to the queue by shutdown()
+                return;
+            }
+            System.err.println("OCR job " + job.getId() + " attempt " + job.getAttempts() + " failed: "
+                    + e.getMessage());
+            failed.incrementAndGet();
+            try {
+                jobQueue.fail(job.getId(), owner, e.getMessage(), false);
+            } catch (Exception ex) {
+                // The lease runs out and another poll retries the job
+                System.err.println("Could not record failure of OCR job " + job.getId() + ": " + ex.getMessage());
+            }
+        } finally {
+            running.remove(job.getId());
+        }
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "node";
+        }
+    }
+
+    /** Lease owner name of this node. */
+    public String getOwner() {
+        return owner;
+    }
+
+    public int getRunning() {
+        return running.size();
+    }
+
+    /** Totals since startup, for jobs run on this node. */
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getLeasesLost() {
+        return leasesLost.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopping = true;
+        wakeups.release();
+        executor.shutdownNow();
+        try {
+            int released = jobQueue.release(owner);
+            if (released > 0) {
+                System.err.println("OCR jobs: released " + released + " running jobs for other nodes");
+            }
+        } catch (Exception e) {
+            System.err.println("Could not release OCR jobs: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,572 @@
+package com.example.demo.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cleans up OCR crops before they are sent to the OCR server.
+ *
+ * Stages: grayscale, adaptive (Bradley) binarization against the local mean,
+ * trimming of blank margins, skew estimation by projection profile (and
+ * straightening when the page is visibly tilted), and downscaling past a
+ * pixel cap. The result is a 1-bit image, so line drawings encode to small
+ * PNGs and the server skips its own color work. Every stage is a loop over
+ * flat arrays, split into row bands run on a ForkJoin pool, with no per-pixel
+ * allocation.
+ *
+ * {@link Result} describes where the output's pixels came from in the input
+ * so word boxes can be mapped back.
+ */
+@Component
+public class OcrPreprocessor {
+
+    public enum Stage {
+        GRAYSCALE, BINARIZE, TRIM, DESKEW, DOWNSCALE, ENCODE
+    }
+
+    private static final int BAND_ROWS = 64;
+    private static final int TRIM_MARGIN = 8;
+    // Ink when darker than this percentage of the local mean
+    private static final int BINARIZE_PERCENT = 85;
+    private static final double SKEW_STEP_DEGREES = 0.25;
+    private static final double MIN_SKEW_DEGREES = 0.5;
+
+    private final boolean enabled;
+    private final int windowPixels;
+    private final double maxSkewDegrees;
+    private final long maxPixels;
+    private final ForkJoinPool pool;
+
+    private final AtomicLongArray stageNanos = new AtomicLongArray(Stage.values().length);
+    private final AtomicLongArray stageRuns = new AtomicLongArray(Stage.values().length);
+    private final AtomicLong payloads = new AtomicLong();
+    private final AtomicLong payloadBytes = new AtomicLong();
+
+    public OcrPreprocessor(@Value("${ocr.preprocess.enabled:true}") boolean enabled,
+            @Value("${ocr.preprocess.window-px:0}") int windowPixels,
+            @Value("${ocr.preprocess.max-skew-degrees:5}") double maxSkewDegrees,
+            @Value("${ocr.preprocess.max-pixels:8000000}") long maxPixels,
+            @Value("${ocr.preprocess.parallelism:0}") int parallelism) {
+        this.enabled = enabled;
+        this.windowPixels = windowPixels;
+        this.maxSkewDegrees = maxSkewDegrees;
+        this.maxPixels = maxPixels;
+        // 0 = one worker per CPU
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Result process(BufferedImage image) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+
+        long start = System.nanoTime();
+        byte[] gray = new byte[w * h];
+        grayscale(image, gray);
+        start = record(Stage.GRAYSCALE, start);
+
+        // Ink = 1, paper = 0, written over the gray values in place
+        binarize(gray, w, h);
+        start = record(Stage.BINARIZE, start);
+
+        int[] box = inkBounds(gray, w, h);
+        int left = 0;
+        int top = 0;
+        byte[] ink = gray;
+        if (box != null) {
+            left = Math.max(0, box[0] - TRIM_MARGIN);
+            top = Math.max(0, box[1] - TRIM_MARGIN);
+            int right = Math.min(w, box[2] + 1 + TRIM_MARGIN);
+            int bottom = Math.min(h, box[3] + 1 + TRIM_MARGIN);
+            if (left > 0 || top > 0 || right < w || bottom < h) {
+                ink = crop(gray, w, left, top, right - left, bottom - top);
+                w = right - left;
+                h = bottom - top;
+            }
+        }
+        start = record(Stage.TRIM, start);
+
+        double skew = box != null ? estimateSkew(ink, w, h) : 0.0;
+        if (Math.abs(skew) >= MIN_SKEW_DEGREES) {
+            ink = straighten(ink, w, h, skew);
+        } else {
+            skew = 0.0;
+        }
+        start = record(Stage.DESKEW, start);
+
+        int regionWidth = w;
+        int regionHeight = h;
+        int factor = 1;
+        if ((long) w * h > maxPixels) {
+            factor = (int) Math.ceil(Math.sqrt((double) w * h / maxPixels));
+            int dw = (w + factor - 1) / factor;
+            int dh = (h + factor - 1) / factor;
+            ink = downscale(ink, w, h, factor, dw, dh);
+            w = dw;
+            h = dh;
+        }
+        start = record(Stage.DOWNSCALE, start);
+
+        BufferedImage out = toBinaryImage(ink, w, h);
+        record(Stage.ENCODE, start);
+        return new Result(out, left, top, 1.0 / factor, skew, regionWidth, regionHeight);
+    }
+
+    private void grayscale(BufferedImage image, byte[] gray) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        if (image.getRaster().getDataBuffer() instanceof DataBufferInt
+                && image.getSampleModel() instanceof SinglePixelPackedSampleModel
+                && image.getType() == BufferedImage.TYPE_INT_RGB) {
+            // Pooled page rasters and their crops: read the packed pixels directly
+            int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            int stride = ((SinglePixelPackedSampleModel) image.getSampleModel()).getScanlineStride();
+            int base = image.getRaster().getDataBuffer().getOffset()
+                    - image.getRaster().getSampleModelTranslateY() * stride
+                    - image.getRaster().getSampleModelTranslateX();
+            forRows(h, (from, to) -> {
+                for (int y = from; y < to; y++) {
+                    int in = base + y * stride;
+                    int out = y * w;
+                    for (int x = 0; x < w; x++) {
+                        gray[out + x] = (byte) luma(data[in + x]);
+                    }
+                }
+            });
+        } else {
+            forRows(h, (from, to) -> {
+                int[] row = new int[w];
+                for (int y = from; y < to; y++) {
+                    image.getRGB(0, y, w, 1, row, 0, w);
+                    int out = y * w;
+                    for (int x = 0; x < w; x++) {
+                        gray[out + x] = (byte) luma(row[x]);
+                    }
+                }
+            });
+        }
+    }
+
+    private static int luma(int rgb) {
+        return (((rgb >> 16) & 0xff) * 77 + ((rgb >> 8) & 0xff) * 150 + (rgb & 0xff) * 29) >> 8;
+    }
+
+    /**
+     * Bradley-Roth: a pixel is ink when it is darker than
+     * {@link #BINARIZE_PERCENT} of the mean of the window around it. Window
+     * sums come from an int integral image; wrap-around cancels out in the
+     * differences, so large crops do not overflow.
+     */
+    private void binarize(byte[] gray, int w, int h) {
+        int[] integral = new int[w * h];
+        forRows(h, (from, to) -> {
+            for (int y = from; y < to; y++) {
+                int sum = 0;
+                int row = y * w;
+                for (int x = 0; x < w; x++) {
+                    sum += gray[row + x] & 0xff;
+                    integral[row + x] = sum;
+                }
+            }
+        });
+        forColumns(w, (from, to) -> {
+            for (int y = 1; y < h; y++) {
+                int row = y * w;
+                int prev = row - w;
+                for (int x = from; x < to; x++) {
+                    integral[row + x] += integral[prev + x];
+                }
+            }
+        });
+
+        // 0 = an eighth of the shorter side, within 16..128 pixels
+        int window = windowPixels > 0 ? windowPixels : Math.min(128, Math.max(16, Math.min(w, h) / 8));
+        int half = Math.max(4, window / 2);
+        forRows(h, (from, to) -> {
+            for (int y = from; y < to; y++) {
+                int y0 = Math.max(0, y - half) - 1;
+                int y1 = Math.min(h - 1, y + half);
+                int row = y * w;
+                for (int x = 0; x < w; x++) {
+                    int x0 = Math.max(0, x - half) - 1;
+                    int x1 = Math.min(w - 1, x + half);
+                    int sum = integral[y1 * w + x1];
+                    if (x0 >= 0) {
+                        sum -= integral[y1 * w + x0];
+                    }
+                    if (y0 >= 0) {
+                        sum -= integral[y0 * w + x1];
+                        if (x0 >= 0) {
+                            sum += integral[y0 * w + x0];
+                        }
+                    }
+                    long count = (long) (x1 - x0) * (y1 - y0);
+                    int value = gray[row + x] & 0xff;
+                    gray[row + x] = (byte) ((long) value * count * 100 < (long) sum * BINARIZE_PERCENT ? 1 : 0);
+                }
+            }
+        });
+    }
+
+    /** {minX, minY, maxX, maxY} of the ink, or null when there is none. */
+    private int[] inkBounds(byte[] ink, int w, int h) {
+        int[] rowMin = new int[h];
+        int[] rowMax = new int[h];
+        forRows(h, (from, to) -> {
+            for (int y = from; y < to; y++) {
+                int row = y * w;
+                int min = -1;
+                int max = -1;
+                for (int x = 0; x < w; x++) {
+                    if (ink[row + x] != 0) {
+                        if (min < 0) {
+                            min = x;
+                        }
+                        max = x;
+                    }
+                }
+                rowMin[y] = min;
+                rowMax[y] = max;
+            }
+        });
+        int minX = Integer.MAX_VALUE;
+        int maxX = -1;
+        int minY = -1;
+        int maxY = -1;
+        for (int y = 0; y < h; y++) {
+            if (rowMin[y] >= 0) {
+                if (minY < 0) {
+                    minY = y;
+                }
+                maxY = y;
+                minX = Math.min(minX, rowMin[y]);
+                maxX = Math.max(maxX, rowMax[y]);
+            }
+        }
+        return minY < 0 ? null : new int[] { minX, minY, maxX, maxY };
+    }
+
+    private byte[] crop(byte[] ink, int w, int left, int top, int cw, int ch) {
+        byte[] out = new byte[cw * ch];
+        forRows(ch, (from, to) -> {
+            for (int y = from; y < to; y++) {
+                System.arraycopy(ink, (top + y) * w + left, out, y * cw, cw);
+            }
+        });
+        return out;
+    }
+
+    /**
+     * Angle (degrees, clockwise positive in image coordinates) at which ink
+     * rows line up best: the shear whose row histogram has the largest sum of
+     * squares. Searched coarse to fine: whole degrees first, then quarter
+     * degrees around the best one.
+     */
+    double estimateSkew(byte[] ink, int w, int h) {
+        int coarseSteps = (int) Math.floor(maxSkewDegrees);
+        if (maxSkewDegrees < SKEW_STEP_DEGREES) {
+            return 0.0;
+        }
+        int margin = (int) Math.ceil(w * Math.tan(Math.toRadians(maxSkewDegrees)));
+
+        double[] coarse = new double[2 * coarseSteps + 1];
+        for (int i = 0; i < coarse.length; i++) {
+            coarse[i] = i - coarseSteps;
+        }
+        long[] coarseScores = scoreAngles(ink, w, h, margin, coarse);
+        long straight = coarseScores[coarseSteps];
+        int bestCoarse = argMax(coarseScores);
+
+        double[] fine = new double[7];
+        for (int i = 0; i < fine.length; i++) {
+            double angle = coarse[bestCoarse] + (i - 3) * SKEW_STEP_DEGREES;
+            fine[i] = Math.max(-maxSkewDegrees, Math.min(maxSkewDegrees, angle));
+        }
+        long[] fineScores = scoreAngles(ink, w, h, margin, fine);
+        int bestFine = argMax(fineScores);
+
+        // Require a clear win over "no skew" so noise never tilts a straight crop
+        if (fineScores[bestFine] < straight * 1.05) {
+            return 0.0;
+        }
+        return fine[bestFine];
+    }
+
+    private long[] scoreAngles(byte[] ink, int w, int h, int margin, double[] degrees) {
+        long[] scores = new long[degrees.length];
+        pool.invoke(new SkewTask(ink, w, h, margin, degrees, scores, 0, degrees.length));
+        return scores;
+    }
+
+    private static int argMax(long[] values) {
+        int best = 0;
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] > values[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private static long skewScore(byte[] ink, int w, int h, int margin, double tan) {
+        int[] bins = new int[h + 2 * margin + 1];
+        // Every row (skipping rows would leave empty bins at angle 0 and favor it), every other column
+        for (int y = 0; y < h; y++) {
+            int row = y * w;
+            for (int x = 0; x < w; x += 2) {
+                if (ink[row + x] != 0) {
+                    bins[(int) Math.round(y - x * tan) + margin]++;
+                }
+            }
+        }
+        long score = 0;
+        for (int count : bins) {
+            score += (long) count * count;
+        }
+        return score;
+    }
+
+    /** Rotates the ink by -skew about the center, nearest neighbor, same size. */
+    private byte[] straighten(byte[] ink, int w, int h, double skewDegrees) {
+        byte[] out = new byte[w * h];
+        double cos = Math.cos(Math.toRadians(skewDegrees));
+        double sin = Math.sin(Math.toRadians(skewDegrees));
+        double cx = w / 2.0;
+        double cy = h / 2.0;
+        forRows(h, (from, to) -> {
+            for (int y = from; y < to; y++) {
+                double dy = y + 0.5 - cy;
+                int row = y * w;
+                for (int x = 0; x < w; x++) {
+                    double dx = x + 0.5 - cx;
+                    int sx = (int) Math.floor(cx + dx * cos - dy * sin);
+                    int sy = (int) Math.floor(cy + dx * sin + dy * cos);
+                    if (sx >= 0 && sx < w && sy >= 0 && sy < h) {
+                        out[row + x] = ink[sy * w + sx];
+                    }
+                }
+            }
+        });
+        return out;
+    }
+
+    /** Block reduce by {@code factor}; a block is ink when a quarter of it is, so thin strokes survive. */
+    private byte[] downscale(byte[] ink, int w, int h, int factor, int dw, int dh) {
+        byte[] out = new byte[dw * dh];
+        forRows(dh, (from, to) -> {
+            for (int dy = from; dy < to; dy++) {
+                int y0 = dy * factor;
+                int y1 = Math.min(h, y0 + factor);
+                for (int dx = 0; dx < dw; dx++) {
+                    int x0 = dx * factor;
+                    int x1 = Math.min(w, x0 + factor);
+                    int count = 0;
+                    for (int y = y0; y < y1; y++) {
+                        int row = y * w;
+                        for (int x = x0; x < x1; x++) {
+                            count += ink[row + x];
+                        }
+                    }
+                    out[dy * dw + dx] = (byte) (count * 4 >= (y1 - y0) * (x1 - x0) ? 1 : 0);
+                }
+            }
+        });
+        return out;
+    }
+
+    /** Packs ink into a TYPE_BYTE_BINARY image (bit 0 = black, 1 = white). */
+    private BufferedImage toBinaryImage(byte[] ink, int w, int h) {
+        BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_BINARY);
+        byte[] packed = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        int stride = (w + 7) / 8;
+        forRows(h, (from, to) -> {
+            for (int y = from; y < to; y++) {
+                int in = y * w;
+                int out = y * stride;
+                for (int bx = 0; bx < stride; bx++) {
+                    int bits = 0;
+                    int x0 = bx * 8;
+                    for (int i = 0; i < 8; i++) {
+                        int x = x0 + i;
+                        bits = (bits << 1) | (x < w && ink[in + x] != 0 ? 0 : 1);
+                    }
+                    packed[out + bx] = (byte) bits;
+                }
+            }
+        });
+        return image;
+    }
+
+    private long record(Stage stage, long start) {
+        long now = System.nanoTime();
+        stageNanos.addAndGet(stage.ordinal(), now - start);
+        stageRuns.incrementAndGet(stage.ordinal());
+        return now;
+    }
+
+    /** Mean milliseconds per crop for each stage since startup. */
+    public Map<Stage, Double> getStageMillis() {
+        Map<Stage, Double> millis = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            long runs = stageRuns.get(stage.ordinal());
+            millis.put(stage, runs == 0 ? 0.0 : stageNanos.get(stage.ordinal()) / 1e6 / runs);
+        }
+        return millis;
+    }
+
+    public long getProcessed() {
+        return stageRuns.get(Stage.ENCODE.ordinal());
+    }
+
+    /** Size of an encoded crop as sent to the OCR server (preprocessed or not). */
+    public void recordPayload(long bytes) {
+        payloads.incrementAndGet();
+        payloadBytes.addAndGet(bytes);
+    }
+
+    public long getAveragePayloadBytes() {
+        long count = payloads.get();
+        return count == 0 ? 0 : payloadBytes.get() / count;
+    }
+
+    private void forRows(int rows, RowRange body) {
+        pool.invoke(new BandTask(body, 0, rows));
+    }
+
+    private void forColumns(int columns, RowRange body) {
+        pool.invoke(new BandTask(body, 0, columns));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @FunctionalInterface
+    private interface RowRange {
+        void run(int from, int to);
+    }
+
+    private static final class BandTask extends RecursiveAction {
+        private final RowRange body;
+        private final int from;
+        private final int to;
+
+        BandTask(RowRange body, int from, int to) {
+            this.body = body;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BAND_ROWS) {
+                body.run(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new BandTask(body, from, mid), new BandTask(body, mid, to));
+        }
+    }
+
+    private static final class SkewTask extends RecursiveAction {
+        private final byte[] ink;
+        private final int w;
+        private final int h;
+        private final int margin;
+        private final double[] degrees;
+        private final long[] scores;
+        private final int from;
+        private final int to;
+
+        SkewTask(byte[] ink, int w, int h, int margin, double[] degrees, long[] scores, int from, int to) {
+            this.ink = ink;
+            this.w = w;
+            this.h = h;
+            this.margin = margin;
+            this.degrees = degrees;
+            this.scores = scores;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                scores[from] = skewScore(ink, w, h, margin, Math.tan(Math.toRadians(degrees[from])));
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new SkewTask(ink, w, h, margin, degrees, scores, from, mid),
+                    new SkewTask(ink, w, h, margin, degrees, scores, mid, to));
+        }
+    }
+
+    /**
+     * A preprocessed crop and how its pixels map back to the input:
+     * output pixels are {@code scale} input pixels, taken from the input
+     * region at ({@code offsetX}, {@code offsetY}) after straightening it by
+     * {@code skewDegrees} about the region's center.
+     */
+    public static final class Result {
+        private final BufferedImage image;
+        private final int offsetX;
+        private final int offsetY;
+        private final double scale;
+        private final double skewDegrees;
+        private final int regionWidth;
+        private final int regionHeight;
+
+        Result(BufferedImage image, int offsetX, int offsetY, double scale, double skewDegrees, int regionWidth,
+                int regionHeight) {
+            this.image = image;
+            this.offsetX = offsetX;
+            this.offsetY = offsetY;
+            this.scale = scale;
+            this.skewDegrees = skewDegrees;
+            this.regionWidth = regionWidth;
+            this.regionHeight = regionHeight;
+        }
+
+        public BufferedImage getImage() {
+            return image;
+        }
+
+        public double getSkewDegrees() {
+            return skewDegrees;
+        }
+
+        /** Maps a point on the output image to the input image, in place. */
+        public void toInput(double[] point, int offset) {
+            double x = point[offset] / scale;
+            double y = point[offset + 1] / scale;
+            if (skewDegrees != 0.0) {
+                double cos = Math.cos(Math.toRadians(skewDegrees));
+                double sin = Math.sin(Math.toRadians(skewDegrees));
+                double cx = regionWidth / 2.0;
+                double cy = regionHeight / 2.0;
+                double dx = x - cx;
+                double dy = y - cy;
+                x = cx + dx * cos - dy * sin;
+                y = cy + dx * sin + dy * cos;
+            }
+            point[offset] = offsetX + x;
+            point[offset + 1] = offsetY + y;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.demo.service;
+
+import com.example.demo.client.AIServiceClient;
+import com.example.demo.dto.OcrWord;
+import com.example.demo.model.TitleBlockText;
+import com.example.demo.model.UserFile;
+import com.example.demo.repository.TitleBlockTextRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores the outcome of one OCR crop: its words are merged into the page
+ * layer and the file's title block record is updated (or created on the
+ * first run). Writing the same recognition twice leaves the same rows, so a
+ * retried crop never duplicates anything; a file has one title block row,
+ * updated under a row lock. The in-memory search indexes are
+ * only updated, and the user's open views told, once the transaction commits.
+ */
+@Service
+public class OcrResultWriter {
+
+    private final OcrService ocrService;
+    private final OcrWordStore ocrWordStore;
+    private final TitleBlockTextRepository titleBlockTextRepository;
+    private final DrawingSearchIndex drawingSearchIndex;
+    private final PageTextIndex pageTextIndex;
+    private final EventBroadcaster eventBroadcaster;
+
+    public OcrResultWriter(OcrService ocrService, OcrWordStore ocrWordStore,
+            TitleBlockTextRepository titleBlockTextRepository, DrawingSearchIndex drawingSearchIndex,
+            PageTextIndex pageTextIndex, EventBroadcaster eventBroadcaster) {
+        this.ocrService = ocrService;
+        this.ocrWordStore = ocrWordStore;
+        this.titleBlockTextRepository = titleBlockTextRepository;
+        this.drawingSearchIndex = drawingSearchIndex;
+        this.pageTextIndex = pageTextIndex;
+        this.eventBroadcaster = eventBroadcaster;
+    }
+
+    @Transactional
+    public TitleBlockText write(UserFile userFile, OcrService.Recognition recognition) {
+        AIServiceClient.OcrResult ocrResult = recognition.getResult();
+
+        // Keep the word boxes so the viewer can highlight text later
+        List<OcrWord> pageWords = ocrWordStore.mergeRegion(userFile, recognition);
+
+        // The file's single record, created on the first run and locked, so crops of the
+        // same file finishing on two nodes update it in turn instead of inserting twice
+        titleBlockTextRepository.insertIfAbsent(userFile.getId());
+        TitleBlockText titleBlockText = titleBlockTextRepository.lockByUserFileId(userFile.getId())
+                .orElseGet(TitleBlockText::new);
+        titleBlockText.setUserFile(userFile);
+        titleBlockText.setExtractedText(ocrResult.getFullText());
+
+        // Parse and update fields
+        TitleBlockText parsed = ocrService.parseResult(ocrResult, userFile);
+        titleBlockText.setProjectName(parsed.getProjectName());
+        titleBlockText.setDrawingName(parsed.getDrawingName());
+        titleBlockText.setDrawingNumber(parsed.getDrawingNumber());
+        titleBlockText.setScale(parsed.getScale());
+        titleBlockText.setProcessedAt(LocalDateTime.now());
+
+        TitleBlockText saved = titleBlockTextRepository.save(titleBlockText);
+        Runnable indexUpdate = () -> {
+            pageTextIndex.indexPage(userFile.getUserId(), userFile.getId(), recognition.getPage(), pageWords);
+            drawingSearchIndex.index(saved);
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    indexUpdate.run();
+                }
+            });
+        } else {
+            indexUpdate.run();
+        }
+        eventBroadcaster.publish(userFile.getUserId(), "ocr.result", Map.of("fileId", userFile.getId(),
+                "page", recognition.getPage(), "titleBlockTextId", saved.getId()), "ocr.result:" + userFile.getId());
+        return saved;
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.demo.service;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.pdfbox.text.TextPosition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Picks the render scale for an OCR crop from the size of its text.
+ *
+ * The OCR model reads best when glyphs are a few dozen pixels tall; a fixed
+ * scale gives tiny text too few pixels and large text many times more than
+ * needed. Glyph height comes from the PDF text layer inside the region when
+ * there is one, otherwise from the text line heights of a cheap low-scale
+ * probe render. The scale is then capped so the crop stays under a pixel
+ * budget, bounding both render time and the OCR payload.
+ */
+@Component
+public class OcrScalePlanner {
+
+    /** Probe renders are at most 72 DPI and this many pixels. */
+    static final float PROBE_SCALE = 1.0f;
+    static final long MAX_PROBE_PIXELS = 1_000_000L;
+
+    private static final int DARK_LUMA = 128;
+    private static final double MIN_ROW_INK = 0.01;
+    private static final double MAX_ROW_INK = 0.6;
+    private static final int MIN_LINE_ROWS = 2;
+
+    private final double targetGlyphPixels;
+    private final float minScale;
+    private final float maxScale;
+    private final long maxCropPixels;
+
+    public OcrScalePlanner(@Value("${ocr.render.target-glyph-px:32}") double targetGlyphPixels,
+            @Value("${ocr.render.min-scale:1.0}") float minScale,
+            @Value("${ocr.render.max-scale:8.0}") float maxScale,
+            @Value("${ocr.render.max-crop-pixels:8000000}") long maxCropPixels) {
+        this.targetGlyphPixels = targetGlyphPixels;
+        this.minScale = minScale;
+        this.maxScale = maxScale;
+        this.maxCropPixels = maxCropPixels;
+    }
+
+    /**
+     * Scale for a region of {@code width} x {@code height} page units whose
+     * glyphs are {@code glyphHeight} units tall ({@code fallback} when the
+     * height is unknown), clamped and capped to the crop pixel budget.
+     */
+    public float scaleFor(Double glyphHeight, double width, double height, float fallback) {
+        float scale = glyphHeight != null && glyphHeight > 0
+                ? (float) (targetGlyphPixels / glyphHeight)
+                : fallback;
+        scale = Math.max(minScale, Math.min(maxScale, scale));
+        return Math.min(scale, capScale(width, height, maxCropPixels));
+    }
+
+    /**
+     * Scale (at most 1) for a crop of an image file: pixels cannot be added,
+     * so crops are only shrunk when their text is larger than the target or
+     * they exceed the pixel budget.
+     */
+    public float imageScaleFor(Double glyphPixels, int width, int height) {
+        float scale = glyphPixels != null && glyphPixels > targetGlyphPixels
+                ? (float) (targetGlyphPixels / glyphPixels)
+                : 1.0f;
+        return Math.min(scale, capScale(width, height, maxCropPixels));
+    }
+
+    /** Largest scale at which the region has at most {@code maxPixels} pixels. */
+    static float capScale(double width, double height, long maxPixels) {
+        return (float) Math.sqrt(maxPixels / Math.max(1.0, width * height));
+    }
+
+    /** Scale for the probe render of a region: 72 DPI unless that exceeds the probe pixel cap. */
+    public static float probeScale(double width, double height) {
+        return Math.min(PROBE_SCALE, capScale(width, height, MAX_PROBE_PIXELS));
+    }
+
+    /**
+     * Median glyph height (page units) of the text layer inside the region,
+     * in displayed page coordinates, or null if the region has no text.
+     */
+    public Double textLayerGlyphHeight(PDDocument doc, int pageIndex, double x, double y, double width,
+            double height) throws IOException {
+        List<Float> heights = new ArrayList<>();
+        PDFTextStripper stripper = new PDFTextStripper() {
+            @Override
+            protected void writeString(String text, List<TextPosition> textPositions) {
+                for (TextPosition position : textPositions) {
+                    // getX/getY are adjusted for page rotation; getY is the baseline
+                    float px = position.getX();
+                    float py = position.getY();
+                    if (px >= x && px <= x + width && py >= y && py <= y + height
+                            && position.getHeightDir() > 0 && position.getUnicode() != null
+                            && !position.getUnicode().isBlank()) {
+                        heights.add(position.getHeightDir());
+                    }
+                }
+            }
+        };
+        stripper.setStartPage(pageIndex + 1);
+        stripper.setEndPage(pageIndex + 1);
+        stripper.writeText(doc, new StringWriter());
+        if (heights.isEmpty()) {
+            return null;
+        }
+        Collections.sort(heights);
+        return (double) heights.get(heights.size() / 2);
+    }
+
+    /**
+     * Median height in pixels of the text lines in a rendered image, from its
+     * horizontal ink profile, or null if no lines were found. Rows almost
+     * fully inked (table rules, borders) split lines instead of joining them.
+     */
+    public static Double rasterGlyphHeight(BufferedImage image) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        int[] row = new int[w];
+        List<Integer> runs = new ArrayList<>();
+        int run = 0;
+        for (int y = 0; y < h; y++) {
+            image.getRGB(0, y, w, 1, row, 0, w);
+            int ink = 0;
+            for (int rgb : row) {
+                int luma = (((rgb >> 16) & 0xff) * 299 + ((rgb >> 8) & 0xff) * 587 + (rgb & 0xff) * 114) / 1000;
+                if (luma < DARK_LUMA) {
+                    ink++;
+                }
+            }
+            double fraction = (double) ink / w;
+            if (fraction >= MIN_ROW_INK && fraction <= MAX_ROW_INK) {
+                run++;
+            } else {
+                if (run >= MIN_LINE_ROWS) {
+                    runs.add(run);
+                }
+                run = 0;
+            }
+        }
+        if (run >= MIN_LINE_ROWS) {
+            runs.add(run);
+        }
+        if (runs.isEmpty()) {
+            return null;
+        }
+        Collections.sort(runs);
+        return (double) runs.get(runs.size() / 2);
+    }
+}
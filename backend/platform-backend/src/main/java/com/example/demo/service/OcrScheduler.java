@@ -0,0 +1,283 @@
+package com.example.demo.service;
+
+import com.example.demo.config.ResourceGuards;
+import com.example.demo.util.ResourceGuard;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission control for OCR work (rendering a region or page and sending it
+ * to the OCR server).
+ *
+ * Callers run their work on their own (virtual) thread but first wait for
+ * one of a fixed number of slots, sized like the OCR server guard.
+ * Interactive work (a user waiting on a crop) always goes before bulk work
+ * (whole-sheet indexing), and bulk work may never take the last
+ * {@code reserved-interactive} slots, so a click does not queue behind
+ * multi-second page OCR calls already on the server. Within a class, users
+ * share slots by start-time fair queuing: a user with 500 queued pages and a
+ * user with one alternate instead of the second waiting for the first.
+ */
+@Service
+public class OcrScheduler {
+
+    public enum Priority {
+        INTERACTIVE, BULK
+    }
+
+    /** Recent waits kept per class for the percentile figures. */
+    private static final int WAIT_SAMPLES = 1024;
+
+    private final int slots;
+    private final int bulkSlots;
+    private final long timeoutMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Priority, ClassState> classes = new EnumMap<>(Priority.class);
+    private int running;
+
+    public OcrScheduler(ResourceGuards resourceGuards,
+            @Value("${ocr.scheduler.slots:0}") int slots,
+            @Value("${ocr.scheduler.reserved-interactive:1}") int reservedInteractive,
+            @Value("${guards.timeout-ms:30000}") long timeoutMillis) {
+        // 0 = as many as the OCR server guard lets through
+        this.slots = slots > 0 ? slots : resourceGuards.aiServer().getPermits();
+        this.bulkSlots = Math.max(1, this.slots - Math.max(0, reservedInteractive));
+        this.timeoutMillis = timeoutMillis;
+        for (Priority priority : Priority.values()) {
+            classes.put(priority, new ClassState());
+        }
+    }
+
+    /**
+     * Runs {@code call} once a slot is granted to it. Interactive callers
+     * wait at most the guard timeout; bulk callers wait as long as it takes.
+     *
+     * @throws ResourceGuard.BusyException if an interactive call timed out
+     *                                     waiting for a slot
+     */
+    public <T> T call(Priority priority, Long userId, ResourceGuard.GuardedCall<T> call) throws Exception {
+        Ticket ticket = acquire(priority, userId);
+        try {
+            return call.call();
+        } finally {
+            release(ticket);
+        }
+    }
+
+    private Ticket acquire(Priority priority, Long userId) {
+        ClassState state = classes.get(priority);
+        lock.lock();
+        try {
+            Ticket ticket = state.queue.add(userId, lock.newCondition());
+            ticket.priority = priority;
+            dispatch();
+            long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            try {
+                while (!ticket.granted) {
+                    if (priority == Priority.BULK) {
+                        ticket.condition.await();
+                    } else if (remaining <= 0) {
+                        state.queue.remove(ticket);
+                        state.rejected++;
+                        throw new ResourceGuard.BusyException("OCR is busy, try again later");
+                    } else {
+                        remaining = ticket.condition.awaitNanos(remaining);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (ticket.granted) {
+                    // Granted while being interrupted: hand the slot on
+                    releaseLocked(ticket);
+                } else {
+                    state.queue.remove(ticket);
+                }
+                throw new ResourceGuard.BusyException("Interrupted while waiting for OCR");
+            }
+            return ticket;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(Ticket ticket) {
+        lock.lock();
+        try {
+            releaseLocked(ticket);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void releaseLocked(Ticket ticket) {
+        ClassState state = classes.get(ticket.priority);
+        running--;
+        state.running--;
+        state.completed++;
+        dispatch();
+    }
+
+    /** Hands free slots to the next tickets; caller holds the lock. */
+    private void dispatch() {
+        ClassState interactive = classes.get(Priority.INTERACTIVE);
+        ClassState bulk = classes.get(Priority.BULK);
+        while (running < slots) {
+            Ticket next = interactive.queue.poll();
+            ClassState state = interactive;
+            if (next == null && bulk.running < bulkSlots) {
+                next = bulk.queue.poll();
+                state = bulk;
+            }
+            if (next == null) {
+                return;
+            }
+            running++;
+            state.running++;
+            state.recordWait(System.nanoTime() - next.enqueuedNanos);
+            next.granted = true;
+            next.condition.signal();
+        }
+    }
+
+    public int getSlots() {
+        return slots;
+    }
+
+    public int getBulkSlots() {
+        return bulkSlots;
+    }
+
+    /**
+     * Per class: queued and running calls, completed and rejected counts,
+     * and mean, p99 and max wait in milliseconds over recent calls.
+     */
+    public Map<String, Map<String, Object>> getStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            for (Map.Entry<Priority, ClassState> entry : classes.entrySet()) {
+                ClassState state = entry.getValue();
+                Map<String, Object> values = new LinkedHashMap<>();
+                values.put("queued", state.queue.size());
+                values.put("running", state.running);
+                values.put("completed", state.completed);
+                values.put("rejected", state.rejected);
+                values.put("meanWaitMillis", state.waitPercentile(-1));
+                values.put("p99WaitMillis", state.waitPercentile(0.99));
+                values.put("maxWaitMillis", state.waitPercentile(1.0));
+                stats.put(entry.getKey().name().toLowerCase(), values);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return stats;
+    }
+
+    private static final class ClassState {
+        final FairQueue queue = new FairQueue();
+        int running;
+        long completed;
+        long rejected;
+        private final long[] waits = new long[WAIT_SAMPLES];
+        private int nextWait;
+        private int waitSamples;
+
+        void recordWait(long nanos) {
+            waits[nextWait] = nanos;
+            nextWait = (nextWait + 1) % WAIT_SAMPLES;
+            waitSamples = Math.min(waitSamples + 1, WAIT_SAMPLES);
+        }
+
+        /** Wait at the given quantile of recent samples, or the mean for a negative quantile. */
+        double waitPercentile(double quantile) {
+            int n = waitSamples;
+            if (n == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(waits, n);
+            if (quantile < 0) {
+                long sum = 0;
+                for (long wait : sorted) {
+                    sum += wait;
+                }
+                return sum / (double) n / 1_000_000.0;
+            }
+            Arrays.sort(sorted);
+            int index = Math.min(n - 1, (int) Math.ceil(quantile * n) - 1);
+            return sorted[Math.max(0, index)] / 1_000_000.0;
+        }
+    }
+
+    static final class Ticket {
+        final Long userId;
+        final double startTag;
+        final long seq;
+        final Condition condition;
+        final long enqueuedNanos = System.nanoTime();
+        Priority priority;
+        boolean granted;
+
+        Ticket(Long userId, double startTag, long seq, Condition condition) {
+            this.userId = userId;
+            this.startTag = startTag;
+            this.seq = seq;
+            this.condition = condition;
+        }
+    }
+
+    /**
+     * Start-time fair queue over users. Each ticket is tagged with
+     * max(virtual time, the user's previous finish tag) and served in tag
+     * order; virtual time advances to the tag of the ticket last served. A
+     * user who has been idle starts at the current virtual time and so gets
+     * no credit for it. Every call costs one unit and all users weigh the
+     * same. Not thread-safe; guarded by the scheduler lock.
+     */
+    static final class FairQueue {
+        private final PriorityQueue<Ticket> queue = new PriorityQueue<>(
+                Comparator.comparingDouble((Ticket t) -> t.startTag).thenComparingLong(t -> t.seq));
+        private final Map<Long, Double> lastFinish = new HashMap<>();
+        private double virtualTime;
+        private long seq;
+
+        Ticket add(Long userId, Condition condition) {
+            double start = Math.max(virtualTime, lastFinish.getOrDefault(userId, 0.0));
+            lastFinish.put(userId, start + 1.0);
+            Ticket ticket = new Ticket(userId, start, seq++, condition);
+            queue.add(ticket);
+            return ticket;
+        }
+
+        Ticket poll() {
+            Ticket ticket = queue.poll();
+            if (ticket != null) {
+                virtualTime = Math.max(virtualTime, ticket.startTag);
+            }
+            if (queue.isEmpty()) {
+                // Nobody is backlogged: finish tags carry no more information
+                lastFinish.clear();
+            }
+            return ticket;
+        }
+
+        void remove(Ticket ticket) {
+            queue.remove(ticket);
+        }
+
+        int size() {
+            return queue.size();
+        }
+    }
+}
@@ -1,12 +1,17 @@
 package com.example.demo.service;
 
 import com.example.demo.client.AIServiceClient;
+import com.example.demo.config.ResourceGuards;
+import com.example.demo.dto.OcrWord;
 import com.example.demo.model.BBox;
 import com.example.demo.model.TitleBlockText;
 import com.example.demo.model.UserFile;
+import com.example.demo.util.RotationGeometry;
 import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.rendering.PDFRenderer;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.apache.pdfbox.Loader;
 
@@ -16,31 +21,103 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 @Service
 public class OcrService {
 
+    // Used when no glyph height can be estimated for a region
+    private static final float PDF_SCALE = 3.0f;
+
     @Autowired
     private AIServiceClient aiServiceClient;
 
+    @Autowired
+    private TitleBlockLayoutParser layoutParser;
+
+    @Autowired
+    private ResourceGuards resourceGuards;
+
+    @Autowired
+    private RenderBudget renderBudget;
+
+    @Autowired
+    private RasterPool rasterPool;
+
+    @Autowired
+    private OcrScalePlanner scalePlanner;
+
+    @Autowired
+    private OcrPreprocessor preprocessor;
+
+    @Value("${render.min-scale:1.0}")
+    private float minRenderScale;
+
     public String performOcr(Path filePath, BBox bbox) throws IOException, AIServiceClient.AIServiceException {
+        return recognize(filePath, bbox).getResult().getFullText();
+    }
+
+    /**
+     * Runs OCR on the bbox crop and returns the full result, including the
+     * per-word boxes and the crop geometry needed to map them back to the page.
+     */
+    public Recognition recognize(Path filePath, BBox bbox)
+            throws IOException, AIServiceClient.AIServiceException {
         File file = filePath.toFile();
         BufferedImage image = null;
+        int pageNumber = (bbox.getPage() != null && bbox.getPage() > 0) ? bbox.getPage() : 1;
+        // Get rotation from BBox (default to 0 if null)
+        int rotation = (bbox.getRotation() != null) ? bbox.getRotation() : 0;
+        float scale = 1.0f;
+        int x = 0;
+        int y = 0;
 
         if (file.getName().toLowerCase().endsWith(".pdf")) {
             // PDFBox 3.x uses Loader.loadPDF(file)
             try (PDDocument doc = Loader.loadPDF(file)) {
-                PDFRenderer pdfRenderer = new PDFRenderer(doc);
-                int pageIndex = (bbox.getPage() != null && bbox.getPage() > 0) ? bbox.getPage() - 1 : 0;
-                float scale = 3.0f;
-                image = pdfRenderer.renderImage(pageIndex, scale);
+                PDPage page = doc.getPage(pageNumber - 1);
+                PDRectangle cropBox = page.getCropBox();
+                // The bbox is in displayed page units (after the page's own rotation)
+                double pageWidth = RotationGeometry.rotatedWidth(page.getRotation(), cropBox.getWidth(),
+                        cropBox.getHeight());
+                double pageHeight = RotationGeometry.rotatedHeight(page.getRotation(), cropBox.getWidth(),
+                        cropBox.getHeight());
+                double left = Math.max(0, bbox.getX());
+                double top = Math.max(0, bbox.getY());
+                double width = Math.min(bbox.getWidth(), pageWidth - left);
+                double height = Math.min(bbox.getHeight(), pageHeight - top);
+                if (width <= 0 || height <= 0) {
+                    left = 0;
+                    top = 0;
+                    width = pageWidth;
+                    height = pageHeight;
+                }
 
-                int x = (int) (bbox.getX() * scale);
-                int y = (int) (bbox.getY() * scale);
-                int w = (int) (bbox.getWidth() * scale);
-                int h = (int) (bbox.getHeight() * scale);
+                scale = planScale(doc, pageNumber - 1, left, top, width, height);
+                try (RenderBudget.Reservation reservation = renderBudget.reserve(width, height, scale,
+                        Math.min(minRenderScale, scale));
+                        RasterPool.Lease crop = renderRegion(doc, pageNumber - 1, left, top, width, height,
+                                reservation.getScale())) {
+                    // Possibly less than asked for when render memory is short
+                    scale = reservation.getScale();
+                    // Snap the origin to the pixel grid the region was rendered on
+                    double originX = Math.floor(left * scale) / scale;
+                    double originY = Math.floor(top * scale) / scale;
+                    // Encode while the reservation and lease are held
+                    return recognizeImage(crop.getImage(), pageNumber, originX, originY, scale, rotation);
+                }
+            }
+        } else {
+            image = ImageIO.read(file);
+            if (image != null) {
+                x = bbox.getX().intValue();
+                y = bbox.getY().intValue();
+                int w = bbox.getWidth().intValue();
+                int h = bbox.getHeight().intValue();
 
                 x = Math.max(0, x);
                 y = Math.max(0, y);
@@ -49,22 +126,16 @@ public class OcrService {
 
                 if (w > 0 && h > 0) {
                     image = image.getSubimage(x, y, w, h);
+                } else {
+                    x = 0;
+                    y = 0;
+                }
+                // Image pixels are fixed: only shrink crops whose text is larger than needed or that exceed the cap
+                scale = scalePlanner.imageScaleFor(OcrScalePlanner.rasterGlyphHeight(image), image.getWidth(),
+                        image.getHeight());
+                if (scale < 1.0f) {
+                    image = resize(image, scale);
                 }
-            }
-        } else {
-            image = ImageIO.read(file);
-            int x = bbox.getX().intValue();
-            int y = bbox.getY().intValue();
-            int w = bbox.getWidth().intValue();
-            int h = bbox.getHeight().intValue();
-
-            x = Math.max(0, x);
-            y = Math.max(0, y);
-            w = Math.min(w, image.getWidth() - x);
-            h = Math.min(h, image.getHeight() - y);
-
-            if (w > 0 && h > 0) {
-                image = image.getSubimage(x, y, w, h);
             }
         }
 
@@ -72,20 +143,92 @@ public class OcrService {
             throw new IOException("Could not load image for OCR");
         }
 
+        // Crop origin in image pixels; scale is crop pixels per image pixel
+        return recognizeImage(image, pageNumber, x, y, scale, rotation);
+    }
+
+    private static BufferedImage resize(BufferedImage image, float scale) {
+        int w = Math.max(1, Math.round(image.getWidth() * scale));
+        int h = Math.max(1, Math.round(image.getHeight() * scale));
+        BufferedImage resized = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        java.awt.Graphics2D g = resized.createGraphics();
+        try {
+            g.setRenderingHint(java.awt.RenderingHints.KEY_INTERPOLATION,
+                    java.awt.RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, w, h, java.awt.Color.WHITE, null);
+        } finally {
+            g.dispose();
+        }
+        return resized;
+    }
+
+    /**
+     * Render scale for a PDF region: from the text layer's glyph height, or
+     * from a low-scale probe render when the region has no text layer.
+     */
+    private float planScale(PDDocument doc, int pageIndex, double left, double top, double width, double height)
+            throws IOException {
+        Double glyphHeight = scalePlanner.textLayerGlyphHeight(doc, pageIndex, left, top, width, height);
+        if (glyphHeight == null) {
+            float probeScale = OcrScalePlanner.probeScale(width, height);
+            try (RenderBudget.Reservation reservation = renderBudget.reserve(width, height, probeScale, probeScale);
+                    RasterPool.Lease probe = renderRegion(doc, pageIndex, left, top, width, height, probeScale)) {
+                Double lineHeight = OcrScalePlanner.rasterGlyphHeight(probe.getImage());
+                glyphHeight = lineHeight != null ? lineHeight / probeScale : null;
+            }
+        }
+        return scalePlanner.scaleFor(glyphHeight, width, height, PDF_SCALE);
+    }
+
+    /**
+     * Renders a region of a page into a pooled raster under the render guard.
+     */
+    public RasterPool.Lease renderRegion(PDDocument doc, int pageIndex, double x, double y, double width,
+            double height, float scale) throws IOException {
+        resourceGuards.render().acquire();
+        try {
+            return rasterPool.renderRegion(doc, pageIndex, x, y, width, height, scale);
+        } finally {
+            resourceGuards.render().release();
+        }
+    }
+
+    /**
+     * Renders a page into a pooled raster under the render guard.
+     */
+    public RasterPool.Lease renderPage(PDDocument doc, int pageIndex, float scale) throws IOException {
+        resourceGuards.render().acquire();
+        try {
+            return rasterPool.renderPage(doc, pageIndex, scale);
+        } finally {
+            resourceGuards.render().release();
+        }
+    }
+
+    /**
+     * Sends an already rendered/cropped image to the OCR server.
+     *
+     * @param originX page x of the image's left edge (page units)
+     * @param originY page y of the image's top edge (page units)
+     * @param scale   image pixels per page unit
+     */
+    public Recognition recognizeImage(BufferedImage image, int pageNumber, double originX, double originY,
+            double scale, int rotation) throws IOException, AIServiceClient.AIServiceException {
+        // Binarized, trimmed and straightened 1-bit crop; word boxes are mapped back through it
+        OcrPreprocessor.Result prepared = preprocessor.isEnabled() ? preprocessor.process(image) : null;
+        BufferedImage sent = prepared != null ? prepared.getImage() : image;
+
         // Save cropped image to temporary file for Python OCR server
         Path tempImagePath = Files.createTempFile("ocr_crop_", ".png");
         try {
             File tempImageFile = tempImagePath.toFile();
-            ImageIO.write(image, "png", tempImageFile);
-
-            // Get rotation from BBox (default to 0 if null)
-            int rotation = (bbox.getRotation() != null) ? bbox.getRotation() : 0;
+            ImageIO.write(sent, "png", tempImageFile);
+            preprocessor.recordPayload(Files.size(tempImagePath));
 
             // Call Python OCR server with rotation
             AIServiceClient.OcrResult result = aiServiceClient.extractText(tempImageFile, rotation);
-
-            // Return full text from OCR result
-            return result.getFullText();
+            return new Recognition(result, pageNumber, originX, originY, scale,
+                    image.getWidth(), image.getHeight(), rotation, prepared, sent.getWidth(), sent.getHeight());
         } finally {
             // Clean up temporary file
             Files.deleteIfExists(tempImagePath);
@@ -106,6 +249,26 @@ public class OcrService {
         return result;
     }
 
+    /**
+     * Parses an OCR result, pairing labels with values by word position first
+     * and falling back to the line-based regexes for fields the layout pass
+     * could not resolve.
+     */
+    public TitleBlockText parseResult(AIServiceClient.OcrResult ocrResult, UserFile userFile) {
+        TitleBlockText result = parseText(ocrResult.getFullText(), userFile);
+        if (ocrResult.getData() == null) {
+            return result;
+        }
+
+        Map<TitleBlockLayoutParser.Field, String> values = layoutParser.parse(ocrResult.getData().getDetails());
+        result.setProjectName(values.getOrDefault(TitleBlockLayoutParser.Field.PROJECT_NAME, result.getProjectName()));
+        result.setDrawingName(values.getOrDefault(TitleBlockLayoutParser.Field.DRAWING_NAME, result.getDrawingName()));
+        result.setDrawingNumber(
+                values.getOrDefault(TitleBlockLayoutParser.Field.DRAWING_NUMBER, result.getDrawingNumber()));
+        result.setScale(values.getOrDefault(TitleBlockLayoutParser.Field.SCALE, result.getScale()));
+        return result;
+    }
+
     private String findValue(String text, String regex) {
         Pattern pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
         Matcher matcher = pattern.matcher(text);
@@ -114,4 +277,103 @@ public class OcrService {
         }
         return null;
     }
+
+    /**
+     * OCR result of one crop plus where that crop sits on the page.
+     *
+     * Word boxes come back in the coordinates of the (possibly rotated) crop
+     * image; {@link #toPageWords()} maps them back to page units, the same
+     * units {@link BBox} uses (PDF points or image pixels).
+     */
+    public static class Recognition {
+        private final AIServiceClient.OcrResult result;
+        private final int page;
+        private final double originX;
+        private final double originY;
+        private final double scale;
+        private final int cropWidth;
+        private final int cropHeight;
+        private final int rotation;
+        private final OcrPreprocessor.Result prepared;
+        private final int sentWidth;
+        private final int sentHeight;
+
+        public Recognition(AIServiceClient.OcrResult result, int page, double originX, double originY, double scale,
+                int cropWidth, int cropHeight, int rotation) {
+            this(result, page, originX, originY, scale, cropWidth, cropHeight, rotation, null, cropWidth, cropHeight);
+        }
+
+        /**
+         * @param prepared  preprocessing applied to the crop before it was sent (null if none)
+         * @param sentWidth width of the image actually sent, before the server's rotation
+         */
+        public Recognition(AIServiceClient.OcrResult result, int page, double originX, double originY, double scale,
+                int cropWidth, int cropHeight, int rotation, OcrPreprocessor.Result prepared, int sentWidth,
+                int sentHeight) {
+            this.result = result;
+            this.page = page;
+            this.originX = originX;
+            this.originY = originY;
+            this.scale = scale;
+            this.cropWidth = cropWidth;
+            this.cropHeight = cropHeight;
+            this.rotation = RotationGeometry.normalize(rotation);
+            this.prepared = prepared;
+            this.sentWidth = sentWidth;
+            this.sentHeight = sentHeight;
+        }
+
+        public AIServiceClient.OcrResult getResult() {
+            return result;
+        }
+
+        public int getPage() {
+            return page;
+        }
+
+        public double getOriginX() {
+            return originX;
+        }
+
+        public double getOriginY() {
+            return originY;
+        }
+
+        public double getWidth() {
+            return cropWidth / scale;
+        }
+
+        public double getHeight() {
+            return cropHeight / scale;
+        }
+
+        public List<OcrWord> toPageWords() {
+            List<OcrWord> words = new ArrayList<>();
+            if (result == null || result.getData() == null || result.getData().getDetails() == null) {
+                return words;
+            }
+            for (AIServiceClient.OcrDetail detail : result.getData().getDetails()) {
+                List<List<Integer>> points = detail.getBbox();
+                if (detail.getText() == null || points == null || points.size() < 4) {
+                    continue;
+                }
+                double[] quad = new double[8];
+                for (int i = 0; i < 4; i++) {
+                    List<Integer> point = points.get(i);
+                    quad[i * 2] = point.get(0);
+                    quad[i * 2 + 1] = point.get(1);
+                    // Undo the clockwise rotation the OCR server applied to the crop, then our preprocessing
+                    RotationGeometry.unrotatePoint(quad, i * 2, rotation, sentWidth, sentHeight);
+                    if (prepared != null) {
+                        prepared.toInput(quad, i * 2);
+                    }
+                    quad[i * 2] = originX + quad[i * 2] / scale;
+                    quad[i * 2 + 1] = originY + quad[i * 2 + 1] / scale;
+                }
+                float confidence = detail.getConfidence() != null ? detail.getConfidence().floatValue() : 0f;
+                words.add(new OcrWord(detail.getText(), quad, confidence));
+            }
+            return words;
+        }
+    }
 }
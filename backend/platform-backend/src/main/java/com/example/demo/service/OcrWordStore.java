@@ -0,0 +1,91 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.OcrWord;
+import com.example.demo.model.OcrWordLayer;
+import com.example.demo.model.UserFile;
+import com.example.demo.repository.OcrWordLayerRepository;
+import com.example.demo.util.OcrWordCodec;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persists per-word OCR results, one encoded blob per file page.
+ */
+@Service
+public class OcrWordStore {
+
+    private final OcrWordLayerRepository layerRepository;
+
+    public OcrWordStore(OcrWordLayerRepository layerRepository) {
+        this.layerRepository = layerRepository;
+    }
+
+    /**
+     * Merges the words of one OCR crop into the page layer: words previously
+     * recognised inside the same region are replaced, everything else is kept.
+     * The page row is upserted and locked first, so crops of the same page
+     * running at once (on any node) are applied one after the other.
+     */
+    @Transactional
+    public List<OcrWord> mergeRegion(UserFile userFile, OcrService.Recognition recognition) {
+        int page = recognition.getPage();
+        OcrWordLayer layer = lockPage(userFile, page);
+
+        double x0 = recognition.getOriginX();
+        double y0 = recognition.getOriginY();
+        double x1 = x0 + recognition.getWidth();
+        double y1 = y0 + recognition.getHeight();
+
+        List<OcrWord> merged = new ArrayList<>();
+        for (OcrWord word : OcrWordCodec.decode(layer.getData())) {
+            double cx = word.getCenterX();
+            double cy = word.getCenterY();
+            if (cx < x0 || cx > x1 || cy < y0 || cy > y1) {
+                merged.add(word);
+            }
+        }
+        merged.addAll(recognition.toPageWords());
+
+        save(layer, merged);
+        return merged;
+    }
+
+    /**
+     * Replaces all words of a page, e.g. after a whole-sheet text extraction.
+     */
+    @Transactional
+    public void replacePage(UserFile userFile, int page, List<OcrWord> words) {
+        save(lockPage(userFile, page), words);
+    }
+
+    private OcrWordLayer lockPage(UserFile userFile, int page) {
+        layerRepository.insertIfAbsent(userFile.getId(), page);
+        return layerRepository.lockByUserFileIdAndPage(userFile.getId(), page)
+                .orElseGet(() -> new OcrWordLayer(userFile, page));
+    }
+
+    private void save(OcrWordLayer layer, List<OcrWord> words) {
+        layer.setData(OcrWordCodec.encode(words));
+        layer.setWordCount(words.size());
+        layer.setUpdatedAt(LocalDateTime.now());
+        layerRepository.save(layer);
+    }
+
+    @Transactional(readOnly = true)
+    public List<OcrWord> getWords(Long fileId, int page) {
+        return layerRepository.findByUserFileIdAndPage(fileId, page)
+                .map(layer -> OcrWordCodec.decode(layer.getData()))
+                .orElseGet(ArrayList::new);
+    }
+
+    @Transactional(readOnly = true)
+    public byte[] getEncodedWords(Long fileId, int page) {
+        return layerRepository.findByUserFileIdAndPage(fileId, page)
+                .map(OcrWordLayer::getData)
+                .orElse(null);
+    }
+}
@@ -0,0 +1,356 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.LocationHit;
+import com.example.demo.dto.OcrWord;
+import com.example.demo.model.OcrWordLayer;
+import com.example.demo.model.UserFile;
+import com.example.demo.repository.OcrWordLayerRepository;
+import com.example.demo.util.OcrWordCodec;
+import com.example.demo.util.SearchTokenizer;
+import com.example.demo.util.SpatialGridIndex;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Where-on-the-sheet text index, partitioned per user.
+ *
+ * Every indexed page keeps its words plus a {@link SpatialGridIndex} over
+ * their boxes (for "what text is in this rectangle" queries). Word tokens go
+ * into a per-user postings map pointing at (page slot, word) pairs, so finding
+ * a tag costs one postings lookup no matter how many pages are indexed.
+ * Multi-word queries match runs of adjacent words on a page, so a phrase
+ * split into several OCR words is still found.
+ * The index is rebuilt from the persisted word layers on startup.
+ */
+@Component
+public class PageTextIndex {
+
+    private static final int BATCH_SIZE = 200;
+
+    private final OcrWordLayerRepository layerRepository;
+    private final Map<Long, UserLocations> users = new ConcurrentHashMap<>();
+
+    public PageTextIndex(OcrWordLayerRepository layerRepository) {
+        this.layerRepository = layerRepository;
+    }
+
+    /**
+     * Replaces the indexed words of one page.
+     */
+    public void indexPage(Long userId, Long fileId, int page, List<OcrWord> words) {
+        if (userId == null) {
+            return;
+        }
+        users.computeIfAbsent(userId, id -> new UserLocations()).putPage(new PageEntry(fileId, page, words));
+    }
+
+    public void removeFile(Long userId, Long fileId) {
+        UserLocations locations = users.get(userId);
+        if (locations != null) {
+            locations.removeFile(fileId);
+        }
+    }
+
+    /** Moves a file's pages to its new owner, e.g. after an anonymous upload is claimed. */
+    public void reassignFile(Long previousUserId, UserFile file) {
+        if (previousUserId != null) {
+            removeFile(previousUserId, file.getId());
+        }
+        for (OcrWordLayer layer : layerRepository.findByUserFileIdOrderByPageAsc(file.getId())) {
+            indexPage(file.getUserId(), file.getId(), layer.getPage(), OcrWordCodec.decode(layer.getData()));
+        }
+    }
+
+    /**
+     * Every place (across all of the user's pages, or one file when
+     * {@code fileId} is set) where a word, or a run of adjacent words,
+     * contains all tokens of the query. Files rejected by {@code fileFilter}
+     * are skipped before the limit applies.
+     */
+    public List<LocationHit> find(Long userId, String query, Long fileId, Predicate<Long> fileFilter, int limit) {
+        UserLocations locations = users.get(userId);
+        List<String> tokens = SearchTokenizer.tokenize(query);
+        if (locations == null || tokens.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return locations.find(tokens, fileId, fileFilter, limit);
+    }
+
+    /**
+     * Words whose boxes intersect the given page rectangle.
+     */
+    public List<LocationHit> wordsInRegion(Long userId, Long fileId, int page, double x, double y, double width,
+            double height) {
+        UserLocations locations = users.get(userId);
+        if (locations == null) {
+            return new ArrayList<>();
+        }
+        return locations.region(fileId, page, (float) x, (float) y, (float) (x + width), (float) (y + height));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildInBackground() {
+        Thread loader = new Thread(() -> {
+            try {
+                long afterId = 0L;
+                while (true) {
+                    List<OcrWordLayer> batch = layerRepository.findBatchAfterId(afterId,
+                            PageRequest.of(0, BATCH_SIZE));
+                    for (OcrWordLayer layer : batch) {
+                        indexPage(layer.getUserFile().getUserId(), layer.getUserFile().getId(), layer.getPage(),
+                                OcrWordCodec.decode(layer.getData()));
+                        afterId = layer.getId();
+                    }
+                    if (batch.size() < BATCH_SIZE) {
+                        break;
+                    }
+                }
+            } catch (Exception e) {
+                System.err.println("Page text index rebuild failed: " + e.getMessage());
+            }
+        }, "page-text-index-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    private static final class PageEntry {
+        final long fileId;
+        final int page;
+        final String[] texts;
+        final float[] minX;
+        final float[] minY;
+        final float[] maxX;
+        final float[] maxY;
+        final SpatialGridIndex grid;
+
+        PageEntry(long fileId, int page, List<OcrWord> words) {
+            this.fileId = fileId;
+            this.page = page;
+            int n = words.size();
+            texts = new String[n];
+            minX = new float[n];
+            minY = new float[n];
+            maxX = new float[n];
+            maxY = new float[n];
+            float[] heights = new float[n];
+            for (int i = 0; i < n; i++) {
+                OcrWord word = words.get(i);
+                double[] q = word.getQuad();
+                texts[i] = word.getText();
+                minX[i] = (float) Math.min(Math.min(q[0], q[2]), Math.min(q[4], q[6]));
+                minY[i] = (float) Math.min(Math.min(q[1], q[3]), Math.min(q[5], q[7]));
+                maxX[i] = (float) Math.max(Math.max(q[0], q[2]), Math.max(q[4], q[6]));
+                maxY[i] = (float) Math.max(Math.max(q[1], q[3]), Math.max(q[5], q[7]));
+                heights[i] = maxY[i] - minY[i];
+            }
+            Arrays.sort(heights);
+            float median = n == 0 ? 1f : heights[n / 2];
+            grid = new SpatialGridIndex(minX, minY, maxX, maxY, median * 8);
+        }
+
+        LocationHit hit(int word) {
+            return new LocationHit(fileId, page, minX[word], minY[word], maxX[word] - minX[word],
+                    maxY[word] - minY[word], texts[word]);
+        }
+
+        /** Words {@code first..last} as one hit: their joined text and the union of their boxes. */
+        LocationHit hit(int first, int last) {
+            if (first == last) {
+                return hit(first);
+            }
+            float x0 = Float.MAX_VALUE, y0 = Float.MAX_VALUE, x1 = -Float.MAX_VALUE, y1 = -Float.MAX_VALUE;
+            StringBuilder text = new StringBuilder();
+            for (int w = first; w <= last; w++) {
+                x0 = Math.min(x0, minX[w]);
+                y0 = Math.min(y0, minY[w]);
+                x1 = Math.max(x1, maxX[w]);
+                y1 = Math.max(y1, maxY[w]);
+                if (text.length() > 0) {
+                    text.append(' ');
+                }
+                text.append(texts[w]);
+            }
+            return new LocationHit(fileId, page, x0, y0, x1 - x0, y1 - y0, text.toString());
+        }
+
+        /**
+         * Shortest run of adjacent words around {@code word} whose tokens
+         * cover {@code required}, as {first, last}; null if there is none.
+         * Every word contributes at least one token, so no run is longer
+         * than the number of tokens.
+         */
+        int[] cover(int word, Set<String> required) {
+            int max = required.size();
+            int[] best = null;
+            for (int first = word; first > word - max && first >= 0; first--) {
+                Set<String> seen = new HashSet<>();
+                for (int last = first; last < first + max && last < texts.length; last++) {
+                    seen.addAll(SearchTokenizer.tokenize(texts[last]));
+                    if (last >= word && seen.containsAll(required)) {
+                        if (best == null || last - first < best[1] - best[0]) {
+                            best = new int[] { first, last };
+                        }
+                        break;
+                    }
+                }
+            }
+            return best;
+        }
+    }
+
+    private static final class UserLocations {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final List<PageEntry> slots = new ArrayList<>();
+        private final Map<Long, Map<Integer, Integer>> slotByFilePage = new HashMap<>();
+        private final Map<String, LongList> postings = new HashMap<>();
+        private int deadSlots = 0;
+
+        void putPage(PageEntry entry) {
+            lock.writeLock().lock();
+            try {
+                Map<Integer, Integer> pages = slotByFilePage.computeIfAbsent(entry.fileId, id -> new HashMap<>());
+                Integer old = pages.get(entry.page);
+                if (old != null) {
+                    slots.set(old, null);
+                    deadSlots++;
+                }
+                int slot = slots.size();
+                slots.add(entry);
+                pages.put(entry.page, slot);
+                addPostings(slot, entry);
+                compactIfNeeded();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void removeFile(long fileId) {
+            lock.writeLock().lock();
+            try {
+                Map<Integer, Integer> pages = slotByFilePage.remove(fileId);
+                if (pages != null) {
+                    for (Integer slot : pages.values()) {
+                        slots.set(slot, null);
+                        deadSlots++;
+                    }
+                    compactIfNeeded();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        List<LocationHit> find(List<String> tokens, Long fileId, Predicate<Long> fileFilter, int limit) {
+            lock.readLock().lock();
+            try {
+                // Drive the scan with the rarest token, verify the rest around each of its words
+                LongList driver = null;
+                for (String token : tokens) {
+                    LongList list = postings.get(token);
+                    if (list == null) {
+                        return new ArrayList<>();
+                    }
+                    if (driver == null || list.size < driver.size) {
+                        driver = list;
+                    }
+                }
+                Set<String> required = new HashSet<>(tokens);
+                Map<Long, Boolean> allowed = new HashMap<>();
+                // A run found from two of its words is reported once
+                Set<Long> found = new HashSet<>();
+                List<LocationHit> hits = new ArrayList<>();
+                for (int k = 0; k < driver.size && hits.size() < limit; k++) {
+                    long ref = driver.values[k];
+                    int slot = (int) (ref >>> 32);
+                    PageEntry entry = slots.get(slot);
+                    if (entry == null || (fileId != null && entry.fileId != fileId)
+                            || !allowed.computeIfAbsent(entry.fileId, fileFilter::test)) {
+                        continue;
+                    }
+                    int word = (int) ref;
+                    int[] run = required.size() == 1 ? new int[] { word, word } : entry.cover(word, required);
+                    if (run != null && found.add(((long) slot << 32) | run[0])) {
+                        hits.add(entry.hit(run[0], run[1]));
+                    }
+                }
+                return hits;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        List<LocationHit> region(long fileId, int page, float x0, float y0, float x1, float y1) {
+            lock.readLock().lock();
+            try {
+                List<LocationHit> hits = new ArrayList<>();
+                Map<Integer, Integer> pages = slotByFilePage.get(fileId);
+                Integer slot = pages == null ? null : pages.get(page);
+                if (slot == null) {
+                    return hits;
+                }
+                PageEntry entry = slots.get(slot);
+                entry.grid.query(x0, y0, x1, y1, word -> hits.add(entry.hit(word)));
+                return hits;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private void addPostings(int slot, PageEntry entry) {
+            for (int word = 0; word < entry.texts.length; word++) {
+                long ref = ((long) slot << 32) | word;
+                for (String token : new HashSet<>(SearchTokenizer.tokenize(entry.texts[word]))) {
+                    postings.computeIfAbsent(token, t -> new LongList()).add(ref);
+                }
+            }
+        }
+
+        /** Drops replaced/removed pages once they outnumber the live ones. */
+        private void compactIfNeeded() {
+            if (deadSlots < 64 || deadSlots * 2 < slots.size()) {
+                return;
+            }
+            List<PageEntry> live = new ArrayList<>();
+            for (PageEntry entry : slots) {
+                if (entry != null) {
+                    live.add(entry);
+                }
+            }
+            slots.clear();
+            slotByFilePage.clear();
+            postings.clear();
+            deadSlots = 0;
+            for (PageEntry entry : live) {
+                int slot = slots.size();
+                slots.add(entry);
+                slotByFilePage.computeIfAbsent(entry.fileId, id -> new HashMap<>()).put(entry.page, slot);
+                addPostings(slot, entry);
+            }
+        }
+    }
+
+    private static final class LongList {
+        long[] values = new long[4];
+        int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
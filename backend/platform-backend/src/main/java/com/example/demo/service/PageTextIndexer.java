@@ -0,0 +1,313 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.OcrWord;
+import com.example.demo.model.UserFile;
+import jakarta.annotation.PreDestroy;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.pdfbox.text.TextPosition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Whole-sheet text extraction feeding {@link PageTextIndex}.
+ *
+ * PDFs use their text layer; pages without one (scans) and image files fall
+ * back to a full-page OCR pass when requested. Pages are split into chunks
+ * that run in parallel, each chunk opening its own {@link PDDocument} since
+ * PDFBox documents are not thread-safe. OCR calls go through
+ * {@link OcrScheduler} as bulk work, behind interactive crops.
+ */
+@Service
+public class PageTextIndexer {
+
+    private static final float OCR_DPI = 150f;
+    private static final long MAX_OCR_PIXELS = 24_000_000L;
+    private static final float MIN_OCR_SCALE = 1.0f;
+
+    private final OcrService ocrService;
+    private final OcrWordStore ocrWordStore;
+    private final PageTextIndex pageTextIndex;
+    private final RenderBudget renderBudget;
+    private final OcrScheduler ocrScheduler;
+    private final EventBroadcaster eventBroadcaster;
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final long jobTtlMillis;
+    // Running jobs, and finished ones until their status has been kept for the TTL
+    private final Map<Long, JobStatus> jobs = new ConcurrentHashMap<>();
+
+    public PageTextIndexer(OcrService ocrService, OcrWordStore ocrWordStore, PageTextIndex pageTextIndex,
+            RenderBudget renderBudget, OcrScheduler ocrScheduler, EventBroadcaster eventBroadcaster,
+            @Value("${search.pages.parallelism:0}") int parallelism,
+            @Value("${search.pages.job-ttl-ms:3600000}") long jobTtlMillis) {
+        this.ocrService = ocrService;
+        this.ocrWordStore = ocrWordStore;
+        this.pageTextIndex = pageTextIndex;
+        this.renderBudget = renderBudget;
+        this.ocrScheduler = ocrScheduler;
+        this.eventBroadcaster = eventBroadcaster;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.jobTtlMillis = jobTtlMillis;
+        // Chunks mostly wait on file reads and the OCR server; rendering is bounded by the render guard
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("page-text-indexer-", 1).factory());
+    }
+
+    /**
+     * Starts (or returns the already running) indexing job for a file.
+     */
+    public JobStatus submit(UserFile userFile, boolean ocrFallback) throws IOException {
+        evictFinished();
+        JobStatus running = jobs.get(userFile.getId());
+        if (running != null && running.getState() == JobState.RUNNING) {
+            return running;
+        }
+
+        File file = new File(userFile.getFilePath());
+        boolean isPdf = file.getName().toLowerCase().endsWith(".pdf");
+        int pageCount = 1;
+        if (isPdf) {
+            try (PDDocument doc = Loader.loadPDF(file)) {
+                pageCount = doc.getNumberOfPages();
+            }
+        }
+
+        JobStatus created = new JobStatus(userFile.getId(), pageCount);
+        // Atomic, so two submits racing past the check above still start one job
+        JobStatus status = jobs.compute(userFile.getId(),
+                (id, existing) -> existing != null && existing.getState() == JobState.RUNNING ? existing : created);
+        if (status != created) {
+            return status;
+        }
+        if (pageCount == 0) {
+            // Nothing to index; the job was created finished
+            publish(userFile, status);
+            return status;
+        }
+
+        int chunks = Math.min(parallelism, pageCount);
+        int perChunk = (pageCount + chunks - 1) / chunks;
+        int submitted = 0;
+        try {
+            for (int c = 0; c < chunks; c++) {
+                int first = c * perChunk + 1;
+                int last = Math.min(pageCount, first + perChunk - 1);
+                if (first > last) {
+                    continue;
+                }
+                executor.submit(() -> {
+                    if (isPdf) {
+                        indexPdfPages(userFile, file, first, last, ocrFallback, status);
+                    } else {
+                        indexImage(userFile, file, ocrFallback, status);
+                    }
+                });
+                submitted = last;
+            }
+        } catch (RuntimeException e) {
+            // Pages whose chunk never started count as failed, so the job still finishes
+            for (int page = submitted + 1; page <= pageCount; page++) {
+                pageFinished(userFile, status, false);
+            }
+            throw e;
+        }
+        return status;
+    }
+
+    public JobStatus getStatus(Long fileId) {
+        return jobs.get(fileId);
+    }
+
+    /** Forgets jobs that finished more than the TTL ago. */
+    private void evictFinished() {
+        LocalDateTime cutoff = LocalDateTime.now().minusNanos(jobTtlMillis * 1_000_000L);
+        jobs.values().removeIf(job -> job.getFinishedAt() != null && job.getFinishedAt().isBefore(cutoff));
+    }
+
+    private void indexPdfPages(UserFile userFile, File file, int first, int last, boolean ocrFallback,
+            JobStatus status) {
+        try (PDDocument doc = Loader.loadPDF(file)) {
+            for (int page = first; page <= last; page++) {
+                try {
+                    List<OcrWord> words = extractTextLayer(doc, page);
+                    if (words.isEmpty() && ocrFallback) {
+                        words = ocrPage(userFile, doc, page);
+                    }
+                    store(userFile, page, words);
+                    pageFinished(userFile, status, true);
+                } catch (Exception e) {
+                    System.err.println("Failed to index page " + page + " of file " + userFile.getId() + ": "
+                            + e.getMessage());
+                    pageFinished(userFile, status, false);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to open file " + userFile.getId() + " for indexing: " + e.getMessage());
+            for (int page = first; page <= last; page++) {
+                pageFinished(userFile, status, false);
+            }
+        }
+    }
+
+    private List<OcrWord> ocrPage(UserFile userFile, PDDocument doc, int page) throws Exception {
+        return ocrScheduler.call(OcrScheduler.Priority.BULK, userFile.getUserId(), () -> renderAndRecognize(doc, page));
+    }
+
+    private List<OcrWord> renderAndRecognize(PDDocument doc, int page) throws Exception {
+        PDRectangle box = doc.getPage(page - 1).getCropBox();
+        double area = (double) box.getWidth() * box.getHeight();
+        float scale = (float) Math.min(OCR_DPI / 72f, Math.sqrt(MAX_OCR_PIXELS / Math.max(1.0, area)));
+        // Held until the page image has been sent to the OCR server
+        try (RenderBudget.Reservation reservation = renderBudget.reserve(box, scale, MIN_OCR_SCALE);
+                RasterPool.Lease image = ocrService.renderPage(doc, page - 1, reservation.getScale())) {
+            return ocrService.recognizeImage(image.getImage(), page, 0, 0, reservation.getScale(), 0)
+                    .toPageWords();
+        }
+    }
+
+    private void indexImage(UserFile userFile, File file, boolean ocrFallback, JobStatus status) {
+        try {
+            List<OcrWord> words = new ArrayList<>();
+            if (ocrFallback) {
+                BufferedImage image = ImageIO.read(file);
+                if (image == null) {
+                    throw new IOException("Could not read image file");
+                }
+                words = ocrScheduler.call(OcrScheduler.Priority.BULK, userFile.getUserId(),
+                        () -> ocrService.recognizeImage(image, 1, 0, 0, 1.0, 0).toPageWords());
+            }
+            store(userFile, 1, words);
+            pageFinished(userFile, status, true);
+        } catch (Exception e) {
+            System.err.println("Failed to index image file " + userFile.getId() + ": " + e.getMessage());
+            pageFinished(userFile, status, false);
+        }
+    }
+
+    /** Counts the page and pushes the job's progress to the owner's open views. */
+    private void pageFinished(UserFile userFile, JobStatus status, boolean ok) {
+        status.pageFinished(ok);
+        publish(userFile, status);
+    }
+
+    private void publish(UserFile userFile, JobStatus status) {
+        eventBroadcaster.publish(userFile.getUserId(), "index", Map.of("fileId", status.getFileId(),
+                "done", status.getDonePages(), "failed", status.getFailedPages(), "total", status.getTotalPages(),
+                "state", status.getState().name()), "index:" + status.getFileId());
+    }
+
+    private void store(UserFile userFile, int page, List<OcrWord> words) {
+        ocrWordStore.replacePage(userFile, page, words);
+        pageTextIndex.indexPage(userFile.getUserId(), userFile.getId(), page, words);
+    }
+
+    /**
+     * Words of the PDF text layer with their boxes in page points (top-left
+     * origin, same as BBox).
+     */
+    private List<OcrWord> extractTextLayer(PDDocument doc, int page) throws IOException {
+        List<OcrWord> words = new ArrayList<>();
+        PDFTextStripper stripper = new PDFTextStripper() {
+            @Override
+            protected void writeString(String text, List<TextPosition> positions) {
+                if (text == null || text.isBlank() || positions.isEmpty()) {
+                    return;
+                }
+                float x0 = Float.MAX_VALUE, y0 = Float.MAX_VALUE, x1 = -Float.MAX_VALUE, y1 = -Float.MAX_VALUE;
+                for (TextPosition tp : positions) {
+                    x0 = Math.min(x0, tp.getXDirAdj());
+                    y0 = Math.min(y0, tp.getYDirAdj() - tp.getHeightDir());
+                    x1 = Math.max(x1, tp.getXDirAdj() + tp.getWidthDirAdj());
+                    y1 = Math.max(y1, tp.getYDirAdj());
+                }
+                words.add(new OcrWord(text.trim(), new double[] { x0, y0, x1, y0, x1, y1, x0, y1 }, 1f));
+            }
+        };
+        stripper.setSortByPosition(true);
+        stripper.setStartPage(page);
+        stripper.setEndPage(page);
+        stripper.getText(doc);
+        return words;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public enum JobState {
+        RUNNING, DONE, FAILED
+    }
+
+    public static class JobStatus {
+        private final Long fileId;
+        private final int totalPages;
+        private final AtomicInteger donePages = new AtomicInteger();
+        private final AtomicInteger failedPages = new AtomicInteger();
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private volatile LocalDateTime finishedAt;
+
+        JobStatus(Long fileId, int totalPages) {
+            this.fileId = fileId;
+            this.totalPages = totalPages;
+            if (totalPages == 0) {
+                finishedAt = startedAt;
+            }
+        }
+
+        void pageFinished(boolean ok) {
+            if (!ok) {
+                failedPages.incrementAndGet();
+            }
+            if (donePages.incrementAndGet() >= totalPages) {
+                finishedAt = LocalDateTime.now();
+            }
+        }
+
+        public Long getFileId() {
+            return fileId;
+        }
+
+        public int getTotalPages() {
+            return totalPages;
+        }
+
+        public int getDonePages() {
+            return donePages.get();
+        }
+
+        public int getFailedPages() {
+            return failedPages.get();
+        }
+
+        public LocalDateTime getStartedAt() {
+            return startedAt;
+        }
+
+        public LocalDateTime getFinishedAt() {
+            return finishedAt;
+        }
+
+        public JobState getState() {
+            if (donePages.get() < totalPages) {
+                return JobState.RUNNING;
+            }
+            return totalPages > 0 && failedPages.get() == totalPages ? JobState.FAILED : JobState.DONE;
+        }
+    }
+}
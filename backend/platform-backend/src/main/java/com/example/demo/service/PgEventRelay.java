@@ -0,0 +1,171 @@
+package com.example.demo.service;
+
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fans {@link EventBroadcaster} events out to every backend node over
+ * PostgreSQL LISTEN/NOTIFY.
+ *
+ * Committed events are queued here and sent with {@code pg_notify} by one
+ * sender thread on a pooled connection, several per round trip; sending
+ * after the commit means a failed notify can never roll back the write that
+ * caused it. Each node listens on its own connection, opened outside the
+ * pool so it never holds a pool slot, and hands what it hears to its
+ * broadcaster (which ignores its own events). After the listening connection
+ * drops, every open stream is told to resync, since events may have been
+ * missed meanwhile.
+ */
+@Component
+public class PgEventRelay implements EventBroadcaster.Relay {
+
+    static final String CHANNEL = "app_events";
+    private static final int MAX_BATCH = 100;
+    private static final long RETRY_MILLIS = 5000;
+    private static final int POLL_MILLIS = 1000;
+
+    private final EventBroadcaster eventBroadcaster;
+    private final JdbcTemplate jdbcTemplate;
+    private final String url;
+    private final String username;
+    private final String password;
+    private final boolean enabled;
+    private final LinkedBlockingQueue<String> outbox;
+    private volatile boolean stopping;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public PgEventRelay(EventBroadcaster eventBroadcaster, JdbcTemplate jdbcTemplate,
+            @Value("${spring.datasource.url}") String url,
+            @Value("${spring.datasource.username}") String username,
+            @Value("${spring.datasource.password}") String password,
+            @Value("${events.relay.enabled:true}") boolean enabled,
+            @Value("${events.relay.max-outbox:10000}") int maxOutbox) {
+        this.eventBroadcaster = eventBroadcaster;
+        this.jdbcTemplate = jdbcTemplate;
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.enabled = enabled;
+        this.outbox = new LinkedBlockingQueue<>(Math.max(1, maxOutbox));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        Thread listener = new Thread(this::listen, "event-relay-listener");
+        listener.setDaemon(true);
+        listener.start();
+        Thread sender = new Thread(this::sendLoop, "event-relay-sender");
+        sender.setDaemon(true);
+        sender.start();
+        eventBroadcaster.setRelay(this);
+    }
+
+    /** Never blocks the publisher; drops the event when the database has fallen far behind. */
+    @Override
+    public void send(String payload) {
+        if (!outbox.offer(payload)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void sendLoop() {
+        List<String> batch = new ArrayList<>();
+        while (!stopping) {
+            try {
+                batch.add(outbox.take());
+                outbox.drainTo(batch, MAX_BATCH - 1);
+                jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                    try (PreparedStatement statement = connection.prepareStatement("SELECT pg_notify(?, ?)")) {
+                        for (String payload : batch) {
+                            statement.setString(1, CHANNEL);
+                            statement.setString(2, payload);
+                            try (ResultSet ignored = statement.executeQuery()) {
+                                sent.incrementAndGet();
+                            }
+                        }
+                    }
+                    return null;
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                // Other nodes miss these; their clients catch up on the next change or reconnect
+                dropped.addAndGet(batch.size());
+                System.err.println("Event relay send failed: " + e.getMessage());
+            }
+            batch.clear();
+        }
+    }
+
+    private void listen() {
+        boolean reconnect = false;
+        while (!stopping) {
+            try (Connection connection = DriverManager.getConnection(url, username, password);
+                    Statement statement = connection.createStatement()) {
+                statement.execute("LISTEN " + CHANNEL);
+                if (reconnect) {
+                    eventBroadcaster.resyncAll();
+                }
+                PGConnection pg = connection.unwrap(PGConnection.class);
+                while (!stopping) {
+                    PGNotification[] notifications = pg.getNotifications(POLL_MILLIS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            eventBroadcaster.receive(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (stopping) {
+                    return;
+                }
+                System.err.println("Event relay listener lost its connection: " + e.getMessage());
+                reconnect = true;
+                try {
+                    Thread.sleep(RETRY_MILLIS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopping = true;
+        eventBroadcaster.setRelay(null);
+    }
+}
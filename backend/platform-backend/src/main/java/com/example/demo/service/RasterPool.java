@@ -0,0 +1,274 @@
+package com.example.demo.service;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-classed pool of RGB pixel arrays for the render, crop and encode
+ * pipeline.
+ *
+ * Page rasters are tens to hundreds of MB, so under G1 each fresh one is a
+ * humongous allocation that is only reclaimed by a marking cycle. Instead a
+ * render leases an {@code int[]} from the smallest size class (in pixels) that
+ * fits, wraps it in a {@link BufferedImage} of the exact page size and returns
+ * it when done. Crops are {@code getSubimage} views of the same array. Idle
+ * arrays are capped per class and in total.
+ *
+ * A lease that becomes unreachable without being closed is reported as a
+ * leak (with the acquiring stack when leak tracking is on) and its array is
+ * simply left to the GC.
+ */
+@Component
+public class RasterPool {
+
+    private static final int MIN_CLASS_PIXELS = 1 << 16;
+    private static final DirectColorModel RGB = new DirectColorModel(24, 0xff0000, 0x00ff00, 0x0000ff);
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final int maxIdlePerClass;
+    private final long maxIdleBytes;
+    private final boolean trackLeaks;
+    private final ConcurrentMap<Integer, Deque<int[]>> idle = new ConcurrentHashMap<>();
+    private final AtomicLong idleBytes = new AtomicLong();
+
+    private final AtomicLong leases = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong allocated = new AtomicLong();
+    private final AtomicLong outstanding = new AtomicLong();
+    private final AtomicLong leaked = new AtomicLong();
+
+    public RasterPool(@Value("${render.pool.max-idle-per-class:2}") int maxIdlePerClass,
+            @Value("${render.pool.max-idle-bytes:268435456}") long maxIdleBytes,
+            @Value("${render.pool.track-leaks:false}") boolean trackLeaks) {
+        this.maxIdlePerClass = maxIdlePerClass;
+        this.maxIdleBytes = maxIdleBytes;
+        this.trackLeaks = trackLeaks;
+    }
+
+    /** A white RGB image of exactly {@code width} x {@code height}. */
+    public Lease lease(int width, int height) {
+        long pixels = (long) width * height;
+        if (width <= 0 || height <= 0 || pixels > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Bad raster size " + width + "x" + height);
+        }
+        int sizeClass = sizeClass((int) pixels);
+        int[] pixelsArray = take(sizeClass);
+        leases.incrementAndGet();
+        outstanding.incrementAndGet();
+
+        DataBufferInt buffer = new DataBufferInt(pixelsArray, (int) pixels);
+        WritableRaster raster = Raster.createPackedRaster(buffer, width, height, width, RGB.getMasks(), null);
+        BufferedImage image = new BufferedImage(RGB, raster, false, null);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setBackground(Color.WHITE);
+            g.clearRect(0, 0, width, height);
+        } finally {
+            g.dispose();
+        }
+        return new Lease(image, pixelsArray, sizeClass);
+    }
+
+    /**
+     * Renders a PDF page into a pooled image, sized and oriented the way
+     * {@link PDFRenderer#renderImage(int, float)} would.
+     */
+    public Lease renderPage(PDDocument doc, int pageIndex, float scale) throws IOException {
+        PDPage page = doc.getPage(pageIndex);
+        PDRectangle cropBox = page.getCropBox();
+        int widthPx = (int) Math.max(Math.floor(cropBox.getWidth() * scale), 1);
+        int heightPx = (int) Math.max(Math.floor(cropBox.getHeight() * scale), 1);
+        int rotation = page.getRotation();
+        Lease lease = rotation == 90 || rotation == 270 ? lease(heightPx, widthPx) : lease(widthPx, heightPx);
+        Graphics2D g = lease.getImage().createGraphics();
+        try {
+            // renderPageToGraphics clears to the background color first
+            g.setBackground(Color.WHITE);
+            new PDFRenderer(doc).renderPageToGraphics(pageIndex, g, scale);
+        } catch (IOException | RuntimeException e) {
+            lease.close();
+            throw e;
+        } finally {
+            g.dispose();
+        }
+        return lease;
+    }
+
+    /**
+     * Renders only a region of a PDF page, given in displayed page units
+     * (after the page's own rotation, top-left origin), at {@code scale}. The
+     * pixels match the same area of {@link #renderPage} at that scale, but
+     * only the region's raster is allocated and drawn.
+     */
+    public Lease renderRegion(PDDocument doc, int pageIndex, double x, double y, double width, double height,
+            float scale) throws IOException {
+        int widthPx = (int) Math.max(Math.ceil(width * scale), 1);
+        int heightPx = (int) Math.max(Math.ceil(height * scale), 1);
+        Lease lease = lease(widthPx, heightPx);
+        Graphics2D g = lease.getImage().createGraphics();
+        try {
+            g.setBackground(Color.WHITE);
+            // Device space shift; the renderer's page transform is applied on top of it
+            g.translate(-Math.floor(x * scale), -Math.floor(y * scale));
+            new PDFRenderer(doc).renderPageToGraphics(pageIndex, g, scale);
+        } catch (IOException | RuntimeException e) {
+            lease.close();
+            throw e;
+        } finally {
+            g.dispose();
+        }
+        return lease;
+    }
+
+    /** Quarter steps between powers of two, so an array wastes at most a fifth of itself. */
+    static int sizeClass(int pixels) {
+        if (pixels <= MIN_CLASS_PIXELS) {
+            return MIN_CLASS_PIXELS;
+        }
+        int base = Integer.highestOneBit(pixels);
+        int step = base >> 2;
+        long size = base + (long) step * ((pixels - base + step - 1) / step);
+        return size > Integer.MAX_VALUE - 8 ? pixels : (int) size;
+    }
+
+    private int[] take(int sizeClass) {
+        Deque<int[]> deque = idle.get(sizeClass);
+        if (deque != null) {
+            int[] array;
+            synchronized (deque) {
+                array = deque.pollFirst();
+            }
+            if (array != null) {
+                idleBytes.addAndGet(-4L * array.length);
+                reused.incrementAndGet();
+                return array;
+            }
+        }
+        allocated.incrementAndGet();
+        return new int[sizeClass];
+    }
+
+    private void giveBack(int[] array, int sizeClass) {
+        outstanding.decrementAndGet();
+        long bytes = 4L * array.length;
+        if (idleBytes.addAndGet(bytes) > maxIdleBytes) {
+            idleBytes.addAndGet(-bytes);
+            return;
+        }
+        Deque<int[]> deque = idle.computeIfAbsent(sizeClass, k -> new ArrayDeque<>());
+        synchronized (deque) {
+            if (deque.size() < maxIdlePerClass) {
+                deque.addFirst(array);
+                return;
+            }
+        }
+        idleBytes.addAndGet(-bytes);
+    }
+
+    public long getLeases() {
+        return leases.get();
+    }
+
+    public long getReused() {
+        return reused.get();
+    }
+
+    public long getAllocated() {
+        return allocated.get();
+    }
+
+    public long getOutstanding() {
+        return outstanding.get();
+    }
+
+    public long getLeaked() {
+        return leaked.get();
+    }
+
+    public long getIdleBytes() {
+        return idleBytes.get();
+    }
+
+    /**
+     * An image backed by a pooled array. Close it once neither the image nor
+     * any subimage of it is used any more.
+     */
+    public final class Lease implements AutoCloseable {
+        private final BufferedImage image;
+        private final LeakCheck leakCheck;
+        private final Cleaner.Cleanable cleanable;
+        private int[] array;
+        private final int sizeClass;
+
+        private Lease(BufferedImage image, int[] array, int sizeClass) {
+            this.image = image;
+            this.array = array;
+            this.sizeClass = sizeClass;
+            this.leakCheck = new LeakCheck(image.getWidth() + "x" + image.getHeight(),
+                    trackLeaks ? new Throwable("Raster leased here") : null);
+            this.cleanable = CLEANER.register(this, leakCheck);
+        }
+
+        public BufferedImage getImage() {
+            return image;
+        }
+
+        @Override
+        public void close() {
+            int[] returned;
+            synchronized (this) {
+                returned = array;
+                array = null;
+            }
+            if (returned != null) {
+                leakCheck.closed = true;
+                cleanable.clean();
+                giveBack(returned, sizeClass);
+            }
+        }
+    }
+
+    /** Runs when a lease is closed or collected; must not reference the lease. */
+    private final class LeakCheck implements Runnable {
+        private final String size;
+        private final Throwable acquiredAt;
+        volatile boolean closed;
+
+        LeakCheck(String size, Throwable acquiredAt) {
+            this.size = size;
+            this.acquiredAt = acquiredAt;
+        }
+
+        @Override
+        public void run() {
+            if (!closed) {
+                leaked.incrementAndGet();
+                outstanding.decrementAndGet();
+                System.err.println("Raster lease of " + size + " was never closed"
+                        + (acquiredAt == null ? " (set render.pool.track-leaks=true for the stack)" : ":"));
+                if (acquiredAt != null) {
+                    acquiredAt.printStackTrace();
+                }
+            }
+        }
+    }
+}
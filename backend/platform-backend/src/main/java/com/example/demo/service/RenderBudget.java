@@ -0,0 +1,193 @@
+package com.example.demo.service;
+
+import com.example.demo.util.ResourceGuard;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission control for page renders by raster memory.
+ *
+ * Before rendering, a caller reserves the bytes the raster will take (page
+ * box times scale squared, 4 bytes per RGB pixel, rounded up to the
+ * {@link RasterPool} size class) from one global budget and keeps the
+ * reservation until the image has been encoded and dropped. When the budget
+ * is exhausted the caller waits; if nothing frees up in time it renders
+ * smaller to fit what is left, and is rejected only when even the minimum
+ * scale does not fit. A single render larger than the whole budget is
+ * downscaled up front. Heap used by rasters therefore stays under the budget
+ * however many renders run at once.
+ */
+@Component
+public class RenderBudget {
+
+    static final int BYTES_PER_PIXEL = 4;
+
+    private final long budgetBytes;
+    private final long waitMillis;
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition released = lock.newCondition();
+    private long reservedBytes;
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong downscaled = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong waiting = new AtomicLong();
+
+    public RenderBudget(@Value("${render.memory-budget-bytes:0}") long budgetBytes,
+            @Value("${render.budget-wait-ms:10000}") long waitMillis) {
+        // 0 = a quarter of the heap
+        this.budgetBytes = budgetBytes > 0 ? budgetBytes : Runtime.getRuntime().maxMemory() / 4;
+        this.waitMillis = waitMillis;
+    }
+
+    /**
+     * Reserves memory for rendering a page box at {@code scale}, or at a
+     * smaller scale (never below {@code minScale}) if memory is short. Render
+     * at {@link Reservation#getScale()} and close the reservation once the
+     * image is no longer referenced.
+     *
+     * @throws ResourceGuard.BusyException if not even {@code minScale} fits
+     */
+    public Reservation reserve(PDRectangle box, float scale, float minScale) {
+        return reserve(box.getWidth(), box.getHeight(), scale, minScale);
+    }
+
+    public Reservation reserve(double width, double height, float scale, float minScale) {
+        if (estimateBytes(width, height, scale) > budgetBytes) {
+            // Could never fit: go straight to the largest scale that does
+            scale = fittingScale(width, height, scale, budgetBytes);
+            downscaled.incrementAndGet();
+        }
+        if (scale < minScale) {
+            rejected.incrementAndGet();
+            throw new ResourceGuard.BusyException("Page is too large to render");
+        }
+
+        lock.lock();
+        try {
+            long bytes = estimateBytes(width, height, scale);
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+            waiting.incrementAndGet();
+            try {
+                long left = deadline - System.nanoTime();
+                while (reservedBytes + bytes > budgetBytes && left > 0) {
+                    left = released.awaitNanos(left);
+                }
+            } finally {
+                waiting.decrementAndGet();
+            }
+
+            if (reservedBytes + bytes > budgetBytes) {
+                float smaller = fittingScale(width, height, scale, budgetBytes - reservedBytes);
+                if (smaller < minScale) {
+                    rejected.incrementAndGet();
+                    throw new ResourceGuard.BusyException("Renderer is out of memory, try again later");
+                }
+                scale = smaller;
+                bytes = estimateBytes(width, height, scale);
+                downscaled.incrementAndGet();
+            }
+            reservedBytes += bytes;
+            admitted.incrementAndGet();
+            return new Reservation(scale, bytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResourceGuard.BusyException("Interrupted while waiting for render memory");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    static long estimateBytes(double width, double height, float scale) {
+        long w = (long) Math.ceil(width * scale);
+        long h = (long) Math.ceil(height * scale);
+        long pixels = Math.max(1, w) * Math.max(1, h);
+        // Rasters come from RasterPool, rounded up to its size class
+        return (pixels <= Integer.MAX_VALUE ? RasterPool.sizeClass((int) pixels) : pixels) * BYTES_PER_PIXEL;
+    }
+
+    /** Largest scale (at most {@code scale}) whose raster fits in {@code bytes}. */
+    static float fittingScale(double width, double height, float scale, long bytes) {
+        if (bytes <= 0) {
+            return 0f;
+        }
+        float fit = (float) Math.sqrt(bytes / (BYTES_PER_PIXEL * Math.max(1.0, width * height)));
+        // Step down past rounding so the estimate really fits
+        while (fit > 0f && estimateBytes(width, height, fit) > bytes) {
+            fit *= 0.99f;
+        }
+        return Math.min(scale, fit);
+    }
+
+    private void release(long bytes) {
+        lock.lock();
+        try {
+            reservedBytes -= bytes;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public long getReservedBytes() {
+        lock.lock();
+        try {
+            return reservedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getWaiting() {
+        return waiting.get();
+    }
+
+    public long getAdmitted() {
+        return admitted.get();
+    }
+
+    public long getDownscaled() {
+        return downscaled.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public final class Reservation implements AutoCloseable {
+        private final float scale;
+        private final long bytes;
+        private boolean closed;
+
+        private Reservation(float scale, long bytes) {
+            this.scale = scale;
+            this.bytes = bytes;
+        }
+
+        public float getScale() {
+            return scale;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release(bytes);
+            }
+        }
+    }
+}
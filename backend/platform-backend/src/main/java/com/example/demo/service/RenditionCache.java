@@ -0,0 +1,324 @@
+package com.example.demo.service;
+
+import com.example.demo.model.UserFile;
+import com.example.demo.util.ImageRotator;
+import com.example.demo.util.RotationGeometry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Upright (and optionally downsized) copies of image files, made on demand.
+ *
+ * Rotation is only metadata on the file, so the original blob is never
+ * rewritten. The first request for a file at a given rotation and size
+ * rotates the pixels losslessly with {@link ImageRotator}, writes the result
+ * to the rendition directory and later requests stream that file. Concurrent
+ * requests for the same rendition share one render. Keys include the blob
+ * path, so a replaced or deleted file can never be served stale; unused
+ * renditions fall out of the LRU once the directory exceeds its byte budget.
+ * Requested sizes are rounded up to a few fixed buckets, so clients cannot
+ * fill the cache (or keep the CPU busy) with one rendition per pixel size.
+ */
+@Service
+public class RenditionCache {
+
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final int[] SIZE_BUCKETS = { 256, 512, 1024, 2048 };
+
+    private final Path dir;
+    private final long maxBytes;
+    private final RenderBudget renderBudget;
+    private final ForkJoinPool pixelPool;
+
+    // Rendition file name -> size, in access order
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+    private final Map<String, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public RenditionCache(RenderBudget renderBudget,
+            @Value("${render.rendition.dir:renditions}") String dir,
+            @Value("${render.rendition.max-bytes:1073741824}") long maxBytes,
+            @Value("${render.rendition.parallelism:0}") int parallelism) {
+        this.renderBudget = renderBudget;
+        this.dir = Paths.get(dir);
+        this.maxBytes = maxBytes;
+        // 0 = one worker per CPU
+        this.pixelPool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * The file as it should be displayed: rotated by its stored rotation and,
+     * if {@code maxSize} is positive, scaled down to fit the next size bucket
+     * up (sizes past the largest bucket mean full size). Unrotated files that
+     * need no downscale are served from the original blob.
+     */
+    public Path get(UserFile file, int maxSize) throws IOException {
+        int rotation = RotationGeometry.normalize(file.getRotation() != null ? file.getRotation() : 0);
+        Path source = Paths.get(file.getFilePath());
+        int size = bucket(maxSize);
+        if (size > 0) {
+            int[] dimensions = readSize(source.toFile());
+            if (dimensions[0] <= size && dimensions[1] <= size) {
+                size = 0; // already fits
+            }
+        }
+        if (rotation == 0 && size == 0) {
+            return source;
+        }
+        String key = key(file, rotation, size);
+        Path target = dir.resolve(key);
+        if (touch(key) && Files.exists(target)) {
+            hits.incrementAndGet();
+            return target;
+        }
+
+        CompletableFuture<Path> mine = new CompletableFuture<>();
+        CompletableFuture<Path> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            hits.incrementAndGet();
+            return await(running);
+        }
+        misses.incrementAndGet();
+        try {
+            render(source, rotation, size, target, extension(key));
+            add(key, Files.size(target));
+            mine.complete(target);
+            return target;
+        } catch (IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    public static String contentType(Path rendition) {
+        return "jpg".equals(extension(rendition.toString())) ? "image/jpeg" : "image/png";
+    }
+
+    private void render(Path source, int rotation, int maxSize, Path target, String format) throws IOException {
+        int[] size = readSize(source.toFile());
+        // Decoded source and rotated copy are held at the same time
+        try (RenderBudget.Reservation reservation = renderBudget.reserve(size[0], 2.0 * size[1], 1f, 1f)) {
+            BufferedImage src = ImageIO.read(source.toFile());
+            if (src == null) {
+                throw new IOException("Could not read image file");
+            }
+            BufferedImage out = downscale(ImageRotator.rotate(src, rotation, pixelPool), maxSize);
+            if ("jpg".equals(format) && out.getColorModel().hasAlpha()) {
+                throw new IOException("Unexpected alpha channel in JPEG image");
+            }
+
+            Files.createDirectories(dir);
+            Path temp = dir.resolve(target.getFileName() + "." + Thread.currentThread().threadId() + TMP_SUFFIX);
+            try {
+                if (!ImageIO.write(out, format, temp.toFile())) {
+                    throw new IOException("No writer for " + format);
+                }
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    private static BufferedImage downscale(BufferedImage image, int maxSize) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        if (maxSize <= 0 || (w <= maxSize && h <= maxSize)) {
+            return image;
+        }
+        double factor = (double) maxSize / Math.max(w, h);
+        int tw = Math.max(1, (int) Math.round(w * factor));
+        int th = Math.max(1, (int) Math.round(h * factor));
+        BufferedImage scaled = new BufferedImage(tw, th,
+                image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, tw, th, null);
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+    private static Path await(CompletableFuture<Path> running) throws IOException {
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for rendition", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /** Smallest bucket that is at least {@code maxSize}; 0 (full size) when none is. */
+    static int bucket(int maxSize) {
+        if (maxSize > 0) {
+            for (int size : SIZE_BUCKETS) {
+                if (maxSize <= size) {
+                    return size;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /** fileId_rotation_maxSize_pathHash.ext; JPEGs stay JPEG, everything else becomes PNG. */
+    static String key(UserFile file, int rotation, int maxSize) {
+        String ext = extension(file.getFilePath());
+        String format = "jpg".equals(ext) || "jpeg".equals(ext) ? "jpg" : "png";
+        return file.getId() + "_" + rotation + "_" + maxSize + "_"
+                + Integer.toHexString(file.getFilePath().hashCode()) + "." + format;
+    }
+
+    private static String extension(String path) {
+        int dot = path == null ? -1 : path.lastIndexOf('.');
+        return dot < 0 ? "" : path.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    /** Dimensions from the header, without decoding the pixels. */
+    private static int[] readSize(File file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in);
+                return new int[] { reader.getWidth(0), reader.getHeight(0) };
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private boolean touch(String key) {
+        synchronized (entries) {
+            return entries.get(key) != null;
+        }
+    }
+
+    private void add(String key, long bytes) {
+        List<String> evicted = new ArrayList<>();
+        synchronized (entries) {
+            Long previous = entries.put(key, bytes);
+            totalBytes += bytes - (previous != null ? previous : 0L);
+            Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+            while (totalBytes > maxBytes && it.hasNext()) {
+                Map.Entry<String, Long> eldest = it.next();
+                if (eldest.getKey().equals(key)) {
+                    continue;
+                }
+                totalBytes -= eldest.getValue();
+                evicted.add(eldest.getKey());
+                it.remove();
+            }
+        }
+        for (String name : evicted) {
+            evictions.incrementAndGet();
+            try {
+                Files.deleteIfExists(dir.resolve(name));
+            } catch (IOException e) {
+                System.err.println("Could not delete rendition " + name + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /** Picks up renditions left by the previous run, oldest first, without holding up startup. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadInBackground() {
+        Thread loader = new Thread(() -> {
+            if (!Files.isDirectory(dir)) {
+                return;
+            }
+            try (Stream<Path> files = Files.list(dir)) {
+                files.sorted((a, b) -> Long.compare(a.toFile().lastModified(), b.toFile().lastModified()))
+                        .forEach(path -> {
+                            try {
+                                String name = path.getFileName().toString();
+                                if (name.endsWith(TMP_SUFFIX)) {
+                                    Files.deleteIfExists(path);
+                                } else {
+                                    add(name, Files.size(path));
+                                }
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+            } catch (IOException | UncheckedIOException e) {
+                System.err.println("Could not load renditions: " + e.getMessage());
+            }
+        }, "rendition-cache-load");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /** Hits, misses and evictions since startup. */
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getTotalBytes() {
+        synchronized (entries) {
+            return totalBytes;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pixelPool.shutdownNow();
+    }
+}
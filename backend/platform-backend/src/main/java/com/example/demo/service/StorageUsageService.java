@@ -0,0 +1,172 @@
+package com.example.demo.service;
+
+import com.example.demo.model.UserStorageUsage;
+import com.example.demo.repository.StorageUsageRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Per-user and per-folder storage counters and the upload quota.
+ *
+ * Counters move with single-statement increments next to every write that
+ * adds, moves or removes files, so checking the quota is one conditional
+ * UPDATE instead of a SUM over the user's files. Call the "before" methods
+ * ahead of deleting or moving rows (the deltas are read from the rows). A
+ * periodic reconciliation recomputes everything from user_files to repair
+ * any drift (crashes between statements, manual edits); reservations of
+ * uploads still in flight are tracked apart so it keeps them.
+ */
+@Service
+public class StorageUsageService {
+
+    private static final long STALE_RESERVATION_HOURS = 24;
+
+    private final StorageUsageRepository storageUsageRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final long defaultQuotaBytes;
+
+    public StorageUsageService(StorageUsageRepository storageUsageRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${storage.quota.default-bytes:10737418240}") long defaultQuotaBytes) {
+        this.storageUsageRepository = storageUsageRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.defaultQuotaBytes = defaultQuotaBytes;
+    }
+
+    /**
+     * Reserves room for an upload of {@code bytes}.
+     *
+     * @return false if it would take the user over quota (nothing reserved)
+     */
+    @Transactional
+    public boolean reserve(Long userId, long bytes) {
+        storageUsageRepository.ensureUser(userId);
+        return storageUsageRepository.reserve(userId, bytes, defaultQuotaBytes) > 0;
+    }
+
+    /**
+     * Runs the write that stores a reserved file and settles the reservation
+     * in the same transaction, so reconciliation never sees the file and its
+     * pending reservation at once.
+     */
+    public void complete(Long userId, long bytes, Runnable write) {
+        transactionTemplate.executeWithoutResult(status -> {
+            write.run();
+            storageUsageRepository.settle(userId, bytes);
+        });
+    }
+
+    /** Gives back a reservation whose upload did not complete. */
+    @Transactional
+    public void release(Long userId, long bytes) {
+        storageUsageRepository.releaseReservation(userId, bytes);
+    }
+
+    @Transactional
+    public void beforeDelete(Collection<Long> fileIds) {
+        if (!fileIds.isEmpty()) {
+            storageUsageRepository.subtractFilesFromUsers(fileIds);
+            storageUsageRepository.subtractFilesFromFolders(fileIds);
+        }
+    }
+
+    @Transactional
+    public void beforeMove(Collection<Long> fileIds) {
+        if (!fileIds.isEmpty()) {
+            storageUsageRepository.subtractFilesFromFolders(fileIds);
+        }
+    }
+
+    @Transactional
+    public void afterMove(Long folderId, Collection<Long> fileIds) {
+        if (folderId != null && !fileIds.isEmpty()) {
+            storageUsageRepository.addFilesToFolder(folderId, fileIds);
+        }
+    }
+
+    @Transactional
+    public void beforeSubtreeDelete(Long userId, Long folderId) {
+        storageUsageRepository.subtractSubtreeFromUser(userId, folderId);
+        storageUsageRepository.deleteSubtreeFolders(userId, folderId);
+    }
+
+    @Transactional(readOnly = true)
+    public Usage getUsage(Long userId) {
+        UserStorageUsage usage = storageUsageRepository.findById(userId).orElse(null);
+        if (usage == null) {
+            return new Usage(0, 0, defaultQuotaBytes);
+        }
+        long quota = usage.getQuotaBytes() != null ? usage.getQuotaBytes() : defaultQuotaBytes;
+        return new Usage(usage.getBytes(), usage.getFileCount(), quota);
+    }
+
+    @Scheduled(cron = "${storage.usage.reconcile-cron:0 30 3 * * *}")
+    public void reconcile() {
+        long start = System.currentTimeMillis();
+        LocalDateTime staleBefore = LocalDateTime.now().minusHours(STALE_RESERVATION_HOURS);
+        int users = 0;
+        for (Long userId : storageUsageRepository.findAllUserIds()) {
+            // Own short transaction per user; the lock waits out a reserve or settle in progress
+            Integer corrected = transactionTemplate.execute(status -> {
+                storageUsageRepository.ensureUser(userId);
+                storageUsageRepository.lockUser(userId);
+                storageUsageRepository.dropStaleReservations(userId, staleBefore);
+                return storageUsageRepository.reconcileUser(userId);
+            });
+            users += corrected != null ? corrected : 0;
+        }
+        int folders = transactionTemplate.execute(
+                status -> storageUsageRepository.reconcileFolders() + storageUsageRepository.reconcileEmptyFolders());
+        if (users > 0 || folders > 0) {
+            System.err.println("Storage usage reconciled: " + users + " user and " + folders
+                    + " folder counters corrected in " + (System.currentTimeMillis() - start) + " ms");
+        }
+    }
+
+    /** Counters start empty on first deploy; fill them without holding up startup. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileInBackground() {
+        Thread loader = new Thread(() -> {
+            try {
+                reconcile();
+            } catch (Exception e) {
+                System.err.println("Storage usage reconciliation failed: " + e.getMessage());
+            }
+        }, "storage-usage-reconcile");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    public static class Usage {
+        private final long usedBytes;
+        private final long fileCount;
+        private final long quotaBytes;
+
+        Usage(long usedBytes, long fileCount, long quotaBytes) {
+            this.usedBytes = usedBytes;
+            this.fileCount = fileCount;
+            this.quotaBytes = quotaBytes;
+        }
+
+        public long getUsedBytes() {
+            return usedBytes;
+        }
+
+        public long getFileCount() {
+            return fileCount;
+        }
+
+        public long getQuotaBytes() {
+            return quotaBytes;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.demo.service;
+
+import com.example.demo.client.AIServiceClient;
+import com.example.demo.util.SpatialGridIndex;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Pairs title block labels with their values using the OCR word boxes.
+ *
+ * Table-style title blocks put the value in the cell to the right of (or
+ * below) its label, so the flattened OCR text no longer has "label: value" on
+ * one line. Here every word box goes into a {@link SpatialGridIndex} and each
+ * label is resolved to the nearest non-label word on its row, falling back to
+ * the word directly underneath.
+ */
+@Component
+public class TitleBlockLayoutParser {
+
+    public enum Field {
+        PROJECT_NAME("공사명|project\\s*name"),
+        DRAWING_NAME("도면명|drawing\\s*name|title"),
+        DRAWING_NUMBER("도면번호|dwg\\.?\\s*no\\.?|drawing\\s*no\\.?"),
+        SCALE("축척|scale");
+
+        private final Pattern label;
+
+        Field(String labelRegex) {
+            // The whole word is the label (optionally ending in ":"), or the label, ":" / "-" and an
+            // inline value. A bare space does not start a value, so headers such as "TITLE BLOCK"
+            // are not taken for a label
+            this.label = Pattern.compile("^\\s*(?:" + labelRegex + ")(?:\\s*[:：]?\\s*$|\\s*[:：\\-]\\s*(.*)$)",
+                    Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+        }
+    }
+
+    // Gaps are measured in multiples of the label height
+    private static final float MAX_RIGHT_GAP = 25f;
+    private static final float MAX_BELOW_GAP = 3f;
+    private static final float MAX_WORD_GAP = 2f;
+
+    public Map<Field, String> parse(List<AIServiceClient.OcrDetail> details) {
+        Map<Field, String> values = new EnumMap<>(Field.class);
+        if (details == null || details.isEmpty()) {
+            return values;
+        }
+
+        int n = details.size();
+        String[] text = new String[n];
+        float[] minX = new float[n];
+        float[] minY = new float[n];
+        float[] maxX = new float[n];
+        float[] maxY = new float[n];
+        int count = 0;
+        for (AIServiceClient.OcrDetail detail : details) {
+            List<List<Integer>> quad = detail.getBbox();
+            if (detail.getText() == null || detail.getText().isBlank() || quad == null || quad.isEmpty()) {
+                continue;
+            }
+            float x0 = Float.MAX_VALUE, y0 = Float.MAX_VALUE, x1 = -Float.MAX_VALUE, y1 = -Float.MAX_VALUE;
+            for (List<Integer> point : quad) {
+                if (point == null || point.size() < 2) {
+                    continue;
+                }
+                x0 = Math.min(x0, point.get(0));
+                y0 = Math.min(y0, point.get(1));
+                x1 = Math.max(x1, point.get(0));
+                y1 = Math.max(y1, point.get(1));
+            }
+            if (x1 < x0) {
+                continue;
+            }
+            text[count] = detail.getText().trim();
+            minX[count] = x0;
+            minY[count] = y0;
+            maxX[count] = x1;
+            maxY[count] = y1;
+            count++;
+        }
+        if (count == 0) {
+            return values;
+        }
+        if (count < n) {
+            text = Arrays.copyOf(text, count);
+            minX = Arrays.copyOf(minX, count);
+            minY = Arrays.copyOf(minY, count);
+            maxX = Arrays.copyOf(maxX, count);
+            maxY = Arrays.copyOf(maxY, count);
+        }
+
+        // Classify every word once: which label (if any) it starts with
+        Field[] labelOf = new Field[count];
+        String[] inlineValue = new String[count];
+        float[] heights = new float[count];
+        for (int i = 0; i < count; i++) {
+            heights[i] = Math.max(1f, maxY[i] - minY[i]);
+            for (Field field : Field.values()) {
+                Matcher m = field.label.matcher(text[i]);
+                if (m.matches()) {
+                    labelOf[i] = field;
+                    inlineValue[i] = m.group(1) != null ? m.group(1).trim() : "";
+                    break;
+                }
+            }
+        }
+        float[] sorted = heights.clone();
+        Arrays.sort(sorted);
+        float medianHeight = sorted[count / 2];
+
+        SpatialGridIndex index = new SpatialGridIndex(minX, minY, maxX, maxY, medianHeight * 4);
+        Layout layout = new Layout(text, minX, minY, maxX, maxY, labelOf, index);
+
+        for (int i = 0; i < count; i++) {
+            Field field = labelOf[i];
+            if (field == null || values.containsKey(field)) {
+                continue;
+            }
+            String value = inlineValue[i];
+            if (value.isEmpty()) {
+                value = layout.valueRightOf(i);
+            }
+            if (value == null || value.isEmpty()) {
+                value = layout.valueBelow(i);
+            }
+            if (value != null && !value.isEmpty() && (field != Field.SCALE || value.matches(".*\\d.*"))) {
+                values.put(field, value);
+            }
+        }
+        return values;
+    }
+
+    private static final class Layout {
+        private final String[] text;
+        private final float[] minX;
+        private final float[] minY;
+        private final float[] maxX;
+        private final float[] maxY;
+        private final Field[] labelOf;
+        private final SpatialGridIndex index;
+
+        Layout(String[] text, float[] minX, float[] minY, float[] maxX, float[] maxY, Field[] labelOf,
+                SpatialGridIndex index) {
+            this.text = text;
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+            this.labelOf = labelOf;
+            this.index = index;
+        }
+
+        /** Nearest non-label word on the same row, plus the words that continue it. */
+        String valueRightOf(int label) {
+            int first = nearestOnRow(label, maxX[label], MAX_RIGHT_GAP);
+            if (first < 0) {
+                return null;
+            }
+            StringBuilder value = new StringBuilder(text[first]);
+            int current = first;
+            int next;
+            while ((next = nearestOnRow(current, maxX[current], MAX_WORD_GAP)) >= 0) {
+                value.append(' ').append(text[next]);
+                current = next;
+            }
+            return value.toString();
+        }
+
+        /** Nearest non-label word directly underneath, overlapping the label horizontally. */
+        String valueBelow(int label) {
+            float h = Math.max(1f, maxY[label] - minY[label]);
+            float top = maxY[label];
+            int[] best = { -1 };
+            float[] bestGap = { Float.MAX_VALUE };
+            index.query(minX[label], top, maxX[label], top + h * MAX_BELOW_GAP, j -> {
+                if (j == label || labelOf[j] != null || minY[j] < top - h / 2) {
+                    return;
+                }
+                float gap = minY[j] - top;
+                if (gap < bestGap[0]) {
+                    bestGap[0] = gap;
+                    best[0] = j;
+                }
+            });
+            return best[0] < 0 ? null : text[best[0]];
+        }
+
+        private int nearestOnRow(int from, float left, float maxGap) {
+            float h = Math.max(1f, maxY[from] - minY[from]);
+            int[] best = { -1 };
+            float[] bestGap = { Float.MAX_VALUE };
+            index.query(left, minY[from], left + h * maxGap, maxY[from], j -> {
+                if (j == from || labelOf[j] != null || minX[j] <= minX[from] || minX[j] < left - h / 2) {
+                    return;
+                }
+                // Require at least half of the shorter box to overlap vertically
+                float overlap = Math.min(maxY[j], maxY[from]) - Math.max(minY[j], minY[from]);
+                if (overlap < Math.min(maxY[j] - minY[j], h) / 2) {
+                    return;
+                }
+                float gap = minX[j] - left;
+                if (gap < bestGap[0]) {
+                    bestGap[0] = gap;
+                    best[0] = j;
+                }
+            });
+            return best[0];
+        }
+    }
+}
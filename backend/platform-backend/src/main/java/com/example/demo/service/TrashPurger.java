@@ -0,0 +1,205 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Folder;
+import com.example.demo.model.UserFile;
+import com.example.demo.repository.FolderRepository;
+import com.example.demo.repository.UserFileRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Empties the trash: files and folders trashed longer than the retention
+ * window are deleted for good.
+ *
+ * Work is done in small batches walked oldest-first by (trashedAt, id). Each
+ * batch is its own short transaction (rows are locked with SKIP LOCKED, so
+ * it never waits on a user and a concurrent restore simply waits for the
+ * batch), and the purger sleeps between batches and stops after a bounded
+ * number of them per run, leaving the rest for the next run. Blobs are
+ * removed in parallel by {@link BlobDeletionQueue} after each commit.
+ */
+@Component
+public class TrashPurger {
+
+    private static final LocalDateTime KEYSET_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final UserFileRepository userFileRepository;
+    private final FolderRepository folderRepository;
+    private final FolderTreeService folderTreeService;
+    private final BlobDeletionQueue blobDeletionQueue;
+    private final FileListingService fileListingService;
+    private final FolderTreeCache folderTreeCache;
+    private final DrawingSearchIndex drawingSearchIndex;
+    private final PageTextIndex pageTextIndex;
+    private final StorageUsageService storageUsageService;
+    private final TransactionTemplate transactionTemplate;
+
+    private final int retentionDays;
+    private final int batchSize;
+    private final long batchPauseMillis;
+    private final int maxBatchesPerRun;
+
+    private final AtomicLong filesPurged = new AtomicLong();
+    private final AtomicLong foldersPurged = new AtomicLong();
+    private volatile LocalDateTime lastRunAt;
+    private volatile long lastRunMillis;
+
+    public TrashPurger(UserFileRepository userFileRepository, FolderRepository folderRepository,
+            FolderTreeService folderTreeService, BlobDeletionQueue blobDeletionQueue,
+            FileListingService fileListingService, FolderTreeCache folderTreeCache,
+            DrawingSearchIndex drawingSearchIndex,
+            PageTextIndex pageTextIndex, StorageUsageService storageUsageService,
+            PlatformTransactionManager transactionManager,
+            @Value("${trash.purge.retention-days:30}") int retentionDays,
+            @Value("${trash.purge.batch-size:200}") int batchSize,
+            @Value("${trash.purge.batch-pause-ms:200}") long batchPauseMillis,
+            @Value("${trash.purge.max-batches-per-run:50}") int maxBatchesPerRun) {
+        this.userFileRepository = userFileRepository;
+        this.folderRepository = folderRepository;
+        this.folderTreeService = folderTreeService;
+        this.blobDeletionQueue = blobDeletionQueue;
+        this.fileListingService = fileListingService;
+        this.folderTreeCache = folderTreeCache;
+        this.drawingSearchIndex = drawingSearchIndex;
+        this.pageTextIndex = pageTextIndex;
+        this.storageUsageService = storageUsageService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.retentionDays = retentionDays;
+        this.batchSize = batchSize;
+        this.batchPauseMillis = batchPauseMillis;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+    }
+
+    @Scheduled(initialDelayString = "${trash.purge.initial-delay-ms:300000}",
+            fixedDelayString = "${trash.purge.interval-ms:3600000}")
+    public void purge() {
+        long start = System.currentTimeMillis();
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionDays);
+        int files = 0;
+        int folders = 0;
+        try {
+            files = purgeFiles(cutoff);
+            folders = purgeFolders(cutoff);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("Trash purge failed: " + e.getMessage());
+        }
+        lastRunAt = LocalDateTime.now();
+        lastRunMillis = System.currentTimeMillis() - start;
+        if (files > 0 || folders > 0) {
+            System.err.println("Trash purge: " + files + " files, " + folders + " folders older than "
+                    + retentionDays + " days in " + lastRunMillis + " ms (" + blobDeletionQueue.getPending()
+                    + " blobs pending, " + blobDeletionQueue.getFailed() + " blob deletes failed so far)");
+        }
+    }
+
+    private int purgeFiles(LocalDateTime cutoff) throws InterruptedException {
+        LocalDateTime afterTime = KEYSET_START;
+        long afterId = 0L;
+        int purged = 0;
+        for (int batchNo = 0; batchNo < maxBatchesPerRun; batchNo++) {
+            LocalDateTime batchAfterTime = afterTime;
+            long batchAfterId = afterId;
+            List<UserFile> batch = transactionTemplate.execute(status -> {
+                List<UserFile> rows = userFileRepository.lockExpiredTrash(cutoff, batchAfterTime, batchAfterId,
+                        PageRequest.of(0, batchSize));
+                if (rows.isEmpty()) {
+                    return rows;
+                }
+                List<Long> ids = new ArrayList<>(rows.size());
+                List<String> paths = new ArrayList<>(rows.size());
+                for (UserFile file : rows) {
+                    ids.add(file.getId());
+                    paths.add(file.getFilePath());
+                }
+                storageUsageService.beforeDelete(ids);
+                userFileRepository.deleteByIds(ids);
+                blobDeletionQueue.enqueue(paths);
+                return rows;
+            });
+            if (batch == null || batch.isEmpty()) {
+                break;
+            }
+            Set<Long> users = new HashSet<>();
+            for (UserFile file : batch) {
+                if (file.getUserId() != null) {
+                    users.add(file.getUserId());
+                    drawingSearchIndex.remove(file.getUserId(), file.getId());
+                    pageTextIndex.removeFile(file.getUserId(), file.getId());
+                }
+            }
+            users.forEach(fileListingService::invalidate);
+
+            purged += batch.size();
+            filesPurged.addAndGet(batch.size());
+            UserFile last = batch.get(batch.size() - 1);
+            afterTime = last.getTrashedAt();
+            afterId = last.getId();
+            if (batch.size() < batchSize) {
+                break;
+            }
+            Thread.sleep(batchPauseMillis);
+        }
+        return purged;
+    }
+
+    private int purgeFolders(LocalDateTime cutoff) throws InterruptedException {
+        LocalDateTime afterTime = KEYSET_START;
+        long afterId = 0L;
+        int purged = 0;
+        for (int batchNo = 0; batchNo < maxBatchesPerRun; batchNo++) {
+            List<Folder> batch = folderRepository.findExpiredTrash(cutoff, afterTime, afterId,
+                    PageRequest.of(0, batchSize));
+            if (batch.isEmpty()) {
+                break;
+            }
+            for (Folder folder : batch) {
+                // One short transaction per subtree (which also takes its files out of the search
+                // indexes); 0 when already gone (ancestor purged), restored or locked
+                if (folderTreeService.deleteTrashedSubtree(folder.getUserId(), folder.getId()) > 0) {
+                    fileListingService.invalidate(folder.getUserId());
+                    folderTreeCache.invalidate(folder.getUserId());
+                    purged++;
+                    foldersPurged.incrementAndGet();
+                }
+            }
+            Folder last = batch.get(batch.size() - 1);
+            afterTime = last.getTrashedAt();
+            afterId = last.getId();
+            if (batch.size() < batchSize) {
+                break;
+            }
+            Thread.sleep(batchPauseMillis);
+        }
+        return purged;
+    }
+
+    /** Totals since startup. */
+    public long getFilesPurged() {
+        return filesPurged.get();
+    }
+
+    public long getFoldersPurged() {
+        return foldersPurged.get();
+    }
+
+    public LocalDateTime getLastRunAt() {
+        return lastRunAt;
+    }
+
+    public long getLastRunMillis() {
+        return lastRunMillis;
+    }
+}
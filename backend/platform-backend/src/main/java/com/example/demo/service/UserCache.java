@@ -0,0 +1,170 @@
+package com.example.demo.service;
+
+import com.example.demo.model.User;
+import com.example.demo.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded near-cache of users by email and by id, in front of
+ * {@link UserRepository}.
+ *
+ * Entries live for at most the TTL and the least recently used one is dropped
+ * past the size limit. Callers always get their own copy, so changing a
+ * returned user never leaks into the cache; writes go to the repository and
+ * then {@link #invalidate(User)} the entry. Unknown emails are not cached, so
+ * a user registered meanwhile is found at once. A load that overlaps an
+ * invalidation is returned but not cached.
+ */
+@Component
+public class UserCache {
+
+    private final UserRepository userRepository;
+    private final long ttlMillis;
+    private final int maxEntries;
+
+    // Both guarded by "this"; byId mirrors byEmail
+    private final LinkedHashMap<String, CachedUser> byEmail;
+    private final Map<Long, String> byId = new HashMap<>();
+    private long invalidations;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public UserCache(UserRepository userRepository,
+            @Value("${users.cache.ttl-ms:300000}") long ttlMillis,
+            @Value("${users.cache.max-entries:10000}") int maxEntries) {
+        this.userRepository = userRepository;
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+        this.byEmail = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedUser> eldest) {
+                if (size() > UserCache.this.maxEntries) {
+                    byId.remove(eldest.getValue().user.getId());
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /** @return a copy of the user, or null if there is none */
+    public User getByEmail(String email) {
+        if (email == null) {
+            return null;
+        }
+        long version;
+        synchronized (this) {
+            CachedUser entry = byEmail.get(email);
+            if (entry != null && entry.isFresh()) {
+                hits.incrementAndGet();
+                return copy(entry.user);
+            }
+            version = invalidations;
+        }
+        misses.incrementAndGet();
+        return remember(userRepository.findByEmail(email).orElse(null), version);
+    }
+
+    /** @return a copy of the user, or null if there is none */
+    public User getById(Long id) {
+        if (id == null) {
+            return null;
+        }
+        long version;
+        synchronized (this) {
+            String email = byId.get(id);
+            CachedUser entry = email != null ? byEmail.get(email) : null;
+            if (entry != null && entry.isFresh()) {
+                hits.incrementAndGet();
+                return copy(entry.user);
+            }
+            version = invalidations;
+        }
+        misses.incrementAndGet();
+        return remember(userRepository.findById(id).orElse(null), version);
+    }
+
+    public synchronized void invalidate(User user) {
+        if (user == null) {
+            return;
+        }
+        invalidations++;
+        CachedUser removed = user.getEmail() != null ? byEmail.remove(user.getEmail()) : null;
+        if (removed != null) {
+            byId.remove(removed.user.getId());
+        }
+        if (user.getId() != null) {
+            String email = byId.remove(user.getId());
+            if (email != null) {
+                byEmail.remove(email);
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    public synchronized int size() {
+        return byEmail.size();
+    }
+
+    private User remember(User user, long version) {
+        if (user == null || user.getId() == null || user.getEmail() == null) {
+            return user;
+        }
+        synchronized (this) {
+            if (version != invalidations) {
+                return user;
+            }
+            byEmail.put(user.getEmail(), new CachedUser(copy(user), System.currentTimeMillis() + ttlMillis));
+            byId.put(user.getId(), user.getEmail());
+        }
+        return user;
+    }
+
+    private static User copy(User user) {
+        User copy = new User(user.getEmail(), user.getPassword(), user.getName());
+        copy.setId(user.getId());
+        copy.setNotes(user.getNotes());
+        copy.setHasSeenTour(user.getHasSeenTour());
+        return copy;
+    }
+
+    private static final class CachedUser {
+        final User user;
+        final long expiresAt;
+
+        CachedUser(User user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isFresh() {
+            return expiresAt > System.currentTimeMillis();
+        }
+    }
+}
@@ -11,27 +11,29 @@ import java.util.Optional;
 public class UserService {
 
     private final UserRepository userRepository;
+    private final UserCache userCache;
 
     @Autowired
-    public UserService(UserRepository userRepository) {
+    public UserService(UserRepository userRepository, UserCache userCache) {
         this.userRepository = userRepository;
+        this.userCache = userCache;
     }
 
     public User register(String email, String password, String name) {
+        // Straight to the database: the cache does not remember missing users
         if (userRepository.findByEmail(email).isPresent()) {
             throw new RuntimeException("User already exists");
         }
         User user = new User(email, password, name);
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        userCache.invalidate(saved);
+        return saved;
     }
 
     public User login(String email, String password) {
-        Optional<User> userOptional = userRepository.findByEmail(email);
-        if (userOptional.isPresent()) {
-            User user = userOptional.get();
-            if (user.getPassword().equals(password)) {
-                return user;
-            }
+        User user = userCache.getByEmail(email);
+        if (user != null && user.getPassword().equals(password)) {
+            return user;
         }
         return null;
     }
@@ -42,14 +44,15 @@ public class UserService {
             User user = userOptional.get();
             user.setNotes(notes);
             userRepository.save(user);
+            userCache.invalidate(user);
         } else {
             throw new RuntimeException("User not found");
         }
     }
 
     public String getNotes(String email) {
-        Optional<User> userOptional = userRepository.findByEmail(email);
-        return userOptional.map(User::getNotes).orElse("");
+        User user = userCache.getByEmail(email);
+        return user != null && user.getNotes() != null ? user.getNotes() : "";
     }
 
     public void completeTour(String email) {
@@ -58,12 +61,17 @@ public class UserService {
             User user = userOptional.get();
             user.setHasSeenTour(true);
             userRepository.save(user);
+            userCache.invalidate(user);
         } else {
             throw new RuntimeException("User not found");
         }
     }
 
     public User getUser(String email) {
-        return userRepository.findByEmail(email).orElse(null);
+        return userCache.getByEmail(email);
+    }
+
+    public User getUser(Long id) {
+        return userCache.getById(id);
     }
 }
@@ -0,0 +1,152 @@
+package com.example.demo.util;
+
+import com.example.demo.dto.CoordinatesPayload;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Single-pass readers for the coordinates payload.
+ *
+ * JSON is read with the Jackson streaming parser straight into a
+ * {@link CoordinatesPayload}. {@code coordinates} may be an array or (as the
+ * editor sends it today) a JSON string holding the array; the string is parsed
+ * once, with no intermediate maps.
+ *
+ * Large annotation sets can use the packed binary form instead
+ * ({@value #PACKED_CONTENT_TYPE}, big-endian):
+ * <pre>
+ * magic "BBX1" | rotation int32 | count int32 |
+ * count x (page int32 | x y width height float32 | type UTF | id UTF)
+ * </pre>
+ * where UTF is {@link DataInputStream#readUTF()} (id may be empty for none).
+ * Coordinates are float32 on the wire, so packed boxes come back with about
+ * seven significant digits, less precision than the doubles JSON carries.
+ */
+public final class CoordinatesPayloadReader {
+
+    public static final String PACKED_CONTENT_TYPE = "application/x-bbox-packed";
+    public static final int PACKED_MAGIC = 0x42425831; // "BBX1"
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private CoordinatesPayloadReader() {
+    }
+
+    public static CoordinatesPayload readJson(InputStream in) throws IOException {
+        CoordinatesPayload payload = new CoordinatesPayload();
+        try (JsonParser p = JSON.createParser(in)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON object");
+            }
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken value = p.nextToken();
+                if ("rotation".equals(field) && value.isNumeric()) {
+                    payload.setRotation(p.getIntValue());
+                } else if ("coordinates".equals(field) && value == JsonToken.VALUE_STRING) {
+                    payload.setHasCoordinates(true);
+                    try (JsonParser nested = JSON.createParser(p.getText())) {
+                        if (nested.nextToken() == JsonToken.START_ARRAY) {
+                            readBoxes(nested, payload);
+                        }
+                    }
+                } else if ("coordinates".equals(field) && value == JsonToken.START_ARRAY) {
+                    payload.setHasCoordinates(true);
+                    readBoxes(p, payload);
+                } else {
+                    p.skipChildren();
+                }
+            }
+        }
+        return payload;
+    }
+
+    public static CoordinatesPayload readPacked(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != PACKED_MAGIC) {
+            throw new IOException("Not a packed bbox payload");
+        }
+        CoordinatesPayload payload = new CoordinatesPayload();
+        payload.setHasCoordinates(true);
+        payload.setRotation(data.readInt());
+        int count = data.readInt();
+        if (count < 0) {
+            throw new IOException("Negative box count: " + count);
+        }
+        for (int i = 0; i < count; i++) {
+            int page = data.readInt();
+            // float32: widened back to double, not the caller's original value
+            double x = data.readFloat();
+            double y = data.readFloat();
+            double width = data.readFloat();
+            double height = data.readFloat();
+            String type = data.readUTF();
+            String id = data.readUTF();
+            payload.add(type, id.isEmpty() ? null : id, x, y, width, height, page);
+        }
+        return payload;
+    }
+
+    /** Reads box objects until the END_ARRAY matching the current START_ARRAY. */
+    private static void readBoxes(JsonParser p, CoordinatesPayload payload) throws IOException {
+        while (p.nextToken() == JsonToken.START_OBJECT) {
+            String type = null;
+            String id = null;
+            int page = 1;
+            double x = 0, y = 0, width = 0, height = 0;
+            boolean hasRect = false;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken value = p.nextToken();
+                switch (field) {
+                    case "type":
+                        type = value == JsonToken.VALUE_NULL ? null : p.getText();
+                        break;
+                    case "id":
+                        id = value == JsonToken.VALUE_NULL ? null : p.getText();
+                        break;
+                    case "page":
+                        page = value.isNumeric() ? p.getIntValue() : 1;
+                        break;
+                    case "rect":
+                        if (value != JsonToken.START_OBJECT) {
+                            p.skipChildren();
+                            break;
+                        }
+                        hasRect = true;
+                        while (p.nextToken() == JsonToken.FIELD_NAME) {
+                            String key = p.currentName();
+                            p.nextToken();
+                            switch (key) {
+                                case "x":
+                                    x = p.getDoubleValue();
+                                    break;
+                                case "y":
+                                    y = p.getDoubleValue();
+                                    break;
+                                case "width":
+                                    width = p.getDoubleValue();
+                                    break;
+                                case "height":
+                                    height = p.getDoubleValue();
+                                    break;
+                                default:
+                                    p.skipChildren();
+                            }
+                        }
+                        break;
+                    default:
+                        p.skipChildren();
+                }
+            }
+            if (type != null && hasRect) {
+                payload.add(type, id, x, y, width, height, page);
+            }
+        }
+    }
+}
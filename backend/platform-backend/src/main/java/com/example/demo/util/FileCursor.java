@@ -0,0 +1,53 @@
+package com.example.demo.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor over (uploadTime, id), the sort key of file listings.
+ * The next page starts strictly after the last row of the previous one, so
+ * inserts and deletes between requests never shift or repeat rows.
+ */
+public final class FileCursor {
+
+    /** Sorts after every real row; used for the first page. */
+    public static final FileCursor START = new FileCursor(LocalDateTime.of(9999, 12, 31, 0, 0), Long.MAX_VALUE);
+
+    private final LocalDateTime uploadTime;
+    private final long id;
+
+    public FileCursor(LocalDateTime uploadTime, long id) {
+        this.uploadTime = uploadTime;
+        this.id = id;
+    }
+
+    public LocalDateTime getUploadTime() {
+        return uploadTime;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String encode() {
+        String raw = uploadTime + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the cursor was not produced by {@link #encode()}
+     */
+    public static FileCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return START;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.lastIndexOf('|');
+            return new FileCursor(LocalDateTime.parse(raw.substring(0, sep)), Long.parseLong(raw.substring(sep + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
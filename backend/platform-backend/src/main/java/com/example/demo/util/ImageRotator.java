@@ -0,0 +1,165 @@
+package com.example.demo.util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Lossless quarter-turn rotation by remapping raster indices.
+ *
+ * The destination has the source's own color model and sample layout (any
+ * image type, including custom and indexed ones), so every pixel is copied
+ * bit for bit; nothing is resampled or redrawn. The destination is cut into
+ * square tiles so reads of the source stay within a few cache lines, and
+ * tiles are spread over a {@link ForkJoinPool}. Packed int and interleaved
+ * byte rasters are copied straight between the backing arrays; other layouts
+ * go through {@link Raster#getDataElements}.
+ */
+public final class ImageRotator {
+
+    private static final int TILE = 64;
+    private static final int TILES_PER_TASK = 8;
+
+    private ImageRotator() {
+    }
+
+    /** Rotates clockwise by 90, 180 or 270 degrees (0 returns the source). */
+    public static BufferedImage rotate(BufferedImage src, int degrees, ForkJoinPool pool) {
+        int rotation = RotationGeometry.normalize(degrees);
+        if (rotation == 0) {
+            return src;
+        }
+        int w = src.getWidth();
+        int h = src.getHeight();
+        boolean swap = rotation != 180;
+        int dw = swap ? h : w;
+        int dh = swap ? w : h;
+
+        ColorModel cm = src.getColorModel();
+        WritableRaster destRaster = src.getRaster().createCompatibleWritableRaster(dw, dh);
+        BufferedImage dest = new BufferedImage(cm, destRaster, cm.isAlphaPremultiplied(), null);
+
+        int tilesX = (dw + TILE - 1) / TILE;
+        int tilesY = (dh + TILE - 1) / TILE;
+        pool.invoke(new TileTask(src.getRaster(), destRaster, rotation, w, h, tilesX, 0, tilesX * tilesY));
+        return dest;
+    }
+
+    private static final class TileTask extends RecursiveAction {
+        private final Raster src;
+        private final WritableRaster dest;
+        private final int rotation;
+        private final int w;
+        private final int h;
+        private final int tilesX;
+        private final int from;
+        private final int to;
+
+        TileTask(Raster src, WritableRaster dest, int rotation, int w, int h, int tilesX, int from, int to) {
+            this.src = src;
+            this.dest = dest;
+            this.rotation = rotation;
+            this.w = w;
+            this.h = h;
+            this.tilesX = tilesX;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > TILES_PER_TASK) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new TileTask(src, dest, rotation, w, h, tilesX, from, mid),
+                        new TileTask(src, dest, rotation, w, h, tilesX, mid, to));
+                return;
+            }
+            for (int tile = from; tile < to; tile++) {
+                int x0 = (tile % tilesX) * TILE;
+                int y0 = (tile / tilesX) * TILE;
+                copyTile(x0, y0, Math.min(x0 + TILE, dest.getWidth()), Math.min(y0 + TILE, dest.getHeight()));
+            }
+        }
+
+        private void copyTile(int x0, int y0, int x1, int y1) {
+            DataBuffer srcBuffer = src.getDataBuffer();
+            DataBuffer destBuffer = dest.getDataBuffer();
+            if (srcBuffer instanceof DataBufferInt && src.getSampleModel() instanceof SinglePixelPackedSampleModel
+                    && srcBuffer.getNumBanks() == 1 && isUnshifted(src) && isUnshifted(dest)) {
+                int[] in = ((DataBufferInt) srcBuffer).getData();
+                int[] out = ((DataBufferInt) destBuffer).getData();
+                int inStride = ((SinglePixelPackedSampleModel) src.getSampleModel()).getScanlineStride();
+                int outStride = ((SinglePixelPackedSampleModel) dest.getSampleModel()).getScanlineStride();
+                int inBase = srcBuffer.getOffset();
+                int outBase = destBuffer.getOffset();
+                for (int dy = y0; dy < y1; dy++) {
+                    int o = outBase + dy * outStride;
+                    for (int dx = x0; dx < x1; dx++) {
+                        out[o + dx] = in[inBase + sourceY(dx, dy) * inStride + sourceX(dx, dy)];
+                    }
+                }
+            } else if (srcBuffer instanceof DataBufferByte
+                    && src.getSampleModel() instanceof PixelInterleavedSampleModel
+                    && srcBuffer.getNumBanks() == 1 && isUnshifted(src) && isUnshifted(dest)) {
+                PixelInterleavedSampleModel inModel = (PixelInterleavedSampleModel) src.getSampleModel();
+                PixelInterleavedSampleModel outModel = (PixelInterleavedSampleModel) dest.getSampleModel();
+                byte[] in = ((DataBufferByte) srcBuffer).getData();
+                byte[] out = ((DataBufferByte) destBuffer).getData();
+                int pixelStride = inModel.getPixelStride();
+                int inBase = srcBuffer.getOffset();
+                int outBase = destBuffer.getOffset();
+                for (int dy = y0; dy < y1; dy++) {
+                    int o = outBase + dy * outModel.getScanlineStride() + x0 * outModel.getPixelStride();
+                    for (int dx = x0; dx < x1; dx++) {
+                        int i = inBase + sourceY(dx, dy) * inModel.getScanlineStride() + sourceX(dx, dy) * pixelStride;
+                        System.arraycopy(in, i, out, o, pixelStride);
+                        o += outModel.getPixelStride();
+                    }
+                }
+            } else {
+                Object pixel = null;
+                for (int dy = y0; dy < y1; dy++) {
+                    for (int dx = x0; dx < x1; dx++) {
+                        pixel = src.getDataElements(sourceX(dx, dy), sourceY(dx, dy), pixel);
+                        dest.setDataElements(dx, dy, pixel);
+                    }
+                }
+            }
+        }
+
+        private int sourceX(int dx, int dy) {
+            switch (rotation) {
+                case 90:
+                    return dy;
+                case 180:
+                    return w - 1 - dx;
+                default:
+                    return w - 1 - dy;
+            }
+        }
+
+        private int sourceY(int dx, int dy) {
+            switch (rotation) {
+                case 90:
+                    return h - 1 - dx;
+                case 180:
+                    return h - 1 - dy;
+                default:
+                    return dx;
+            }
+        }
+
+        /** Not a child raster (getSubimage) with a translated origin. */
+        private static boolean isUnshifted(Raster raster) {
+            return raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0;
+        }
+    }
+}
@@ -1,50 +1,88 @@
 package com.example.demo.util;
 
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.security.Key;
 import java.nio.charset.StandardCharsets;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 @Component
 public class JwtUtil {
 
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_ROLES = "roles";
+    public static final List<String> DEFAULT_ROLES = List.of("USER");
+    public static final List<String> ADMIN_ROLES = List.of("USER", "ADMIN");
+
     private final Key key;
+    // Lower-cased emails whose tokens carry the ADMIN role (operational endpoints)
+    private final Set<String> adminEmails;
+    // Immutable and thread-safe: built once instead of per call
+    private final JwtParser parser;
     private final long EXPIRATION_TIME = 30 * 60 * 1000; // 30 minutes
 
-    public JwtUtil(@Value("${jwt.secret}") String secret) {
+    public JwtUtil(String secret) {
+        this(secret, "");
+    }
+
+    @Autowired
+    public JwtUtil(@Value("${jwt.secret}") String secret, @Value("${auth.admin-emails:}") String adminEmails) {
         this.key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parserBuilder().setSigningKey(key).build();
+        this.adminEmails = new HashSet<>();
+        for (String email : adminEmails.split(",")) {
+            if (!email.isBlank()) {
+                this.adminEmails.add(email.trim().toLowerCase());
+            }
+        }
     }
 
-    public String generateToken(String email) {
+    /**
+     * Token carrying the user id and roles as claims, so requests can be
+     * authenticated without loading the user.
+     */
+    public String generateToken(com.example.demo.model.User user) {
         return Jwts.builder()
-                .setSubject(email)
+                .setSubject(user.getEmail())
+                .claim(CLAIM_USER_ID, user.getId())
+                .claim(CLAIM_ROLES, isAdmin(user.getEmail()) ? ADMIN_ROLES : DEFAULT_ROLES)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
                 .signWith(key, SignatureAlgorithm.HS256)
                 .compact();
     }
 
+    private boolean isAdmin(String email) {
+        return email != null && adminEmails.contains(email.toLowerCase());
+    }
+
+    /**
+     * Verified claims of a token.
+     *
+     * @throws io.jsonwebtoken.JwtException if the token is invalid or expired
+     */
+    public Claims parseClaims(String token) {
+        return parser.parseClaimsJws(token).getBody();
+    }
+
     public String extractEmail(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+        return parseClaims(token).getSubject();
     }
 
     // Add missing method
     public boolean validateToken(String token) {
         try {
-            Jwts.parserBuilder()
-                    .setSigningKey(key)
-                    .build()
-                    .parseClaimsJws(token);
+            parseClaims(token);
             return true;
         } catch (Exception e) {
             return false;
@@ -0,0 +1,189 @@
+package com.example.demo.util;
+
+import com.example.demo.dto.OcrWord;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding for a page's OCR words.
+ *
+ * Layout (all integers are LEB128 varints, signed ones zigzag-encoded):
+ * <pre>
+ * version(1 byte) | dictSize | dictSize x (byteLen | UTF-8 bytes)
+ * wordCount | wordCount x (dictIndex | dx0 dy0 | 3 x (dx dy) | confidence byte)
+ * </pre>
+ * Coordinates are stored as fixed-point integers (1/10 unit). The first corner
+ * of each word is a delta from the previous word's first corner and the other
+ * three corners are deltas from the word's own first corner, so typical words
+ * cost 1-2 bytes per coordinate. Repeated strings are stored once.
+ */
+public final class OcrWordCodec {
+
+    public static final byte VERSION = 1;
+    private static final double COORD_SCALE = 10.0;
+
+    private OcrWordCodec() {
+    }
+
+    public static byte[] encode(List<OcrWord> words) {
+        Map<String, Integer> dictIndex = new HashMap<>();
+        List<byte[]> dict = new ArrayList<>();
+        int[] wordDict = new int[words.size()];
+        for (int i = 0; i < words.size(); i++) {
+            String text = words.get(i).getText() == null ? "" : words.get(i).getText();
+            Integer idx = dictIndex.get(text);
+            if (idx == null) {
+                idx = dict.size();
+                dictIndex.put(text, idx);
+                dict.add(text.getBytes(StandardCharsets.UTF_8));
+            }
+            wordDict[i] = idx;
+        }
+
+        Writer out = new Writer(16 + words.size() * 16);
+        out.writeByte(VERSION);
+        out.writeVarint(dict.size());
+        for (byte[] bytes : dict) {
+            out.writeVarint(bytes.length);
+            out.writeBytes(bytes);
+        }
+        out.writeVarint(words.size());
+        long prevX = 0;
+        long prevY = 0;
+        for (int i = 0; i < words.size(); i++) {
+            OcrWord word = words.get(i);
+            double[] q = word.getQuad();
+            long x0 = Math.round(q[0] * COORD_SCALE);
+            long y0 = Math.round(q[1] * COORD_SCALE);
+            out.writeVarint(wordDict[i]);
+            out.writeSignedVarint(x0 - prevX);
+            out.writeSignedVarint(y0 - prevY);
+            for (int c = 1; c < 4; c++) {
+                out.writeSignedVarint(Math.round(q[c * 2] * COORD_SCALE) - x0);
+                out.writeSignedVarint(Math.round(q[c * 2 + 1] * COORD_SCALE) - y0);
+            }
+            float confidence = Math.max(0f, Math.min(1f, word.getConfidence()));
+            out.writeByte((byte) Math.round(confidence * 255));
+            prevX = x0;
+            prevY = y0;
+        }
+        return out.toByteArray();
+    }
+
+    public static List<OcrWord> decode(byte[] data) {
+        List<OcrWord> words = new ArrayList<>();
+        if (data == null || data.length == 0) {
+            return words;
+        }
+        Reader in = new Reader(data);
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported OCR word encoding version: " + version);
+        }
+        int dictSize = (int) in.readVarint();
+        String[] dict = new String[dictSize];
+        for (int i = 0; i < dictSize; i++) {
+            int len = (int) in.readVarint();
+            dict[i] = new String(data, in.pos, len, StandardCharsets.UTF_8);
+            in.pos += len;
+        }
+        int count = (int) in.readVarint();
+        long prevX = 0;
+        long prevY = 0;
+        for (int i = 0; i < count; i++) {
+            String text = dict[(int) in.readVarint()];
+            long x0 = prevX + in.readSignedVarint();
+            long y0 = prevY + in.readSignedVarint();
+            double[] quad = new double[8];
+            quad[0] = x0 / COORD_SCALE;
+            quad[1] = y0 / COORD_SCALE;
+            for (int c = 1; c < 4; c++) {
+                quad[c * 2] = (x0 + in.readSignedVarint()) / COORD_SCALE;
+                quad[c * 2 + 1] = (y0 + in.readSignedVarint()) / COORD_SCALE;
+            }
+            float confidence = (in.readByte() & 0xFF) / 255f;
+            words.add(new OcrWord(text, quad, confidence));
+            prevX = x0;
+            prevY = y0;
+        }
+        return words;
+    }
+
+    private static final class Writer {
+        private byte[] buf;
+        private int len;
+
+        Writer(int capacity) {
+            this.buf = new byte[Math.max(16, capacity)];
+        }
+
+        void writeByte(byte b) {
+            ensure(1);
+            buf[len++] = b;
+        }
+
+        void writeBytes(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, len, bytes.length);
+            len += bytes.length;
+        }
+
+        void writeVarint(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                buf[len++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[len++] = (byte) v;
+        }
+
+        void writeSignedVarint(long v) {
+            writeVarint((v << 1) ^ (v >> 63));
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, len);
+        }
+
+        private void ensure(int extra) {
+            if (len + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + extra));
+            }
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] buf;
+        private int pos;
+
+        Reader(byte[] buf) {
+            this.buf = buf;
+        }
+
+        byte readByte() {
+            return buf[pos++];
+        }
+
+        long readVarint() {
+            long result = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buf[pos++];
+                result |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return result;
+        }
+
+        long readSignedVarint() {
+            long v = readVarint();
+            return (v >>> 1) ^ -(v & 1);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.demo.util;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A named, fair semaphore in front of a scarce resource.
+ *
+ * With request handling on virtual threads the number of concurrent callers
+ * is no longer capped by a thread pool, so whatever is really limited
+ * (memory, a remote server, database connections) gets one of these. Callers
+ * wait up to the timeout and are then turned away with {@link BusyException}
+ * rather than piling up. Semaphore waits park a virtual thread without
+ * pinning its carrier.
+ */
+public class ResourceGuard {
+
+    private final String name;
+    private final int permits;
+    private final long timeoutMillis;
+    private final Semaphore semaphore;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public ResourceGuard(String name, int permits, long timeoutMillis) {
+        this.name = name;
+        this.permits = Math.max(1, permits);
+        this.timeoutMillis = timeoutMillis;
+        this.semaphore = new Semaphore(this.permits, true);
+    }
+
+    /**
+     * @throws BusyException if no permit frees up within the timeout
+     */
+    public void acquire() {
+        waiting.incrementAndGet();
+        try {
+            if (!semaphore.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                rejected.incrementAndGet();
+                throw new BusyException(name + " is busy, try again later");
+            }
+            acquired.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusyException("Interrupted while waiting for " + name);
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    public void release() {
+        semaphore.release();
+    }
+
+    public <T> T call(GuardedCall<T> call) throws Exception {
+        acquire();
+        try {
+            return call.call();
+        } finally {
+            release();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getPermits() {
+        return permits;
+    }
+
+    public int getInUse() {
+        return permits - semaphore.availablePermits();
+    }
+
+    public int getWaiting() {
+        return waiting.get();
+    }
+
+    public long getAcquired() {
+        return acquired.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    @FunctionalInterface
+    public interface GuardedCall<T> {
+        T call() throws Exception;
+    }
+
+    /**
+     * The guarded resource stayed saturated for the whole timeout.
+     */
+    public static class BusyException extends RuntimeException {
+        public BusyException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.demo.util;
+
+/**
+ * Coordinates under clockwise quarter-turn rotations of a page or image.
+ *
+ * Rotation is stored as metadata only, so boxes and words always live on the
+ * unrotated page; this is the one place that maps them to and from a rotated
+ * view (renditions, OCR crops sent rotated). A page of {@code width} x
+ * {@code height} rotated by 90 or 270 degrees becomes {@code height} x
+ * {@code width}. Rectangles are {x, y, width, height} with a top-left origin,
+ * the convention of BBox and of the editor.
+ */
+public final class RotationGeometry {
+
+    private RotationGeometry() {
+    }
+
+    /** 0, 90, 180 or 270; anything else is rounded down to a quarter turn. */
+    public static int normalize(int degrees) {
+        int d = ((degrees % 360) + 360) % 360;
+        return d - d % 90;
+    }
+
+    public static boolean swapsSides(int degrees) {
+        int d = normalize(degrees);
+        return d == 90 || d == 270;
+    }
+
+    /** Width of the rotated page. */
+    public static double rotatedWidth(int degrees, double width, double height) {
+        return swapsSides(degrees) ? height : width;
+    }
+
+    public static double rotatedHeight(int degrees, double width, double height) {
+        return swapsSides(degrees) ? width : height;
+    }
+
+    /**
+     * Maps a point on the page rotated clockwise by {@code degrees} back to
+     * the unrotated page of {@code width} x {@code height}, in place.
+     */
+    public static void unrotatePoint(double[] point, int offset, int degrees, double width, double height) {
+        double rx = point[offset];
+        double ry = point[offset + 1];
+        switch (normalize(degrees)) {
+            case 90:
+                point[offset] = ry;
+                point[offset + 1] = height - rx;
+                break;
+            case 180:
+                point[offset] = width - rx;
+                point[offset + 1] = height - ry;
+                break;
+            case 270:
+                point[offset] = width - ry;
+                point[offset + 1] = rx;
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Maps a rectangle on the unrotated page to the page rotated clockwise by
+     * {@code degrees}, in place.
+     */
+    public static void rotateRect(double[] rect, int offset, int degrees, double width, double height) {
+        double x = rect[offset];
+        double y = rect[offset + 1];
+        double w = rect[offset + 2];
+        double h = rect[offset + 3];
+        switch (normalize(degrees)) {
+            case 90:
+                rect[offset] = height - y - h;
+                rect[offset + 1] = x;
+                rect[offset + 2] = h;
+                rect[offset + 3] = w;
+                break;
+            case 180:
+                rect[offset] = width - x - w;
+                rect[offset + 1] = height - y - h;
+                break;
+            case 270:
+                rect[offset] = y;
+                rect[offset + 1] = width - x - w;
+                rect[offset + 2] = h;
+                rect[offset + 3] = w;
+                break;
+            default:
+                break;
+        }
+    }
+
+    /** Inverse of {@link #rotateRect}: rotated view back to the unrotated page. */
+    public static void unrotateRect(double[] rect, int offset, int degrees, double width, double height) {
+        int d = normalize(degrees);
+        rotateRect(rect, offset, (360 - d) % 360, rotatedWidth(d, width, height), rotatedHeight(d, width, height));
+    }
+}
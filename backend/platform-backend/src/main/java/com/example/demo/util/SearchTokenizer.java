@@ -0,0 +1,105 @@
+package com.example.demo.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tokenizer shared by the drawing search index and its queries.
+ *
+ * Latin letters and digits form word tokens ("a-101" yields "a-101", "a" and
+ * "101" so drawing numbers match both whole and in parts). Hangul and other
+ * CJK runs have no reliable word boundaries in OCR output, so they are split
+ * into overlapping bigrams ("신축공사" -> "신축", "축공", "공사"). Indexed text
+ * also keeps the last character of each run ({@link #indexTerms}), so every
+ * character starts some indexed term and a one-character query can be
+ * answered with a prefix lookup.
+ */
+public final class SearchTokenizer {
+
+    private SearchTokenizer() {
+    }
+
+    /** Tokens of a query. */
+    public static List<String> tokenize(String text) {
+        return tokenize(text, false);
+    }
+
+    /** Tokens of indexed text: the query tokens plus the last character of every CJK run. */
+    public static List<String> indexTerms(String text) {
+        return tokenize(text, true);
+    }
+
+    /** True for a lone CJK character, which only matches as a prefix of indexed terms. */
+    public static boolean isCjkUnigram(String token) {
+        return token.length() == 1 && isCjk(token.charAt(0));
+    }
+
+    private static List<String> tokenize(String text, boolean runTails) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        String s = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase();
+        int n = s.length();
+        int i = 0;
+        while (i < n) {
+            char c = s.charAt(i);
+            if (isCjk(c)) {
+                int start = i;
+                while (i < n && isCjk(s.charAt(i))) {
+                    i++;
+                }
+                if (i - start == 1) {
+                    tokens.add(s.substring(start, i));
+                } else {
+                    for (int k = start; k + 1 < i; k++) {
+                        tokens.add(s.substring(k, k + 2));
+                    }
+                    if (runTails) {
+                        tokens.add(s.substring(i - 1, i));
+                    }
+                }
+            } else if (Character.isLetterOrDigit(c)) {
+                int start = i;
+                int parts = 0;
+                int partStart = i;
+                while (i < n) {
+                    char d = s.charAt(i);
+                    if (Character.isLetterOrDigit(d) && !isCjk(d)) {
+                        i++;
+                    } else if (isJoiner(d) && i + 1 < n && Character.isLetterOrDigit(s.charAt(i + 1))
+                            && !isCjk(s.charAt(i + 1))) {
+                        tokens.add(s.substring(partStart, i));
+                        parts++;
+                        i++;
+                        partStart = i;
+                    } else {
+                        break;
+                    }
+                }
+                if (parts > 0) {
+                    tokens.add(s.substring(partStart, i));
+                }
+                tokens.add(s.substring(start, i));
+            } else {
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isJoiner(char c) {
+        return c == '-' || c == '_' || c == '.' || c == '/';
+    }
+
+    private static boolean isCjk(char c) {
+        Character.UnicodeBlock block = Character.UnicodeBlock.of(c);
+        return block == Character.UnicodeBlock.HANGUL_SYLLABLES
+                || block == Character.UnicodeBlock.HANGUL_JAMO
+                || block == Character.UnicodeBlock.HANGUL_COMPATIBILITY_JAMO
+                || block == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS
+                || block == Character.UnicodeBlock.HIRAGANA
+                || block == Character.UnicodeBlock.KATAKANA;
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.demo.util;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable uniform-grid index over axis-aligned rectangles.
+ *
+ * Items are bucketed into fixed-size cells (CSR layout: one offsets array plus
+ * one flat item array), so a window query only touches the cells it overlaps.
+ * Queries are allocation-free and safe to run from several threads at once:
+ * an item spanning several cells is reported only from the first cell shared
+ * by the item and the query window.
+ */
+public final class SpatialGridIndex {
+
+    private static final int MAX_CELLS_PER_AXIS = 256;
+
+    private final float[] minX;
+    private final float[] minY;
+    private final float[] maxX;
+    private final float[] maxY;
+
+    private final float originX;
+    private final float originY;
+    private final float cellSize;
+    private final int cols;
+    private final int rows;
+
+    private final int[] cellStart;
+    private final int[] cellItems;
+
+    /**
+     * @param minX     left edges, one per item
+     * @param minY     top edges
+     * @param maxX     right edges
+     * @param maxY     bottom edges
+     * @param cellSize preferred cell edge length (roughly a few item heights)
+     */
+    public SpatialGridIndex(float[] minX, float[] minY, float[] maxX, float[] maxY, float cellSize) {
+        int n = minX.length;
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+
+        float bx0 = Float.MAX_VALUE, by0 = Float.MAX_VALUE, bx1 = -Float.MAX_VALUE, by1 = -Float.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            bx0 = Math.min(bx0, minX[i]);
+            by0 = Math.min(by0, minY[i]);
+            bx1 = Math.max(bx1, maxX[i]);
+            by1 = Math.max(by1, maxY[i]);
+        }
+        if (n == 0) {
+            bx0 = by0 = bx1 = by1 = 0;
+        }
+
+        float span = Math.max(bx1 - bx0, by1 - by0);
+        float size = Math.max(cellSize, 1f);
+        if (span / size > MAX_CELLS_PER_AXIS) {
+            size = span / MAX_CELLS_PER_AXIS;
+        }
+        this.originX = bx0;
+        this.originY = by0;
+        this.cellSize = size;
+        this.cols = Math.max(1, (int) ((bx1 - bx0) / size) + 1);
+        this.rows = Math.max(1, (int) ((by1 - by0) / size) + 1);
+
+        // Counting pass, prefix sum, then fill (counting sort into cells)
+        int[] start = new int[cols * rows + 1];
+        for (int i = 0; i < n; i++) {
+            int cx0 = cellX(minX[i]), cx1 = cellX(maxX[i]);
+            int cy0 = cellY(minY[i]), cy1 = cellY(maxY[i]);
+            for (int cy = cy0; cy <= cy1; cy++) {
+                for (int cx = cx0; cx <= cx1; cx++) {
+                    start[cy * cols + cx + 1]++;
+                }
+            }
+        }
+        for (int c = 0; c < cols * rows; c++) {
+            start[c + 1] += start[c];
+        }
+        int[] fill = new int[cols * rows];
+        int[] items = new int[start[cols * rows]];
+        for (int i = 0; i < n; i++) {
+            int cx0 = cellX(minX[i]), cx1 = cellX(maxX[i]);
+            int cy0 = cellY(minY[i]), cy1 = cellY(maxY[i]);
+            for (int cy = cy0; cy <= cy1; cy++) {
+                for (int cx = cx0; cx <= cx1; cx++) {
+                    int cell = cy * cols + cx;
+                    items[start[cell] + fill[cell]++] = i;
+                }
+            }
+        }
+        this.cellStart = start;
+        this.cellItems = items;
+    }
+
+    public int size() {
+        return minX.length;
+    }
+
+    /**
+     * Reports every item whose rectangle intersects the query window exactly
+     * once.
+     */
+    public void query(float qMinX, float qMinY, float qMaxX, float qMaxY, IntConsumer visitor) {
+        if (qMaxX < qMinX || qMaxY < qMinY) {
+            return;
+        }
+        int qcx0 = cellX(qMinX), qcx1 = cellX(qMaxX);
+        int qcy0 = cellY(qMinY), qcy1 = cellY(qMaxY);
+        for (int cy = qcy0; cy <= qcy1; cy++) {
+            for (int cx = qcx0; cx <= qcx1; cx++) {
+                int cell = cy * cols + cx;
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    int i = cellItems[k];
+                    if (maxX[i] < qMinX || minX[i] > qMaxX || maxY[i] < qMinY || minY[i] > qMaxY) {
+                        continue;
+                    }
+                    // Dedupe: report only from the first cell of (item ∩ query)
+                    if (cx != Math.max(cellX(minX[i]), qcx0) || cy != Math.max(cellY(minY[i]), qcy0)) {
+                        continue;
+                    }
+                    visitor.accept(i);
+                }
+            }
+        }
+    }
+
+    private int cellX(float x) {
+        int c = (int) ((x - originX) / cellSize);
+        return c < 0 ? 0 : (c >= cols ? cols - 1 : c);
+    }
+
+    private int cellY(float y) {
+        int c = (int) ((y - originY) / cellSize);
+        return c < 0 ? 0 : (c >= rows ? rows - 1 : c);
+    }
+}
@@ -0,0 +1,63 @@
+-- Idempotent fix-ups applied after Hibernate's ddl-auto=update.
+
+-- bboxes moved from IDENTITY to a pooled sequence (allocationSize 50):
+-- make sure the sequence starts past every id handed out by the identity column.
+SELECT setval('bboxes_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM bboxes) + 50, (SELECT last_value FROM bboxes_seq)));
+
+-- Soft-delete flags: older rows may carry NULL is_trashed, which forced the listing
+-- queries into "(is_trashed = false OR is_trashed IS NULL)" and away from any index.
+-- Backfill once (the EXISTS is a one-time filter, so later starts skip the scan) and
+-- lock the column down so queries can use a plain "is_trashed = false".
+UPDATE user_files SET is_trashed = false WHERE is_trashed IS NULL
+    AND EXISTS (SELECT 1 FROM information_schema.columns
+                WHERE table_name = 'user_files' AND column_name = 'is_trashed' AND is_nullable = 'YES');
+ALTER TABLE user_files ALTER COLUMN is_trashed SET DEFAULT false;
+ALTER TABLE user_files ALTER COLUMN is_trashed SET NOT NULL;
+UPDATE folders SET is_trashed = false WHERE is_trashed IS NULL
+    AND EXISTS (SELECT 1 FROM information_schema.columns
+                WHERE table_name = 'folders' AND column_name = 'is_trashed' AND is_nullable = 'YES');
+ALTER TABLE folders ALTER COLUMN is_trashed SET DEFAULT false;
+ALTER TABLE folders ALTER COLUMN is_trashed SET NOT NULL;
+
+-- user_files listings (UserFileRepository): one partial index per view, in listing order
+-- so a page is an index range scan that stops after LIMIT rows.
+CREATE INDEX IF NOT EXISTS idx_user_files_recent
+    ON user_files (user_id, upload_time DESC, id DESC) WHERE is_trashed = false;
+CREATE INDEX IF NOT EXISTS idx_user_files_root
+    ON user_files (user_id, upload_time DESC, id DESC) WHERE is_trashed = false AND folder_id IS NULL;
+CREATE INDEX IF NOT EXISTS idx_user_files_folder
+    ON user_files (user_id, folder_id, upload_time DESC, id DESC) WHERE is_trashed = false;
+CREATE INDEX IF NOT EXISTS idx_user_files_trash
+    ON user_files (user_id, upload_time DESC, id DESC) WHERE is_trashed = true;
+CREATE INDEX IF NOT EXISTS idx_user_files_folder_id ON user_files (folder_id);
+
+-- folders (FolderRepository): children of a parent / roots, trash view, subtree walks
+CREATE INDEX IF NOT EXISTS idx_folders_user_parent
+    ON folders (user_id, parent_folder_id) WHERE is_trashed = false;
+CREATE INDEX IF NOT EXISTS idx_folders_trash ON folders (user_id) WHERE is_trashed = true;
+CREATE INDEX IF NOT EXISTS idx_folders_parent ON folders (parent_folder_id);
+
+-- Trash purge works off trashed_at: give legacy trashed rows a start of retention and
+-- index the expired-trash scans (keyset over trashed_at, id).
+CREATE INDEX IF NOT EXISTS idx_user_files_trashed_at ON user_files (trashed_at, id) WHERE is_trashed = true;
+CREATE INDEX IF NOT EXISTS idx_folders_trashed_at ON folders (trashed_at, id) WHERE is_trashed = true;
+UPDATE user_files SET trashed_at = now() WHERE is_trashed = true AND trashed_at IS NULL;
+UPDATE folders SET trashed_at = now() WHERE is_trashed = true AND trashed_at IS NULL;
+
+-- OCR job queue (OcrJobRepository): workers on every node claim due rows (interactive before
+-- bulk, then oldest-first) with SKIP LOCKED and take over running rows whose lease expired; both
+-- scans are partial-index ranges. The per-user running count of the claim is a lookup too.
+DROP INDEX IF EXISTS idx_ocr_jobs_due;
+CREATE INDEX IF NOT EXISTS idx_ocr_jobs_due_bulk ON ocr_jobs (bulk, run_after, id) WHERE state = 'QUEUED';
+CREATE INDEX IF NOT EXISTS idx_ocr_jobs_lease ON ocr_jobs (lease_expires_at, id) WHERE state = 'RUNNING';
+CREATE INDEX IF NOT EXISTS idx_ocr_jobs_user_running ON ocr_jobs (user_id) WHERE state = 'RUNNING';
+CREATE INDEX IF NOT EXISTS idx_ocr_jobs_user_file ON ocr_jobs (user_file_id);
+
+-- title_block_texts: one row per file (OcrResultWriter upserts it). Older deployments may hold
+-- duplicates from concurrent writers; keep the newest once, before the unique index exists.
+DELETE FROM title_block_texts t USING title_block_texts newer
+    WHERE newer.user_file_id = t.user_file_id
+      AND (COALESCE(newer.processed_at, '-infinity') > COALESCE(t.processed_at, '-infinity')
+           OR (COALESCE(newer.processed_at, '-infinity') = COALESCE(t.processed_at, '-infinity') AND newer.id > t.id))
+      AND NOT EXISTS (SELECT 1 FROM pg_indexes WHERE indexname = 'uq_title_block_texts_user_file');
+CREATE UNIQUE INDEX IF NOT EXISTS uq_title_block_texts_user_file ON title_block_texts (user_file_id);
@@ -0,0 +1,141 @@
+package com.example.demo.bench;
+
+import com.example.demo.dto.CoordinatesPayload;
+import com.example.demo.util.CoordinatesPayloadReader;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Old vs new parsing of the coordinates payload (rotated image case, which
+ * was the worst path before: map body, string re-parse, serialize, re-parse).
+ *
+ * Run with:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main CoordinatesParseBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CoordinatesParseBenchmark {
+
+    @Param({ "10", "1000", "10000" })
+    public int boxes;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private byte[] jsonBody;
+    private byte[] packedBody;
+
+    @Setup
+    public void setup() throws IOException {
+        List<Map<String, Object>> list = new ArrayList<>();
+        ByteArrayOutputStream packed = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(packed);
+        out.writeInt(CoordinatesPayloadReader.PACKED_MAGIC);
+        out.writeInt(90);
+        out.writeInt(boxes);
+        for (int i = 0; i < boxes; i++) {
+            Map<String, Object> rect = new LinkedHashMap<>();
+            rect.put("x", 10.5 + i);
+            rect.put("y", 20.25 + i);
+            rect.put("width", 120.0);
+            rect.put("height", 40.75);
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("type", "title");
+            item.put("id", "bbox-" + i);
+            item.put("rect", rect);
+            item.put("page", 1 + i % 3);
+            list.add(item);
+
+            out.writeInt(1 + i % 3);
+            out.writeFloat((float) (10.5 + i));
+            out.writeFloat((float) (20.25 + i));
+            out.writeFloat(120f);
+            out.writeFloat(40.75f);
+            out.writeUTF("title");
+            out.writeUTF("bbox-" + i);
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("coordinates", objectMapper.writeValueAsString(list)); // editor sends a JSON string
+        body.put("rotation", 90);
+        jsonBody = objectMapper.writeValueAsString(body).getBytes(StandardCharsets.UTF_8);
+        packedBody = packed.toByteArray();
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Object legacyMapPath() throws IOException {
+        Map<String, Object> coords = objectMapper.readValue(jsonBody, Map.class);
+        String jsonStr = (String) coords.get("coordinates");
+        List<Map<String, Object>> list = objectMapper.readValue(jsonStr,
+                new TypeReference<List<Map<String, Object>>>() {
+                });
+        List<Map<String, Object>> newList = new ArrayList<>();
+        for (Map<String, Object> item : list) {
+            Map<String, Number> rect = (Map<String, Number>) item.get("rect");
+            double bx = rect.get("x").doubleValue();
+            double by = rect.get("y").doubleValue();
+            double bw = rect.get("width").doubleValue();
+            double bh = rect.get("height").doubleValue();
+            item.put("rect", Map.of("x", 1000 - by - bh, "y", bx, "width", bh, "height", bw));
+            newList.add(item);
+        }
+        jsonStr = objectMapper.writeValueAsString(newList);
+        return objectMapper.readValue(jsonStr, new TypeReference<List<Map<String, Object>>>() {
+        });
+    }
+
+    @Benchmark
+    public Object streamingJson() throws IOException {
+        CoordinatesPayload payload = CoordinatesPayloadReader.readJson(new ByteArrayInputStream(jsonBody));
+        return rotate(payload);
+    }
+
+    @Benchmark
+    public Object packedBinary() throws IOException {
+        CoordinatesPayload payload = CoordinatesPayloadReader.readPacked(new ByteArrayInputStream(packedBody));
+        return rotate(payload);
+    }
+
+    private static CoordinatesPayload rotate(CoordinatesPayload payload) {
+        double[] rects = payload.getRects();
+        for (int i = 0; i < payload.size(); i++) {
+            int r = i * 4;
+            double bx = rects[r];
+            double by = rects[r + 1];
+            double bw = rects[r + 2];
+            double bh = rects[r + 3];
+            rects[r] = 1000 - by - bh;
+            rects[r + 1] = bx;
+            rects[r + 2] = bh;
+            rects[r + 3] = bw;
+        }
+        return payload;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.demo.bench;
+
+import com.example.demo.service.RasterPool;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Render, crop and encode of the OCR path: a fresh raster per render vs a
+ * leased one from {@link RasterPool}. Compare gc.alloc.rate.norm (bytes
+ * allocated per operation) with the GC profiler.
+ *
+ * Run with:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main RenderAllocationBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class RenderAllocationBenchmark {
+
+    private static final float SCALE = 3.0f;
+
+    private PDDocument doc;
+    private RasterPool pool;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        doc = new PDDocument();
+        // A3 sheet with some line work
+        PDPage page = new PDPage(PDRectangle.A3);
+        doc.addPage(page);
+        try (PDPageContentStream content = new PDPageContentStream(doc, page)) {
+            for (int i = 0; i < 40; i++) {
+                content.moveTo(20 + i * 20, 20);
+                content.lineTo(20 + i * 20, 1150);
+            }
+            content.stroke();
+        }
+        pool = new RasterPool(2, 1L << 30, false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        doc.close();
+    }
+
+    @Benchmark
+    public int freshRaster() throws IOException {
+        BufferedImage page = new PDFRenderer(doc).renderImage(0, SCALE);
+        return encodeTitleBlock(page);
+    }
+
+    @Benchmark
+    public int pooledRaster() throws IOException {
+        try (RasterPool.Lease lease = pool.renderPage(doc, 0, SCALE)) {
+            return encodeTitleBlock(lease.getImage());
+        }
+    }
+
+    private static int encodeTitleBlock(BufferedImage page) throws IOException {
+        BufferedImage crop = page.getSubimage(page.getWidth() - 900, page.getHeight() - 400, 900, 400);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(crop, "png", out);
+        return out.size();
+    }
+}
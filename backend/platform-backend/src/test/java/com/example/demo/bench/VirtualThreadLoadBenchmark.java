@@ -0,0 +1,107 @@
+package com.example.demo.bench;
+
+import com.example.demo.model.User;
+import com.example.demo.service.AuthTokenService;
+import com.example.demo.util.JwtUtil;
+import com.example.demo.util.ResourceGuard;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A burst of blocking requests on a 200-thread platform pool (Tomcat's
+ * default) vs one virtual thread per request. Each simulated request
+ * authenticates through the token cache, waits on I/O (file read / OCR
+ * server round trip) and then holds a database permit for a short query, so
+ * the virtual variant is bounded only by the database guard.
+ *
+ * The fork runs with -Djdk.tracePinnedThreads=short: any stack printed while
+ * it runs is a virtual thread pinned by a monitor in the request path.
+ *
+ * Run with:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main VirtualThreadLoadBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djdk.tracePinnedThreads=short")
+public class VirtualThreadLoadBenchmark {
+
+    private static final int PLATFORM_THREADS = 200;
+    private static final long IO_MILLIS = 20;
+    private static final long QUERY_MILLIS = 1;
+
+    @Param({ "platform", "virtual" })
+    public String threads;
+
+    @Param({ "5000" })
+    public int requests;
+
+    private ExecutorService executor;
+    private ResourceGuard database;
+    private AuthTokenService authTokenService;
+    private String token;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        executor = "virtual".equals(threads)
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(PLATFORM_THREADS);
+        database = new ResourceGuard("Database", 20, 30_000);
+        JwtUtil jwtUtil = new JwtUtil("benchmark-secret-benchmark-secret-benchmark-secret");
+        authTokenService = new AuthTokenService(jwtUtil, null, 10_000);
+        User user = new User("bench@example.com", "secret", "Bench");
+        user.setId(1L);
+        token = jwtUtil.generateToken(user);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /** Time for the whole burst to complete; requests/s = requests / time. */
+    @Benchmark
+    public long burst() throws Exception {
+        List<Future<Long>> futures = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            futures.add(executor.submit(this::handleRequest));
+        }
+        long sum = 0;
+        for (Future<Long> future : futures) {
+            sum += future.get();
+        }
+        return sum;
+    }
+
+    private long handleRequest() throws Exception {
+        long userId = authTokenService.authenticate(token).getId();
+        Thread.sleep(IO_MILLIS);
+        return database.call(() -> {
+            Thread.sleep(QUERY_MILLIS);
+            return userId;
+        });
+    }
+}
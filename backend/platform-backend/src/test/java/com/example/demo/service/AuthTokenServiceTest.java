@@ -0,0 +1,65 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.AuthPrincipal;
+import com.example.demo.model.User;
+import com.example.demo.util.JwtUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class AuthTokenServiceTest {
+
+    private final JwtUtil jwtUtil = new JwtUtil("test-secret-test-secret-test-secret-test-secret");
+    private final UserCache userCache = mock(UserCache.class);
+    private final AuthTokenService service = new AuthTokenService(jwtUtil, userCache, 100);
+
+    @Test
+    void authenticatesFromClaimsWithoutLoadingTheUser() {
+        User user = new User("a@example.com", "secret", "A");
+        user.setId(42L);
+        String token = jwtUtil.generateToken(user);
+
+        AuthPrincipal principal = service.authenticate(token);
+        assertEquals(42L, principal.getId());
+        assertEquals("a@example.com", principal.getEmail());
+        assertEquals(List.of("USER"), principal.getRoles());
+
+        // Second call is served from the cache
+        assertSame(principal, service.authenticate(token));
+        assertEquals(1, service.getHits());
+        verify(userCache, never()).getByEmail(anyString());
+    }
+
+    @Test
+    void configuredAdminsGetTheAdminRole() {
+        JwtUtil withAdmins = new JwtUtil("test-secret-test-secret-test-secret-test-secret", " Ops@example.com ,");
+        AuthTokenService adminAware = new AuthTokenService(withAdmins, userCache, 100);
+        User admin = new User("ops@example.com", "secret", "Ops");
+        admin.setId(1L);
+        User user = new User("a@example.com", "secret", "A");
+        user.setId(42L);
+
+        assertTrue(adminAware.authenticate(withAdmins.generateToken(admin)).isAdmin());
+        assertFalse(adminAware.authenticate(withAdmins.generateToken(user)).isAdmin());
+    }
+
+    @Test
+    void rejectsTamperedTokens() {
+        User user = new User("a@example.com", "secret", "A");
+        user.setId(42L);
+        String token = jwtUtil.generateToken(user);
+
+        assertNull(service.authenticate(token + "x"));
+        assertNull(service.authenticate("not-a-token"));
+    }
+}
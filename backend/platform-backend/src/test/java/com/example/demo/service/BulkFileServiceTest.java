@@ -0,0 +1,98 @@
+package com.example.demo.service;
+
+import com.example.demo.FileController;
+import com.example.demo.dto.AuthPrincipal;
+import com.example.demo.repository.FolderRepository;
+import com.example.demo.repository.UserFileRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class BulkFileServiceTest {
+
+    private final UserFileRepository userFileRepository = mock(UserFileRepository.class);
+    private final BlobDeletionQueue blobDeletionQueue = mock(BlobDeletionQueue.class);
+    private final StorageUsageService storageUsageService = mock(StorageUsageService.class);
+    private final DrawingSearchIndex drawingSearchIndex = mock(DrawingSearchIndex.class);
+    private final PageTextIndex pageTextIndex = mock(PageTextIndex.class);
+    private final BulkFileService service = new BulkFileService(userFileRepository, mock(FolderRepository.class),
+            blobDeletionQueue, mock(FileListingService.class), mock(FolderTreeCache.class), storageUsageService,
+            drawingSearchIndex, pageTextIndex);
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void rejectsSelectionsWithAnotherUsersFiles() throws Exception {
+        // Only two of the three ids belong to the caller
+        when(userFileRepository.countOwned(eq(1L), anyCollection())).thenReturn(2L);
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new FileController(userFileRepository,
+                mock(BBoxSyncService.class), mock(FileListingService.class), mock(FolderTreeCache.class), service,
+                storageUsageService, mock(RenditionCache.class), mock(DrawingSearchIndex.class),
+                mock(PageTextIndex.class))).build();
+
+        for (String action : List.of("move", "trash", "restore", "delete")) {
+            mockMvc.perform(post("/api/files/bulk/" + action).contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"ids\":[1,2,3]}")
+                    .requestAttr(AuthPrincipal.REQUEST_ATTRIBUTE, new AuthPrincipal(1L, "a@example.com", List.of("USER"))))
+                    .andExpect(status().isForbidden());
+        }
+        verify(userFileRepository, never()).moveAll(anyLong(), anyCollection(), any());
+        verify(userFileRepository, never()).trashAll(anyLong(), anyCollection(), any());
+        verify(userFileRepository, never()).restoreAll(anyLong(), anyCollection());
+        verify(userFileRepository, never()).deleteAll(anyLong(), anyCollection());
+    }
+
+    @Test
+    void deleteEnqueuesEveryBlobAndUpdatesCounters() {
+        List<Long> ids = List.of(1L, 2L, 3L);
+        List<String> paths = List.of("uploads/a.pdf", "uploads/b.pdf", "uploads/c.png");
+        when(userFileRepository.findFilePaths(1L, ids)).thenReturn(paths);
+        when(userFileRepository.deleteAll(1L, ids)).thenReturn(3);
+        TransactionSynchronizationManager.initSynchronization();
+
+        assertEquals(3, service.delete(1L, ids));
+
+        verify(storageUsageService).beforeDelete(ids);
+        verify(blobDeletionQueue).enqueue(paths);
+        // Listings are invalidated, and the files leave the search indexes, only once the delete commits
+        List<TransactionSynchronization> pending = TransactionSynchronizationManager.getSynchronizations();
+        assertEquals(1, pending.size());
+        verify(drawingSearchIndex, never()).remove(anyLong(), anyLong());
+        pending.get(0).afterCommit();
+        for (Long id : ids) {
+            verify(drawingSearchIndex).remove(1L, id);
+            verify(pageTextIndex).removeFile(1L, id);
+        }
+    }
+
+    @Test
+    void normalizesSelections() {
+        assertEquals(List.of(3L, 1L), service.normalize(Arrays.asList(3L, null, 1L, 3L)));
+        assertNull(service.normalize(List.of()));
+    }
+}
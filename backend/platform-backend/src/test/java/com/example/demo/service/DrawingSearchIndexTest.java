@@ -0,0 +1,123 @@
+package com.example.demo.service;
+
+import com.example.demo.FileController;
+import com.example.demo.dto.AuthPrincipal;
+import com.example.demo.dto.SearchHit;
+import com.example.demo.model.TitleBlockText;
+import com.example.demo.model.UserFile;
+import com.example.demo.repository.TitleBlockTextRepository;
+import com.example.demo.repository.UserFileRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class DrawingSearchIndexTest {
+
+    private final TitleBlockTextRepository titleBlockTextRepository = mock(TitleBlockTextRepository.class);
+    private final DrawingSearchIndex index = new DrawingSearchIndex(titleBlockTextRepository, "target/test-index");
+
+    @Test
+    void matchesHangulBigramsAndSingleCharacters() {
+        index.index(text(file(1L, 10L), "신축공사", "1층 평면도", "A-101"));
+
+        assertEquals(List.of(10L), fileIds(index.search(1L, "신축", false, 10)));
+        assertEquals(List.of(10L), fileIds(index.search(1L, "평면도", false, 10)));
+        // A lone character matches wherever it occurs, including at the end of a run
+        assertEquals(List.of(10L), fileIds(index.search(1L, "축", false, 10)));
+        assertEquals(List.of(10L), fileIds(index.search(1L, "도", false, 10)));
+        assertTrue(index.search(1L, "단면", false, 10).isEmpty());
+    }
+
+    @Test
+    void prefixQueriesExpandOnlyTheLastToken() {
+        index.index(text(file(1L, 10L), "Tower", "Section", "A-101"));
+        index.index(text(file(1L, 11L), "Tower", "Elevation", "A-201"));
+
+        assertEquals(List.of(11L), fileIds(index.search(1L, "tower elev", true, 10)));
+        assertTrue(index.search(1L, "tower elev", false, 10).isEmpty());
+        assertEquals(2, index.search(1L, "a-", true, 10).size());
+    }
+
+    @Test
+    void documentsAreScopedToTheirOwner() {
+        index.index(text(file(1L, 10L), "Tower", "Section", "A-101"));
+
+        assertTrue(index.search(2L, "tower", false, 10).isEmpty());
+        assertEquals(List.of(10L), fileIds(index.search(1L, "tower", false, 10)));
+    }
+
+    @Test
+    void reassignMovesTheDocumentToTheNewOwner() {
+        UserFile file = file(1L, 10L);
+        TitleBlockText text = text(file, "Tower", "Section", "A-101");
+        index.index(text);
+        when(titleBlockTextRepository.findTopByUserFileIdOrderByProcessedAtDesc(10L)).thenReturn(Optional.of(text));
+
+        file.setUserId(2L);
+        index.reassign(1L, file);
+
+        assertTrue(index.search(1L, "tower", false, 10).isEmpty());
+        assertEquals(List.of(10L), fileIds(index.search(2L, "tower", false, 10)));
+    }
+
+    @Test
+    void filteredFilesDoNotUseUpTheLimit() {
+        index.index(text(file(1L, 10L), "Tower", "Plan", "A-101"));
+        index.index(text(file(1L, 11L), "Tower", "Section", "A-102"));
+
+        // Whatever ranks first, a limit of one still finds the file the filter lets through
+        assertEquals(List.of(11L), fileIds(index.search(1L, "tower", false, id -> id != 10L, 1)));
+        assertEquals(List.of(10L), fileIds(index.search(1L, "tower", false, id -> id != 11L, 1)));
+    }
+
+    @Test
+    void deletedFilesLeaveTheIndex() throws Exception {
+        UserFile file = file(1L, 10L);
+        file.setFilePath("target/test-index/deleted.pdf");
+        index.index(text(file, "Tower", "Section", "A-101"));
+        UserFileRepository userFileRepository = mock(UserFileRepository.class);
+        when(userFileRepository.findById(10L)).thenReturn(Optional.of(file));
+        PageTextIndex pageTextIndex = mock(PageTextIndex.class);
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new FileController(userFileRepository,
+                mock(BBoxSyncService.class), mock(FileListingService.class), mock(FolderTreeCache.class),
+                mock(BulkFileService.class), mock(StorageUsageService.class), mock(RenditionCache.class), index,
+                pageTextIndex)).build();
+
+        mockMvc.perform(delete("/api/files/10").requestAttr(AuthPrincipal.REQUEST_ATTRIBUTE,
+                new AuthPrincipal(1L, "a@example.com", List.of("USER")))).andExpect(status().isOk());
+
+        assertTrue(index.search(1L, "tower", false, 10).isEmpty());
+        verify(pageTextIndex).removeFile(1L, 10L);
+    }
+
+    private static UserFile file(Long userId, Long fileId) {
+        UserFile file = new UserFile(userId, "drawing.pdf", "uploads/drawing.pdf", 100L);
+        ReflectionTestUtils.setField(file, "id", fileId);
+        return file;
+    }
+
+    private static TitleBlockText text(UserFile file, String project, String title, String number) {
+        TitleBlockText text = new TitleBlockText();
+        text.setUserFile(file);
+        text.setProjectName(project);
+        text.setDrawingName(title);
+        text.setDrawingNumber(number);
+        return text;
+    }
+
+    private static List<Long> fileIds(List<SearchHit> hits) {
+        return hits.stream().map(SearchHit::getFileId).toList();
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.demo.service;
+
+import com.example.demo.EventController;
+import com.example.demo.dto.AuthPrincipal;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class EventBroadcasterTest {
+
+    private final EventBroadcaster broadcaster = new EventBroadcaster(60_000, 16, 4, 600_000, 2);
+    private final MockMvc mockMvc = MockMvcBuilders.standaloneSetup(
+            new EventController(broadcaster, mock(PgEventRelay.class))).build();
+
+    @Test
+    void deliversOnlyTheUsersOwnEvents() throws Exception {
+        MockHttpServletResponse stream = open(1L, null);
+
+        broadcaster.publish(2L, "files", Map.of(), "files");
+        broadcaster.publish(1L, "ocr.job", Map.of("jobId", 7, "state", "DONE"), "ocr.job:7");
+
+        String body = await(stream, s -> s.contains("event:ocr.job"));
+        assertTrue(body.contains("data:{\"jobId\":7,\"state\":\"DONE\"}")
+                || body.contains("data:{\"state\":\"DONE\",\"jobId\":7}"), body);
+        assertFalse(body.contains("event:files"), body);
+        assertEquals(1, broadcaster.getStreams());
+    }
+
+    @Test
+    void reconnectReplaysMissedEventsOrAsksForResync() throws Exception {
+        broadcaster.publish(1L, "files", Map.of(), "files");
+        String firstId = lastId(open(1L, null));
+        broadcaster.publish(1L, "folders", Map.of(), "folders");
+        // Other users' events do not push this user's out of the replay buffer
+        for (int i = 0; i < 10; i++) {
+            broadcaster.publish(2L, "files", Map.of("n", i), null);
+        }
+
+        String replayed = await(open(1L, firstId), s -> s.contains("event:folders"));
+        assertFalse(replayed.contains("event:files"), replayed);
+
+        // An id from another node (or from before a restart) cannot be caught up
+        assertTrue(await(open(1L, "1"), s -> s.contains("event:resync")).contains("event:resync"));
+    }
+
+    @Test
+    void reconnectAfterTheUsersBufferMovedOnResyncs() throws Exception {
+        String firstId = lastId(open(1L, null));
+        for (int i = 0; i < 5; i++) {
+            broadcaster.publish(1L, "files", Map.of("n", i), null);
+        }
+        assertTrue(await(open(1L, firstId), s -> s.contains("event:resync")).contains("event:resync"));
+    }
+
+    @Test
+    void relaysEventsToOtherNodes() throws Exception {
+        EventBroadcaster other = new EventBroadcaster(60_000, 16, 4, 600_000, 2);
+        List<String> sent = new CopyOnWriteArrayList<>();
+        other.setRelay(sent::add);
+        MockHttpServletResponse stream = open(1L, null);
+
+        other.publish(1L, "ocr.job", Map.of("jobId", 7), "ocr.job:7");
+        assertEquals(1, sent.size());
+        broadcaster.receive(sent.get(0));
+        // A node hears its own notifications too, and ignores them
+        other.receive(sent.get(0));
+
+        assertTrue(await(stream, s -> s.contains("event:ocr.job")).contains("data:{\"jobId\":7}"));
+        assertEquals(1, broadcaster.getReceived());
+        assertEquals(0, other.getReceived());
+    }
+
+    @Test
+    void newStreamsReplaceTheOldestPastTheCap() throws Exception {
+        MockHttpServletResponse first = open(1L, null);
+        open(1L, null);
+        MockHttpServletResponse third = open(1L, null);
+
+        assertEquals(2, broadcaster.getStreams());
+        assertEquals(1, broadcaster.getReplaced());
+        broadcaster.publish(1L, "files", Map.of(), "files");
+        await(third, s -> s.contains("event:files"));
+        assertFalse(first.getContentAsString().contains("event:files"));
+    }
+
+    @Test
+    void statsAreForAdminsOnly() throws Exception {
+        mockMvc.perform(get("/api/events/stats").requestAttr(AuthPrincipal.REQUEST_ATTRIBUTE,
+                new AuthPrincipal(1L, "user1@example.com", List.of("USER")))).andExpect(status().isForbidden());
+        mockMvc.perform(get("/api/events/stats").requestAttr(AuthPrincipal.REQUEST_ATTRIBUTE,
+                new AuthPrincipal(1L, "ops@example.com", List.of("USER", "ADMIN")))).andExpect(status().isOk());
+    }
+
+    @Test
+    void encodesCompactJson() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("a", 1);
+        data.put("b", "x\"y\n");
+        data.put("c", null);
+        assertEquals("{\"a\":1,\"b\":\"x\\\"y\\u000a\",\"c\":null}", EventBroadcaster.toJson(data));
+    }
+
+    private MockHttpServletResponse open(Long userId, String lastEventId) throws Exception {
+        var request = get("/api/events").requestAttr(AuthPrincipal.REQUEST_ATTRIBUTE,
+                new AuthPrincipal(userId, "user" + userId + "@example.com", List.of("USER")));
+        if (lastEventId != null) {
+            request = request.header("Last-Event-ID", lastEventId);
+        }
+        return mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn().getResponse();
+    }
+
+    /** Publishes an event to an open stream and returns its id. */
+    private String lastId(MockHttpServletResponse stream) throws Exception {
+        broadcaster.publish(1L, "index", Map.of("fileId", 1), "index:1");
+        String body = await(stream, s -> s.contains("event:index"));
+        int at = body.lastIndexOf("id:");
+        return body.substring(at + 3, body.indexOf('\n', at)).trim();
+    }
+
+    private static String await(MockHttpServletResponse stream, Predicate<String> done) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        String body = stream.getContentAsString();
+        while (!done.test(body) && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+            body = stream.getContentAsString();
+        }
+        assertTrue(done.test(body), body);
+        return body;
+    }
+}
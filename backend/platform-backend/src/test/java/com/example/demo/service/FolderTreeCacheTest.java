@@ -0,0 +1,117 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.FolderFileTotals;
+import com.example.demo.dto.FolderTree;
+import com.example.demo.dto.FolderTreeNode;
+import com.example.demo.model.Folder;
+import com.example.demo.repository.FolderRepository;
+import com.example.demo.repository.UserFileRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FolderTreeCacheTest {
+
+    private final FolderRepository folderRepository = mock(FolderRepository.class);
+    private final UserFileRepository userFileRepository = mock(UserFileRepository.class);
+    private final EventBroadcaster eventBroadcaster = mock(EventBroadcaster.class);
+    private final FolderTreeCache cache = new FolderTreeCache(folderRepository, userFileRepository,
+            eventBroadcaster, 60_000);
+
+    @Test
+    void buildsTreeWithSubtreeTotalsAndPatchesInPlace() {
+        when(folderRepository.findByUserIdAndIsTrashedFalse(1L)).thenReturn(List.of(
+                folder(10L, "Architecture", null), folder(11L, "Floor plans", 10L), folder(12L, "Sections", 10L)));
+        when(userFileRepository.sumByFolder(1L)).thenReturn(List.of(
+                totals(null, 2, 200), totals(10L, 1, 100), totals(11L, 3, 900)));
+
+        FolderTree tree = cache.getTree(1L);
+        assertEquals(2, tree.getRootFileCount());
+        FolderTreeNode arch = tree.getFolders().get(0);
+        assertEquals(4, arch.getSubtreeFileCount());
+        assertEquals(1000, arch.getSubtreeSize());
+        assertEquals("Floor plans", arch.getChildren().get(0).getName());
+
+        // Move "Sections" to the root and upload a file into it: patched, not reloaded
+        cache.folderMoved(1L, 12L, null);
+        cache.fileChanged(1L, 12L, 50, 1);
+        tree = cache.getTree(1L);
+        assertEquals(2, tree.getFolders().size());
+        assertEquals(1, tree.getFolders().get(1).getFileCount());
+        assertEquals(4, tree.getFolders().get(0).getSubtreeFileCount());
+        verify(folderRepository, times(1)).findByUserIdAndIsTrashedFalse(1L);
+    }
+
+    @Test
+    void loadRacingWithAChangeIsServedButNotCached() {
+        // The folder is created while the snapshot is being loaded
+        when(folderRepository.findByUserIdAndIsTrashedFalse(1L)).thenAnswer(invocation -> {
+            cache.folderCreated(folder(13L, "Details", null));
+            return List.of(folder(10L, "Architecture", null));
+        }).thenReturn(List.of(folder(10L, "Architecture", null), folder(13L, "Details", null)));
+        when(userFileRepository.sumByFolder(1L)).thenReturn(List.of());
+
+        assertEquals(1, cache.getTree(1L).getFolders().size());
+        assertEquals(2, cache.getTree(1L).getFolders().size());
+        verify(folderRepository, times(2)).findByUserIdAndIsTrashedFalse(1L);
+    }
+
+    @Test
+    void trashingAFolderDropsTheSnapshotAndNotifiesOpenViews() {
+        when(folderRepository.findByUserIdAndIsTrashedFalse(1L))
+                .thenReturn(List.of(folder(10L, "Architecture", null), folder(11L, "Floor plans", 10L)))
+                .thenReturn(List.of(folder(11L, "Floor plans", 10L)));
+        when(userFileRepository.sumByFolder(1L)).thenReturn(List.of());
+        assertEquals(1, cache.getTree(1L).getFolders().size());
+
+        // What FolderController.trashFolder does after saving the flag
+        cache.invalidate(1L);
+
+        assertTrue(cache.getTree(1L).getFolders().isEmpty());
+        verify(folderRepository, times(2)).findByUserIdAndIsTrashedFalse(1L);
+        verify(eventBroadcaster).publish(eq(1L), eq("folders"), anyMap(), eq("folders"));
+    }
+
+    @Test
+    void expiredSnapshotsAreReloaded() {
+        FolderTreeCache uncached = new FolderTreeCache(folderRepository, userFileRepository, eventBroadcaster, 0);
+        when(folderRepository.findByUserIdAndIsTrashedFalse(1L)).thenReturn(List.of());
+        when(userFileRepository.sumByFolder(1L)).thenReturn(List.of());
+
+        uncached.getTree(1L);
+        uncached.getTree(1L);
+
+        verify(folderRepository, times(2)).findByUserIdAndIsTrashedFalse(1L);
+    }
+
+    private static Folder folder(Long id, String name, Long parentId) {
+        Folder folder = new Folder(name, 1L, parentId);
+        folder.setId(id);
+        return folder;
+    }
+
+    private static FolderFileTotals totals(Long folderId, long count, long size) {
+        return new FolderFileTotals() {
+            public Long getFolderId() {
+                return folderId;
+            }
+
+            public Long getFileCount() {
+                return count;
+            }
+
+            public Long getTotalSize() {
+                return size;
+            }
+        };
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.demo.service;
+
+import com.example.demo.repository.FolderRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class FolderTreeServiceTest {
+
+    private final FolderRepository folderRepository = mock(FolderRepository.class);
+    private final DrawingSearchIndex drawingSearchIndex = mock(DrawingSearchIndex.class);
+    private final PageTextIndex pageTextIndex = mock(PageTextIndex.class);
+    private final FolderTreeService service = new FolderTreeService(folderRepository, mock(BlobDeletionQueue.class),
+            mock(StorageUsageService.class), drawingSearchIndex, pageTextIndex);
+
+    @Test
+    void deletedSubtreeFilesLeaveTheIndexes() {
+        when(folderRepository.findSubtreeFileIds(7L, 20L)).thenReturn(List.of(10L, 11L));
+        when(folderRepository.findSubtreeFilePaths(7L, 20L)).thenReturn(List.of("uploads/a.pdf", "uploads/b.pdf"));
+        when(folderRepository.deleteSubtree(7L, 20L)).thenReturn(2);
+
+        assertEquals(2, service.deleteSubtree(7L, 20L));
+
+        verify(drawingSearchIndex).remove(7L, 10L);
+        verify(drawingSearchIndex).remove(7L, 11L);
+        verify(pageTextIndex).removeFile(7L, 10L);
+        verify(pageTextIndex).removeFile(7L, 11L);
+    }
+
+    @Test
+    void movesTakeTheUsersTreeLockBeforeTheCycleCheck() {
+        when(folderRepository.moveIfAcyclic(7L, 20L, 21L)).thenReturn(1);
+
+        assertTrue(service.move(7L, 20L, 21L));
+
+        InOrder inOrder = inOrder(folderRepository);
+        inOrder.verify(folderRepository).lockTreeForMove(7L);
+        inOrder.verify(folderRepository).moveIfAcyclic(7L, 20L, 21L);
+    }
+
+    @Test
+    void someoneElsesFolderTouchesNoIndex() {
+        when(folderRepository.findSubtreeFileIds(7L, 20L)).thenReturn(List.of());
+        when(folderRepository.findSubtreeFilePaths(7L, 20L)).thenReturn(List.of());
+
+        assertEquals(0, service.deleteSubtree(7L, 20L));
+
+        verifyNoInteractions(drawingSearchIndex, pageTextIndex);
+    }
+}
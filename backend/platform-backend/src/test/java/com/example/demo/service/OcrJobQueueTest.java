@@ -0,0 +1,133 @@
+package com.example.demo.service;
+
+import com.example.demo.model.BBox;
+import com.example.demo.model.OcrJob;
+import com.example.demo.model.TitleBlockText;
+import com.example.demo.model.UserFile;
+import com.example.demo.repository.OcrJobRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OcrJobQueueTest {
+
+    private final OcrJobRepository jobRepository = mock(OcrJobRepository.class);
+    private final OcrResultWriter resultWriter = mock(OcrResultWriter.class);
+    private final OcrJobQueue queue = new OcrJobQueue(jobRepository, resultWriter, mock(EventBroadcaster.class),
+            mock(PlatformTransactionManager.class), 60_000, 3, 2000, 300_000, 2);
+
+    @Test
+    void backoffDoublesWithJitterAndIsCapped() {
+        for (int i = 0; i < 100; i++) {
+            long first = OcrJobQueue.backoffMillis(1, 2000, 300_000);
+            assertTrue(first >= 1000 && first <= 2000, "first retry " + first);
+
+            long fourth = OcrJobQueue.backoffMillis(4, 2000, 300_000);
+            assertTrue(fourth >= 8000 && fourth <= 16000, "fourth retry " + fourth);
+
+            // Far past the cap, and no overflow from the shift
+            long late = OcrJobQueue.backoffMillis(200, 2000, 300_000);
+            assertTrue(late >= 150_000 && late <= 300_000, "late retry " + late);
+        }
+    }
+
+    @Test
+    void claimKeepsEachUserUnderTheRunningCap() {
+        // User 1 already runs one job elsewhere, so only one more of theirs fits under the cap of 2
+        List<OcrJob> due = List.of(job(1L, 1L), job(2L, 1L), job(3L, 1L), job(4L, 2L));
+        when(jobRepository.lockDue(eq(OcrJob.State.QUEUED), eq(OcrJob.State.RUNNING), any(), eq(2L), any()))
+                .thenReturn(due);
+        when(jobRepository.countByStateAndUserId(OcrJob.State.RUNNING, 1L)).thenReturn(1L);
+        when(jobRepository.countByStateAndUserId(OcrJob.State.RUNNING, 2L)).thenReturn(0L);
+
+        List<OcrJob> claimed = queue.claim("node-a", 4);
+
+        assertEquals(List.of(1L, 4L), claimed.stream().map(OcrJob::getId).toList());
+        assertEquals(OcrJob.State.RUNNING, due.get(0).getState());
+        assertEquals(OcrJob.State.QUEUED, due.get(1).getState());
+        assertEquals(OcrJob.State.QUEUED, due.get(2).getState());
+    }
+
+    @Test
+    void completeAfterTheLeaseWasLostWritesNothing() {
+        when(jobRepository.lockOwned(5L, "node-a", OcrJob.State.RUNNING)).thenReturn(Optional.empty());
+
+        assertNull(queue.complete(5L, "node-a", new UserFile(), mock(OcrService.Recognition.class)));
+        verify(resultWriter, never()).write(any(), any());
+    }
+
+    @Test
+    void completeStoresTheResultAndFinishesTheJob() {
+        OcrJob job = running(5L, 1);
+        TitleBlockText saved = new TitleBlockText();
+        saved.setId(77L);
+        when(resultWriter.write(any(), any())).thenReturn(saved);
+
+        assertSame(saved, queue.complete(5L, "node-a", new UserFile(), mock(OcrService.Recognition.class)));
+        assertEquals(OcrJob.State.DONE, job.getState());
+        assertEquals(77L, job.getTitleBlockTextId());
+        assertNull(job.getLeaseOwner());
+        assertNotNull(job.getFinishedAt());
+    }
+
+    @Test
+    void failRequeuesWithABackoff() {
+        OcrJob job = running(5L, 1);
+        LocalDateTime before = LocalDateTime.now();
+
+        queue.fail(5L, "node-a", "timeout", false);
+
+        assertEquals(OcrJob.State.QUEUED, job.getState());
+        assertNull(job.getLeaseOwner());
+        assertEquals("timeout", job.getLastError());
+        // First retry waits at least half the 2 s base
+        assertFalse(job.getRunAfter().isBefore(before.plusSeconds(1)), job.getRunAfter().toString());
+        assertNull(job.getFinishedAt());
+    }
+
+    @Test
+    void failOutOfAttemptsOrPermanentFailsForGood() {
+        OcrJob exhausted = running(5L, 3);
+        queue.fail(5L, "node-a", "timeout", false);
+        assertEquals(OcrJob.State.FAILED, exhausted.getState());
+        assertNotNull(exhausted.getFinishedAt());
+
+        OcrJob permanent = running(6L, 1);
+        queue.fail(6L, "node-a", "not a drawing", true);
+        assertEquals(OcrJob.State.FAILED, permanent.getState());
+    }
+
+    private OcrJob running(Long id, int attempts) {
+        OcrJob job = job(id, 1L);
+        job.setState(OcrJob.State.RUNNING);
+        job.setLeaseOwner("node-a");
+        job.setAttempts(attempts);
+        when(jobRepository.lockOwned(id, "node-a", OcrJob.State.RUNNING)).thenReturn(Optional.of(job));
+        return job;
+    }
+
+    private static OcrJob job(Long id, Long userId) {
+        UserFile file = new UserFile(userId, "a.pdf", "uploads/a.pdf", 100L);
+        ReflectionTestUtils.setField(file, "id", 10L + id);
+        OcrJob job = new OcrJob(file, new BBox(), false);
+        ReflectionTestUtils.setField(job, "id", id);
+        return job;
+    }
+}
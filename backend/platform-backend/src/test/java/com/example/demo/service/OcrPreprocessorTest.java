@@ -0,0 +1,114 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OcrPreprocessorTest {
+
+    private final OcrPreprocessor preprocessor = new OcrPreprocessor(true, 0, 5, 8_000_000L, 4);
+
+    @Test
+    void binarizesUnevenBackgroundAndTrimsToTheInk() {
+        BufferedImage image = new BufferedImage(600, 300, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 300; y++) {
+            for (int x = 0; x < 600; x++) {
+                // Shading from light gray to white, as on a scanned sheet
+                int v = 170 + x * 85 / 600;
+                image.setRGB(x, y, new Color(v, v, v).getRGB());
+            }
+        }
+        Graphics2D g = image.createGraphics();
+        g.setColor(new Color(60, 60, 60));
+        for (int x = 100; x < 400; x += 10) {
+            g.fillRect(x, 120, 5, 20);
+        }
+        g.dispose();
+
+        OcrPreprocessor.Result result = preprocessor.process(image);
+        BufferedImage out = result.getImage();
+
+        assertEquals(BufferedImage.TYPE_BYTE_BINARY, out.getType());
+        // Ink spans x 100..394, y 120..139, plus an 8 pixel margin
+        assertEquals(295 + 16, out.getWidth());
+        assertEquals(20 + 16, out.getHeight());
+        assertEquals(Color.BLACK.getRGB(), out.getRGB(8, 8));
+        assertEquals(Color.WHITE.getRGB(), out.getRGB(8 + 6, 8));
+        assertEquals(Color.WHITE.getRGB(), out.getRGB(2, 2));
+
+        double[] point = { 8, 8 };
+        result.toInput(point, 0);
+        assertEquals(100, point[0], 1e-9);
+        assertEquals(120, point[1], 1e-9);
+    }
+
+    @Test
+    void estimatesAndRemovesSkew() {
+        BufferedImage image = new BufferedImage(800, 400, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, 800, 400);
+        g.setColor(Color.BLACK);
+        g.setTransform(AffineTransform.getRotateInstance(Math.toRadians(2), 400, 200));
+        for (int line = 0; line < 6; line++) {
+            for (int x = 80; x < 720; x += 9) {
+                g.fillRect(x, 80 + line * 45, 5, 14);
+            }
+        }
+        g.dispose();
+
+        OcrPreprocessor.Result result = preprocessor.process(image);
+        assertEquals(2.0, result.getSkewDegrees(), 0.26);
+
+        // A stroke on the straightened output maps back onto a stroke of the input
+        BufferedImage out = result.getImage();
+        int inkChecked = 0;
+        for (int y = 0; y < out.getHeight(); y += 3) {
+            for (int x = 0; x < out.getWidth(); x += 3) {
+                if (out.getRGB(x, y) == Color.BLACK.getRGB()) {
+                    double[] point = { x + 0.5, y + 0.5 };
+                    result.toInput(point, 0);
+                    int ix = (int) Math.min(799, Math.max(0, point[0]));
+                    int iy = (int) Math.min(399, Math.max(0, point[1]));
+                    if ((image.getRGB(ix, iy) & 0xff) < 128) {
+                        inkChecked++;
+                    }
+                }
+            }
+        }
+        assertTrue(inkChecked > 500, "mapped ink pixels: " + inkChecked);
+    }
+
+    @Test
+    void leavesStraightCropsAloneAndDownscalesPastTheCap() {
+        OcrPreprocessor capped = new OcrPreprocessor(true, 0, 5, 20_000L, 2);
+        BufferedImage image = new BufferedImage(400, 200, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, 400, 200);
+        g.setColor(Color.BLACK);
+        for (int line = 0; line < 4; line++) {
+            for (int x = 20; x < 380; x += 9) {
+                g.fillRect(x, 20 + line * 45, 5, 14);
+            }
+        }
+        g.dispose();
+
+        OcrPreprocessor.Result result = capped.process(image);
+        assertEquals(0.0, result.getSkewDegrees());
+        BufferedImage out = result.getImage();
+        assertTrue((long) out.getWidth() * out.getHeight() <= 20_000L);
+
+        double[] corner = { out.getWidth(), out.getHeight() };
+        result.toInput(corner, 0);
+        assertTrue(corner[0] >= 370 && corner[0] <= 400, "x " + corner[0]);
+        assertTrue(corner[1] >= 170 && corner[1] <= 200, "y " + corner[1]);
+        assertTrue(capped.getStageMillis().values().stream().allMatch(ms -> ms >= 0));
+    }
+}
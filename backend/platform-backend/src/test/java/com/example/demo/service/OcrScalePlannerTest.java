@@ -0,0 +1,98 @@
+package com.example.demo.service;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OcrScalePlannerTest {
+
+    private final OcrScalePlanner planner = new OcrScalePlanner(32, 1.0f, 8.0f, 4_000_000L);
+
+    @Test
+    void smallTextGetsMoreScaleThanLargeTextWithinBounds() {
+        assertEquals(8.0f, planner.scaleFor(2.0, 100, 50, 3f), 1e-6);
+        assertEquals(4.0f, planner.scaleFor(8.0, 100, 50, 3f), 1e-6);
+        assertEquals(1.0f, planner.scaleFor(64.0, 100, 50, 3f), 1e-6);
+        // Unknown glyph height falls back
+        assertEquals(3.0f, planner.scaleFor(null, 100, 50, 3f), 1e-6);
+    }
+
+    @Test
+    void cropIsCappedAtThePixelBudget() {
+        float scale = planner.scaleFor(2.0, 2000, 1000, 3f);
+        assertTrue(2000 * scale * 1000 * scale <= 4_000_000L * 1.0001);
+        assertTrue(scale < 8.0f);
+        // Image crops are never enlarged
+        assertEquals(1.0f, planner.imageScaleFor(10.0, 500, 500), 1e-6);
+        assertEquals(0.5f, planner.imageScaleFor(64.0, 500, 500), 1e-6);
+    }
+
+    @Test
+    void readsGlyphHeightFromTheTextLayerInsideTheRegionOnly() throws IOException {
+        try (PDDocument doc = new PDDocument()) {
+            PDPage page = new PDPage(new PDRectangle(600, 400));
+            doc.addPage(page);
+            PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            try (PDPageContentStream content = new PDPageContentStream(doc, page)) {
+                content.beginText();
+                content.setFont(font, 6);
+                content.newLineAtOffset(50, 350);
+                content.showText("SMALL NOTE TEXT");
+                content.endText();
+                content.beginText();
+                content.setFont(font, 40);
+                content.newLineAtOffset(50, 100);
+                content.showText("TITLE");
+                content.endText();
+            }
+
+            // Top-left origin: the small text sits near y = 50, the title near y = 300
+            Double small = planner.textLayerGlyphHeight(doc, 0, 0, 0, 600, 100);
+            Double large = planner.textLayerGlyphHeight(doc, 0, 0, 200, 600, 200);
+            assertNotNull(small);
+            assertNotNull(large);
+            assertTrue(large > small * 4, small + " vs " + large);
+            assertNull(planner.textLayerGlyphHeight(doc, 0, 400, 0, 200, 100));
+        }
+    }
+
+    @Test
+    void measuresLineHeightFromTheInkProfileIgnoringRules() {
+        BufferedImage image = new BufferedImage(400, 200, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, 400, 200);
+        g.setColor(Color.BLACK);
+        // Full-width rule, then three "text lines" of 12 rows made of short strokes
+        g.fillRect(0, 5, 400, 3);
+        for (int line = 0; line < 3; line++) {
+            for (int x = 10; x < 300; x += 8) {
+                g.fillRect(x, 30 + line * 40, 4, 12);
+            }
+        }
+        g.dispose();
+
+        assertEquals(12.0, OcrScalePlanner.rasterGlyphHeight(image), 1e-9);
+
+        BufferedImage blank = new BufferedImage(50, 50, BufferedImage.TYPE_INT_RGB);
+        Graphics2D w = blank.createGraphics();
+        w.setColor(Color.WHITE);
+        w.fillRect(0, 0, 50, 50);
+        w.dispose();
+        assertNull(OcrScalePlanner.rasterGlyphHeight(blank));
+    }
+}
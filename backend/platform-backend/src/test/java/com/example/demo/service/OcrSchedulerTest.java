@@ -0,0 +1,98 @@
+package com.example.demo.service;
+
+import com.example.demo.config.ResourceGuards;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class OcrSchedulerTest {
+
+    @Test
+    void fairQueueInterleavesABacklogWithALateUser() {
+        OcrScheduler.FairQueue queue = new OcrScheduler.FairQueue();
+        for (int i = 0; i < 5; i++) {
+            queue.add(1L, null);
+        }
+        queue.add(2L, null);
+        queue.add(2L, null);
+
+        List<Long> order = new ArrayList<>();
+        OcrScheduler.Ticket ticket;
+        while ((ticket = queue.poll()) != null) {
+            order.add(ticket.userId);
+        }
+        assertEquals(List.of(1L, 2L, 1L, 2L, 1L, 1L, 1L), order);
+    }
+
+    @Test
+    void idleUserGetsNoCreditForTheTimeItWasIdle() {
+        OcrScheduler.FairQueue queue = new OcrScheduler.FairQueue();
+        for (int i = 0; i < 4; i++) {
+            queue.add(1L, null);
+        }
+        queue.poll();
+        queue.poll();
+        // Joins at the current virtual time, not at zero, so it alternates instead of catching up
+        for (int i = 0; i < 3; i++) {
+            queue.add(2L, null);
+        }
+        List<Long> order = new ArrayList<>();
+        OcrScheduler.Ticket ticket;
+        while ((ticket = queue.poll()) != null) {
+            order.add(ticket.userId);
+        }
+        assertEquals(List.of(2L, 1L, 2L, 1L, 2L), order);
+    }
+
+    @Test
+    void interactiveCallsUseTheReservedSlotWhileBulkWorkQueues() throws Exception {
+        OcrScheduler scheduler = new OcrScheduler(new ResourceGuards(0, 2, 10, 30000), 0, 1, 30000);
+        assertEquals(2, scheduler.getSlots());
+        assertEquals(1, scheduler.getBulkSlots());
+
+        CountDownLatch bulkRunning = new CountDownLatch(1);
+        CountDownLatch releaseBulk = new CountDownLatch(1);
+        ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            Future<?> first = threads.submit(() -> scheduler.call(OcrScheduler.Priority.BULK, 1L, () -> {
+                bulkRunning.countDown();
+                return releaseBulk.await(10, TimeUnit.SECONDS);
+            }));
+            bulkRunning.await(10, TimeUnit.SECONDS);
+            Future<?> second = threads.submit(() -> scheduler.call(OcrScheduler.Priority.BULK, 2L, () -> true));
+            waitForQueued(scheduler, "bulk", 1);
+
+            // The second slot is held back from bulk work, so this runs at once
+            assertEquals("done", scheduler.call(OcrScheduler.Priority.INTERACTIVE, 3L, () -> "done"));
+            assertFalse(second.isDone());
+
+            releaseBulk.countDown();
+            first.get(10, TimeUnit.SECONDS);
+            second.get(10, TimeUnit.SECONDS);
+            assertEquals(2L, scheduler.getStats().get("bulk").get("completed"));
+            assertEquals(1L, scheduler.getStats().get("interactive").get("completed"));
+        } finally {
+            releaseBulk.countDown();
+            threads.shutdownNow();
+        }
+    }
+
+    private static void waitForQueued(OcrScheduler scheduler, String priority, int expected)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!Integer.valueOf(expected).equals(scheduler.getStats().get(priority).get("queued"))
+                && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, scheduler.getStats().get(priority).get("queued"));
+    }
+}
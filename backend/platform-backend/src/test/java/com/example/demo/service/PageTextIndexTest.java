@@ -0,0 +1,66 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.LocationHit;
+import com.example.demo.dto.OcrWord;
+import com.example.demo.repository.OcrWordLayerRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class PageTextIndexTest {
+
+    private final PageTextIndex index = new PageTextIndex(mock(OcrWordLayerRepository.class));
+
+    @Test
+    void findsSingleWordsAndTheirBoxes() {
+        index.indexPage(1L, 10L, 1, List.of(word("DOOR", 0), word("D-101", 100)));
+
+        List<LocationHit> hits = index.find(1L, "d-101", null, id -> true, 10);
+        assertEquals(1, hits.size());
+        assertEquals("D-101", hits.get(0).getText());
+        assertEquals(100, hits.get(0).getX(), 1e-3);
+        assertTrue(index.find(2L, "door", null, id -> true, 10).isEmpty());
+    }
+
+    @Test
+    void matchesPhrasesAcrossAdjacentWords() {
+        index.indexPage(1L, 10L, 1, List.of(word("FIRE", 0), word("EXIT", 50), word("DOOR", 100),
+                word("NOTES", 150), word("FIRE", 200)));
+
+        List<LocationHit> hits = index.find(1L, "exit door", null, id -> true, 10);
+        assertEquals(1, hits.size());
+        assertEquals("EXIT DOOR", hits.get(0).getText());
+        assertEquals(50, hits.get(0).getX(), 1e-3);
+        assertEquals(90, hits.get(0).getWidth(), 1e-3);
+        // Words far apart on the page are not a phrase
+        assertTrue(index.find(1L, "door fire", null, id -> true, 10).isEmpty());
+    }
+
+    @Test
+    void filtersFilesBeforeTheLimit() {
+        index.indexPage(1L, 10L, 1, List.of(word("PUMP", 0), word("PUMP", 50)));
+        index.indexPage(1L, 11L, 1, List.of(word("PUMP", 0)));
+
+        List<LocationHit> hits = index.find(1L, "pump", null, id -> id != 10L, 1);
+        assertEquals(1, hits.size());
+        assertEquals(11L, hits.get(0).getFileId());
+    }
+
+    @Test
+    void replacedAndRemovedPagesAreNotFound() {
+        index.indexPage(1L, 10L, 1, List.of(word("PUMP", 0)));
+        index.indexPage(1L, 10L, 1, List.of(word("VALVE", 0)));
+        assertTrue(index.find(1L, "pump", null, id -> true, 10).isEmpty());
+
+        index.removeFile(1L, 10L);
+        assertTrue(index.find(1L, "valve", null, id -> true, 10).isEmpty());
+    }
+
+    private static OcrWord word(String text, double x) {
+        return new OcrWord(text, new double[] { x, 0, x + 40, 0, x + 40, 10, x, 10 }, 1f);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.demo.service;
+
+import com.example.demo.model.UserFile;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+class PageTextIndexerTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void forgetsFinishedJobsAfterTheTtl() throws Exception {
+        PageTextIndexer indexer = indexer(0);
+        UserFile first = file(10L);
+
+        PageTextIndexer.JobStatus status = indexer.submit(first, false);
+        awaitDone(status);
+        assertNotNull(indexer.getStatus(10L));
+
+        // The next submit sweeps jobs that finished more than the TTL ago
+        awaitDone(indexer.submit(file(11L), false));
+        assertNull(indexer.getStatus(10L));
+        assertNotNull(indexer.getStatus(11L));
+    }
+
+    @Test
+    void resubmittingAFinishedJobStartsANewOne() throws Exception {
+        PageTextIndexer indexer = indexer(3_600_000);
+        UserFile file = file(10L);
+
+        PageTextIndexer.JobStatus first = indexer.submit(file, false);
+        awaitDone(first);
+        PageTextIndexer.JobStatus second = indexer.submit(file, false);
+        awaitDone(second);
+
+        assertEquals(PageTextIndexer.JobState.DONE, second.getState());
+        assertEquals(second, indexer.getStatus(10L));
+    }
+
+    @Test
+    void aPdfWithoutPagesFinishesAtOnce() throws Exception {
+        PageTextIndexer indexer = indexer(3_600_000);
+        Path pdf = dir.resolve("empty.pdf");
+        try (PDDocument doc = new PDDocument()) {
+            doc.save(pdf.toFile());
+        }
+        UserFile file = new UserFile(1L, "empty.pdf", pdf.toString(), 0L);
+        ReflectionTestUtils.setField(file, "id", 10L);
+
+        PageTextIndexer.JobStatus status = indexer.submit(file, false);
+
+        assertEquals(PageTextIndexer.JobState.DONE, status.getState());
+        assertEquals(0, status.getTotalPages());
+        assertNotNull(status.getFinishedAt());
+    }
+
+    @Test
+    void aJobThatCannotStartFails() throws Exception {
+        PageTextIndexer indexer = indexer(3_600_000);
+        indexer.shutdown();
+
+        assertThrows(RejectedExecutionException.class, () -> indexer.submit(file(10L), false));
+
+        // Not stuck as running, so a later submit can start over
+        assertEquals(PageTextIndexer.JobState.FAILED, indexer.getStatus(10L).getState());
+    }
+
+    private PageTextIndexer indexer(long ttlMillis) {
+        return new PageTextIndexer(mock(OcrService.class), mock(OcrWordStore.class), mock(PageTextIndex.class),
+                mock(RenderBudget.class), mock(OcrScheduler.class), mock(EventBroadcaster.class), 2, ttlMillis);
+    }
+
+    private UserFile file(Long id) throws Exception {
+        Path image = Files.write(dir.resolve("sheet-" + id + ".png"), new byte[0]);
+        UserFile file = new UserFile(1L, image.getFileName().toString(), image.toString(), 0L);
+        ReflectionTestUtils.setField(file, "id", id);
+        return file;
+    }
+
+    private static void awaitDone(PageTextIndexer.JobStatus status) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (status.getState() == PageTextIndexer.JobState.RUNNING && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(PageTextIndexer.JobState.DONE, status.getState());
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.demo.service;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RasterPoolTest {
+
+    private final RasterPool pool = new RasterPool(2, 64L << 20, false);
+
+    @Test
+    void pooledRenderMatchesPdfBoxIncludingPageRotation() throws IOException {
+        try (PDDocument doc = new PDDocument()) {
+            for (int rotation : new int[] { 0, 90 }) {
+                PDPage page = new PDPage(new PDRectangle(300, 200));
+                page.setRotation(rotation);
+                doc.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(doc, page)) {
+                    content.setNonStrokingColor(Color.BLUE);
+                    content.addRect(20, 30, 100, 50);
+                    content.fill();
+                }
+            }
+
+            for (int index = 0; index < 2; index++) {
+                BufferedImage expected = new PDFRenderer(doc).renderImage(index, 1.5f);
+                try (RasterPool.Lease lease = pool.renderPage(doc, index, 1.5f)) {
+                    BufferedImage actual = lease.getImage();
+                    assertEquals(expected.getWidth(), actual.getWidth());
+                    assertEquals(expected.getHeight(), actual.getHeight());
+                    for (int y = 0; y < expected.getHeight(); y++) {
+                        for (int x = 0; x < expected.getWidth(); x++) {
+                            assertEquals(expected.getRGB(x, y), actual.getRGB(x, y), "pixel " + x + "," + y);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void regionRenderMatchesTheSameAreaOfTheFullPage() throws IOException {
+        try (PDDocument doc = new PDDocument()) {
+            PDPage page = new PDPage(new PDRectangle(300, 200));
+            page.setRotation(90);
+            doc.addPage(page);
+            try (PDPageContentStream content = new PDPageContentStream(doc, page)) {
+                content.setNonStrokingColor(Color.RED);
+                content.addRect(40, 60, 120, 80);
+                content.fill();
+            }
+
+            float scale = 2f;
+            try (RasterPool.Lease full = pool.renderPage(doc, 0, scale);
+                    RasterPool.Lease region = pool.renderRegion(doc, 0, 30.25, 70, 90, 110, scale)) {
+                BufferedImage expected = full.getImage();
+                BufferedImage actual = region.getImage();
+                assertEquals(180, actual.getWidth());
+                assertEquals(220, actual.getHeight());
+                int offsetX = (int) Math.floor(30.25 * scale);
+                int offsetY = (int) Math.floor(70 * scale);
+                for (int y = 0; y < actual.getHeight(); y++) {
+                    for (int x = 0; x < actual.getWidth(); x++) {
+                        assertEquals(expected.getRGB(offsetX + x, offsetY + y), actual.getRGB(x, y),
+                                "pixel " + x + "," + y);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void reusesArraysOfTheSameSizeClassAndClearsThem() {
+        int[] first;
+        try (RasterPool.Lease lease = pool.lease(1000, 700)) {
+            lease.getImage().setRGB(5, 5, 0x123456);
+            first = ((java.awt.image.DataBufferInt) lease.getImage().getRaster().getDataBuffer()).getData();
+        }
+        try (RasterPool.Lease lease = pool.lease(990, 705)) {
+            int[] second = ((java.awt.image.DataBufferInt) lease.getImage().getRaster().getDataBuffer()).getData();
+            assertSame(first, second);
+            assertEquals(0xffffffff, lease.getImage().getRGB(5, 5));
+        }
+        assertEquals(1, pool.getAllocated());
+        assertEquals(1, pool.getReused());
+        assertEquals(0, pool.getOutstanding());
+    }
+
+    @Test
+    void sizeClassesWasteAtMostAQuarter() {
+        for (int pixels : new int[] { 1, 70_000, 1_000_000, 7_000_000, 60_000_000 }) {
+            int size = RasterPool.sizeClass(pixels);
+            assertTrue(size >= pixels);
+            assertTrue(size <= Math.max(1 << 16, pixels * 1.25 + 1), pixels + " -> " + size);
+        }
+    }
+}
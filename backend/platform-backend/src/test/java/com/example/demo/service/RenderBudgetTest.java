@@ -0,0 +1,64 @@
+package com.example.demo.service;
+
+import com.example.demo.util.ResourceGuard;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RenderBudgetTest {
+
+    // A1 sheet in points
+    private static final double W = 1684;
+    private static final double H = 2384;
+
+    @Test
+    void downscalesARenderLargerThanTheWholeBudget() {
+        RenderBudget budget = new RenderBudget(RenderBudget.estimateBytes(W, H, 2.0f), 0);
+
+        try (RenderBudget.Reservation reservation = budget.reserve(W, H, 3.0f, 1.0f)) {
+            assertTrue(reservation.getScale() < 3.0f && reservation.getScale() >= 2.0f);
+            assertTrue(budget.getReservedBytes() <= budget.getBudgetBytes());
+        }
+        assertEquals(0, budget.getReservedBytes());
+    }
+
+    @Test
+    void waitsForMemoryThenRendersSmallerOrRejects() throws Exception {
+        RenderBudget budget = new RenderBudget(RenderBudget.estimateBytes(W, H, 3.0f), 50);
+
+        RenderBudget.Reservation first = budget.reserve(W, H, 3.0f, 1.0f);
+        // Nothing left and no release within the wait: rejected
+        assertThrows(ResourceGuard.BusyException.class, () -> budget.reserve(W, H, 3.0f, 1.0f));
+
+        first.close();
+        RenderBudget.Reservation big = budget.reserve(W, H, 2.0f, 1.0f);
+        // 5/9 of the budget left: the next render is scaled down to fit it
+        try (RenderBudget.Reservation small = budget.reserve(W, H, 3.0f, 1.0f)) {
+            assertTrue(small.getScale() < 3.0f && small.getScale() >= 1.0f);
+            assertTrue(budget.getReservedBytes() <= budget.getBudgetBytes());
+        }
+        big.close();
+        assertEquals(1, budget.getRejected());
+    }
+
+    @Test
+    void waiterIsAdmittedWhenMemoryIsReleased() throws Exception {
+        RenderBudget budget = new RenderBudget(RenderBudget.estimateBytes(W, H, 3.0f), 5_000);
+        RenderBudget.Reservation first = budget.reserve(W, H, 3.0f, 1.0f);
+
+        CompletableFuture<Float> second = CompletableFuture.supplyAsync(() -> {
+            try (RenderBudget.Reservation reservation = budget.reserve(W, H, 3.0f, 1.0f)) {
+                return reservation.getScale();
+            }
+        });
+        Thread.sleep(50);
+        first.close();
+
+        assertEquals(3.0f, second.get(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.demo.service;
+
+import com.example.demo.model.UserFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class RenditionCacheTest {
+
+    @TempDir
+    Path dir;
+
+    private RenditionCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new RenditionCache(new RenderBudget(0, 0), dir.resolve("renditions").toString(), 1 << 20, 1);
+    }
+
+    @AfterEach
+    void shutdown() {
+        cache.shutdown();
+    }
+
+    @Test
+    void sizesRoundUpToABucket() {
+        assertEquals(256, RenditionCache.bucket(1));
+        assertEquals(512, RenditionCache.bucket(300));
+        assertEquals(1024, RenditionCache.bucket(1024));
+        // Past the largest bucket, or not given: full size
+        assertEquals(0, RenditionCache.bucket(5000));
+        assertEquals(0, RenditionCache.bucket(0));
+        assertEquals(0, RenditionCache.bucket(-1));
+    }
+
+    @Test
+    void nearbySizesShareOneRendition() throws Exception {
+        UserFile file = image(10L, 800, 600, 0);
+
+        Path first = cache.get(file, 300);
+        Path second = cache.get(file, 301);
+
+        assertEquals(first, second);
+        assertEquals(1, cache.getMisses());
+        assertEquals(512, ImageIO.read(first.toFile()).getWidth());
+    }
+
+    @Test
+    void uprightImagesThatFitAreServedFromTheSource() throws Exception {
+        UserFile file = image(10L, 200, 100, 0);
+
+        assertEquals(Path.of(file.getFilePath()), cache.get(file, 1024));
+        assertEquals(0, cache.getMisses());
+
+        // Rotated, it still needs a rendition, but the full-size one
+        file.setRotation(90);
+        Path rotated = cache.get(file, 1024);
+        assertNotEquals(Path.of(file.getFilePath()), rotated);
+        assertEquals(rotated, cache.get(file, 0));
+    }
+
+    private UserFile image(Long id, int width, int height, int rotation) throws Exception {
+        Path path = dir.resolve("sheet-" + id + ".png");
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", path.toFile());
+        UserFile file = new UserFile(1L, path.getFileName().toString(), path.toString(), 0L);
+        ReflectionTestUtils.setField(file, "id", id);
+        file.setRotation(rotation);
+        return file;
+    }
+}
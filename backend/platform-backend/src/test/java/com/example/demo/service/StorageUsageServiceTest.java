@@ -0,0 +1,101 @@
+package com.example.demo.service;
+
+import com.example.demo.FileController;
+import com.example.demo.dto.AuthPrincipal;
+import com.example.demo.model.UserFile;
+import com.example.demo.repository.StorageUsageRepository;
+import com.example.demo.repository.UserFileRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class StorageUsageServiceTest {
+
+    private static final long QUOTA = 1000;
+
+    private final StorageUsageRepository storageUsageRepository = mock(StorageUsageRepository.class);
+    private final StorageUsageService service = new StorageUsageService(storageUsageRepository,
+            mock(PlatformTransactionManager.class), QUOTA);
+
+    @Test
+    void reserveFailsOverQuota() {
+        // The conditional UPDATE matches no row when the upload does not fit
+        when(storageUsageRepository.reserve(1L, 600, QUOTA)).thenReturn(1);
+        when(storageUsageRepository.reserve(1L, 500, QUOTA)).thenReturn(0);
+
+        assertTrue(service.reserve(1L, 600));
+        assertFalse(service.reserve(1L, 500));
+        verify(storageUsageRepository, never()).releaseReservation(anyLong(), anyLong());
+    }
+
+    @Test
+    void reconcileRecomputesEachUserUnderItsRowLock() {
+        when(storageUsageRepository.findAllUserIds()).thenReturn(List.of(1L, 2L));
+
+        service.reconcile();
+
+        // The lock comes first, so the recount sees settled uploads and their reservations together
+        InOrder inOrder = inOrder(storageUsageRepository);
+        for (Long userId : List.of(1L, 2L)) {
+            inOrder.verify(storageUsageRepository).lockUser(userId);
+            inOrder.verify(storageUsageRepository).dropStaleReservations(eq(userId), any());
+            inOrder.verify(storageUsageRepository).reconcileUser(userId);
+        }
+    }
+
+    @Test
+    void completeSettlesTheReservationAfterTheWrite() {
+        Runnable write = mock(Runnable.class);
+
+        service.complete(1L, 600, write);
+
+        InOrder inOrder = inOrder(write, storageUsageRepository);
+        inOrder.verify(write).run();
+        inOrder.verify(storageUsageRepository).settle(1L, 600);
+    }
+
+    @Test
+    void assigningAFileOverQuotaIsRejected() throws Exception {
+        UserFileRepository userFileRepository = mock(UserFileRepository.class);
+        DrawingSearchIndex drawingSearchIndex = mock(DrawingSearchIndex.class);
+        UserFile anonymous = new UserFile(null, "big.pdf", "uploads/big.pdf", 5000L);
+        ReflectionTestUtils.setField(anonymous, "id", 9L);
+        when(userFileRepository.findById(9L)).thenReturn(Optional.of(anonymous));
+        when(storageUsageRepository.reserve(1L, 5000, QUOTA)).thenReturn(0);
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new FileController(userFileRepository,
+                mock(BBoxSyncService.class), mock(FileListingService.class), mock(FolderTreeCache.class),
+                mock(BulkFileService.class), service, mock(RenditionCache.class), drawingSearchIndex,
+                mock(PageTextIndex.class))).build();
+
+        mockMvc.perform(post("/api/files/9/assign")
+                .requestAttr(AuthPrincipal.REQUEST_ATTRIBUTE, new AuthPrincipal(1L, "a@example.com", List.of("USER"))))
+                .andExpect(status().is(413));
+
+        // Still anonymous, and no counter moved
+        assertNull(anonymous.getUserId());
+        verify(userFileRepository, never()).save(any());
+        verify(storageUsageRepository, never()).subtractFilesFromUsers(anyCollection());
+        verify(drawingSearchIndex, never()).reassign(any(), any());
+    }
+}
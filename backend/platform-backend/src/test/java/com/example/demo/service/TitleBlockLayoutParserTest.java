@@ -0,0 +1,68 @@
+package com.example.demo.service;
+
+import com.example.demo.client.AIServiceClient;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class TitleBlockLayoutParserTest {
+
+    private final TitleBlockLayoutParser parser = new TitleBlockLayoutParser();
+
+    @Test
+    void pairsLabelWithCellToTheRight() {
+        List<AIServiceClient.OcrDetail> words = new ArrayList<>();
+        words.add(word("공사명", 10, 10, 60, 30));
+        words.add(word("OO아파트", 200, 12, 280, 30));
+        words.add(word("신축공사", 290, 12, 360, 30));
+        words.add(word("도면번호", 10, 50, 70, 70));
+        words.add(word("A-101", 200, 52, 250, 70));
+        words.add(word("축척", 10, 90, 40, 110));
+        words.add(word("1/100", 200, 92, 240, 110));
+
+        Map<TitleBlockLayoutParser.Field, String> values = parser.parse(words);
+
+        assertEquals("OO아파트 신축공사", values.get(TitleBlockLayoutParser.Field.PROJECT_NAME));
+        assertEquals("A-101", values.get(TitleBlockLayoutParser.Field.DRAWING_NUMBER));
+        assertEquals("1/100", values.get(TitleBlockLayoutParser.Field.SCALE));
+    }
+
+    @Test
+    void fallsBackToCellBelowAndInlineValues() {
+        List<AIServiceClient.OcrDetail> words = new ArrayList<>();
+        words.add(word("DRAWING NAME", 10, 10, 120, 25));
+        words.add(word("1F FLOOR PLAN", 12, 32, 130, 50));
+        words.add(word("Scale: 1:50", 300, 10, 400, 25));
+
+        Map<TitleBlockLayoutParser.Field, String> values = parser.parse(words);
+
+        assertEquals("1F FLOOR PLAN", values.get(TitleBlockLayoutParser.Field.DRAWING_NAME));
+        assertEquals("1:50", values.get(TitleBlockLayoutParser.Field.SCALE));
+        assertFalse(values.containsKey(TitleBlockLayoutParser.Field.PROJECT_NAME));
+    }
+
+    @Test
+    void headersThatStartWithALabelWordAreNotLabels() {
+        List<AIServiceClient.OcrDetail> words = new ArrayList<>();
+        words.add(word("TITLE BLOCK", 10, 10, 120, 25));
+        words.add(word("Title:", 10, 40, 60, 55));
+        words.add(word("SITE PLAN", 200, 40, 280, 55));
+
+        Map<TitleBlockLayoutParser.Field, String> values = parser.parse(words);
+
+        assertEquals("SITE PLAN", values.get(TitleBlockLayoutParser.Field.DRAWING_NAME));
+    }
+
+    private static AIServiceClient.OcrDetail word(String text, int x0, int y0, int x1, int y1) {
+        AIServiceClient.OcrDetail detail = new AIServiceClient.OcrDetail();
+        detail.setText(text);
+        detail.setBbox(List.of(List.of(x0, y0), List.of(x1, y0), List.of(x1, y1), List.of(x0, y1)));
+        detail.setConfidence(0.9);
+        return detail;
+    }
+}
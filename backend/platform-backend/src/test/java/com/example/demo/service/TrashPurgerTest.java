@@ -0,0 +1,113 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Folder;
+import com.example.demo.model.UserFile;
+import com.example.demo.repository.FolderRepository;
+import com.example.demo.repository.UserFileRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TrashPurgerTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime TRASHED = LocalDateTime.of(2020, 1, 1, 0, 0);
+
+    private final UserFileRepository userFileRepository = mock(UserFileRepository.class);
+    private final FolderRepository folderRepository = mock(FolderRepository.class);
+    private final FolderTreeService folderTreeService = mock(FolderTreeService.class);
+    private final FolderTreeCache folderTreeCache = mock(FolderTreeCache.class);
+    private final DrawingSearchIndex drawingSearchIndex = mock(DrawingSearchIndex.class);
+    private final PageTextIndex pageTextIndex = mock(PageTextIndex.class);
+
+    @Test
+    void walksFilesInKeysetOrder() {
+        UserFile a = file(1L, TRASHED);
+        UserFile b = file(2L, TRASHED.plusMinutes(1));
+        UserFile c = file(3L, TRASHED.plusMinutes(1));
+        when(userFileRepository.lockExpiredTrash(any(), eq(START), eq(0L), any())).thenReturn(List.of(a, b));
+        // The next batch starts after the last row of the previous one
+        when(userFileRepository.lockExpiredTrash(any(), eq(b.getTrashedAt()), eq(2L), any())).thenReturn(List.of(c));
+        when(folderRepository.findExpiredTrash(any(), any(), anyLong(), any())).thenReturn(List.of());
+
+        TrashPurger purger = purger(2, 10);
+        purger.purge();
+
+        verify(userFileRepository).deleteByIds(List.of(1L, 2L));
+        verify(userFileRepository).deleteByIds(List.of(3L));
+        verify(userFileRepository, times(2)).lockExpiredTrash(any(), any(), anyLong(), eq(PageRequest.of(0, 2)));
+        verify(drawingSearchIndex).remove(7L, 3L);
+        verify(pageTextIndex).removeFile(7L, 3L);
+        assertEquals(3, purger.getFilesPurged());
+    }
+
+    @Test
+    void stopsAfterTheBatchLimit() {
+        when(userFileRepository.lockExpiredTrash(any(), any(), anyLong(), any()))
+                .thenAnswer(invocation -> {
+                    long afterId = invocation.getArgument(2);
+                    return List.of(file(afterId + 1, TRASHED), file(afterId + 2, TRASHED));
+                });
+        when(folderRepository.findExpiredTrash(any(), any(), anyLong(), any())).thenReturn(List.of());
+
+        TrashPurger purger = purger(2, 3);
+        purger.purge();
+
+        // Full batches every time, but only three per run; the rest waits for the next run
+        verify(userFileRepository, times(3)).lockExpiredTrash(any(), any(), anyLong(), any());
+        assertEquals(6, purger.getFilesPurged());
+    }
+
+    @Test
+    void purgedFoldersLeaveTheTreeCache() {
+        Folder gone = folder(20L);
+        Folder restored = folder(21L);
+        when(userFileRepository.lockExpiredTrash(any(), any(), anyLong(), any())).thenReturn(List.of());
+        when(folderRepository.findExpiredTrash(any(), eq(START), eq(0L), any())).thenReturn(List.of(gone, restored));
+        when(folderTreeService.deleteTrashedSubtree(7L, 20L)).thenReturn(1);
+        when(folderTreeService.deleteTrashedSubtree(7L, 21L)).thenReturn(0);
+
+        TrashPurger purger = purger(10, 10);
+        purger.purge();
+
+        verify(folderTreeCache).invalidate(7L);
+        verify(folderRepository, never()).findExpiredTrash(any(), eq(TRASHED), eq(21L), any());
+        assertEquals(1, purger.getFoldersPurged());
+    }
+
+    private TrashPurger purger(int batchSize, int maxBatches) {
+        return new TrashPurger(userFileRepository, folderRepository, folderTreeService,
+                mock(BlobDeletionQueue.class), mock(FileListingService.class), folderTreeCache, drawingSearchIndex,
+                pageTextIndex, mock(StorageUsageService.class), mock(PlatformTransactionManager.class),
+                30, batchSize, 0, maxBatches);
+    }
+
+    private static UserFile file(Long id, LocalDateTime trashedAt) {
+        UserFile file = new UserFile(7L, "f" + id + ".pdf", "uploads/f" + id + ".pdf", 100L);
+        ReflectionTestUtils.setField(file, "id", id);
+        file.setTrashedAt(trashedAt);
+        return file;
+    }
+
+    private static Folder folder(Long id) {
+        Folder folder = new Folder("d" + id, 7L, null);
+        folder.setId(id);
+        folder.setTrashed(true);
+        folder.setTrashedAt(TRASHED);
+        return folder;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.demo.service;
+
+import com.example.demo.model.User;
+import com.example.demo.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserCacheTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+
+    @Test
+    void servesCopiesByEmailAndIdUntilInvalidated() {
+        UserCache cache = new UserCache(userRepository, 60_000, 10);
+        when(userRepository.findByEmail("a@example.com")).thenAnswer(inv -> Optional.of(user(1L, "a@example.com")));
+
+        User first = cache.getByEmail("a@example.com");
+        first.setNotes("changed by caller");
+        User second = cache.getByEmail("a@example.com");
+        User byId = cache.getById(1L);
+
+        assertNotSame(first, second);
+        assertEquals(null, second.getNotes());
+        assertEquals("a@example.com", byId.getEmail());
+        assertEquals(2, cache.getHits());
+        verify(userRepository, times(1)).findByEmail("a@example.com");
+
+        cache.invalidate(second);
+        cache.getById(1L);
+        cache.getByEmail("a@example.com");
+        verify(userRepository, times(2)).findByEmail("a@example.com");
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedPastTheLimit() {
+        UserCache cache = new UserCache(userRepository, 60_000, 2);
+        for (long id = 1; id <= 3; id++) {
+            String email = "u" + id + "@example.com";
+            when(userRepository.findByEmail(email)).thenReturn(Optional.of(user(id, email)));
+            cache.getByEmail(email);
+        }
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+    }
+
+    private static User user(Long id, String email) {
+        User user = new User(email, "secret", "Name");
+        user.setId(id);
+        return user;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.demo.util;
+
+import com.example.demo.dto.CoordinatesPayload;
+import com.example.demo.model.BBox;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CoordinatesPayloadReaderTest {
+
+    private static final String BOXES = "[{\"type\":\"title\",\"id\":\"a1\",\"page\":2,"
+            + "\"rect\":{\"x\":10.125,\"y\":20.5,\"width\":300.0123456789,\"height\":40}},"
+            + "{\"type\":\"table\",\"rect\":{\"x\":1,\"y\":2,\"width\":3,\"height\":4},\"extra\":{\"nested\":[1,2]}}]";
+
+    @Test
+    void readsCoordinatesAsArrayOrAsEmbeddedString() throws IOException {
+        CoordinatesPayload array = json("{\"rotation\":90,\"coordinates\":" + BOXES + "}");
+        CoordinatesPayload string = json("{\"coordinates\":\"" + BOXES.replace("\"", "\\\"") + "\",\"rotation\":90}");
+
+        for (CoordinatesPayload payload : List.of(array, string)) {
+            assertTrue(payload.hasCoordinates());
+            assertEquals(90, payload.getRotation());
+            List<BBox> boxes = payload.toBBoxes();
+            assertEquals(2, boxes.size());
+            assertEquals("title", boxes.get(0).getType());
+            assertEquals("a1", boxes.get(0).getFrontendId());
+            assertEquals(2, boxes.get(0).getPage());
+            assertEquals(300.0123456789, boxes.get(0).getWidth(), 0);
+            assertNull(boxes.get(1).getFrontendId());
+            assertEquals(1, boxes.get(1).getPage());
+        }
+    }
+
+    @Test
+    void packedRoundTripKeepsFloat32Precision() throws IOException {
+        CoordinatesPayload json = json("{\"rotation\":180,\"coordinates\":" + BOXES + "}");
+
+        CoordinatesPayload packed = CoordinatesPayloadReader.readPacked(new ByteArrayInputStream(pack(json)));
+
+        assertEquals(180, packed.getRotation());
+        assertEquals(json.size(), packed.size());
+        List<BBox> expected = json.toBBoxes();
+        List<BBox> actual = packed.toBBoxes();
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getType(), actual.get(i).getType());
+            assertEquals(expected.get(i).getFrontendId(), actual.get(i).getFrontendId());
+            assertEquals(expected.get(i).getPage(), actual.get(i).getPage());
+            assertEquals(expected.get(i).getX().floatValue(), actual.get(i).getX(), 0);
+            assertEquals(expected.get(i).getWidth().floatValue(), actual.get(i).getWidth(), 0);
+        }
+        // Exactly representable values survive, others are rounded to float32
+        assertEquals(10.125, actual.get(0).getX(), 0);
+        assertFalse(actual.get(0).getWidth() == 300.0123456789, "width should be rounded");
+    }
+
+    @Test
+    void emptyArraysAndMissingCoordinates() throws IOException {
+        CoordinatesPayload empty = json("{\"coordinates\":[]}");
+        assertTrue(empty.hasCoordinates());
+        assertEquals(0, empty.size());
+
+        CoordinatesPayload emptyString = json("{\"coordinates\":\"[]\"}");
+        assertTrue(emptyString.hasCoordinates());
+        assertEquals(0, emptyString.size());
+
+        assertFalse(json("{\"rotation\":0}").hasCoordinates());
+
+        CoordinatesPayload packed = CoordinatesPayloadReader.readPacked(new ByteArrayInputStream(pack(empty)));
+        assertTrue(packed.hasCoordinates());
+        assertEquals(0, packed.size());
+    }
+
+    @Test
+    void rejectsTruncatedOrMalformedInput() throws IOException {
+        assertThrows(IOException.class, () -> json("[1,2]"));
+        assertThrows(IOException.class, () -> json("{\"coordinates\":[{\"type\":\"title\",\"rect\":{\"x\":1"));
+        assertThrows(IOException.class, () -> json("{\"coordinates\": nope}"));
+
+        byte[] packed = pack(json("{\"coordinates\":" + BOXES + "}"));
+        byte[] truncated = Arrays.copyOf(packed, packed.length - 3);
+        assertThrows(IOException.class,
+                () -> CoordinatesPayloadReader.readPacked(new ByteArrayInputStream(truncated)));
+        byte[] badMagic = packed.clone();
+        badMagic[0] = 'X';
+        assertThrows(IOException.class,
+                () -> CoordinatesPayloadReader.readPacked(new ByteArrayInputStream(badMagic)));
+    }
+
+    private static CoordinatesPayload json(String body) throws IOException {
+        return CoordinatesPayloadReader.readJson(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static byte[] pack(CoordinatesPayload payload) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(CoordinatesPayloadReader.PACKED_MAGIC);
+        out.writeInt(payload.getRotation());
+        out.writeInt(payload.size());
+        for (BBox box : payload.toBBoxes()) {
+            out.writeInt(box.getPage());
+            out.writeFloat(box.getX().floatValue());
+            out.writeFloat(box.getY().floatValue());
+            out.writeFloat(box.getWidth().floatValue());
+            out.writeFloat(box.getHeight().floatValue());
+            out.writeUTF(box.getType());
+            out.writeUTF(box.getFrontendId() != null ? box.getFrontendId() : "");
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.demo.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FileCursorTest {
+
+    @Test
+    void roundTripsUploadTimeAndId() {
+        FileCursor cursor = new FileCursor(LocalDateTime.of(2025, 3, 4, 10, 20, 30, 123_000_000), 42L);
+
+        FileCursor decoded = FileCursor.decode(cursor.encode());
+
+        assertEquals(cursor.getUploadTime(), decoded.getUploadTime());
+        assertEquals(42L, decoded.getId());
+    }
+
+    @Test
+    void blankCursorStartsAtTheTopAndGarbageIsRejected() {
+        assertSame(FileCursor.START, FileCursor.decode(null));
+        assertSame(FileCursor.START, FileCursor.decode(""));
+        assertThrows(IllegalArgumentException.class, () -> FileCursor.decode("not-a-cursor"));
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.demo.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImageRotatorTest {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @Test
+    void remapsEveryPixelForAllQuarterTurnsAndLayouts() {
+        int[] types = { BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_BYTE_GRAY,
+                BufferedImage.TYPE_BYTE_BINARY, BufferedImage.TYPE_USHORT_GRAY };
+        for (int type : types) {
+            // Not a multiple of the tile size, so edge tiles are covered
+            BufferedImage src = pattern(type, 150, 70);
+            for (int rotation : new int[] { 90, 180, 270 }) {
+                BufferedImage dest = ImageRotator.rotate(src, rotation, POOL);
+                assertEquals(type, dest.getType());
+                assertArrayEquals(expected(src, rotation), pixels(dest), "type " + type + ", " + rotation);
+            }
+        }
+    }
+
+    @Test
+    void fourQuarterTurnsGiveBackTheSourceBitForBit() {
+        BufferedImage src = pattern(BufferedImage.TYPE_INT_RGB, 97, 131);
+        BufferedImage img = src;
+        for (int i = 0; i < 4; i++) {
+            img = ImageRotator.rotate(img, 90, POOL);
+        }
+        assertArrayEquals(pixels(src), pixels(img));
+    }
+
+    @Test
+    void rotatesRectanglesLikeTheViewer() {
+        double[] rect = { 10, 20, 30, 40 };
+        RotationGeometry.rotateRect(rect, 0, 90, 200, 100);
+        assertArrayEquals(new double[] { 40, 10, 40, 30 }, rect);
+
+        rect = new double[] { 10, 20, 30, 40 };
+        RotationGeometry.rotateRect(rect, 0, -90, 200, 100);
+        assertArrayEquals(new double[] { 20, 160, 40, 30 }, rect);
+    }
+
+    @Test
+    void unrotatingUndoesRotationForRectsAndPoints() {
+        for (int rotation : new int[] { 0, 90, 180, 270 }) {
+            double[] rect = { 12, 34, 56, 7 };
+            RotationGeometry.rotateRect(rect, 0, rotation, 300, 200);
+            RotationGeometry.unrotateRect(rect, 0, rotation, 300, 200);
+            assertArrayEquals(new double[] { 12, 34, 56, 7 }, rect, "rotation " + rotation);
+
+            // Top-left corner of the rotated rect maps back to a corner of the original
+            double[] rotated = { 12, 34, 56, 7 };
+            RotationGeometry.rotateRect(rotated, 0, rotation, 300, 200);
+            double[] point = { rotated[0], rotated[1] };
+            RotationGeometry.unrotatePoint(point, 0, rotation, 300, 200);
+            assertTrue((point[0] == 12 || point[0] == 68) && (point[1] == 34 || point[1] == 41),
+                    "rotation " + rotation);
+        }
+    }
+
+    private static BufferedImage pattern(int type, int w, int h) {
+        BufferedImage img = new BufferedImage(w, h, type);
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                img.setRGB(x, y, 0xFF000000 | (x * 7919 + y * 104729) & 0xFFFFFF);
+            }
+        }
+        return img;
+    }
+
+    private static int[] expected(BufferedImage src, int rotation) {
+        int w = src.getWidth();
+        int h = src.getHeight();
+        boolean swap = rotation != 180;
+        int dw = swap ? h : w;
+        int dh = swap ? w : h;
+        int[] out = new int[dw * dh];
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                int dx = rotation == 90 ? h - 1 - y : rotation == 180 ? w - 1 - x : y;
+                int dy = rotation == 90 ? x : rotation == 180 ? h - 1 - y : w - 1 - x;
+                out[dy * dw + dx] = src.getRGB(x, y);
+            }
+        }
+        return out;
+    }
+
+    private static int[] pixels(BufferedImage img) {
+        return img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth());
+    }
+}
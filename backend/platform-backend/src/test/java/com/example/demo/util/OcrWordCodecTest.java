@@ -0,0 +1,40 @@
+package com.example.demo.util;
+
+import com.example.demo.dto.OcrWord;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OcrWordCodecTest {
+
+    @Test
+    void roundTripsWordsAtTenthUnitPrecision() throws Exception {
+        List<OcrWord> words = List.of(
+                new OcrWord("공사명", new double[] { 10.5, 20, 60.2, 20, 60.2, 31.7, 10.5, 31.7 }, 0.98f),
+                new OcrWord("A-101", new double[] { 120, 20.1, 170, 20.1, 170, 32, 120, 32 }, 0.5f),
+                new OcrWord("공사명", new double[] { 10.5, 50, 60.2, 50, 60.2, 61.7, 10.5, 61.7 }, 0f));
+
+        byte[] encoded = OcrWordCodec.encode(words);
+        List<OcrWord> decoded = OcrWordCodec.decode(encoded);
+
+        assertEquals(3, decoded.size());
+        for (int i = 0; i < words.size(); i++) {
+            assertEquals(words.get(i).getText(), decoded.get(i).getText());
+            assertArrayEquals(words.get(i).getQuad(), decoded.get(i).getQuad(), 0.05);
+            assertEquals(words.get(i).getConfidence(), decoded.get(i).getConfidence(), 0.01);
+        }
+        byte[] json = new ObjectMapper().writeValueAsBytes(words);
+        assertTrue(encoded.length * 3 < json.length, "encoded " + encoded.length + " vs json " + json.length);
+    }
+
+    @Test
+    void decodesEmptyBlobAsNoWords() {
+        assertTrue(OcrWordCodec.decode(null).isEmpty());
+        assertEquals(0, OcrWordCodec.decode(OcrWordCodec.encode(List.of())).size());
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.demo.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchTokenizerTest {
+
+    @Test
+    void splitsDrawingNumbersIntoPartsAndWhole() {
+        assertEquals(List.of("a", "101", "a-101", "rev"), SearchTokenizer.tokenize("A-101 Rev."));
+    }
+
+    @Test
+    void splitsHangulRunsIntoBigramsAndIndexesRunTails() {
+        assertEquals(List.of("신축", "축공", "공사"), SearchTokenizer.tokenize("신축공사"));
+        assertEquals(List.of("신축", "축공", "공사", "사"), SearchTokenizer.indexTerms("신축공사"));
+        assertEquals(List.of("3", "층"), SearchTokenizer.tokenize("3층"));
+    }
+
+    @Test
+    void normalizesFullWidthAndCase() {
+        assertEquals(List.of("a1"), SearchTokenizer.tokenize("Ａ１"));
+    }
+
+    @Test
+    void recognizesLoneCjkCharacters() {
+        assertTrue(SearchTokenizer.isCjkUnigram("층"));
+        assertFalse(SearchTokenizer.isCjkUnigram("a"));
+        assertFalse(SearchTokenizer.isCjkUnigram("층고"));
+    }
+}
@@ -0,0 +1,54 @@
+-- Listing query plans on a seeded database (run with psql against a scratch database
+-- after the application has created the schema once):
+--   psql -d scratch -f src/test/resources/bench/listing-plans.sql
+-- Seeds 2M files / 50k folders over 2k users, then prints the plans of the listing queries.
+-- Before the schema.sql indexes every query is a Seq Scan + Sort over all rows; after,
+-- each one is an Index Scan on the matching partial index that stops after LIMIT rows.
+
+TRUNCATE user_files, folders RESTART IDENTITY CASCADE;
+
+INSERT INTO folders (name, user_id, parent_folder_id, is_trashed, created_at)
+SELECT 'folder-' || g, 1 + g % 2000, NULL, g % 50 = 0, now() - (g || ' minutes')::interval
+FROM generate_series(1, 50000) g;
+
+INSERT INTO user_files (name, file_path, file_size, user_id, folder_id, is_trashed, trashed_at, rotation,
+                        upload_time)
+SELECT 'drawing-' || g || '.pdf', 'uploads/' || g || '.pdf', 100000 + g % 5000000, 1 + g % 2000,
+       CASE WHEN g % 4 = 0 THEN NULL ELSE 1 + g % 50000 END,
+       g % 20 = 0, CASE WHEN g % 20 = 0 THEN now() - (g % 90 || ' days')::interval END, 0,
+       now() - (g || ' seconds')::interval
+FROM generate_series(1, 2000000) g;
+
+ANALYZE user_files;
+ANALYZE folders;
+
+-- Recent (UserFileRepository.findRecentPage, first page)
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT id, name, file_size, upload_time, folder_id, rotation, is_trashed, trashed_at FROM user_files
+WHERE user_id = 42 AND is_trashed = false
+  AND upload_time <= '9999-12-31' AND (upload_time < '9999-12-31' OR id < 9223372036854775807)
+ORDER BY upload_time DESC, id DESC LIMIT 51;
+
+-- Root (findRootPage)
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT id FROM user_files
+WHERE user_id = 42 AND folder_id IS NULL AND is_trashed = false AND upload_time <= now()
+ORDER BY upload_time DESC, id DESC LIMIT 51;
+
+-- Folder (findFolderPage)
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT id FROM user_files
+WHERE user_id = 42 AND folder_id = 10042 AND is_trashed = false AND upload_time <= now()
+ORDER BY upload_time DESC, id DESC LIMIT 51;
+
+-- Trash (findTrashPage)
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT id FROM user_files
+WHERE user_id = 40 AND is_trashed = true AND upload_time <= now()
+ORDER BY upload_time DESC, id DESC LIMIT 51;
+
+-- Folder children / trash (FolderRepository)
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT * FROM folders WHERE user_id = 42 AND parent_folder_id IS NULL AND is_trashed = false;
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT * FROM folders WHERE user_id = 50 AND is_trashed = true;